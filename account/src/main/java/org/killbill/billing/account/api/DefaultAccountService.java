@@ -16,13 +16,39 @@
 
 package org.killbill.billing.account.api;
 
+import org.killbill.billing.account.dao.AccountDao;
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.customfield.dao.CustomFieldDao;
+import org.killbill.billing.util.tag.dao.TagDao;
+
+import com.google.inject.Inject;
+
 public class DefaultAccountService implements AccountService {
 
     private static final String ACCOUNT_SERVICE_NAME = "account-service";
 
+    private final AccountDao accountDao;
+    private final TagDao tagDao;
+    private final CustomFieldDao customFieldDao;
+
+    @Inject
+    public DefaultAccountService(final AccountDao accountDao, final TagDao tagDao, final CustomFieldDao customFieldDao) {
+        this.accountDao = accountDao;
+        this.tagDao = tagDao;
+        this.customFieldDao = customFieldDao;
+    }
+
     @Override
     public String getName() {
         return ACCOUNT_SERVICE_NAME;
     }
 
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        // Index the accounts (and their tags and custom fields) created before the search index, the searches scan them until then
+        accountDao.backfillSearchIndex();
+        tagDao.backfillSearchIndex();
+        customFieldDao.backfillSearchIndex();
+    }
 }
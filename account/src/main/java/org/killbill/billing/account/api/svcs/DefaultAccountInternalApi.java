@@ -16,6 +16,7 @@
 
 package org.killbill.billing.account.api.svcs;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -81,6 +82,21 @@ public class DefaultAccountInternalApi implements AccountInternalApi {
         accountDao.update(accountToUpdate, context);
     }
 
+    @Override
+    public List<Account> createAccounts(final List<AccountData> accountData, final InternalCallContext context) {
+        final List<AccountModelDao> accounts = new ArrayList<AccountModelDao>(accountData.size());
+        for (final AccountData data : accountData) {
+            accounts.add(new AccountModelDao(data));
+        }
+
+        final List<AccountModelDao> createdAccounts = accountDao.createAccounts(accounts, context);
+        final List<Account> result = new ArrayList<Account>(createdAccounts.size());
+        for (final AccountModelDao account : createdAccounts) {
+            result.add(new DefaultAccount(account));
+        }
+        return result;
+    }
+
     @Override
     public List<AccountEmail> getEmails(final UUID accountId,
                                         final InternalTenantContext context) {
@@ -119,6 +135,20 @@ public class DefaultAccountInternalApi implements AccountInternalApi {
         return accountModelDao.getId();
     }
 
+    @Override
+    public Pagination<Account> getAccounts(final Long offset, final Long limit, final InternalTenantContext context) {
+        final Pagination<AccountModelDao> accountModelDaos = accountDao.get(offset, limit, context);
+        return new DefaultPagination<Account>(accountModelDaos,
+                                              limit,
+                                              Iterators.<AccountModelDao, Account>transform(accountModelDaos.iterator(),
+                                                                                            new Function<AccountModelDao, Account>() {
+                                                                                                @Override
+                                                                                                public Account apply(final AccountModelDao accountModelDao) {
+                                                                                                    return new DefaultAccount(accountModelDao);
+                                                                                                }
+                                                                                            }));
+    }
+
     private AccountModelDao getAccountModelDaoByRecordId(final Long recordId, final InternalTenantContext context) throws AccountApiException {
         final AccountModelDao accountModelDao = accountDao.getByRecordId(recordId, context);
         if (accountModelDao == null) {
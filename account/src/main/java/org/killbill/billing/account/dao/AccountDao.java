@@ -32,6 +32,9 @@ public interface AccountDao extends EntityDao<AccountModelDao, Account, AccountA
 
     public Pagination<AccountModelDao> searchAccounts(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
+    // Indexes the rows created before the search index (see SearchIndexBackfill)
+    public void backfillSearchIndex();
+
     /**
      * @throws AccountApiException when externalKey is null
      */
@@ -45,6 +48,15 @@ public interface AccountDao extends EntityDao<AccountModelDao, Account, AccountA
 
     public void update(AccountModelDao account, InternalCallContext context) throws AccountApiException;
 
+    /**
+     * Create the accounts in a single transaction, using one batch insert. Accounts whose external key already
+     * exists (or appears earlier in the list) are skipped.
+     *
+     * @param accounts the accounts to create
+     * @return the accounts created, in the order specified
+     */
+    public List<AccountModelDao> createAccounts(List<AccountModelDao> accounts, InternalCallContext context);
+
     public void addEmail(AccountEmailModelDao email, InternalCallContext context) throws AccountApiException;
 
     public void removeEmail(AccountEmailModelDao email, InternalCallContext context);
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -28,10 +30,11 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableModelDao;
 
 import com.google.common.base.Objects;
 
-public class AccountModelDao extends EntityModelDaoBase implements EntityModelDao<Account> {
+public class AccountModelDao extends EntityModelDaoBase implements EntityModelDao<Account>, SearchableModelDao {
 
     private String externalKey;
     private String email;
@@ -389,4 +392,9 @@ public class AccountModelDao extends EntityModelDaoBase implements EntityModelDa
     public TableName getHistoryTableName() {
         return TableName.ACCOUNT_HISTORY;
     }
+
+    @Override
+    public List<String> getSearchableValues() {
+        return Arrays.<String>asList(getName(), getEmail(), getExternalKey(), getCompanyName());
+    }
 }
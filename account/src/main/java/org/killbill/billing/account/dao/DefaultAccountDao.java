@@ -16,8 +16,11 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.killbill.billing.BillingExceptionBase;
@@ -36,12 +39,15 @@ import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchIndexBackfill;
+import org.killbill.billing.util.entity.dao.SearchIndexKeys;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
@@ -49,6 +55,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 
 public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, AccountApiException> implements AccountDao {
@@ -57,13 +64,15 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
 
     private final PersistentBus eventBus;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final SearchIndexBackfill<AccountModelDao, Account> searchIndexBackfill;
 
     @Inject
     public DefaultAccountDao(final IDBI dbi, final PersistentBus eventBus, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
-                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), AccountSqlDao.class);
+                             final InternalCallContextFactory internalCallContextFactory, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry), AccountSqlDao.class);
         this.eventBus = eventBus;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.searchIndexBackfill = new SearchIndexBackfill<AccountModelDao, Account>(transactionalSqlDao, AccountSqlDao.class, TableName.ACCOUNT);
     }
 
     @Override
@@ -82,6 +91,10 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
                 return;
         }
 
+        postAccountCreationEventFromTransaction(savedAccount, entitySqlDaoWrapperFactory, context);
+    }
+
+    private void postAccountCreationEventFromTransaction(final AccountModelDao savedAccount, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
         final Long recordId = entitySqlDaoWrapperFactory.become(AccountSqlDao.class).getRecordId(savedAccount.getId().toString(), context);
         // We need to re-hydrate the callcontext with the account record id
         final InternalCallContext rehydratedContext = internalCallContextFactory.createInternalCallContext(recordId, context);
@@ -106,16 +119,24 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
 
     @Override
     public Pagination<AccountModelDao> searchAccounts(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final Set<String> searchIndexKeys = SearchIndexKeys.forSearchKey(searchKey);
+        final boolean searchUnindexedRows = searchIndexBackfill.hasUnindexedRows();
         return paginationHelper.getPagination(AccountSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<AccountModelDao, Account, AccountSqlDao>() {
                                                   @Override
                                                   public Long getCount(final AccountSqlDao accountSqlDao, final InternalTenantContext context) {
-                                                      return accountSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return accountSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<AccountModelDao> build(final AccountSqlDao accountSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return accountSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return accountSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<AccountModelDao> build(final AccountSqlDao accountSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return accountSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, fromRecordId, limit, context);
                                                   }
                                               },
                                               offset,
@@ -123,6 +144,11 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
                                               context);
     }
 
+    @Override
+    public void backfillSearchIndex() {
+        searchIndexBackfill.backfill();
+    }
+
     @Override
     public UUID getIdFromKey(final String externalKey, final InternalTenantContext context) throws AccountApiException {
         if (externalKey == null) {
@@ -170,6 +196,34 @@ public class DefaultAccountDao extends EntityDaoBase<AccountModelDao, Account, A
         });
     }
 
+    @Override
+    public List<AccountModelDao> createAccounts(final List<AccountModelDao> accounts, final InternalCallContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<AccountModelDao>>() {
+            @Override
+            public List<AccountModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final AccountSqlDao transactional = entitySqlDaoWrapperFactory.become(AccountSqlDao.class);
+
+                final Set<String> externalKeys = new HashSet<String>();
+                final List<AccountModelDao> accountsToCreate = new ArrayList<AccountModelDao>(accounts.size());
+                for (final AccountModelDao account : accounts) {
+                    if (externalKeys.add(account.getExternalKey()) && transactional.getIdFromKey(account.getExternalKey(), context) == null) {
+                        accountsToCreate.add(account);
+                    }
+                }
+                if (accountsToCreate.isEmpty()) {
+                    return accountsToCreate;
+                }
+
+                transactional.createAccounts(accountsToCreate, context);
+
+                for (final AccountModelDao account : accountsToCreate) {
+                    postAccountCreationEventFromTransaction(account, entitySqlDaoWrapperFactory, context);
+                }
+                return accountsToCreate;
+            }
+        });
+    }
+
     @Override
     public void updatePaymentMethod(final UUID accountId, final UUID paymentMethodId, final InternalCallContext context) throws AccountApiException {
         transactionalSqlDao.execute(AccountApiException.class, new EntitySqlDaoTransactionWrapper<Void>() {
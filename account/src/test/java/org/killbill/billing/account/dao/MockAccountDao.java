@@ -92,6 +92,23 @@ public class MockAccountDao extends MockEntityDaoBase<AccountModelDao, Account,
         }
     }
 
+    @Override
+    public List<AccountModelDao> createAccounts(final List<AccountModelDao> accounts, final InternalCallContext context) {
+        final List<AccountModelDao> createdAccounts = new LinkedList<AccountModelDao>();
+        for (final AccountModelDao account : accounts) {
+            if (getAccountByKey(account.getExternalKey(), context) != null) {
+                continue;
+            }
+            try {
+                create(account, context);
+            } catch (final AccountApiException e) {
+                Assert.fail(e.toString());
+            }
+            createdAccounts.add(account);
+        }
+        return createdAccounts;
+    }
+
     @Override
     public AccountModelDao getAccountByKey(final String externalKey, final InternalTenantContext context) {
         for (final Map<Long, AccountModelDao> accountRow : entities.values()) {
@@ -119,6 +136,10 @@ public class MockAccountDao extends MockEntityDaoBase<AccountModelDao, Account,
         return DefaultPagination.<AccountModelDao>build(offset, limit, results);
     }
 
+    @Override
+    public void backfillSearchIndex() {
+    }
+
     @Override
     public UUID getIdFromKey(final String externalKey, final InternalTenantContext context) {
         final AccountModelDao account = getAccountByKey(externalKey, context);
@@ -104,6 +104,34 @@ public class TestAccountDao extends AccountTestSuiteWithEmbeddedDB {
         Assert.assertEquals(auditLogsForAccount.get(0).getChangeType(), ChangeType.INSERT);
     }
 
+    @Test(groups = "slow", description = "Test Account: batch creation")
+    public void testCreateAccounts() throws AccountApiException {
+        final AccountModelDao existingAccount = createTestAccount();
+        accountDao.create(existingAccount, internalCallContext);
+
+        final AccountModelDao account1 = createTestAccount();
+        final AccountModelDao account2 = createTestAccount();
+        final AccountModelDao account1Duplicate = new AccountModelDao(UUID.randomUUID(), new DefaultAccount(account1));
+        final AccountModelDao existingAccountDuplicate = new AccountModelDao(UUID.randomUUID(), new DefaultAccount(existingAccount));
+
+        final List<AccountModelDao> createdAccounts = accountDao.createAccounts(ImmutableList.<AccountModelDao>of(account1, existingAccountDuplicate, account2, account1Duplicate), internalCallContext);
+        Assert.assertEquals(createdAccounts.size(), 2);
+        Assert.assertEquals(createdAccounts.get(0).getId(), account1.getId());
+        Assert.assertEquals(createdAccounts.get(1).getId(), account2.getId());
+
+        checkAccountsEqual(accountDao.getAccountByKey(account1.getExternalKey(), internalCallContext), account1);
+        checkAccountsEqual(accountDao.getAccountByKey(account2.getExternalKey(), internalCallContext), account2);
+        checkAccountsEqual(accountDao.getAccountByKey(existingAccount.getExternalKey(), internalCallContext), existingAccount);
+        Assert.assertEquals(ImmutableList.<AccountModelDao>copyOf(accountDao.getAll(internalCallContext)).size(), 3);
+
+        // Verify audits
+        for (final AccountModelDao account : createdAccounts) {
+            final List<AuditLog> auditLogsForAccount = auditDao.getAuditLogsForId(TableName.ACCOUNT, account.getId(), AuditLevel.FULL, internalCallContext);
+            Assert.assertEquals(auditLogsForAccount.size(), 1);
+            Assert.assertEquals(auditLogsForAccount.get(0).getChangeType(), ChangeType.INSERT);
+        }
+    }
+
     @Test(groups = "slow", description = "Test Account: verify audits")
     public void testAudits() throws AccountApiException {
         // Special test to verify audits - they are handled a bit differently due to the account record id (see EntitySqlDaoWrapperInvocationHandler#insertAudits)
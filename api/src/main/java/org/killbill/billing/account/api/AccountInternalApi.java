@@ -33,6 +33,13 @@ public interface AccountInternalApi {
 
     public void updateAccount(String key, AccountData accountData, InternalCallContext context) throws AccountApiException;
 
+    /**
+     * Create the accounts in a single transaction. Accounts whose external key already exists are skipped.
+     *
+     * @return the accounts created
+     */
+    public List<Account> createAccounts(List<AccountData> accountData, InternalCallContext context);
+
     public List<AccountEmail> getEmails(UUID accountId, InternalTenantContext context);
 
     public void removePaymentMethod(UUID accountId, InternalCallContext context) throws AccountApiException;
@@ -40,4 +47,6 @@ public interface AccountInternalApi {
     public void updatePaymentMethod(UUID accountId, UUID paymentMethodId, InternalCallContext context) throws AccountApiException;
 
     public UUID getByRecordId(Long recordId, InternalTenantContext context) throws AccountApiException;
+
+    public Pagination<Account> getAccounts(Long offset, Long limit, InternalTenantContext context);
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.callcontext;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.util.callcontext.TenantContext;
+
+/**
+ * Internal use only: internal counterpart of PaginationTenantContext
+ */
+public class InternalPaginationTenantContext extends InternalTenantContext {
+
+    private final String paginationToken;
+    private final long maxPageSizeForToken;
+    private final boolean withCount;
+
+    public InternalPaginationTenantContext(final Long tenantRecordId,
+                                           @Nullable final Long accountRecordId,
+                                           @Nullable final String paginationToken,
+                                           final long maxPageSizeForToken,
+                                           final boolean withCount) {
+        super(tenantRecordId, accountRecordId);
+        this.paginationToken = paginationToken;
+        this.maxPageSizeForToken = maxPageSizeForToken;
+        this.withCount = withCount;
+    }
+
+    @Override
+    public TenantContext toTenantContext(final UUID tenantId) {
+        return new PaginationTenantContext(tenantId, paginationToken, maxPageSizeForToken, withCount);
+    }
+
+    public String getPaginationToken() {
+        return paginationToken;
+    }
+
+    public long getMaxPageSizeForToken() {
+        return maxPageSizeForToken;
+    }
+
+    public boolean isWithCount() {
+        return withCount;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("InternalPaginationTenantContext");
+        sb.append("{accountRecordId=").append(accountRecordId);
+        sb.append(", tenantRecordId=").append(tenantRecordId);
+        sb.append(", paginationToken='").append(paginationToken).append('\'');
+        sb.append(", maxPageSizeForToken=").append(maxPageSizeForToken);
+        sb.append(", withCount=").append(withCount);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+
+        final InternalPaginationTenantContext that = (InternalPaginationTenantContext) o;
+
+        if (maxPageSizeForToken != that.maxPageSizeForToken) {
+            return false;
+        }
+        if (withCount != that.withCount) {
+            return false;
+        }
+        if (paginationToken != null ? !paginationToken.equals(that.paginationToken) : that.paginationToken != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (paginationToken != null ? paginationToken.hashCode() : 0);
+        result = 31 * result + (int) (maxPageSizeForToken ^ (maxPageSizeForToken >>> 32));
+        result = 31 * result + (withCount ? 1 : 0);
+        return result;
+    }
+}
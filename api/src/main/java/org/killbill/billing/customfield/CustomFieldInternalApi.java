@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.customfield;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.customfield.CustomField;
+
+public interface CustomFieldInternalApi {
+
+    /**
+     * Return custom fields for a set of objects of the same type, in a single lookup
+     *
+     * @param objectIds  the object ids
+     * @param objectType the object type
+     * @param context    call callcontext
+     * @return mapping object id -> custom fields, for all requested object ids
+     */
+    public Map<UUID, List<CustomField>> getCustomFieldsForObjects(Collection<UUID> objectIds, ObjectType objectType, InternalTenantContext context);
+}
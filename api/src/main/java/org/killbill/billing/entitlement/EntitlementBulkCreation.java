@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.entitlement;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+
+/**
+ * One entitlement of a bulk creation (see EntitlementInternalApi#createBulkEntitlements). Entitlements sharing the
+ * same bundle external key are created in the same new bundle, whose base entitlement comes first.
+ */
+public class EntitlementBulkCreation {
+
+    private final String bundleExternalKey;
+    private final PlanPhaseSpecifier spec;
+    private final LocalDate effectiveDate;
+
+    public EntitlementBulkCreation(final String bundleExternalKey,
+                                   final PlanPhaseSpecifier spec,
+                                   @Nullable final LocalDate effectiveDate) {
+        this.bundleExternalKey = bundleExternalKey;
+        this.spec = spec;
+        this.effectiveDate = effectiveDate;
+    }
+
+    public String getBundleExternalKey() {
+        return bundleExternalKey;
+    }
+
+    public PlanPhaseSpecifier getSpec() {
+        return spec;
+    }
+
+    public LocalDate getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntitlementBulkCreation{");
+        sb.append("bundleExternalKey='").append(bundleExternalKey).append('\'');
+        sb.append(", spec=").append(spec);
+        sb.append(", effectiveDate=").append(effectiveDate);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+
+/**
+ * One item of a bulk entitlement operation (see EntitlementInternalApi#applyBulkOperations).
+ * <p/>
+ * A requested date applies to both the entitlement and billing (as in Entitlement#changePlanWithDate and
+ * Entitlement#cancelEntitlementWithDate, overriding the billing policy), otherwise the billing policy (or the
+ * catalog default) applies and the entitlement is cancelled on the same date as billing.
+ */
+public class EntitlementBulkOperation {
+
+    private final ChangeType changeType;
+    private final UUID entitlementId;
+    private final String productName;
+    private final BillingPeriod billingPeriod;
+    private final String priceList;
+    private final LocalDate requestedDate;
+    private final BillingActionPolicy billingPolicy;
+
+    public EntitlementBulkOperation(final ChangeType changeType,
+                                    final UUID entitlementId,
+                                    @Nullable final String productName,
+                                    @Nullable final BillingPeriod billingPeriod,
+                                    @Nullable final String priceList,
+                                    @Nullable final LocalDate requestedDate,
+                                    @Nullable final BillingActionPolicy billingPolicy) {
+        this.changeType = changeType;
+        this.entitlementId = entitlementId;
+        this.productName = productName;
+        this.billingPeriod = billingPeriod;
+        this.priceList = priceList;
+        this.requestedDate = requestedDate;
+        this.billingPolicy = billingPolicy;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public UUID getEntitlementId() {
+        return entitlementId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public BillingPeriod getBillingPeriod() {
+        return billingPeriod;
+    }
+
+    public String getPriceList() {
+        return priceList;
+    }
+
+    public LocalDate getRequestedDate() {
+        return requestedDate;
+    }
+
+    public BillingActionPolicy getBillingPolicy() {
+        return billingPolicy;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntitlementBulkOperation{");
+        sb.append("changeType=").append(changeType);
+        sb.append(", entitlementId=").append(entitlementId);
+        sb.append(", productName='").append(productName).append('\'');
+        sb.append(", billingPeriod=").append(billingPeriod);
+        sb.append(", priceList='").append(priceList).append('\'');
+        sb.append(", requestedDate=").append(requestedDate);
+        sb.append(", billingPolicy=").append(billingPolicy);
+        sb.append('}');
+        return sb.toString();
+    }
+}
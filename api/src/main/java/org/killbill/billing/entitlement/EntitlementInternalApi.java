@@ -16,12 +16,21 @@
 
 package org.killbill.billing.entitlement;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.killbill.billing.entitlement.api.EntitlementApiException;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.TenantContext;
 
 public interface EntitlementInternalApi {
 
     public AccountEntitlements getAllEntitlementsForAccountId(UUID accountId, TenantContext context) throws EntitlementApiException;
+
+    // Operations are grouped per account, each group being written in a single transaction. Results are returned in the order of the operations.
+    public List<SubscriptionBaseBulkChangeResult> applyBulkOperations(List<EntitlementBulkOperation> operations, CallContext context);
+
+    // The bundles of the account and their entitlements are written in a single transaction. Results are returned in the order of the creations.
+    public List<SubscriptionBaseBulkChangeResult> createBulkEntitlements(UUID accountId, List<EntitlementBulkCreation> creations, CallContext context);
 }
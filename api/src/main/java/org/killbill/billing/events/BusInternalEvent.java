@@ -32,6 +32,8 @@ public interface BusInternalEvent extends BusEvent {
         CONTROL_TAG_DELETION,
         CUSTOM_FIELD_CREATION,
         CUSTOM_FIELD_DELETION,
+        CUSTOM_FIELD_BATCH_CREATION,
+        CUSTOM_FIELD_BATCH_DELETION,
         ENTITLEMENT_TRANSITION,
         INVOICE_ADJUSTMENT,
         INVOICE_CREATION,
@@ -35,6 +35,16 @@ public interface InvoiceInternalApi {
 
     public Collection<Invoice> getUnpaidInvoicesByAccountId(UUID accountId, LocalDate upToDate, InternalTenantContext context);
 
+    /**
+     * Summarize the unpaid invoices of an account, without loading them.
+     *
+     * @param accountId account id
+     * @param upToDate  only consider the invoices with a target date up to that date
+     * @param context   the tenant context
+     * @return the number, total balance and earliest of the unpaid invoices
+     */
+    public UnpaidInvoicesSummary getUnpaidInvoicesSummaryByAccountId(UUID accountId, LocalDate upToDate, InternalTenantContext context);
+
     public BigDecimal getAccountBalance(UUID accountId, InternalTenantContext context);
 
     public void notifyOfPayment(UUID invoiceId, BigDecimal amountOutstanding, Currency currency, Currency processedCurrency, UUID paymentId, DateTime paymentDate, InternalCallContext context) throws InvoiceApiException;
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.api;
+
+import java.util.UUID;
+
+import org.killbill.billing.ErrorCode;
+
+/**
+ * Thrown when an invoice plugin doesn't return within its time budget: the invoice run is aborted.
+ * <p/>
+ * The API doesn't define an invoice plugin timeout code (yet), hence the dedicated type: callers (e.g. the JAX-RS
+ * exception mappers) should check for it rather than for a code.
+ */
+public class InvoicePluginTimeoutException extends InvoiceApiException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String pluginName;
+    private final UUID invoiceId;
+
+    public InvoicePluginTimeoutException(final Throwable cause, final String pluginName, final long timeoutMillis, final UUID accountId, final UUID invoiceId) {
+        super(cause, ErrorCode.__UNKNOWN_ERROR_CODE.getCode(),
+              String.format("Invoice plugin %s didn't return within %s ms for invoice %s (account %s)", pluginName, timeoutMillis, invoiceId, accountId));
+        this.pluginName = pluginName;
+        this.invoiceId = invoiceId;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public UUID getInvoiceId() {
+        return invoiceId;
+    }
+}
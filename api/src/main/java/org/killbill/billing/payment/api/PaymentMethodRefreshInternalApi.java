@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.api;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.util.callcontext.CallContext;
+
+public interface PaymentMethodRefreshInternalApi {
+
+    /**
+     * Refresh the payment methods of all the accounts of the tenant, in the background.
+     *
+     * @param pluginName plugin to refresh the payment methods from, null for all plugins
+     * @param context    call context
+     * @throws PaymentApiException if the plugin doesn't exist
+     */
+    public void refreshPaymentMethodsForAllAccounts(@Nullable String pluginName, CallContext context) throws PaymentApiException;
+}
@@ -31,6 +31,9 @@ import org.killbill.billing.entitlement.api.EntitlementAOStatusDryRun;
 import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
 import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkCreation;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
 import org.killbill.billing.util.entity.Pagination;
 
@@ -83,4 +86,10 @@ public interface SubscriptionBaseInternalApi {
     public Iterable<DateTime> getFutureNotificationsForAccount(InternalCallContext context);
 
     public Map<UUID, DateTime> getNextFutureEventForSubscriptions(final SubscriptionBaseTransitionType eventType, final InternalCallContext internalCallContext);
+
+    // All subscriptions must belong to the account of the context: the events of the valid changes are written in a single transaction
+    public List<SubscriptionBaseBulkChangeResult> applyBulkChanges(List<SubscriptionBaseBulkChange> changes, InternalCallContext context);
+
+    // All bundles are created for the account of the context, along with their subscriptions, in a single transaction. Results are returned in the order of the creations.
+    public List<SubscriptionBaseBulkChangeResult> createBulkSubscriptions(UUID accountId, List<SubscriptionBaseBulkCreation> creations, InternalCallContext context);
 }
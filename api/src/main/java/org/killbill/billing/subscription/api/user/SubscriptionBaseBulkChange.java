@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.api.user;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingPeriod;
+
+/**
+ * One item of a bulk subscription operation (see SubscriptionBaseInternalApi#applyBulkChanges). When neither a requested
+ * date nor a policy is specified, the catalog policy applies, as for the single operations.
+ */
+public class SubscriptionBaseBulkChange {
+
+    public enum ChangeType {
+        CHANGE_PLAN,
+        CANCEL,
+        UNCANCEL
+    }
+
+    private final ChangeType changeType;
+    private final UUID subscriptionId;
+    private final String productName;
+    private final BillingPeriod billingPeriod;
+    private final String priceList;
+    private final DateTime requestedDate;
+    private final BillingActionPolicy billingPolicy;
+
+    public SubscriptionBaseBulkChange(final ChangeType changeType,
+                                      final UUID subscriptionId,
+                                      @Nullable final String productName,
+                                      @Nullable final BillingPeriod billingPeriod,
+                                      @Nullable final String priceList,
+                                      @Nullable final DateTime requestedDate,
+                                      @Nullable final BillingActionPolicy billingPolicy) {
+        this.changeType = changeType;
+        this.subscriptionId = subscriptionId;
+        this.productName = productName;
+        this.billingPeriod = billingPeriod;
+        this.priceList = priceList;
+        this.requestedDate = requestedDate;
+        this.billingPolicy = billingPolicy;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public BillingPeriod getBillingPeriod() {
+        return billingPeriod;
+    }
+
+    public String getPriceList() {
+        return priceList;
+    }
+
+    public DateTime getRequestedDate() {
+        return requestedDate;
+    }
+
+    public BillingActionPolicy getBillingPolicy() {
+        return billingPolicy;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SubscriptionBaseBulkChange{");
+        sb.append("changeType=").append(changeType);
+        sb.append(", subscriptionId=").append(subscriptionId);
+        sb.append(", productName='").append(productName).append('\'');
+        sb.append(", billingPeriod=").append(billingPeriod);
+        sb.append(", priceList='").append(priceList).append('\'');
+        sb.append(", requestedDate=").append(requestedDate);
+        sb.append(", billingPolicy=").append(billingPolicy);
+        sb.append('}');
+        return sb.toString();
+    }
+}
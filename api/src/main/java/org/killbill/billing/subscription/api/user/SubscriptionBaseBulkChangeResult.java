@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.api.user;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.BillingExceptionBase;
+
+/**
+ * Outcome of one item of a bulk subscription operation: either the effective date of the change, or the error
+ * which prevented it (in which case nothing was written for that item).
+ */
+public class SubscriptionBaseBulkChangeResult {
+
+    private final UUID subscriptionId;
+    private final DateTime effectiveDate;
+    private final Integer errorCode;
+    private final String errorMessage;
+
+    private SubscriptionBaseBulkChangeResult(final UUID subscriptionId, @Nullable final DateTime effectiveDate,
+                                             @Nullable final Integer errorCode, @Nullable final String errorMessage) {
+        this.subscriptionId = subscriptionId;
+        this.effectiveDate = effectiveDate;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public static SubscriptionBaseBulkChangeResult success(final UUID subscriptionId, @Nullable final DateTime effectiveDate) {
+        return new SubscriptionBaseBulkChangeResult(subscriptionId, effectiveDate, null, null);
+    }
+
+    public static SubscriptionBaseBulkChangeResult failure(final UUID subscriptionId, final BillingExceptionBase exception) {
+        return new SubscriptionBaseBulkChangeResult(subscriptionId, null, exception.getCode(), exception.getMessage());
+    }
+
+    public static SubscriptionBaseBulkChangeResult failure(final UUID subscriptionId, final Throwable throwable) {
+        return new SubscriptionBaseBulkChangeResult(subscriptionId, null, null, throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getName());
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null && errorMessage == null;
+    }
+
+    public UUID getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public DateTime getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    public Integer getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SubscriptionBaseBulkChangeResult{");
+        sb.append("subscriptionId=").append(subscriptionId);
+        sb.append(", effectiveDate=").append(effectiveDate);
+        sb.append(", errorCode=").append(errorCode);
+        sb.append(", errorMessage='").append(errorMessage).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
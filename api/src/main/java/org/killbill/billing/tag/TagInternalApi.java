@@ -16,7 +16,9 @@
 
 package org.killbill.billing.tag;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.killbill.billing.ObjectType;
@@ -40,6 +42,17 @@ public interface TagInternalApi {
      */
     public List<Tag> getTags(UUID objectId, ObjectType objectType, InternalTenantContext context);
 
+    /**
+     * Return tags for a set of objects of the same type, in a single lookup
+     *
+     * @param objectIds       the object ids
+     * @param objectType      the object type
+     * @param includedDeleted whether deleted tags should be returned
+     * @param context         call callcontext (if it has an account, only the tags of that account are returned)
+     * @return mapping object id -> tags, for all requested object ids
+     */
+    public Map<UUID, List<Tag>> getTagsForObjects(Collection<UUID> objectIds, ObjectType objectType, boolean includedDeleted, InternalTenantContext context);
+
     public void addTag(final UUID objectId, final ObjectType objectType, UUID tagDefinitionId, InternalCallContext context) throws TagApiException;
 
     public void removeTag(final UUID objectId, final ObjectType objectType, final UUID tagDefinitionId, InternalCallContext context) throws TagApiException;
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.api;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+
+public class TenantExport {
+
+    public enum State {
+        // Queued or in progress
+        RUNNING,
+        // All partitions have been exported
+        COMPLETED,
+        // Interrupted or failed: start it again to resume it
+        STOPPED
+    }
+
+    private final String exportName;
+    private final State state;
+    private final String directory;
+    private final DateTime since;
+    private final DateTime startedDate;
+    private final List<String> chunkFiles;
+
+    public TenantExport(final String exportName, final State state, final String directory, @Nullable final DateTime since,
+                        final DateTime startedDate, final List<String> chunkFiles) {
+        this.exportName = exportName;
+        this.state = state;
+        this.directory = directory;
+        this.since = since;
+        this.startedDate = startedDate;
+        this.chunkFiles = chunkFiles;
+    }
+
+    public String getExportName() {
+        return exportName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    @Nullable
+    public DateTime getSince() {
+        return since;
+    }
+
+    // Date the export was first started: use it as the since date of the next incremental export
+    public DateTime getStartedDate() {
+        return startedDate;
+    }
+
+    // Paths of the chunk files exported so far, relative to the export directory
+    public List<String> getChunkFiles() {
+        return chunkFiles;
+    }
+}
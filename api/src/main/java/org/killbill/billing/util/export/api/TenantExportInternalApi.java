@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.api;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+public interface TenantExportInternalApi {
+
+    /**
+     * Export the data of all accounts of the tenant, as gzipped CSV chunk files (one per account partition and table),
+     * in the calling thread.
+     * <p/>
+     * Calling it again with the same export name resumes the export: partitions already exported are skipped.
+     *
+     * @param exportName name of the export (sub-directory of the export directory)
+     * @param since      if specified, only export the rows updated since that date (incremental export)
+     * @return the export details
+     * @throws IOException           if the chunk files cannot be written
+     * @throws IllegalStateException if the export is already running
+     */
+    public TenantExport exportDataForTenant(String exportName, @Nullable DateTime since, InternalTenantContext context) throws IOException;
+
+    /**
+     * Same as {@link #exportDataForTenant}, but the export runs in the background: poll {@link #getExportForTenant} for its state.
+     *
+     * @return the export details (RUNNING, unless it was already complete)
+     * @throws IOException if the export directory cannot be written
+     */
+    public TenantExport startExportForTenant(String exportName, @Nullable DateTime since, InternalTenantContext context) throws IOException;
+
+    /**
+     * @param exportName name of the export
+     * @return the export details, or null if the export was never started
+     * @throws IOException if the export directory cannot be read
+     */
+    public TenantExport getExportForTenant(String exportName, InternalTenantContext context) throws IOException;
+}
@@ -18,6 +18,8 @@
 
 package org.killbill.billing.beatrix.extbus;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -33,6 +35,7 @@ import org.killbill.billing.events.BusInternalEvent;
 import org.killbill.billing.events.BusInternalEvent.BusInternalEventType;
 import org.killbill.billing.events.ControlTagCreationInternalEvent;
 import org.killbill.billing.events.ControlTagDeletionInternalEvent;
+import org.killbill.billing.events.CustomFieldBatchEvent;
 import org.killbill.billing.events.CustomFieldCreationEvent;
 import org.killbill.billing.events.CustomFieldDeletionEvent;
 import org.killbill.billing.events.EntitlementInternalEvent;
@@ -91,6 +94,13 @@ public class BeatrixListener {
     public void handleAllInternalKillbillEvents(final BusInternalEvent event) {
         final InternalCallContext internalContext = internalCallContextFactory.createInternalCallContext(event.getSearchKey2(), event.getSearchKey1(), "BeatrixListener", CallOrigin.INTERNAL, UserType.SYSTEM, event.getUserToken());
         try {
+            if (event instanceof CustomFieldBatchEvent) {
+                for (final BusEvent externalEvent : computeExtBusEventEntriesFromCustomFieldBatchEvent((CustomFieldBatchEvent) event, internalContext)) {
+                    externalBus.post(externalEvent);
+                }
+                return;
+            }
+
             final BusEvent externalEvent = computeExtBusEventEntryFromBusInternalEvent(event, internalContext);
             if (externalEvent != null) {
                 externalBus.post(externalEvent);
@@ -100,6 +110,20 @@ public class BeatrixListener {
         }
     }
 
+    // One external event per custom field, as for single custom field creations and deletions
+    private List<BusEvent> computeExtBusEventEntriesFromCustomFieldBatchEvent(final CustomFieldBatchEvent event, final InternalCallContext context) {
+        final ExtBusEventType eventBusType = event.getBusEventType() == BusInternalEventType.CUSTOM_FIELD_BATCH_CREATION ? ExtBusEventType.CUSTOM_FIELD_CREATION : ExtBusEventType.CUSTOM_FIELD_DELETION;
+        final TenantContext tenantContext = internalCallContextFactory.createTenantContext(context);
+        // All custom fields of a batch belong to the account of the event
+        final UUID accountId = context.getAccountRecordId() == null ? null : internalCallContextFactory.getAccountIdFromRecordId(context.getAccountRecordId());
+
+        final List<BusEvent> externalEvents = new ArrayList<BusEvent>(event.getCustomFieldIds().size());
+        for (final UUID customFieldId : event.getCustomFieldIds()) {
+            externalEvents.add(new DefaultBusExternalEvent(customFieldId, ObjectType.CUSTOM_FIELD, eventBusType, accountId, tenantContext.getTenantId(), null, context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken()));
+        }
+        return externalEvents;
+    }
+
     private BusEvent computeExtBusEventEntryFromBusInternalEvent(final BusInternalEvent event, final InternalCallContext context) {
         ObjectType objectType = null;
         UUID objectId = null;
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.beatrix.extbus;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.beatrix.BeatrixTestSuite;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.notification.plugin.api.ExtBusEvent;
+import org.killbill.billing.notification.plugin.api.ExtBusEventType;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.customfield.api.DefaultCustomFieldBatchCreationEvent;
+import org.killbill.billing.util.customfield.api.DefaultCustomFieldBatchDeletionEvent;
+import org.killbill.bus.api.BusEvent;
+import org.killbill.bus.api.PersistentBus;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestBeatrixListener extends BeatrixTestSuite {
+
+    private static final Long ACCOUNT_RECORD_ID = 12L;
+    private static final Long TENANT_RECORD_ID = 34L;
+
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID tenantId = UUID.randomUUID();
+
+    private PersistentBus externalBus;
+    private InternalCallContextFactory internalCallContextFactory;
+    private BeatrixListener beatrixListener;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        externalBus = Mockito.mock(PersistentBus.class);
+        internalCallContextFactory = Mockito.mock(InternalCallContextFactory.class);
+
+        final InternalCallContext internalCallContext = new InternalCallContext(TENANT_RECORD_ID, ACCOUNT_RECORD_ID, UUID.randomUUID(), "BeatrixListener", CallOrigin.INTERNAL,
+                                                                                UserType.SYSTEM, null, null, new DateTime(), new DateTime());
+        Mockito.when(internalCallContextFactory.createInternalCallContext(Mockito.<Long>any(), Mockito.<Long>any(), Mockito.anyString(), Mockito.<CallOrigin>any(),
+                                                                          Mockito.<UserType>any(), Mockito.<UUID>any())).thenReturn(internalCallContext);
+        final TenantContext tenantContext = Mockito.mock(TenantContext.class);
+        Mockito.when(tenantContext.getTenantId()).thenReturn(tenantId);
+        Mockito.when(internalCallContextFactory.createTenantContext(internalCallContext)).thenReturn(tenantContext);
+        Mockito.when(internalCallContextFactory.getAccountIdFromRecordId(ACCOUNT_RECORD_ID)).thenReturn(accountId);
+
+        beatrixListener = new BeatrixListener(externalBus, internalCallContextFactory);
+    }
+
+    @Test(groups = "fast")
+    public void testCustomFieldBatchCreationIsFannedOut() throws Exception {
+        final List<UUID> customFieldIds = ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        beatrixListener.handleAllInternalKillbillEvents(new DefaultCustomFieldBatchCreationEvent(customFieldIds, ACCOUNT_RECORD_ID, TENANT_RECORD_ID, UUID.randomUUID()));
+
+        checkExternalEvents(customFieldIds, ExtBusEventType.CUSTOM_FIELD_CREATION);
+    }
+
+    @Test(groups = "fast")
+    public void testCustomFieldBatchDeletionIsFannedOut() throws Exception {
+        final List<UUID> customFieldIds = ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID());
+        beatrixListener.handleAllInternalKillbillEvents(new DefaultCustomFieldBatchDeletionEvent(customFieldIds, ACCOUNT_RECORD_ID, TENANT_RECORD_ID, UUID.randomUUID()));
+
+        checkExternalEvents(customFieldIds, ExtBusEventType.CUSTOM_FIELD_DELETION);
+    }
+
+    private void checkExternalEvents(final List<UUID> customFieldIds, final ExtBusEventType expectedEventType) throws Exception {
+        final ArgumentCaptor<BusEvent> externalEvents = ArgumentCaptor.forClass(BusEvent.class);
+        Mockito.verify(externalBus, Mockito.times(customFieldIds.size())).post(externalEvents.capture());
+
+        for (int i = 0; i < customFieldIds.size(); i++) {
+            final ExtBusEvent externalEvent = (ExtBusEvent) externalEvents.getAllValues().get(i);
+            Assert.assertEquals(externalEvent.getObjectId(), customFieldIds.get(i));
+            Assert.assertEquals(externalEvent.getObjectType(), ObjectType.CUSTOM_FIELD);
+            Assert.assertEquals(externalEvent.getEventType(), expectedEventType);
+            Assert.assertEquals(externalEvent.getAccountId(), accountId);
+            Assert.assertEquals(externalEvent.getTenantId(), tenantId);
+            Assert.assertNull(externalEvent.getMetaData());
+        }
+
+        // The account is resolved once, from the record id of the event
+        Mockito.verify(internalCallContextFactory).getAccountIdFromRecordId(ACCOUNT_RECORD_ID);
+        Mockito.verify(internalCallContextFactory, Mockito.never()).getAccountId(Mockito.<UUID>any(), Mockito.<ObjectType>any(), Mockito.<TenantContext>any());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.benchmarks.BenchmarkFixtures.SyntheticAccount;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.tree.AccountItemTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merges the items proposed for the next invoice with the existing items on disk. The tree is built from scratch
+ * for each invocation (as the generator does), since the merge mutates it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AccountItemTreeBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "5", "10"})
+    public int years;
+
+    private SyntheticAccount syntheticAccount;
+    private UUID targetInvoiceId;
+    private List<InvoiceItem> proposedItems;
+
+    @Setup
+    public void setUp() throws Exception {
+        syntheticAccount = new SyntheticAccount(BenchmarkFixtures.loadCatalog(BenchmarkFixtures.SPY_CAR_BASIC), nbSubscriptions, years);
+        targetInvoiceId = UUID.randomUUID();
+        proposedItems = syntheticAccount.createProposedItems(targetInvoiceId);
+    }
+
+    @Benchmark
+    public List<InvoiceItem> mergeWithProposedItems() {
+        final AccountItemTree accountItemTree = new AccountItemTree(syntheticAccount.getAccount().getId(), targetInvoiceId);
+        for (final Invoice invoice : syntheticAccount.getExistingInvoices()) {
+            for (final InvoiceItem item : invoice.getInvoiceItems()) {
+                accountItemTree.addExistingItem(item);
+            }
+        }
+        accountItemTree.mergeWithProposedItems(proposedItems);
+        return accountItemTree.getResultingItemList();
+    }
+}
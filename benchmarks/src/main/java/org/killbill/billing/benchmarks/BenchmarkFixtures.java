@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.VersionedCatalog;
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.catalog.io.VersionedCatalogLoader;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.plumbing.billing.DefaultBillingEvent;
+import org.killbill.billing.junction.plumbing.billing.DefaultBillingEventSet;
+import org.killbill.billing.mock.MockAccountBuilder;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBuilder;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.clock.Clock;
+import org.killbill.clock.DefaultClock;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+/**
+ * Synthetic accounts, built from the test catalogs, shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String SPY_CAR_BASIC = "SpyCarBasic.xml";
+    public static final String[] SPY_CAR_PLANS = {"standard-monthly", "sports-monthly", "super-monthly"};
+    public static final String SPY_CAR_PRICE_LIST = "DEFAULT";
+
+    public static final String[] WEAPONS_HIRE_SMALL_VERSIONS = {"versionedCatalog/WeaponsHireSmall-1.xml",
+                                                                "versionedCatalog/WeaponsHireSmall-2.xml",
+                                                                "versionedCatalog/WeaponsHireSmall-3.xml"};
+
+    public static final Long TENANT_RECORD_ID = 1L;
+    public static final Long ACCOUNT_RECORD_ID = 1L;
+
+    public static final Clock CLOCK = new DefaultClock();
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * @param resources catalog versions, as classpath resources
+     * @return a versioned catalog, loaded the same way per-tenant catalogs are
+     */
+    public static VersionedCatalog loadCatalog(final String... resources) throws IOException, CatalogApiException {
+        final List<String> catalogXMLs = new ArrayList<String>(resources.length);
+        for (final String resource : resources) {
+            catalogXMLs.add(Resources.toString(Resources.getResource(resource), Charsets.UTF_8));
+        }
+        // No price override: the test catalogs don't contain custom plans
+        return new VersionedCatalogLoader(CLOCK, null, null).load(catalogXMLs, TENANT_RECORD_ID);
+    }
+
+    public static InternalCallContext createInternalCallContext() {
+        final DateTime now = CLOCK.getUTCNow();
+        return new InternalCallContext(TENANT_RECORD_ID, ACCOUNT_RECORD_ID, UUID.randomUUID(), "benchmarks",
+                                       CallOrigin.INTERNAL, UserType.SYSTEM, null, null, now, now);
+    }
+
+    /**
+     * A synthetic USD account, billed on the 1st of the month, with subscriptions on the SpyCarBasic evergreen phases
+     * started {@code years} ago, and one invoice per month of history.
+     */
+    public static class SyntheticAccount {
+
+        private final Account account;
+        private final LocalDate startDate;
+        private final LocalDate targetDate;
+        private final List<SubscriptionBase> subscriptions;
+        private final DefaultBillingEventSet billingEvents;
+        private final List<Invoice> existingInvoices;
+
+        public SyntheticAccount(final VersionedCatalog catalog, final int nbSubscriptions, final int years) throws CatalogApiException {
+            this.account = new MockAccountBuilder().currency(Currency.USD)
+                                                   .timeZone(DateTimeZone.UTC)
+                                                   .billingCycleDayLocal(1)
+                                                   .build();
+            this.targetDate = new LocalDate(CLOCK.getUTCNow(), DateTimeZone.UTC).withDayOfMonth(1);
+            this.startDate = targetDate.minusYears(years);
+
+            final DateTime startDateTime = startDate.toDateTimeAtStartOfDay(DateTimeZone.UTC);
+            this.subscriptions = new ArrayList<SubscriptionBase>(nbSubscriptions);
+            this.billingEvents = new DefaultBillingEventSet();
+            for (int i = 0; i < nbSubscriptions; i++) {
+                final SubscriptionBase subscription = createSubscription(UUID.randomUUID(), startDateTime);
+                subscriptions.add(subscription);
+
+                final Plan plan = catalog.findPlan(SPY_CAR_PLANS[i % SPY_CAR_PLANS.length], startDateTime);
+                final PlanPhase evergreen = plan.getFinalPhase();
+                final BigDecimal recurringPrice = evergreen.getRecurring().getRecurringPrice().getPrice(Currency.USD);
+                billingEvents.add(new DefaultBillingEvent(account, subscription, startDateTime, plan, evergreen, null, recurringPrice, Currency.USD,
+                                                          BillingPeriod.MONTHLY, 1, BillingMode.IN_ADVANCE, "benchmark", i,
+                                                          SubscriptionBaseTransitionType.CREATE, DateTimeZone.UTC));
+            }
+
+            this.existingInvoices = new LinkedList<Invoice>();
+            for (LocalDate periodStart = startDate; periodStart.isBefore(targetDate); periodStart = periodStart.plusMonths(1)) {
+                final Invoice invoice = new DefaultInvoice(account.getId(), periodStart, periodStart, Currency.USD);
+                for (final BillingEvent billingEvent : billingEvents) {
+                    final SubscriptionBase subscription = billingEvent.getSubscription();
+                    invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), account.getId(), subscription.getBundleId(), subscription.getId(),
+                                                                    billingEvent.getPlan().getName(), billingEvent.getPlanPhase().getName(),
+                                                                    periodStart, periodStart.plusMonths(1),
+                                                                    billingEvent.getRecurringPrice(), billingEvent.getRecurringPrice(), Currency.USD));
+                }
+                existingInvoices.add(invoice);
+            }
+        }
+
+        /**
+         * @param invoiceId target invoice id
+         * @return what the invoice generator proposes for this account at the target date: all items since the beginning of time
+         */
+        public List<InvoiceItem> createProposedItems(final UUID invoiceId) {
+            final List<InvoiceItem> proposedItems = new LinkedList<InvoiceItem>();
+            for (final BillingEvent billingEvent : billingEvents) {
+                final SubscriptionBase subscription = billingEvent.getSubscription();
+                for (LocalDate periodStart = startDate; !periodStart.isAfter(targetDate); periodStart = periodStart.plusMonths(1)) {
+                    proposedItems.add(new RecurringInvoiceItem(invoiceId, account.getId(), subscription.getBundleId(), subscription.getId(),
+                                                               billingEvent.getPlan().getName(), billingEvent.getPlanPhase().getName(),
+                                                               periodStart, periodStart.plusMonths(1),
+                                                               billingEvent.getRecurringPrice(), billingEvent.getRecurringPrice(), Currency.USD));
+                }
+            }
+            return proposedItems;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        public LocalDate getTargetDate() {
+            return targetDate;
+        }
+
+        public List<SubscriptionBase> getSubscriptions() {
+            return subscriptions;
+        }
+
+        public DefaultBillingEventSet getBillingEvents() {
+            return billingEvents;
+        }
+
+        public List<Invoice> getExistingInvoices() {
+            return existingInvoices;
+        }
+    }
+
+    public static DefaultSubscriptionBase createSubscription(final UUID bundleId, final DateTime startDate) {
+        return new DefaultSubscriptionBase(new SubscriptionBuilder().setId(UUID.randomUUID())
+                                                                    .setBundleId(bundleId)
+                                                                    .setCategory(ProductCategory.BASE)
+                                                                    .setBundleStartDate(startDate)
+                                                                    .setAlignStartDate(startDate)
+                                                                    .setActiveVersion(1L)
+                                                                    .setCreatedDate(startDate)
+                                                                    .setUpdatedDate(startDate));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.benchmarks.BenchmarkFixtures.SyntheticAccount;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.entitlement.api.BlockingStateType;
+import org.killbill.billing.junction.BillingEvent;
+import org.killbill.billing.junction.BlockingInternalApi;
+import org.killbill.billing.junction.DefaultBlockingState;
+import org.killbill.billing.junction.plumbing.billing.BlockingCalculator;
+import org.killbill.billing.overdue.OverdueService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts the blocking (overdue) billing events of an account with {@code nbSubscriptions} subscriptions, which has been
+ * blocked {@code nbBlockingPeriods} times, evenly spread over {@code years} years (for up to two weeks each, shorter
+ * periods being used for long histories). The billing events are copied for each invocation, since the calculator
+ * updates them in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlockingCalculatorBenchmark {
+
+    private static final int MAX_BLOCKING_DAYS = 14;
+
+    @Param({"1", "10", "100", "1000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "10", "50", "500"})
+    public int nbBlockingPeriods;
+
+    @Param({"5", "20"})
+    public int years;
+
+    private BlockingCalculator blockingCalculator;
+    private SortedSet<BillingEvent> billingEvents;
+    private InternalCallContext context;
+
+    @Setup
+    public void setUp() throws Exception {
+        final SyntheticAccount syntheticAccount = new SyntheticAccount(BenchmarkFixtures.loadCatalog(BenchmarkFixtures.SPY_CAR_BASIC), nbSubscriptions, years);
+        billingEvents = syntheticAccount.getBillingEvents();
+        context = BenchmarkFixtures.createInternalCallContext();
+
+        final UUID accountId = syntheticAccount.getAccount().getId();
+        final DateTime startDate = syntheticAccount.getStartDate().toDateTimeAtStartOfDay(DateTimeZone.UTC);
+        // Periods need to be at least a day long (and not contiguous) to be taken into account
+        final int daysBetweenBlockingPeriods = Math.max(2, (years * 365) / nbBlockingPeriods);
+        final int blockingDays = Math.max(1, Math.min(MAX_BLOCKING_DAYS, daysBetweenBlockingPeriods / 2));
+        final List<BlockingState> blockingStates = new ArrayList<BlockingState>(2 * nbBlockingPeriods);
+        for (int i = 0; i < nbBlockingPeriods; i++) {
+            final DateTime blockedDate = startDate.plusDays(i * daysBetweenBlockingPeriods + 1);
+            blockingStates.add(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, "OD1", OverdueService.OVERDUE_SERVICE_NAME, true, true, true, blockedDate));
+            blockingStates.add(new DefaultBlockingState(accountId, BlockingStateType.ACCOUNT, DefaultBlockingState.CLEAR_STATE_NAME, OverdueService.OVERDUE_SERVICE_NAME, false, false, false, blockedDate.plusDays(blockingDays)));
+        }
+
+        blockingCalculator = new BlockingCalculator(new BlockingInternalApi() {
+            @Override
+            public BlockingState getBlockingStateForService(final UUID blockableId, final BlockingStateType blockingStateType, final String serviceName, final InternalTenantContext context) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public List<BlockingState> getBlockingAllForAccount(final InternalTenantContext context) {
+                return blockingStates;
+            }
+
+            @Override
+            public void setBlockingState(final BlockingState state, final InternalCallContext context) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @Benchmark
+    public SortedSet<BillingEvent> insertBlockingEvents() {
+        final SortedSet<BillingEvent> billingEventsCopy = new TreeSet<BillingEvent>(billingEvents);
+        blockingCalculator.insertBlockingEvents(billingEventsCopy, context);
+        return billingEventsCopy;
+    }
+}
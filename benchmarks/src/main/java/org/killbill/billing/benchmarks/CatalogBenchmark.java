@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.VersionedCatalog;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.Plan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plan lookups against the (3 versions) WeaponsHireSmall catalog: in the latest version, and for a subscription started
+ * in the first version, which requires walking back the versions (effectiveDateForExistingSubscriptons).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CatalogBenchmark {
+
+    private static final String PLAN_NAME = "pistol-monthly";
+
+    private VersionedCatalog catalog;
+    private DateTime subscriptionStartDate;
+    private DateTime requestedDate;
+
+    @Setup
+    public void setUp() throws Exception {
+        catalog = BenchmarkFixtures.loadCatalog(BenchmarkFixtures.WEAPONS_HIRE_SMALL_VERSIONS);
+        subscriptionStartDate = new DateTime(2011, 1, 15, 0, 0, DateTimeZone.UTC);
+        requestedDate = new DateTime(2011, 4, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @Benchmark
+    public Plan findPlan() throws CatalogApiException {
+        return catalog.findPlan(PLAN_NAME, requestedDate);
+    }
+
+    @Benchmark
+    public Plan findPlanForExistingSubscription() throws CatalogApiException {
+        return catalog.findPlan(PLAN_NAME, requestedDate, subscriptionStartDate);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.DBTestingHelper;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.dao.DefaultNonEntityDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
+import org.killbill.billing.util.tag.dao.TagDefinitionSqlDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Fetches an entity by id against the embedded database used by the test suites (H2 or MySQL, see DBTestingHelper),
+ * through the EntitySqlDaoWrapperInvocationHandler and, as a baseline, through a raw jDBI handle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntitySqlDaoBenchmark {
+
+    private IDBI dbi;
+    private EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
+    private InternalCallContext context;
+    private String tagDefinitionId;
+
+    @Setup
+    public void setUp() throws Exception {
+        DBTestingHelper.get().start();
+        dbi = DBTestingHelper.get().getDBI();
+        transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, BenchmarkFixtures.CLOCK, new CacheControllerDispatcher(), new DefaultNonEntityDao(dbi), new MetricRegistry());
+        context = BenchmarkFixtures.createInternalCallContext();
+
+        final TagDefinitionModelDao tagDefinition = new TagDefinitionModelDao(BenchmarkFixtures.CLOCK.getUTCNow(), "benchmark", "Benchmark tag definition");
+        tagDefinitionId = tagDefinition.getId().toString();
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                entitySqlDaoWrapperFactory.become(TagDefinitionSqlDao.class).create(tagDefinition, context);
+                return null;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        DBTestingHelper.get().getInstance().stop();
+    }
+
+    @Benchmark
+    public TagDefinitionModelDao getByIdThroughInvocationHandler() {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<TagDefinitionModelDao>() {
+            @Override
+            public TagDefinitionModelDao inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(TagDefinitionSqlDao.class).getById(tagDefinitionId, context);
+            }
+        });
+    }
+
+    @Benchmark
+    public TagDefinitionModelDao getByIdThroughRawHandle() {
+        final Handle handle = dbi.open();
+        try {
+            return handle.attach(TagDefinitionSqlDao.class).getById(tagDefinitionId, context);
+        } finally {
+            handle.close();
+        }
+    }
+}
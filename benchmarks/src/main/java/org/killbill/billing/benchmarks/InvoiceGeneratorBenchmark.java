@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.benchmarks.BenchmarkFixtures.SyntheticAccount;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skife.config.ConfigurationObjectFactory;
+
+/**
+ * Generates the next (monthly) invoice of an account with {@code nbSubscriptions} subscriptions and {@code years} of invoice history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InvoiceGeneratorBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int nbSubscriptions;
+
+    @Param({"1", "5", "10"})
+    public int years;
+
+    private DefaultInvoiceGenerator generator;
+    private SyntheticAccount syntheticAccount;
+    private InternalCallContext context;
+
+    @Setup
+    public void setUp() throws Exception {
+        final InvoiceConfig invoiceConfig = new ConfigurationObjectFactory(new Properties()).build(InvoiceConfig.class);
+        // No usage in the SpyCarBasic catalog, hence no need for a RawUsageOptimizer
+        generator = new DefaultInvoiceGenerator(BenchmarkFixtures.CLOCK, invoiceConfig, null);
+        syntheticAccount = new SyntheticAccount(BenchmarkFixtures.loadCatalog(BenchmarkFixtures.SPY_CAR_BASIC), nbSubscriptions, years);
+        context = BenchmarkFixtures.createInternalCallContext();
+    }
+
+    @Benchmark
+    public Invoice generateInvoice() throws Exception {
+        return generator.generateInvoice(syntheticAccount.getAccount(),
+                                         syntheticAccount.getBillingEvents(),
+                                         syntheticAccount.getExistingInvoices(),
+                                         syntheticAccount.getTargetDate(),
+                                         Currency.USD,
+                                         context);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.benchmarks.BenchmarkFixtures.SyntheticAccount;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.jaxrs.json.AccountJson;
+import org.killbill.billing.jaxrs.json.AccountTimelineJson;
+import org.killbill.billing.jaxrs.json.BundleJson;
+import org.killbill.billing.jaxrs.json.InvoiceJson;
+import org.killbill.billing.jaxrs.json.InvoicePaymentJson;
+import org.killbill.billing.util.jackson.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Serializes the last invoice (with items), and the timeline of an account with {@code nbSubscriptions} subscriptions
+ * and one year of monthly invoices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private static final int YEARS = 1;
+
+    @Param({"1", "10", "100"})
+    public int nbSubscriptions;
+
+    private ObjectMapper mapper;
+    private InvoiceJson invoiceJson;
+    private AccountTimelineJson accountTimelineJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+
+        final SyntheticAccount syntheticAccount = new SyntheticAccount(BenchmarkFixtures.loadCatalog(BenchmarkFixtures.SPY_CAR_BASIC), nbSubscriptions, YEARS);
+        final List<InvoiceJson> invoices = new ArrayList<InvoiceJson>(syntheticAccount.getExistingInvoices().size());
+        for (final Invoice invoice : syntheticAccount.getExistingInvoices()) {
+            invoices.add(new InvoiceJson(invoice, true, null));
+        }
+        invoiceJson = invoices.get(invoices.size() - 1);
+        accountTimelineJson = new AccountTimelineJson(new AccountJson(syntheticAccount.getAccount(), null, null, null),
+                                                      new ArrayList<BundleJson>(),
+                                                      invoices,
+                                                      new ArrayList<InvoicePaymentJson>());
+    }
+
+    @Benchmark
+    public byte[] serializeInvoice() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(invoiceJson);
+    }
+
+    @Benchmark
+    public byte[] serializeAccountTimeline() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(accountTimelineJson);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.server.log.obfuscators.CombinedObfuscator;
+import org.killbill.billing.server.log.obfuscators.ConfigMagicObfuscator;
+import org.killbill.billing.server.log.obfuscators.LuhnMaskingObfuscator;
+import org.killbill.billing.server.log.obfuscators.PatternObfuscator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Obfuscates typical payment log lines through the chained obfuscators (as ObfuscatorConverter used to) and through
+ * the single-pass CombinedObfuscator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ObfuscatorBenchmark {
+
+    @Param({"CLEAN", "JSON", "XML", "CONFIG_MAGIC"})
+    public String logLine;
+
+    private ConfigMagicObfuscator configMagicObfuscator;
+    private PatternObfuscator patternObfuscator;
+    private LuhnMaskingObfuscator luhnMaskingObfuscator;
+    private CombinedObfuscator combinedObfuscator;
+    private String message;
+
+    @Setup
+    public void setUp() {
+        configMagicObfuscator = new ConfigMagicObfuscator();
+        patternObfuscator = new PatternObfuscator();
+        luhnMaskingObfuscator = new LuhnMaskingObfuscator();
+        combinedObfuscator = new CombinedObfuscator();
+        message = LogLine.valueOf(logLine).getMessage();
+    }
+
+    @Benchmark
+    public String obfuscateChained() {
+        return luhnMaskingObfuscator.obfuscate(patternObfuscator.obfuscate(configMagicObfuscator.obfuscate(message)));
+    }
+
+    @Benchmark
+    public String obfuscateCombined() {
+        return combinedObfuscator.obfuscate(message);
+    }
+
+    private enum LogLine {
+        CLEAN("Completed payment transaction PURCHASE for paymentId 5f3b2c0e-8d1a-4c7e-b2f1-9a6d4e0c7b13, accountId 2a9d5b6e-4a4f-4c8e-9f34-a1e7c0f0d3b2: SUCCESS"),
+        JSON("Calling plugin killbill-stripe with properties [{\"key\": \"email\", \"value\": \"bob@example.org\"}, {\"cardNumber\": \"4111111111111111\", \"cvv\": \"123\", \"amount\": 10.00}]"),
+        XML("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<requestMessage xmlns=\"urn:schemas-cybersource-com:transaction-data-1.118\">\n" +
+            "  <merchantID>killbill</merchantID>\n" +
+            "  <billTo>\n" +
+            "    <firstName>Bob</firstName>\n" +
+            "    <lastName>Smith</lastName>\n" +
+            "    <email>bob@example.org</email>\n" +
+            "  </billTo>\n" +
+            "  <card>\n" +
+            "    <accountNumber>4111111111111111</accountNumber>\n" +
+            "    <expirationMonth>12</expirationMonth>\n" +
+            "    <expirationYear>2020</expirationYear>\n" +
+            "    <cvNumber>123</cvNumber>\n" +
+            "  </card>\n" +
+            "</requestMessage>"),
+        CONFIG_MAGIC("Assigning value [pass2b78b7ce] for [org.killbill.dao.pass] on [org.killbill.commons.jdbi.guice.DaoConfig#getPass()]");
+
+        private final String message;
+
+        LogLine(final String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.automaton.MissingEntryException;
+import org.killbill.automaton.Operation;
+import org.killbill.automaton.Operation.OperationCallback;
+import org.killbill.automaton.OperationException;
+import org.killbill.automaton.OperationResult;
+import org.killbill.automaton.State.EnteringStateCallback;
+import org.killbill.automaton.State.LeavingStateCallback;
+import org.killbill.automaton.StateMachine;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.core.sm.PaymentStateMachineHelper;
+import org.killbill.billing.payment.glue.PaymentModule.StateMachineProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs {@code nbPayments} purchases (one in ten failing) through the payment state machine, with the same lookups as
+ * PaymentAutomatonRunner and PaymentEnteringStateCallback but without plugin or database calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PaymentStateMachineBenchmark {
+
+    private static final String PAYMENT_STATES_XML = "org/killbill/billing/payment/PaymentStates.xml";
+    private static final int FAILURE_RATE = 10;
+
+    private static final LeavingStateCallback NO_OP_LEAVING_STATE_CALLBACK = new LeavingStateCallback() {
+        @Override
+        public void leavingState(final org.killbill.automaton.State oldState) {
+        }
+    };
+
+    @Param({"1", "100", "1000"})
+    public int nbPayments;
+
+    private PaymentStateMachineHelper paymentSMHelper;
+
+    @Setup
+    public void setUp() throws Exception {
+        paymentSMHelper = new PaymentStateMachineHelper(new StateMachineProvider(PAYMENT_STATES_XML).get());
+    }
+
+    @Benchmark
+    public int runPurchases() throws MissingEntryException, OperationException {
+        final BenchmarkEnteringStateCallback enteringStateCallback = new BenchmarkEnteringStateCallback();
+        for (int i = 0; i < nbPayments; i++) {
+            final String initialStateName = paymentSMHelper.getInitStateNameForTransaction();
+            final StateMachine initialStateMachine = paymentSMHelper.getStateMachineForStateName(initialStateName);
+            final Operation operation = paymentSMHelper.getOperationForTransaction(TransactionType.PURCHASE);
+
+            final OperationResult operationResult = i % FAILURE_RATE == 0 ? OperationResult.FAILURE : OperationResult.SUCCESS;
+            initialStateMachine.getState(initialStateName).runOperation(operation,
+                                                                        new OperationCallback() {
+                                                                            @Override
+                                                                            public OperationResult doOperationCallback() {
+                                                                                return operationResult;
+                                                                            }
+                                                                        },
+                                                                        enteringStateCallback,
+                                                                        NO_OP_LEAVING_STATE_CALLBACK);
+        }
+        return enteringStateCallback.nbSuccessStates;
+    }
+
+    @Benchmark
+    public org.killbill.automaton.State fetchNextState() throws MissingEntryException {
+        return paymentSMHelper.fetchNextState("PURCHASE_INIT", true);
+    }
+
+    private final class BenchmarkEnteringStateCallback implements EnteringStateCallback {
+
+        private int nbSuccessStates;
+
+        @Override
+        public void enteringState(final org.killbill.automaton.State newState, final OperationCallback operationCallback, final OperationResult operationResult, final LeavingStateCallback leavingStateCallback) {
+            // Same lookups as PaymentEnteringStateCallback and PaymentAutomatonDAOHelper
+            if (paymentSMHelper.isSuccessState(newState.getName())) {
+                nbSuccessStates++;
+            }
+            try {
+                paymentSMHelper.getState(newState.getName());
+            } catch (final MissingEntryException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
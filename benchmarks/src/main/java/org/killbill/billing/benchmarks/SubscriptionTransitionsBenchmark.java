@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.DefaultPlanPhase;
+import org.killbill.billing.catalog.VersionedCatalog;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PhaseType;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+import org.killbill.billing.subscription.events.phase.PhaseEventBuilder;
+import org.killbill.billing.subscription.events.phase.PhaseEventData;
+import org.killbill.billing.subscription.events.user.ApiEventBuilder;
+import org.killbill.billing.subscription.events.user.ApiEventCancel;
+import org.killbill.billing.subscription.events.user.ApiEventChange;
+import org.killbill.billing.subscription.events.user.ApiEventCreate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rebuilds the transitions of a subscription (create, trial to evergreen phase, {@code nbChanges} plan changes, cancellation),
+ * as done each time a subscription is loaded from disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SubscriptionTransitionsBenchmark {
+
+    @Param({"0", "10", "100"})
+    public int nbChanges;
+
+    private VersionedCatalog catalog;
+    private DefaultSubscriptionBase subscription;
+    private List<SubscriptionBaseEvent> events;
+
+    @Setup
+    public void setUp() throws Exception {
+        catalog = BenchmarkFixtures.loadCatalog(BenchmarkFixtures.SPY_CAR_BASIC);
+
+        final DateTime startDate = new DateTime(2014, 1, 1, 0, 0, DateTimeZone.UTC);
+        subscription = BenchmarkFixtures.createSubscription(UUID.randomUUID(), startDate);
+
+        events = new ArrayList<SubscriptionBaseEvent>(nbChanges + 3);
+        long totalOrdering = 0;
+
+        final String initialPlan = BenchmarkFixtures.SPY_CAR_PLANS[0];
+        events.add(new ApiEventCreate(newApiEventBuilder(subscription.getId(), startDate, ++totalOrdering)
+                                              .setEventPlan(initialPlan)
+                                              .setEventPlanPhase(DefaultPlanPhase.phaseName(initialPlan, PhaseType.TRIAL))
+                                              .setEventPriceList(BenchmarkFixtures.SPY_CAR_PRICE_LIST)));
+
+        DateTime effectiveDate = startDate.plusDays(30);
+        events.add(new PhaseEventData(new PhaseEventBuilder().setPhaseName(DefaultPlanPhase.phaseName(initialPlan, PhaseType.EVERGREEN))
+                                                             .setSubscriptionId(subscription.getId())
+                                                             .setRequestedDate(effectiveDate)
+                                                             .setEffectiveDate(effectiveDate)
+                                                             .setProcessedDate(effectiveDate)
+                                                             .setCreatedDate(effectiveDate)
+                                                             .setUpdatedDate(effectiveDate)
+                                                             .setTotalOrdering(++totalOrdering)
+                                                             .setActiveVersion(1L)));
+
+        for (int i = 1; i <= nbChanges; i++) {
+            effectiveDate = effectiveDate.plusMonths(1);
+            final String plan = BenchmarkFixtures.SPY_CAR_PLANS[i % BenchmarkFixtures.SPY_CAR_PLANS.length];
+            events.add(new ApiEventChange(newApiEventBuilder(subscription.getId(), effectiveDate, ++totalOrdering)
+                                                  .setEventPlan(plan)
+                                                  .setEventPlanPhase(DefaultPlanPhase.phaseName(plan, PhaseType.EVERGREEN))
+                                                  .setEventPriceList(BenchmarkFixtures.SPY_CAR_PRICE_LIST)));
+        }
+
+        effectiveDate = effectiveDate.plusMonths(1);
+        events.add(new ApiEventCancel(newApiEventBuilder(subscription.getId(), effectiveDate, ++totalOrdering)));
+    }
+
+    @Benchmark
+    public DefaultSubscriptionBase rebuildTransitions() throws CatalogApiException {
+        subscription.rebuildTransitions(events, catalog);
+        return subscription;
+    }
+
+    private static ApiEventBuilder newApiEventBuilder(final UUID subscriptionId, final DateTime effectiveDate, final long totalOrdering) {
+        return new ApiEventBuilder().setSubscriptionId(subscriptionId)
+                                    .setRequestedDate(effectiveDate)
+                                    .setEffectiveDate(effectiveDate)
+                                    .setProcessedDate(effectiveDate)
+                                    .setCreatedDate(effectiveDate)
+                                    .setUpdatedDate(effectiveDate)
+                                    .setTotalOrdering(totalOrdering)
+                                    .setActiveVersion(1L)
+                                    .setFromDisk(true);
+    }
+}
@@ -16,10 +16,21 @@
 
 package org.killbill.billing.currency;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.killbill.billing.currency.api.CurrencyRateCache;
 import org.killbill.billing.currency.api.CurrencyService;
+import org.killbill.billing.currency.glue.CurrencyModule;
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.config.CurrencyConfig;
 
 public class DefaultCurrencyService implements CurrencyService {
 
@@ -27,8 +38,42 @@ public class DefaultCurrencyService implements CurrencyService {
 
     public static final String SERVICE_NAME = "currency-service";
 
+    private final CurrencyConfig config;
+    private final CurrencyRateCache rateCache;
+    private final ScheduledExecutorService currencyRatesExecutor;
+
+    @Inject
+    public DefaultCurrencyService(final CurrencyConfig config,
+                                  final CurrencyRateCache rateCache,
+                                  @Named(CurrencyModule.CURRENCY_RATES_EXECUTOR_NAMED) final ScheduledExecutorService currencyRatesExecutor) {
+        this.config = config;
+        this.rateCache = rateCache;
+        this.currencyRatesExecutor = currencyRatesExecutor;
+    }
+
     @Override
     public String getName() {
         return SERVICE_NAME;
     }
+
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        final long refreshIntervalMillis = config.getCurrencyRatesRefreshInterval().getMillis();
+        currencyRatesExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rateCache.refreshAll();
+                } catch (final RuntimeException e) {
+                    // Don't let the exception cancel the next refreshes
+                    log.warn("Failed to refresh currency rates", e);
+                }
+            }
+        }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        currencyRatesExecutor.shutdownNow();
+    }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.currency.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.util.config.CurrencyConfig;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Local store of the rates returned by the currency provider plugin.
+ * <p/>
+ * Current rates are refreshed in the background (see DefaultCurrencyService). Historical rates are looked up through
+ * the (sorted) conversion dates of each base currency: the conversion date in effect is found with a binary search,
+ * and the rates for that date are only requested once from the plugin, as they don't change anymore.
+ * <p/>
+ * If the plugin is unavailable, the last known rates are served (and the failure is reported through the metrics).
+ */
+@Singleton
+public class CurrencyRateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CurrencyRateCache.class);
+
+    // Past that age, an entry is refreshed inline (the background refresh is late or not running)
+    private static final int MAX_AGE_REFRESH_INTERVALS = 2;
+
+    private final CurrencyConfig config;
+    private final OSGIServiceRegistration<CurrencyPluginApi> registry;
+    private final Clock clock;
+
+    private final ConcurrentMap<Currency, CurrentRates> currentRatesByBaseCurrency = new ConcurrentHashMap<Currency, CurrentRates>();
+    private final ConcurrentMap<Currency, RateHistory> rateHistoryByBaseCurrency = new ConcurrentHashMap<Currency, RateHistory>();
+
+    private final Timer pluginTimer;
+    private final Meter refreshFailureMeter;
+    private final Meter staleMeter;
+
+    @Inject
+    public CurrencyRateCache(final CurrencyConfig config, final OSGIServiceRegistration<CurrencyPluginApi> registry, final MetricRegistry metricRegistry, final Clock clock) {
+        this.config = config;
+        this.registry = registry;
+        this.clock = clock;
+
+        this.pluginTimer = metricRegistry.timer(MetricRegistry.name(CurrencyRateCache.class, "plugin"));
+        this.refreshFailureMeter = metricRegistry.meter(MetricRegistry.name(CurrencyRateCache.class, "refreshFailure"));
+        this.staleMeter = metricRegistry.meter(MetricRegistry.name(CurrencyRateCache.class, "stale"));
+
+        final String refreshLagName = MetricRegistry.name(CurrencyRateCache.class, "refreshLag");
+        metricRegistry.remove(refreshLagName);
+        metricRegistry.register(refreshLagName, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getRefreshLagMillis();
+            }
+        });
+    }
+
+    public Set<Rate> getCurrentRates(final Currency baseCurrency) throws CurrencyConversionException {
+        final CurrentRates cachedRates = currentRatesByBaseCurrency.get(baseCurrency);
+        if (cachedRates == null) {
+            return refreshCurrentRates(baseCurrency);
+        }
+
+        if (isExpired(cachedRates.getRefreshedDateMillis())) {
+            try {
+                return refreshCurrentRates(baseCurrency);
+            } catch (final CurrencyConversionException e) {
+                onStaleRates(baseCurrency, e);
+            } catch (final RuntimeException e) {
+                onStaleRates(baseCurrency, e);
+            }
+        }
+        return cachedRates.getRates();
+    }
+
+    public Set<Rate> getRates(final Currency baseCurrency, final DateTime conversionDate) throws CurrencyConversionException {
+        final RateHistory rateHistory = getRateHistory(baseCurrency);
+        final int idx = rateHistory == null ? -1 : rateHistory.floorIndex(conversionDate.getMillis());
+        if (idx < 0) {
+            // Unknown conversion dates, or prior to the first one: let the plugin decide
+            return fetchRates(baseCurrency, conversionDate);
+        }
+
+        final Set<Rate> cachedRates = rateHistory.getRates(idx);
+        if (cachedRates != null) {
+            return cachedRates;
+        }
+
+        final Set<Rate> rates = fetchRates(baseCurrency, new DateTime(rateHistory.getConversionDateMillis(idx), DateTimeZone.UTC));
+        if (rates != null) {
+            rateHistory.setRates(idx, rates);
+        }
+        return rates;
+    }
+
+    /**
+     * Refresh all base currencies looked up so far. Failures are logged and the previous rates are kept.
+     */
+    public void refreshAll() {
+        for (final Currency baseCurrency : currentRatesByBaseCurrency.keySet()) {
+            try {
+                refreshCurrentRates(baseCurrency);
+            } catch (final CurrencyConversionException e) {
+                onRefreshFailure(baseCurrency, e);
+            } catch (final RuntimeException e) {
+                onRefreshFailure(baseCurrency, e);
+            }
+        }
+
+        for (final Currency baseCurrency : rateHistoryByBaseCurrency.keySet()) {
+            try {
+                refreshRateHistory(baseCurrency);
+            } catch (final CurrencyConversionException e) {
+                onRefreshFailure(baseCurrency, e);
+            } catch (final RuntimeException e) {
+                onRefreshFailure(baseCurrency, e);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        currentRatesByBaseCurrency.clear();
+        rateHistoryByBaseCurrency.clear();
+    }
+
+    public long getRefreshLagMillis() {
+        final long now = clock.getUTCNow().getMillis();
+        long lag = 0;
+        for (final CurrentRates currentRates : currentRatesByBaseCurrency.values()) {
+            lag = Math.max(lag, now - currentRates.getRefreshedDateMillis());
+        }
+        for (final RateHistory rateHistory : rateHistoryByBaseCurrency.values()) {
+            lag = Math.max(lag, now - rateHistory.getRefreshedDateMillis());
+        }
+        return lag;
+    }
+
+    CurrencyPluginApi getPluginApi() throws CurrencyConversionException {
+        final CurrencyPluginApi result = registry.getServiceForName(config.getDefaultCurrencyProvider());
+        if (result == null) {
+            throw new CurrencyConversionException(ErrorCode.CURRENCY_NO_SUCH_PAYMENT_PLUGIN, config.getDefaultCurrencyProvider());
+        }
+        return result;
+    }
+
+    private RateHistory getRateHistory(final Currency baseCurrency) throws CurrencyConversionException {
+        final RateHistory rateHistory = rateHistoryByBaseCurrency.get(baseCurrency);
+        if (rateHistory == null) {
+            return refreshRateHistory(baseCurrency);
+        }
+
+        if (isExpired(rateHistory.getRefreshedDateMillis())) {
+            try {
+                return refreshRateHistory(baseCurrency);
+            } catch (final CurrencyConversionException e) {
+                onStaleRates(baseCurrency, e);
+            } catch (final RuntimeException e) {
+                onStaleRates(baseCurrency, e);
+            }
+        }
+        return rateHistory;
+    }
+
+    private Set<Rate> refreshCurrentRates(final Currency baseCurrency) throws CurrencyConversionException {
+        final CurrencyPluginApi pluginApi = getPluginApi();
+
+        final Set<Rate> rates;
+        final Timer.Context timerContext = pluginTimer.time();
+        try {
+            rates = pluginApi.getCurrentRates(baseCurrency);
+        } finally {
+            timerContext.stop();
+        }
+
+        if (rates != null) {
+            currentRatesByBaseCurrency.put(baseCurrency, new CurrentRates(rates, clock.getUTCNow().getMillis()));
+        }
+        return rates;
+    }
+
+    private RateHistory refreshRateHistory(final Currency baseCurrency) throws CurrencyConversionException {
+        final CurrencyPluginApi pluginApi = getPluginApi();
+
+        final SortedSet<DateTime> conversionDates;
+        final Timer.Context timerContext = pluginTimer.time();
+        try {
+            conversionDates = pluginApi.getConversionDates(baseCurrency);
+        } finally {
+            timerContext.stop();
+        }
+
+        if (conversionDates == null) {
+            return null;
+        }
+
+        final RateHistory rateHistory = new RateHistory(conversionDates, rateHistoryByBaseCurrency.get(baseCurrency), clock.getUTCNow().getMillis());
+        rateHistoryByBaseCurrency.put(baseCurrency, rateHistory);
+        return rateHistory;
+    }
+
+    private Set<Rate> fetchRates(final Currency baseCurrency, final DateTime conversionDate) throws CurrencyConversionException {
+        final CurrencyPluginApi pluginApi = getPluginApi();
+
+        final Timer.Context timerContext = pluginTimer.time();
+        try {
+            return pluginApi.getRates(baseCurrency, conversionDate);
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    private boolean isExpired(final long refreshedDateMillis) {
+        final long maxAgeMillis = MAX_AGE_REFRESH_INTERVALS * config.getCurrencyRatesRefreshInterval().getMillis();
+        return clock.getUTCNow().getMillis() - refreshedDateMillis > maxAgeMillis;
+    }
+
+    private void onStaleRates(final Currency baseCurrency, final Exception e) {
+        staleMeter.mark();
+        refreshFailureMeter.mark();
+        log.warn(String.format("Failed to refresh rates for base currency %s, using the last known rates", baseCurrency), e);
+    }
+
+    private void onRefreshFailure(final Currency baseCurrency, final Exception e) {
+        refreshFailureMeter.mark();
+        log.warn(String.format("Failed to refresh rates for base currency %s", baseCurrency), e);
+    }
+
+    private static final class CurrentRates {
+
+        private final Set<Rate> rates;
+        private final long refreshedDateMillis;
+
+        private CurrentRates(final Set<Rate> rates, final long refreshedDateMillis) {
+            this.rates = rates;
+            this.refreshedDateMillis = refreshedDateMillis;
+        }
+
+        public Set<Rate> getRates() {
+            return rates;
+        }
+
+        public long getRefreshedDateMillis() {
+            return refreshedDateMillis;
+        }
+    }
+
+    private static final class RateHistory {
+
+        // Sorted conversion dates, and the (lazily loaded) rates for each of them
+        private final long[] conversionDatesMillis;
+        private final AtomicReferenceArray<Set<Rate>> ratesByConversionDate;
+        private final long refreshedDateMillis;
+
+        private RateHistory(final SortedSet<DateTime> conversionDates, final RateHistory previousRateHistory, final long refreshedDateMillis) {
+            this.conversionDatesMillis = new long[conversionDates.size()];
+            int i = 0;
+            for (final DateTime conversionDate : conversionDates) {
+                conversionDatesMillis[i++] = conversionDate.getMillis();
+            }
+            this.ratesByConversionDate = new AtomicReferenceArray<Set<Rate>>(conversionDatesMillis.length);
+            this.refreshedDateMillis = refreshedDateMillis;
+
+            // Rates for a given conversion date don't change, keep the ones already loaded
+            if (previousRateHistory != null) {
+                final Map<Long, Set<Rate>> previousRates = previousRateHistory.getLoadedRates();
+                for (int j = 0; j < conversionDatesMillis.length; j++) {
+                    final Set<Rate> rates = previousRates.get(conversionDatesMillis[j]);
+                    if (rates != null) {
+                        ratesByConversionDate.set(j, rates);
+                    }
+                }
+            }
+        }
+
+        // Index of the last conversion date before (or at) the specified date, -1 if there is none
+        public int floorIndex(final long dateMillis) {
+            final int idx = Arrays.binarySearch(conversionDatesMillis, dateMillis);
+            return idx >= 0 ? idx : -idx - 2;
+        }
+
+        public long getConversionDateMillis(final int idx) {
+            return conversionDatesMillis[idx];
+        }
+
+        public Set<Rate> getRates(final int idx) {
+            return ratesByConversionDate.get(idx);
+        }
+
+        public void setRates(final int idx, final Set<Rate> rates) {
+            ratesByConversionDate.set(idx, rates);
+        }
+
+        public long getRefreshedDateMillis() {
+            return refreshedDateMillis;
+        }
+
+        private Map<Long, Set<Rate>> getLoadedRates() {
+            final Map<Long, Set<Rate>> loadedRates = new HashMap<Long, Set<Rate>>();
+            for (int i = 0; i < conversionDatesMillis.length; i++) {
+                final Set<Rate> rates = ratesByConversionDate.get(i);
+                if (rates != null) {
+                    loadedRates.put(conversionDatesMillis[i], rates);
+                }
+            }
+            return loadedRates;
+        }
+    }
+}
@@ -22,47 +22,33 @@ import javax.inject.Inject;
 
 import org.joda.time.DateTime;
 
-import org.killbill.billing.ErrorCode;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
-import org.killbill.billing.osgi.api.OSGIServiceRegistration;
-import org.killbill.billing.util.config.CurrencyConfig;
 
 public class DefaultCurrencyConversionApi implements CurrencyConversionApi {
 
-    private final CurrencyConfig config;
-    private final OSGIServiceRegistration<CurrencyPluginApi> registry;
+    private final CurrencyRateCache rateCache;
 
     @Inject
-    public DefaultCurrencyConversionApi(final CurrencyConfig config, final OSGIServiceRegistration<CurrencyPluginApi> registry) {
-        this.config = config;
-        this.registry = registry;
-
-    }
-
-    private CurrencyPluginApi getPluginApi() throws CurrencyConversionException {
-        final CurrencyPluginApi result = registry.getServiceForName(config.getDefaultCurrencyProvider());
-        if (result == null) {
-            throw new CurrencyConversionException(ErrorCode.CURRENCY_NO_SUCH_PAYMENT_PLUGIN, config.getDefaultCurrencyProvider());
-        }
-        return result;
+    public DefaultCurrencyConversionApi(final CurrencyRateCache rateCache) {
+        this.rateCache = rateCache;
     }
 
     @Override
     public Set<Currency> getBaseRates() throws CurrencyConversionException {
-        final CurrencyPluginApi pluginApi = getPluginApi();
+        final CurrencyPluginApi pluginApi = rateCache.getPluginApi();
         return pluginApi.getBaseCurrencies();
     }
 
     @Override
     public CurrencyConversion getCurrentCurrencyConversion(final Currency baseCurrency) throws CurrencyConversionException {
-        final Set<Rate> allRates = getPluginApi().getCurrentRates(baseCurrency);
+        final Set<Rate> allRates = rateCache.getCurrentRates(baseCurrency);
         return getCurrencyConversionInternal(baseCurrency, allRates);
     }
 
     @Override
     public CurrencyConversion getCurrencyConversion(final Currency baseCurrency, final DateTime dateConversion) throws CurrencyConversionException {
-        final Set<Rate> allRates = getPluginApi().getRates(baseCurrency, dateConversion);
+        final Set<Rate> allRates = rateCache.getRates(baseCurrency, dateConversion);
         return getCurrencyConversionInternal(baseCurrency, allRates);
     }
 
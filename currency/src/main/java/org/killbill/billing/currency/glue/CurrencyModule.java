@@ -18,8 +18,11 @@
 
 package org.killbill.billing.currency.glue;
 
+import java.util.concurrent.ScheduledExecutorService;
+
 import org.killbill.billing.currency.DefaultCurrencyService;
 import org.killbill.billing.currency.api.CurrencyConversionApi;
+import org.killbill.billing.currency.api.CurrencyRateCache;
 import org.killbill.billing.currency.api.CurrencyService;
 import org.killbill.billing.currency.api.DefaultCurrencyConversionApi;
 import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
@@ -30,9 +33,12 @@ import org.killbill.billing.util.glue.KillBillModule;
 import org.skife.config.ConfigurationObjectFactory;
 
 import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
 
 public class CurrencyModule extends KillBillModule {
 
+    public static final String CURRENCY_RATES_EXECUTOR_NAMED = "CurrencyRatesExecutor";
+
     public CurrencyModule(final KillbillConfigSource configSource) {
         super(configSource);
     }
@@ -45,6 +51,10 @@ public class CurrencyModule extends KillBillModule {
 
         bind(new TypeLiteral<OSGIServiceRegistration<CurrencyPluginApi>>() {}).toProvider(DefaultCurrencyProviderPluginRegistryProvider.class).asEagerSingleton();
 
+        final ScheduledExecutorService currencyRatesExecutor = org.killbill.commons.concurrent.Executors.newSingleThreadScheduledExecutor("CurrencyRatesRefresh");
+        bind(ScheduledExecutorService.class).annotatedWith(Names.named(CURRENCY_RATES_EXECUTOR_NAMED)).toInstance(currencyRatesExecutor);
+        bind(CurrencyRateCache.class).asEagerSingleton();
+
         bind(CurrencyConversionApi.class).to(DefaultCurrencyConversionApi.class).asEagerSingleton();
         bind(CurrencyService.class).to(DefaultCurrencyService.class).asEagerSingleton();
     }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.currency.api;
+
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.currency.DefaultCurrencyService;
+import org.killbill.billing.currency.plugin.api.CurrencyPluginApi;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.util.config.CurrencyConfig;
+import org.killbill.clock.ClockMock;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+
+public class TestCurrencyRateCache {
+
+    private static final String PLUGIN_NAME = "test-currency-plugin";
+    private static final long REFRESH_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    private final DateTime firstConversionDate = new DateTime(2015, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+    private final DateTime secondConversionDate = new DateTime(2015, 2, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+    private final DateTime thirdConversionDate = new DateTime(2015, 3, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+
+    private CurrencyConfig config;
+    private OSGIServiceRegistration<CurrencyPluginApi> registry;
+    private CurrencyPluginApi pluginApi;
+    private MetricRegistry metricRegistry;
+    private ClockMock clock;
+    private CurrencyRateCache rateCache;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        config = Mockito.mock(CurrencyConfig.class);
+        Mockito.when(config.getDefaultCurrencyProvider()).thenReturn(PLUGIN_NAME);
+        Mockito.when(config.getCurrencyRatesRefreshInterval()).thenReturn(new TimeSpan("10m"));
+
+        pluginApi = Mockito.mock(CurrencyPluginApi.class);
+        final SortedSet<DateTime> conversionDates = ImmutableSortedSet.<DateTime>of(firstConversionDate, secondConversionDate, thirdConversionDate);
+        Mockito.when(pluginApi.getConversionDates(Currency.USD)).thenReturn(conversionDates);
+
+        registry = Mockito.mock(OSGIServiceRegistration.class);
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(pluginApi);
+
+        metricRegistry = new MetricRegistry();
+        clock = new ClockMock();
+        rateCache = new CurrencyRateCache(config, registry, metricRegistry, clock);
+    }
+
+    @Test(groups = "fast")
+    public void testCurrentRatesAreServedFromTheCache() throws Exception {
+        final Set<Rate> rates = createRates();
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenReturn(rates);
+
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.USD);
+
+        // Still within the max age (two refresh intervals): no call to the plugin
+        clock.addDeltaFromReality(REFRESH_INTERVAL_MILLIS + 1000);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+        Mockito.verify(pluginApi, Mockito.times(1)).getCurrentRates(Currency.USD);
+        Assert.assertEquals(rateCache.getRefreshLagMillis(), REFRESH_INTERVAL_MILLIS + 1000, 1000);
+
+        // Expired: refreshed inline
+        final Set<Rate> newRates = createRates();
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenReturn(newRates);
+        clock.addDeltaFromReality(REFRESH_INTERVAL_MILLIS);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), newRates);
+        Mockito.verify(pluginApi, Mockito.times(2)).getCurrentRates(Currency.USD);
+        Assert.assertEquals(getStaleCount(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testLastKnownRatesAreServedWhenThePluginFails() throws Exception {
+        final Set<Rate> rates = createRates();
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenReturn(rates);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+
+        // Expired, and the plugin throws
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenThrow(new IllegalStateException("Provider unavailable"));
+        clock.addDeltaFromReality(3 * REFRESH_INTERVAL_MILLIS);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+        Assert.assertEquals(getStaleCount(), 1);
+
+        // Expired, and the plugin isn't registered anymore
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(null);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+        Assert.assertEquals(getStaleCount(), 2);
+
+        // Back to normal
+        final Set<Rate> newRates = createRates();
+        final CurrencyPluginApi newPluginApi = Mockito.mock(CurrencyPluginApi.class);
+        Mockito.when(newPluginApi.getCurrentRates(Currency.USD)).thenReturn(newRates);
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(newPluginApi);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), newRates);
+        Assert.assertEquals(getStaleCount(), 2);
+        Assert.assertEquals(rateCache.getRefreshLagMillis(), 0, 1000);
+    }
+
+    @Test(groups = "fast")
+    public void testNoRatesWithoutPlugin() throws Exception {
+        Mockito.when(registry.getServiceForName(PLUGIN_NAME)).thenReturn(null);
+        try {
+            rateCache.getCurrentRates(Currency.USD);
+            Assert.fail("Nothing to serve without plugin");
+        } catch (final CurrencyConversionException e) {
+            Assert.assertEquals(getStaleCount(), 0);
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testHistoricalRatesUseTheConversionDateInEffect() throws Exception {
+        final Set<Rate> secondRates = createRates();
+        Mockito.when(pluginApi.getRates(Currency.USD, secondConversionDate)).thenReturn(secondRates);
+
+        // Exact match
+        Assert.assertEquals(rateCache.getRates(Currency.USD, secondConversionDate), secondRates);
+        // Between the second and third conversion dates: same rates, no extra call
+        Assert.assertEquals(rateCache.getRates(Currency.USD, secondConversionDate.plusDays(10)), secondRates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, thirdConversionDate.minusMillis(1)), secondRates);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.USD, secondConversionDate);
+        Mockito.verify(pluginApi, Mockito.times(1)).getConversionDates(Currency.USD);
+
+        // After the last conversion date: the plugin is asked for the rates of the last conversion date
+        final Set<Rate> thirdRates = createRates();
+        Mockito.when(pluginApi.getRates(Currency.USD, thirdConversionDate)).thenReturn(thirdRates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, thirdConversionDate.plusYears(1)), thirdRates);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.USD, thirdConversionDate);
+
+        // Prior to the first conversion date: the plugin decides, for the requested date (nothing is cached)
+        final DateTime beforeFirstConversionDate = firstConversionDate.minusDays(1);
+        final Set<Rate> earlyRates = createRates();
+        Mockito.when(pluginApi.getRates(Currency.USD, beforeFirstConversionDate)).thenReturn(earlyRates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, beforeFirstConversionDate), earlyRates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, beforeFirstConversionDate), earlyRates);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.USD, beforeFirstConversionDate);
+    }
+
+    @Test(groups = "fast")
+    public void testHistoricalRatesWithoutConversionDates() throws Exception {
+        Mockito.when(pluginApi.getConversionDates(Currency.EUR)).thenReturn(null);
+        final Set<Rate> rates = createRates();
+        Mockito.when(pluginApi.getRates(Currency.EUR, secondConversionDate)).thenReturn(rates);
+
+        Assert.assertEquals(rateCache.getRates(Currency.EUR, secondConversionDate), rates);
+        Assert.assertEquals(rateCache.getRates(Currency.EUR, secondConversionDate), rates);
+        Mockito.verify(pluginApi, Mockito.times(2)).getRates(Currency.EUR, secondConversionDate);
+    }
+
+    @Test(groups = "fast")
+    public void testBackgroundRefresh() throws Exception {
+        final ScheduledExecutorService executor = Mockito.mock(ScheduledExecutorService.class);
+        final DefaultCurrencyService currencyService = new DefaultCurrencyService(config, rateCache, executor);
+        currencyService.start();
+
+        final ArgumentCaptor<Runnable> refreshTask = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(executor).scheduleAtFixedRate(refreshTask.capture(), Mockito.eq(REFRESH_INTERVAL_MILLIS), Mockito.eq(REFRESH_INTERVAL_MILLIS), Mockito.eq(TimeUnit.MILLISECONDS));
+
+        // Nothing looked up yet, nothing to refresh
+        refreshTask.getValue().run();
+        Mockito.verifyZeroInteractions(pluginApi);
+
+        final Set<Rate> rates = createRates();
+        final Set<Rate> secondRates = createRates();
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenReturn(rates);
+        Mockito.when(pluginApi.getRates(Currency.USD, secondConversionDate)).thenReturn(secondRates);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), rates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, secondConversionDate), secondRates);
+
+        // The background refresh picks up the new rates and conversion dates
+        final DateTime fourthConversionDate = new DateTime(2015, 4, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+        final Set<Rate> newRates = createRates();
+        final Set<Rate> fourthRates = createRates();
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenReturn(newRates);
+        Mockito.when(pluginApi.getConversionDates(Currency.USD)).thenReturn(ImmutableSortedSet.<DateTime>of(firstConversionDate, secondConversionDate, thirdConversionDate, fourthConversionDate));
+        Mockito.when(pluginApi.getRates(Currency.USD, fourthConversionDate)).thenReturn(fourthRates);
+        clock.addDeltaFromReality(REFRESH_INTERVAL_MILLIS);
+        refreshTask.getValue().run();
+
+        Mockito.verify(pluginApi, Mockito.times(2)).getCurrentRates(Currency.USD);
+        Mockito.verify(pluginApi, Mockito.times(2)).getConversionDates(Currency.USD);
+        Assert.assertEquals(rateCache.getRefreshLagMillis(), 0, 1000);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), newRates);
+        Assert.assertEquals(rateCache.getRates(Currency.USD, fourthConversionDate.plusDays(1)), fourthRates);
+        // Rates already loaded are kept across refreshes
+        Assert.assertEquals(rateCache.getRates(Currency.USD, secondConversionDate.plusDays(1)), secondRates);
+        Mockito.verify(pluginApi, Mockito.times(1)).getRates(Currency.USD, secondConversionDate);
+
+        // Failures are recorded, the previous rates are kept and the task doesn't throw (which would cancel the next runs)
+        Mockito.when(pluginApi.getCurrentRates(Currency.USD)).thenThrow(new IllegalStateException("Provider unavailable"));
+        Mockito.when(pluginApi.getConversionDates(Currency.USD)).thenThrow(new IllegalStateException("Provider unavailable"));
+        refreshTask.getValue().run();
+        Assert.assertEquals(metricRegistry.meter(MetricRegistry.name(CurrencyRateCache.class, "refreshFailure")).getCount(), 2);
+        Assert.assertEquals(rateCache.getCurrentRates(Currency.USD), newRates);
+
+        currencyService.stop();
+        Mockito.verify(executor).shutdownNow();
+    }
+
+    private long getStaleCount() {
+        return metricRegistry.meter(MetricRegistry.name(CurrencyRateCache.class, "stale")).getCount();
+    }
+
+    private Set<Rate> createRates() {
+        return ImmutableSet.<Rate>of(Mockito.mock(Rate.class));
+    }
+}
@@ -298,6 +298,20 @@ public class DefaultEntitlement extends EntityBase implements Entitlement {
         }
 
         final InternalCallContext contextWithValidAccountRecordId = internalCallContextFactory.createInternalCallContext(getAccountId(), callContext);
+        uncancelEntitlementBlockingStates(contextWithValidAccountRecordId);
+
+        // If billing was previously cancelled, reactivate
+        if (getSubscriptionBase().getFutureEndDate() != null) {
+            try {
+                getSubscriptionBase().uncancel(callContext);
+            } catch (SubscriptionBaseApiException e) {
+                throw new EntitlementApiException(e);
+            }
+        }
+    }
+
+    // Un-cancel the entitlement part only (this doesn't touch billing)
+    public void uncancelEntitlementBlockingStates(final InternalCallContext contextWithValidAccountRecordId) throws EntitlementApiException {
         final Collection<BlockingState> pendingEntitlementCancellationEvents = eventsStream.getPendingEntitlementCancellationEvents();
         if (eventsStream.isEntitlementCancelled()) {
             final BlockingState cancellationEvent = eventsStream.getEntitlementCancellationEvent();
@@ -316,15 +330,6 @@ public class DefaultEntitlement extends EntityBase implements Entitlement {
             // Entitlement is NOT cancelled (or future cancelled), there is nothing to do
             throw new EntitlementApiException(ErrorCode.SUB_CANCEL_BAD_STATE, getId(), EntitlementState.CANCELLED);
         }
-
-        // If billing was previously cancelled, reactivate
-        if (getSubscriptionBase().getFutureEndDate() != null) {
-            try {
-                getSubscriptionBase().uncancel(callContext);
-            } catch (SubscriptionBaseApiException e) {
-                throw new EntitlementApiException(e);
-            }
-        }
     }
 
     @Override
@@ -16,23 +16,40 @@
 
 package org.killbill.billing.entitlement.api.svcs;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.clock.Clock;
 import org.killbill.billing.entitlement.AccountEntitlements;
 import org.killbill.billing.entitlement.AccountEventsStreams;
+import org.killbill.billing.entitlement.EntitlementBulkCreation;
+import org.killbill.billing.entitlement.EntitlementBulkOperation;
 import org.killbill.billing.entitlement.EntitlementInternalApi;
+import org.killbill.billing.entitlement.EntitlementService;
 import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.BlockingApiException;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.entitlement.api.BlockingStateType;
 import org.killbill.billing.entitlement.api.DefaultEntitlement;
+import org.killbill.billing.entitlement.api.DefaultEntitlementApi;
 import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.Entitlement.EntitlementState;
 import org.killbill.billing.entitlement.api.EntitlementApi;
 import org.killbill.billing.entitlement.api.EntitlementApiException;
 import org.killbill.billing.entitlement.api.EntitlementDateHelper;
@@ -41,10 +58,19 @@ import org.killbill.billing.entitlement.dao.BlockingStateDao;
 import org.killbill.billing.entitlement.engine.core.EntitlementUtils;
 import org.killbill.billing.entitlement.engine.core.EventsStreamBuilder;
 import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.billing.junction.DefaultBlockingState;
+import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkCreation;
+import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 
+import com.google.common.collect.ImmutableList;
+
 public class DefaultEntitlementInternalApi implements EntitlementInternalApi {
 
     private final EntitlementApi entitlementApi;
@@ -98,4 +124,196 @@ public class DefaultEntitlementInternalApi implements EntitlementInternalApi {
 
         return new DefaultAccountEntitlements(accountEventsStreams, entitlementsPerBundle);
     }
+
+    @Override
+    public List<SubscriptionBaseBulkChangeResult> applyBulkOperations(final List<EntitlementBulkOperation> operations, final CallContext callContext) {
+        final SubscriptionBaseBulkChangeResult[] results = new SubscriptionBaseBulkChangeResult[operations.size()];
+
+        // Group the operations per account: each group is written in its own transaction
+        final Map<Long, InternalCallContext> contextPerAccount = new LinkedHashMap<Long, InternalCallContext>();
+        final Map<Long, List<Integer>> operationsPerAccount = new HashMap<Long, List<Integer>>();
+        for (int i = 0; i < operations.size(); i++) {
+            final UUID entitlementId = operations.get(i).getEntitlementId();
+            final InternalCallContext context;
+            try {
+                context = internalCallContextFactory.createInternalCallContext(entitlementId, ObjectType.SUBSCRIPTION, callContext);
+            } catch (final IllegalStateException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(entitlementId, new EntitlementApiException(ErrorCode.SUB_INVALID_SUBSCRIPTION_ID, entitlementId));
+                continue;
+            }
+
+            if (contextPerAccount.get(context.getAccountRecordId()) == null) {
+                contextPerAccount.put(context.getAccountRecordId(), context);
+                operationsPerAccount.put(context.getAccountRecordId(), new LinkedList<Integer>());
+            }
+            operationsPerAccount.get(context.getAccountRecordId()).add(i);
+        }
+
+        for (final Long accountRecordId : contextPerAccount.keySet()) {
+            applyBulkOperationsForAccount(operations, operationsPerAccount.get(accountRecordId), results, contextPerAccount.get(accountRecordId), callContext);
+        }
+
+        return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+    }
+
+    private void applyBulkOperationsForAccount(final List<EntitlementBulkOperation> operations, final List<Integer> indexes, final SubscriptionBaseBulkChangeResult[] results,
+                                               final InternalCallContext context, final CallContext callContext) {
+        // Load the entitlements of the account once
+        final Map<UUID, DefaultEntitlement> entitlements = new HashMap<UUID, DefaultEntitlement>();
+        try {
+            final AccountEventsStreams accountEventsStreams = eventsStreamBuilder.buildForAccount(context);
+            for (final Collection<EventsStream> eventsStreams : accountEventsStreams.getEventsStreams().values()) {
+                for (final EventsStream eventsStream : eventsStreams) {
+                    entitlements.put(eventsStream.getEntitlementId(), new DefaultEntitlement(eventsStream, eventsStreamBuilder, entitlementApi,
+                                                                                             blockingStateDao, subscriptionInternalApi, checker, notificationQueueService,
+                                                                                             entitlementUtils, dateHelper, clock, internalCallContextFactory));
+                }
+            }
+        } catch (final EntitlementApiException e) {
+            for (final Integer i : indexes) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(operations.get(i).getEntitlementId(), e);
+            }
+            return;
+        }
+
+        // Entitlement level validations, as done by DefaultEntitlement for the individual operations
+        final List<Integer> subscriptionChangesIndexes = new ArrayList<Integer>(indexes.size());
+        final List<SubscriptionBaseBulkChange> subscriptionChanges = new ArrayList<SubscriptionBaseBulkChange>(indexes.size());
+        for (final Integer i : indexes) {
+            final EntitlementBulkOperation operation = operations.get(i);
+            final DefaultEntitlement entitlement = entitlements.get(operation.getEntitlementId());
+            try {
+                if (entitlement == null) {
+                    throw new EntitlementApiException(ErrorCode.SUB_INVALID_SUBSCRIPTION_ID, operation.getEntitlementId());
+                }
+                final SubscriptionBaseBulkChange subscriptionChange = validateBulkOperation(operation, entitlement, context);
+                if (subscriptionChange != null) {
+                    subscriptionChangesIndexes.add(i);
+                    subscriptionChanges.add(subscriptionChange);
+                } else {
+                    // Entitlement only un-cancellation
+                    results[i] = SubscriptionBaseBulkChangeResult.success(operation.getEntitlementId(), clock.getUTCNow());
+                }
+            } catch (final EntitlementApiException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(operation.getEntitlementId(), e);
+            }
+        }
+
+        if (!subscriptionChanges.isEmpty()) {
+            final List<SubscriptionBaseBulkChangeResult> subscriptionResults = subscriptionInternalApi.applyBulkChanges(subscriptionChanges, context);
+            for (int j = 0; j < subscriptionChangesIndexes.size(); j++) {
+                results[subscriptionChangesIndexes.get(j)] = subscriptionResults.get(j);
+            }
+        }
+
+        // Then update the entitlement states of the successful operations
+        for (final Integer i : indexes) {
+            final EntitlementBulkOperation operation = operations.get(i);
+            if (results[i] == null || !results[i].isSuccess()) {
+                continue;
+            }
+
+            final DefaultEntitlement entitlement = entitlements.get(operation.getEntitlementId());
+            final DateTime effectiveDate = results[i].getEffectiveDate();
+            try {
+                switch (operation.getChangeType()) {
+                    case CHANGE_PLAN:
+                        entitlement.blockAddOnsIfRequired(effectiveDate, callContext, context);
+                        break;
+                    case CANCEL:
+                        final BlockingState newBlockingState = new DefaultBlockingState(entitlement.getId(), BlockingStateType.SUBSCRIPTION, DefaultEntitlementApi.ENT_STATE_CANCELLED, EntitlementService.ENTITLEMENT_SERVICE_NAME, true, true, false, effectiveDate);
+                        entitlementUtils.setBlockingStateAndPostBlockingTransitionEvent(newBlockingState, context);
+                        entitlement.blockAddOnsIfRequired(effectiveDate, callContext, context);
+                        break;
+                    case UNCANCEL:
+                        entitlement.uncancelEntitlementBlockingStates(context);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected change type " + operation.getChangeType());
+                }
+            } catch (final EntitlementApiException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(operation.getEntitlementId(), e);
+            }
+        }
+    }
+
+    @Override
+    public List<SubscriptionBaseBulkChangeResult> createBulkEntitlements(final UUID accountId, final List<EntitlementBulkCreation> creations, final CallContext callContext) {
+        final SubscriptionBaseBulkChangeResult[] results = new SubscriptionBaseBulkChangeResult[creations.size()];
+        final InternalCallContext context = internalCallContextFactory.createInternalCallContext(accountId, callContext);
+        final DateTime referenceTime = clock.getUTCNow();
+
+        // Entitlement level validations, as done by DefaultEntitlementApi#createBaseEntitlement for the individual creations
+        final Set<String> availableBundleKeys = new HashSet<String>();
+        final Set<String> activeBundleKeys = new HashSet<String>();
+        final List<Integer> subscriptionCreationsIndexes = new ArrayList<Integer>(creations.size());
+        final List<SubscriptionBaseBulkCreation> subscriptionCreations = new ArrayList<SubscriptionBaseBulkCreation>(creations.size());
+        for (int i = 0; i < creations.size(); i++) {
+            final EntitlementBulkCreation creation = creations.get(i);
+            final String bundleKey = creation.getBundleExternalKey();
+            try {
+                if (!availableBundleKeys.contains(bundleKey)) {
+                    if (activeBundleKeys.contains(bundleKey) || entitlementUtils.getFirstActiveSubscriptionIdForKeyOrNull(bundleKey, context) != null) {
+                        activeBundleKeys.add(bundleKey);
+                        throw new EntitlementApiException(new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_ACTIVE_BUNDLE_KEY_EXISTS, bundleKey));
+                    }
+                    availableBundleKeys.add(bundleKey);
+                }
+
+                final DateTime requestedDate = creation.getEffectiveDate() == null ? null : dateHelper.fromLocalDateAndReferenceTime(creation.getEffectiveDate(), referenceTime, context);
+                subscriptionCreationsIndexes.add(i);
+                subscriptionCreations.add(new SubscriptionBaseBulkCreation(bundleKey, creation.getSpec(), requestedDate));
+            } catch (final EntitlementApiException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(null, e);
+            }
+        }
+
+        if (!subscriptionCreations.isEmpty()) {
+            final List<SubscriptionBaseBulkChangeResult> subscriptionResults = subscriptionInternalApi.createBulkSubscriptions(accountId, subscriptionCreations, context);
+            for (int j = 0; j < subscriptionCreationsIndexes.size(); j++) {
+                results[subscriptionCreationsIndexes.get(j)] = subscriptionResults.get(j);
+            }
+        }
+
+        return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+    }
+
+    // Returns the subscription change to apply, if any
+    private SubscriptionBaseBulkChange validateBulkOperation(final EntitlementBulkOperation operation, final DefaultEntitlement entitlement, final InternalCallContext context) throws EntitlementApiException {
+        final EventsStream eventsStream = entitlement.getEventsStream();
+        final SubscriptionBase subscriptionBase = entitlement.getSubscriptionBase();
+        final DateTime requestedDate = operation.getRequestedDate() == null ? null : dateHelper.fromLocalDateAndReferenceTime(operation.getRequestedDate(), subscriptionBase.getStartDate(), context);
+        switch (operation.getChangeType()) {
+            case CHANGE_PLAN:
+                if (!eventsStream.isEntitlementActive()) {
+                    throw new EntitlementApiException(ErrorCode.SUB_CHANGE_NON_ACTIVE, entitlement.getId(), entitlement.getState());
+                }
+                try {
+                    checker.checkBlockedChange(subscriptionBase, context);
+                } catch (BlockingApiException e) {
+                    throw new EntitlementApiException(e, e.getCode(), e.getMessage());
+                }
+                break;
+            case CANCEL:
+                if (eventsStream.isEntitlementCancelled()) {
+                    throw new EntitlementApiException(ErrorCode.SUB_CANCEL_BAD_STATE, entitlement.getId(), EntitlementState.CANCELLED);
+                }
+                break;
+            case UNCANCEL:
+                if (eventsStream.isSubscriptionCancelled() ||
+                    (!eventsStream.isEntitlementCancelled() && eventsStream.getPendingEntitlementCancellationEvents().isEmpty())) {
+                    throw new EntitlementApiException(ErrorCode.SUB_CANCEL_BAD_STATE, entitlement.getId(), EntitlementState.CANCELLED);
+                }
+                // If billing was previously cancelled, reactivate
+                if (subscriptionBase.getFutureEndDate() == null) {
+                    return null;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected change type " + operation.getChangeType());
+        }
+
+        return new SubscriptionBaseBulkChange(operation.getChangeType(), entitlement.getId(), operation.getProductName(), operation.getBillingPeriod(),
+                                              operation.getPriceList(), requestedDate, operation.getBillingPolicy());
+    }
 }
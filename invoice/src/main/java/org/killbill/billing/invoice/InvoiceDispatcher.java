@@ -84,6 +84,8 @@ import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.config.InvoiceConfig;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.LockMode;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.billing.util.timezone.DateAndTimeZoneContext;
 import org.killbill.bus.api.PersistentBus;
@@ -106,6 +108,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import com.google.inject.Inject;
@@ -114,6 +117,10 @@ public class InvoiceDispatcher {
 
     private static final Logger log = LoggerFactory.getLogger(InvoiceDispatcher.class);
     private static final int NB_LOCK_TRY = 5;
+    // The invoice run may consume the CBA, so payment transactions (which hold the CBA in SHARED mode, see ProcessorBase) have to wait.
+    // All account sub-resource locks are keyed by account id, and taken under the ACCNT_INV_PAY account lock (see GlobalLockerWithModes).
+    private static final Map<LockerType, LockMode> INVOICE_LOCK_MODES = ImmutableMap.<LockerType, LockMode>of(LockerType.INVOICE_GENERATION, LockMode.EXCLUSIVE,
+                                                                                                              LockerType.CBA, LockMode.EXCLUSIVE);
 
     private static final Ordering<DateTime> UPCOMING_NOTIFICATION_DATE_ORDERING = Ordering.natural();
 
@@ -207,7 +214,7 @@ public class InvoiceDispatcher {
                                   @Nullable final DryRunArguments dryRunArguments, final InternalCallContext context) throws InvoiceApiException {
         GlobalLock lock = null;
         try {
-            lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountId.toString(), NB_LOCK_TRY);
+            lock = GlobalLockerWithModes.withModes(locker).lockWithNumberOfTries(INVOICE_LOCK_MODES, accountId.toString(), NB_LOCK_TRY);
 
             return processAccountWithLock(accountId, targetDate, dryRunArguments, context);
         } catch (final LockFailedException e) {
@@ -19,26 +19,62 @@ package org.killbill.billing.invoice;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.api.InvoicePluginTimeoutException;
 import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 
+import static org.killbill.billing.invoice.glue.DefaultInvoiceModule.INVOICE_PLUGIN_EXECUTOR_NAMED;
+
+/**
+ * Calls the invoice plugins, in stages: a plugin is only called once all the plugins it depends on
+ * (see {@code org.killbill.invoice.plugin.dependencies}) have returned, and the invoice it is given contains the items
+ * returned by the plugins of the previous stages.
+ * <p/>
+ * By default, plugins are called one after the other, on the invoice thread. When {@code org.killbill.invoice.plugin.concurrent}
+ * is set, the plugins of a stage are called concurrently on the invoice plugin executor instead.
+ * <p/>
+ * Plugins have no time budget unless one is configured ({@code org.killbill.invoice.plugin.timeout}, overridden per plugin by
+ * {@code org.killbill.invoice.plugin.timeouts}): such plugins are always called on the invoice plugin executor, and the
+ * invoice run fails if they don't return in time, as it would if they threw. The budget starts when the plugin is called,
+ * the time spent waiting for a plugin thread doesn't count.
+ * <p/>
+ * In both cases, items are returned in the order of the plugin registry and the latency of each plugin is recorded
+ * (InvoicePluginDispatcher.[pluginName].getAdditionalInvoiceItems).
+ */
 public class InvoicePluginDispatcher {
 
     private static final Logger log = LoggerFactory.getLogger(InvoicePluginDispatcher.class);
@@ -46,12 +82,27 @@ public class InvoicePluginDispatcher {
     private static final Collection<InvoiceItemType> ALLOWED_INVOICE_ITEM_TYPES = ImmutableList.<InvoiceItemType>of(InvoiceItemType.EXTERNAL_CHARGE,
                                                                                                                     InvoiceItemType.ITEM_ADJ,
                                                                                                                     InvoiceItemType.TAX);
+    private static final String PLUGIN_OPERATION = "getAdditionalInvoiceItems";
+    private static final char PLUGIN_NAME_SEPARATOR = ':';
 
     private final OSGIServiceRegistration<InvoicePluginApi> pluginRegistry;
+    private final InvoiceConfig invoiceConfig;
+    private final MetricRegistry metricRegistry;
+    private final ExecutorService pluginExecutor;
+    private final Map<String, Long> pluginTimeoutsMillis;
+    private final Map<String, Set<String>> pluginDependencies;
 
     @Inject
-    public InvoicePluginDispatcher(final OSGIServiceRegistration<InvoicePluginApi> pluginRegistry) {
+    public InvoicePluginDispatcher(final OSGIServiceRegistration<InvoicePluginApi> pluginRegistry,
+                                   final InvoiceConfig invoiceConfig,
+                                   final MetricRegistry metricRegistry,
+                                   @Named(INVOICE_PLUGIN_EXECUTOR_NAMED) final ExecutorService pluginExecutor) {
         this.pluginRegistry = pluginRegistry;
+        this.invoiceConfig = invoiceConfig;
+        this.metricRegistry = metricRegistry;
+        this.pluginExecutor = pluginExecutor;
+        this.pluginTimeoutsMillis = parsePluginTimeouts(invoiceConfig.getInvoicePluginTimeouts());
+        this.pluginDependencies = parsePluginDependencies(invoiceConfig.getInvoicePluginDependencies());
     }
 
     //
@@ -59,15 +110,36 @@ public class InvoicePluginDispatcher {
     // subsequent plugins should have access to items added by previous plugins
     //
     public List<InvoiceItem> getAdditionalInvoiceItems(final Invoice originalInvoice, final CallContext callContext) throws InvoiceApiException {
-        // We clone the original invoice so plugins don't remove/add items
-        final Invoice clonedInvoice = (Invoice) ((DefaultInvoice) originalInvoice).clone();
+        final Map<String, InvoicePluginApi> invoicePlugins = getInvoicePlugins();
+        final Map<String, List<InvoiceItem>> itemsPerPlugin = new HashMap<String, List<InvoiceItem>>();
+        final List<InvoiceItem> previousStagesItems = new LinkedList<InvoiceItem>();
+        for (final List<String> stage : getPluginStages(invoicePlugins.keySet())) {
+            if (invoiceConfig.isInvoicePluginConcurrentDispatch()) {
+                dispatch(stage, invoicePlugins, originalInvoice, previousStagesItems, callContext, itemsPerPlugin);
+            } else {
+                for (final String pluginName : stage) {
+                    if (hasTimeBudget(pluginName)) {
+                        dispatch(ImmutableList.<String>of(pluginName), invoicePlugins, originalInvoice, previousStagesItems, callContext, itemsPerPlugin);
+                    } else {
+                        itemsPerPlugin.put(pluginName, callPlugin(pluginName, invoicePlugins.get(pluginName), cloneInvoice(originalInvoice, previousStagesItems), callContext));
+                    }
+                }
+            }
+
+            for (final String pluginName : stage) {
+                final List<InvoiceItem> items = itemsPerPlugin.get(pluginName);
+                if (items != null) {
+                    previousStagesItems.addAll(items);
+                }
+            }
+        }
+
         final List<InvoiceItem> additionalInvoiceItems = new LinkedList<InvoiceItem>();
-        final List<InvoicePluginApi> invoicePlugins = getInvoicePlugins();
-        for (final InvoicePluginApi invoicePlugin : invoicePlugins) {
-            final List<InvoiceItem> items = invoicePlugin.getAdditionalInvoiceItems(clonedInvoice, ImmutableList.<PluginProperty>of(), callContext);
+        for (final String pluginName : invoicePlugins.keySet()) {
+            final List<InvoiceItem> items = itemsPerPlugin.get(pluginName);
             if (items != null) {
                 for (final InvoiceItem item : items) {
-                    validateInvoiceItemFromPlugin(item, invoicePlugin);
+                    validateInvoiceItemFromPlugin(item, invoicePlugins.get(pluginName));
                     additionalInvoiceItems.add(item);
                 }
             }
@@ -75,6 +147,103 @@ public class InvoicePluginDispatcher {
         return additionalInvoiceItems;
     }
 
+    // Call the plugins on the invoice plugin executor (concurrently if there are several), and wait for all of them to return
+    private void dispatch(final List<String> pluginNames, final Map<String, InvoicePluginApi> invoicePlugins, final Invoice originalInvoice, final Collection<InvoiceItem> previousStagesItems,
+                          final CallContext callContext, final Map<String, List<InvoiceItem>> itemsPerPlugin) throws InvoiceApiException {
+        final Map<String, PluginCall> pluginCalls = new LinkedHashMap<String, PluginCall>();
+        try {
+            for (final String pluginName : pluginNames) {
+                // Each plugin gets its own copy, since they may run concurrently
+                final PluginCall pluginCall = new PluginCall(pluginName, invoicePlugins.get(pluginName), cloneInvoice(originalInvoice, previousStagesItems), callContext);
+                pluginCalls.put(pluginName, pluginCall);
+                pluginExecutor.execute(pluginCall);
+            }
+
+            for (final String pluginName : pluginCalls.keySet()) {
+                final PluginCall pluginCall = pluginCalls.get(pluginName);
+                final long timeoutMillis = getPluginTimeoutMillis(pluginName);
+                try {
+                    if (timeoutMillis > 0) {
+                        itemsPerPlugin.put(pluginName, pluginCall.get(pluginCall.getRemainingNanos(timeoutMillis), TimeUnit.NANOSECONDS));
+                    } else {
+                        itemsPerPlugin.put(pluginName, pluginCall.get());
+                    }
+                } catch (final TimeoutException e) {
+                    metricRegistry.counter(MetricRegistry.name(InvoicePluginDispatcher.class, pluginName, PLUGIN_OPERATION, "timeouts")).inc();
+                    log.warn("InvoicePlugin {} didn't return within {} ms", pluginName, timeoutMillis);
+                    throw new InvoicePluginTimeoutException(e, pluginName, timeoutMillis, originalInvoice.getAccountId(), originalInvoice.getId());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InvoiceApiException(e, ErrorCode.__UNKNOWN_ERROR_CODE);
+                } catch (final ExecutionException e) {
+                    // Propagate the plugin exception, as if the plugin had been called on the invoice thread
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    } else {
+                        throw new InvoiceApiException(e.getCause(), ErrorCode.__UNKNOWN_ERROR_CODE);
+                    }
+                }
+            }
+        } finally {
+            // Don't leave the other plugins running if one of them failed
+            for (final PluginCall pluginCall : pluginCalls.values()) {
+                pluginCall.cancel(true);
+            }
+        }
+    }
+
+    private final class PluginCall extends FutureTask<List<InvoiceItem>> {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startNanos;
+
+        private PluginCall(final String pluginName, final InvoicePluginApi invoicePlugin, final Invoice invoice, final CallContext callContext) {
+            super(new Callable<List<InvoiceItem>>() {
+                @Override
+                public List<InvoiceItem> call() throws Exception {
+                    return callPlugin(pluginName, invoicePlugin, invoice, callContext);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            startNanos = System.nanoTime();
+            started.countDown();
+            super.run();
+        }
+
+        // Also called if the call is cancelled before a plugin thread picked it up (e.g. executor shut down)
+        @Override
+        protected void done() {
+            started.countDown();
+        }
+
+        // Waits for a plugin thread to pick up the call: the budget only starts then
+        private long getRemainingNanos(final long timeoutMillis) throws InterruptedException {
+            started.await();
+            return Math.max(0, startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime());
+        }
+    }
+
+    private List<InvoiceItem> callPlugin(final String pluginName, final InvoicePluginApi invoicePlugin, final Invoice invoice, final CallContext callContext) {
+        final Timer.Context timerContext = metricRegistry.timer(MetricRegistry.name(InvoicePluginDispatcher.class, pluginName, PLUGIN_OPERATION)).time();
+        try {
+            return invoicePlugin.getAdditionalInvoiceItems(invoice, ImmutableList.<PluginProperty>of(), callContext);
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    // We clone the original invoice so plugins don't remove/add items
+    private Invoice cloneInvoice(final Invoice originalInvoice, final Collection<InvoiceItem> previousStagesItems) {
+        final Invoice clonedInvoice = (Invoice) ((DefaultInvoice) originalInvoice).clone();
+        clonedInvoice.addInvoiceItems(previousStagesItems);
+        return clonedInvoice;
+    }
+
     private void validateInvoiceItemFromPlugin(final InvoiceItem invoiceItem, final InvoicePluginApi invoicePlugin) throws InvoiceApiException {
         if (!ALLOWED_INVOICE_ITEM_TYPES.contains(invoiceItem.getInvoiceItemType())) {
             log.warn("Ignoring invoice item of type {} from InvoicePlugin {}: {}", invoiceItem.getInvoiceItemType(), invoicePlugin, invoiceItem);
@@ -82,11 +251,98 @@ public class InvoicePluginDispatcher {
         }
     }
 
-    private List<InvoicePluginApi> getInvoicePlugins() {
-        final List<InvoicePluginApi> invoicePlugins = new ArrayList<InvoicePluginApi>();
+    private Map<String, InvoicePluginApi> getInvoicePlugins() {
+        final Map<String, InvoicePluginApi> invoicePlugins = new LinkedHashMap<String, InvoicePluginApi>();
         for (final String name : pluginRegistry.getAllServices()) {
-            invoicePlugins.add(pluginRegistry.getServiceForName(name));
+            final InvoicePluginApi invoicePlugin = pluginRegistry.getServiceForName(name);
+            // The plugin may have been unregistered in the meantime
+            if (invoicePlugin != null) {
+                invoicePlugins.put(name, invoicePlugin);
+            }
         }
         return invoicePlugins;
     }
+
+    private boolean hasTimeBudget(final String pluginName) {
+        return getPluginTimeoutMillis(pluginName) > 0;
+    }
+
+    // 0 if the plugin has no time budget
+    private long getPluginTimeoutMillis(final String pluginName) {
+        final Long timeoutMillis = pluginTimeoutsMillis.get(pluginName);
+        return timeoutMillis != null ? timeoutMillis : invoiceConfig.getInvoicePluginTimeout().getMillis();
+    }
+
+    // Each stage only contains plugins whose (registered) dependencies are in previous stages
+    private List<List<String>> getPluginStages(final Collection<String> pluginNames) {
+        final List<List<String>> stages = new LinkedList<List<String>>();
+        final Set<String> calledPlugins = new HashSet<String>();
+        final List<String> remainingPlugins = new LinkedList<String>(pluginNames);
+        while (!remainingPlugins.isEmpty()) {
+            final List<String> stage = new ArrayList<String>();
+            for (final String pluginName : remainingPlugins) {
+                if (areDependenciesCalled(pluginName, pluginNames, calledPlugins)) {
+                    stage.add(pluginName);
+                }
+            }
+
+            if (stage.isEmpty()) {
+                log.warn("Ignoring circular dependencies between InvoicePlugins {}", remainingPlugins);
+                stage.addAll(remainingPlugins);
+            }
+
+            remainingPlugins.removeAll(stage);
+            calledPlugins.addAll(stage);
+            stages.add(stage);
+        }
+        return stages;
+    }
+
+    private boolean areDependenciesCalled(final String pluginName, final Collection<String> pluginNames, final Set<String> calledPlugins) {
+        final Set<String> dependencies = pluginDependencies.get(pluginName);
+        if (dependencies == null) {
+            return true;
+        }
+        for (final String dependency : dependencies) {
+            // Dependencies on plugins which aren't registered are ignored
+            if (pluginNames.contains(dependency) && !calledPlugins.contains(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Long> parsePluginTimeouts(final List<String> pluginTimeouts) {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final String pluginTimeout : pluginTimeouts) {
+            if (pluginTimeout.trim().isEmpty()) {
+                continue;
+            }
+            final int separatorIndex = pluginTimeout.lastIndexOf(PLUGIN_NAME_SEPARATOR);
+            if (separatorIndex <= 0) {
+                throw new IllegalArgumentException("Invalid invoice plugin timeout " + pluginTimeout);
+            }
+            result.put(pluginTimeout.substring(0, separatorIndex).trim(), new TimeSpan(pluginTimeout.substring(separatorIndex + 1).trim()).getMillis());
+        }
+        return result;
+    }
+
+    private static Map<String, Set<String>> parsePluginDependencies(final List<String> pluginDependencies) {
+        final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        for (final String pluginDependency : pluginDependencies) {
+            if (pluginDependency.trim().isEmpty()) {
+                continue;
+            }
+            final int separatorIndex = pluginDependency.indexOf(PLUGIN_NAME_SEPARATOR);
+            if (separatorIndex <= 0 || separatorIndex == pluginDependency.length() - 1) {
+                throw new IllegalArgumentException("Invalid invoice plugin dependency " + pluginDependency);
+            }
+            final String pluginName = pluginDependency.substring(0, separatorIndex).trim();
+            if (result.get(pluginName) == null) {
+                result.put(pluginName, new HashSet<String>());
+            }
+            result.get(pluginName).add(pluginDependency.substring(separatorIndex + 1).trim());
+        }
+        return result;
+    }
 }
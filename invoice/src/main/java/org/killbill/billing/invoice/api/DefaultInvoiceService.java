@@ -18,12 +18,22 @@
 
 package org.killbill.billing.invoice.api;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.inject.Named;
+
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.billing.invoice.InvoiceListener;
 import org.killbill.billing.invoice.InvoiceTagHandler;
+import org.killbill.billing.invoice.dao.InvoiceDao;
+import org.killbill.billing.invoice.glue.DefaultInvoiceModule;
 import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
+import org.killbill.billing.invoice.template.TemplateCacheInvalidationCallback;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 
@@ -36,13 +46,26 @@ public class DefaultInvoiceService implements InvoiceService {
     private final InvoiceListener invoiceListener;
     private final InvoiceTagHandler tagHandler;
     private final PersistentBus eventBus;
+    private final TenantInternalApi tenantInternalApi;
+    private final TemplateCacheInvalidationCallback templateCacheInvalidationCallback;
+    private final ExecutorService pluginExecutor;
+    private final InvoiceDao invoiceDao;
+    private final ExecutorService renderingExecutor;
 
     @Inject
-    public DefaultInvoiceService(final InvoiceListener invoiceListener, final InvoiceTagHandler tagHandler, final PersistentBus eventBus, final NextBillingDateNotifier dateNotifier) {
+    public DefaultInvoiceService(final InvoiceListener invoiceListener, final InvoiceTagHandler tagHandler, final PersistentBus eventBus, final NextBillingDateNotifier dateNotifier,
+                                 final TenantInternalApi tenantInternalApi, final TemplateCacheInvalidationCallback templateCacheInvalidationCallback,
+                                 @Named(DefaultInvoiceModule.INVOICE_PLUGIN_EXECUTOR_NAMED) final ExecutorService pluginExecutor, final InvoiceDao invoiceDao,
+                                 @Named(DefaultInvoiceModule.INVOICE_RENDERING_EXECUTOR_NAMED) final ExecutorService renderingExecutor) {
         this.invoiceListener = invoiceListener;
         this.tagHandler = tagHandler;
         this.eventBus = eventBus;
         this.dateNotifier = dateNotifier;
+        this.tenantInternalApi = tenantInternalApi;
+        this.templateCacheInvalidationCallback = templateCacheInvalidationCallback;
+        this.pluginExecutor = pluginExecutor;
+        this.invoiceDao = invoiceDao;
+        this.renderingExecutor = renderingExecutor;
     }
 
     @Override
@@ -59,10 +82,16 @@ public class DefaultInvoiceService implements InvoiceService {
             throw new RuntimeException("Unable to register to the EventBus!", e);
         }
         dateNotifier.initialize();
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_TEMPLATE, templateCacheInvalidationCallback);
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_MP_TEMPLATE, templateCacheInvalidationCallback);
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.INVOICE_TRANSLATION_, templateCacheInvalidationCallback);
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.CATALOG_TRANSLATION_, templateCacheInvalidationCallback);
     }
 
     @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
     public void start() {
+        // Before any invoice run: the unpaid invoices lookups rely on the index being complete
+        invoiceDao.backfillInvoiceBalances();
         dateNotifier.start();
     }
 
@@ -75,5 +104,12 @@ public class DefaultInvoiceService implements InvoiceService {
             throw new RuntimeException("Unable to unregister to the EventBus!", e);
         }
         dateNotifier.stop();
+        // Cancel the plugin calls which didn't start, so that the invoice runs waiting for them don't hang
+        for (final Runnable pluginCall : pluginExecutor.shutdownNow()) {
+            if (pluginCall instanceof Future) {
+                ((Future<?>) pluginCall).cancel(false);
+            }
+        }
+        renderingExecutor.shutdownNow();
     }
 }
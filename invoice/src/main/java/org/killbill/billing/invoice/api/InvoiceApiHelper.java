@@ -38,6 +38,8 @@ import org.killbill.billing.invoice.model.InvoiceItemFactory;
 import org.killbill.billing.invoice.model.ItemAdjInvoiceItem;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.LockMode;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.commons.locker.GlobalLock;
 import org.killbill.commons.locker.GlobalLocker;
@@ -74,7 +76,8 @@ public class InvoiceApiHelper {
     public List<InvoiceItem> dispatchToInvoicePluginsAndInsertItems(final UUID accountId, final WithAccountLock withAccountLock, final CallContext context) throws InvoiceApiException {
         GlobalLock lock = null;
         try {
-            lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountId.toString(), NB_LOCK_TRY);
+            // Items inserted by the API (credits, adjustments, ...) may update the CBA
+            lock = GlobalLockerWithModes.withModes(locker).lockWithNumberOfTries(LockerType.CBA, LockMode.EXCLUSIVE, accountId.toString(), NB_LOCK_TRY);
 
             final Iterable<Invoice> invoicesForPlugins = withAccountLock.prepareInvoices();
 
@@ -18,7 +18,9 @@ package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.killbill.billing.invoice.api.InvoiceApiException;
@@ -97,14 +99,19 @@ public class CBADao {
         addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
     }
 
-    public void addCBAComplexityFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+    // Returns the ids of the invoices on which CBA items were added
+    public Set<UUID> addCBAComplexityFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
+        final Set<UUID> modifiedInvoiceIds = new HashSet<UUID>();
 
         List<InvoiceModelDao> invoiceItemModelDaos = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
         for (InvoiceModelDao cur : invoiceItemModelDaos) {
-            addCBAIfNeeded(entitySqlDaoWrapperFactory, cur, context);
+            if (addCBAIfNeeded(entitySqlDaoWrapperFactory, cur, context)) {
+                modifiedInvoiceIds.add(cur.getId());
+            }
         }
         invoiceItemModelDaos = invoiceDaoHelper.getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
-        useExistingCBAFromTransaction(invoiceItemModelDaos, entitySqlDaoWrapperFactory, context);
+        modifiedInvoiceIds.addAll(useExistingCBAFromTransaction(invoiceItemModelDaos, entitySqlDaoWrapperFactory, context));
+        return modifiedInvoiceIds;
     }
 
     /**
@@ -113,8 +120,9 @@ public class CBADao {
      * @param entitySqlDaoWrapperFactory the EntitySqlDaoWrapperFactory from the current transaction
      * @param invoice                    the invoice to adjust
      * @param context                    the call callcontext
+     * @return true if a CBA item was added
      */
-    private void addCBAIfNeeded(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+    private boolean addCBAIfNeeded(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
                                 final InvoiceModelDao invoice,
                                 final InternalCallContext context) throws EntityPersistenceException {
 
@@ -124,15 +132,18 @@ public class CBADao {
             final InvoiceItemSqlDao transInvoiceItemDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
             final InvoiceItemModelDao cbaAdjItem = new InvoiceItemModelDao(new CreditBalanceAdjInvoiceItem(invoice.getId(), invoice.getAccountId(), context.getCreatedDate().toLocalDate(), balance.negate(), invoice.getCurrency()));
             transInvoiceItemDao.create(cbaAdjItem, context);
+            return true;
         }
+        return false;
     }
 
 
-    private void useExistingCBAFromTransaction(final List<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) throws InvoiceApiException, EntityPersistenceException {
+    private Set<UUID> useExistingCBAFromTransaction(final List<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) throws InvoiceApiException, EntityPersistenceException {
+        final Set<UUID> modifiedInvoiceIds = new HashSet<UUID>();
 
         final BigDecimal accountCBA = getAccountCBAFromTransaction(invoices);
         if (accountCBA.compareTo(BigDecimal.ZERO) <= 0) {
-            return;
+            return modifiedInvoiceIds;
         }
 
         final List<InvoiceModelDao> unpaidInvoices = invoiceDaoHelper.getUnpaidInvoicesByAccountFromTransaction(invoices, null);
@@ -154,11 +165,13 @@ public class CBADao {
 
             final InvoiceItemSqlDao transInvoiceItemDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
             transInvoiceItemDao.create(cbaAdjItem, context);
+            modifiedInvoiceIds.add(cur.getId());
 
             if (remainingAccountCBA.compareTo(BigDecimal.ZERO) <= 0) {
                 break;
             }
         }
+        return modifiedInvoiceIds;
     }
 
 }
@@ -20,10 +20,12 @@ package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -41,6 +43,7 @@ import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.InvoicePaymentType;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceAdjustmentEvent;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
@@ -60,6 +63,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -92,6 +96,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
     private final InternalCallContextFactory internalCallContextFactory;
     private final InvoiceDaoHelper invoiceDaoHelper;
     private final CBADao cbaDao;
+    private final InvoiceBalanceBackfill invoiceBalanceBackfill;
     private final InvoiceConfig invoiceConfig;
     private final Clock clock;
 
@@ -102,15 +107,17 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                              final Clock clock,
                              final CacheControllerDispatcher cacheControllerDispatcher,
                              final NonEntityDao nonEntityDao,
+                             final MetricRegistry metricRegistry,
                              final InvoiceConfig invoiceConfig,
                              final InternalCallContextFactory internalCallContextFactory) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), InvoiceSqlDao.class);
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry), InvoiceSqlDao.class);
         this.nextBillingDatePoster = nextBillingDatePoster;
         this.eventBus = eventBus;
         this.invoiceConfig = invoiceConfig;
         this.internalCallContextFactory = internalCallContextFactory;
         this.invoiceDaoHelper = new InvoiceDaoHelper();
         this.cbaDao = new CBADao();
+        this.invoiceBalanceBackfill = new InvoiceBalanceBackfill(transactionalSqlDao, invoiceDaoHelper);
         this.clock = clock;
     }
 
@@ -254,6 +261,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                         createInvoiceItemFromTransaction(transInvoiceItemSqlDao, invoiceItemModelDao, context);
                     }
                     cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                    invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(Iterables.<UUID>concat(ImmutableList.<UUID>of(invoice.getId()), getInvoiceIds(invoiceItems)), entitySqlDaoWrapperFactory, context);
                     notifyOfFutureBillingEvents(entitySqlDaoWrapperFactory, invoice.getAccountId(), callbackDateTimePerSubscriptions, context);
                 }
                 return null;
@@ -290,6 +298,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
                     if (madeChanges) {
                         cbaDao.addCBAComplexityFromTransaction(invoiceModelDao.getId(), entitySqlDaoWrapperFactory, context);
+                        invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(Iterables.<UUID>concat(ImmutableList.<UUID>of(invoiceModelDao.getId()), getInvoiceIds(invoiceModelDao.getInvoiceItems())), entitySqlDaoWrapperFactory, context);
 
                         // Notify the bus since the balance of the invoice changed
                         // TODO should we post an InvoiceCreationInternalEvent event instead? Note! This will trigger a payment (see InvoiceHandler)
@@ -327,6 +336,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
 
         final Integer invoiceNumber = invoiceNumberParsed;
         return paginationHelper.getPagination(InvoiceSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<InvoiceModelDao, Invoice, InvoiceSqlDao>() {
                                                   @Override
                                                   public Long getCount(final InvoiceSqlDao invoiceSqlDao, final InternalTenantContext context) {
@@ -343,6 +353,11 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                           return Iterators.<InvoiceModelDao>emptyIterator();
                                                       }
                                                   }
+
+                                                  @Override
+                                                  public Iterator<InvoiceModelDao> build(final InvoiceSqlDao invoiceSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return invoiceNumber != null ? null : invoiceSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), fromRecordId, limit, context);
+                                                  }
                                               },
                                               offset,
                                               limit,
@@ -388,6 +403,16 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         });
     }
 
+    @Override
+    public UnpaidInvoicesSummary getUnpaidInvoicesSummaryByAccountId(final UUID accountId, final LocalDate upToDate, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<UnpaidInvoicesSummary>() {
+            @Override
+            public UnpaidInvoicesSummary inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class).getUnpaidSummaryByAccountRecordId(upToDate.toDate(), context);
+            }
+        });
+    }
+
     @Override
     public UUID getInvoiceIdByPaymentId(final UUID paymentId, final InternalTenantContext context) {
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<UUID>() {
@@ -500,6 +525,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 }
 
                 cbaDao.addCBAComplexityFromTransaction(invoice, entitySqlDaoWrapperFactory, context);
+                invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(ImmutableList.<UUID>of(invoice.getId()), entitySqlDaoWrapperFactory, context);
 
                 // Notify the bus since the balance of the invoice changed
                 notifyBusOfInvoiceAdjustment(entitySqlDaoWrapperFactory, invoice.getId(), invoice.getAccountId(), context.getUserToken(), context);
@@ -554,6 +580,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 final UUID accountId = transactional.getAccountIdFromInvoicePaymentId(chargeBack.getId().toString(), context);
 
                 cbaDao.addCBAComplexityFromTransaction(payment.getInvoiceId(), entitySqlDaoWrapperFactory, context);
+                invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(ImmutableList.<UUID>of(payment.getInvoiceId()), entitySqlDaoWrapperFactory, context);
 
                 notifyBusOfInvoiceAdjustment(entitySqlDaoWrapperFactory, payment.getInvoiceId(), accountId, context.getUserToken(), context);
 
@@ -663,6 +690,7 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                 }).orNull();
                 if (existingAttempt == null) {
                     transactional.create(invoicePayment, context);
+                    invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(ImmutableList.<UUID>of(invoicePayment.getInvoiceId()), entitySqlDaoWrapperFactory, context);
                 }
                 return null;
             }
@@ -709,6 +737,8 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                null, null, null, null, null, null, context.getCreatedDate().toLocalDate(),
                                                                                null, cbaItem.getAmount().negate(), null, cbaItem.getCurrency(), cbaItem.getId());
                 createInvoiceItemFromTransaction(invoiceItemSqlDao, cbaAdjItem, context);
+                final Set<UUID> modifiedInvoiceIds = new HashSet<UUID>();
+                modifiedInvoiceIds.add(invoice.getId());
 
                 // Verify the final invoice balance is not negative
                 invoiceDaoHelper.populateChildren(invoice, entitySqlDaoWrapperFactory, context);
@@ -766,23 +796,32 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
                                                                                            context.getCreatedDate().toLocalDate(), null,
                                                                                            positiveCBAAdjItemAmount, null, cbaItem.getCurrency(), cbaItem.getId());
                         createInvoiceItemFromTransaction(invoiceItemSqlDao, nextCBAAdjItem, context);
+                        modifiedInvoiceIds.add(invoiceFollowing.getId());
                         if (positiveRemainderToAdjust.compareTo(BigDecimal.ZERO) == 0) {
                             break;
                         }
                     }
                 }
 
+                invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(modifiedInvoiceIds, entitySqlDaoWrapperFactory, context);
+
                 return null;
             }
         });
     }
 
+    @Override
+    public void backfillInvoiceBalances() {
+        invoiceBalanceBackfill.backfill();
+    }
+
     public void consumeExstingCBAOnAccountWithUnpaidInvoices(final UUID accountId, final InternalCallContext context) {
         transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
                 // In theory we should only have to call useExistingCBAFromTransaction but just to be safe we also check for credit generation
-                cbaDao.addCBAComplexityFromTransaction(entitySqlDaoWrapperFactory, context);
+                final Set<UUID> modifiedInvoiceIds = cbaDao.addCBAComplexityFromTransaction(entitySqlDaoWrapperFactory, context);
+                invoiceDaoHelper.refreshInvoiceBalancesFromTransaction(modifiedInvoiceIds, entitySqlDaoWrapperFactory, context);
                 return null;
             }
         });
@@ -818,6 +857,16 @@ public class DefaultInvoiceDao extends EntityDaoBase<InvoiceModelDao, Invoice, I
         }
     }
 
+    private Iterable<UUID> getInvoiceIds(final Iterable<InvoiceItemModelDao> invoiceItems) {
+        // Items (e.g. item adjustments) can live on a different invoice than the one being created
+        return Iterables.transform(invoiceItems, new Function<InvoiceItemModelDao, UUID>() {
+            @Override
+            public UUID apply(final InvoiceItemModelDao input) {
+                return input.getInvoiceId();
+            }
+        });
+    }
+
     private void createInvoiceItemFromTransaction(final InvoiceItemSqlDao invoiceItemSqlDao, final InvoiceItemModelDao invoiceItemModelDao, final InternalCallContext context) throws EntityPersistenceException, InvoiceApiException {
         // There is no efficient way to retrieve an invoice item given an ID today (and invoice plugins can put item adjustments
         // on a different invoice than the original item), so it's easier to do the check in the DAO rather than in the API layer
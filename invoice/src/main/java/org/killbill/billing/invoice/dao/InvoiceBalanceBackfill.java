@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backfill of the invoice_balances index for the invoices created before it existed (see invoice_balances_migration.sql).
+ * <p/>
+ * The invoices are indexed by chunks of record ids, one transaction per chunk, and the progress is saved in
+ * invoice_balances_backfill: an interrupted backfill resumes where it stopped. The row is deleted once done.
+ */
+public class InvoiceBalanceBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceBalanceBackfill.class);
+
+    private static final long NB_INVOICES_PER_CHUNK = 1000;
+    private static final int MAX_ATTEMPTS_PER_CHUNK = 3;
+
+    private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
+    private final InvoiceDaoHelper invoiceDaoHelper;
+
+    public InvoiceBalanceBackfill(final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao, final InvoiceDaoHelper invoiceDaoHelper) {
+        this.transactionalSqlDao = transactionalSqlDao;
+        this.invoiceDaoHelper = invoiceDaoHelper;
+    }
+
+    public void backfill() {
+        while (backfillNextChunk()) {
+            // Keep going until the backfill row is gone
+        }
+    }
+
+    // Returns false when there is nothing left to backfill
+    private boolean backfillNextChunk() {
+        int attempt = 1;
+        while (true) {
+            try {
+                return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Boolean>() {
+                    @Override
+                    public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                        final InvoiceBalanceSqlDao invoiceBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+                        final Long fromInvoiceRecordId = invoiceBalanceSqlDao.getBackfillNextInvoiceRecordId();
+                        if (fromInvoiceRecordId == null) {
+                            return false;
+                        }
+
+                        final Long lastInvoiceRecordId = invoiceBalanceSqlDao.getBackfillLastInvoiceRecordId();
+                        if (fromInvoiceRecordId > lastInvoiceRecordId) {
+                            invoiceBalanceSqlDao.deleteBackfill();
+                            log.info("Backfill of the invoice balances done");
+                            return false;
+                        }
+
+                        final Long toInvoiceRecordId = Math.min(fromInvoiceRecordId + NB_INVOICES_PER_CHUNK - 1, lastInvoiceRecordId);
+                        for (final InternalTenantContext context : invoiceBalanceSqlDao.getAccountsToBackfill(fromInvoiceRecordId, toInvoiceRecordId)) {
+                            final List<UUID> invoiceIds = invoiceBalanceSqlDao.getInvoiceIdsToBackfill(fromInvoiceRecordId, toInvoiceRecordId, context);
+                            invoiceDaoHelper.createInvoiceBalancesFromTransaction(invoiceIds, entitySqlDaoWrapperFactory, context);
+                        }
+                        invoiceBalanceSqlDao.updateBackfillNextInvoiceRecordId(toInvoiceRecordId + 1);
+
+                        log.info("Backfilled the invoice balances up to invoice record id {} (out of {})", toInvoiceRecordId, lastInvoiceRecordId);
+                        return true;
+                    }
+                });
+            } catch (final RuntimeException e) {
+                // Most likely an invoice of the chunk indexed concurrently by a write: the retry will skip it
+                if (attempt >= MAX_ATTEMPTS_PER_CHUNK) {
+                    throw e;
+                }
+                log.warn("Failed to backfill a chunk of invoice balances, retrying", e);
+                attempt++;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.model.DefaultUnpaidInvoicesSummary;
+import org.killbill.billing.util.dao.MapperBase;
+import org.killbill.commons.jdbi.binder.SmartBindBean;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
+import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
+import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+@UseStringTemplate3StatementLocator
+@RegisterMapper(InvoiceBalanceSqlDao.InvoiceBalanceModelDaoMapper.class)
+public interface InvoiceBalanceSqlDao extends Transactional<InvoiceBalanceSqlDao>, CloseMe {
+
+    @SqlUpdate
+    public void create(@SmartBindBean final InvoiceBalanceModelDao invoiceBalance,
+                       @SmartBindBean final InternalTenantContext context);
+
+    @SqlUpdate
+    public int update(@SmartBindBean final InvoiceBalanceModelDao invoiceBalance,
+                      @SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public List<InvoiceBalanceModelDao> getUnpaidByAccountRecordId(@SmartBindBean final InternalTenantContext context);
+
+    @SqlQuery
+    @Mapper(UnpaidInvoicesSummaryMapper.class)
+    public DefaultUnpaidInvoicesSummary getUnpaidSummaryByAccountRecordId(@Bind("upToDate") final Date upToDate,
+                                                                          @SmartBindBean final InternalTenantContext context);
+
+    // Backfill of the invoices created before the index existed (see InvoiceBalanceBackfill)
+
+    @SqlQuery
+    public Long getBackfillNextInvoiceRecordId();
+
+    @SqlQuery
+    public Long getBackfillLastInvoiceRecordId();
+
+    @SqlUpdate
+    public void updateBackfillNextInvoiceRecordId(@Bind("nextInvoiceRecordId") final Long nextInvoiceRecordId);
+
+    @SqlUpdate
+    public void deleteBackfill();
+
+    @SqlQuery
+    @Mapper(InternalTenantContextMapper.class)
+    public List<InternalTenantContext> getAccountsToBackfill(@Bind("fromInvoiceRecordId") final Long fromInvoiceRecordId,
+                                                             @Bind("toInvoiceRecordId") final Long toInvoiceRecordId);
+
+    @SqlQuery
+    public List<UUID> getInvoiceIdsToBackfill(@Bind("fromInvoiceRecordId") final Long fromInvoiceRecordId,
+                                              @Bind("toInvoiceRecordId") final Long toInvoiceRecordId,
+                                              @SmartBindBean final InternalTenantContext context);
+
+    class InvoiceBalanceModelDaoMapper extends MapperBase implements ResultSetMapper<InvoiceBalanceModelDao> {
+
+        @Override
+        public InvoiceBalanceModelDao map(final int index, final ResultSet r, final StatementContext ctx) throws SQLException {
+            final InvoiceBalanceModelDao invoiceBalance = new InvoiceBalanceModelDao();
+            invoiceBalance.setRecordId(r.getLong("record_id"));
+            invoiceBalance.setInvoiceId(getUUID(r, "invoice_id"));
+            invoiceBalance.setInvoiceDate(getDate(r, "invoice_date"));
+            invoiceBalance.setTargetDate(getDate(r, "target_date"));
+            invoiceBalance.setBalance(r.getBigDecimal("balance"));
+            invoiceBalance.setCurrency(Currency.valueOf(r.getString("currency")));
+            return invoiceBalance;
+        }
+    }
+
+    class UnpaidInvoicesSummaryMapper extends MapperBase implements ResultSetMapper<DefaultUnpaidInvoicesSummary> {
+
+        @Override
+        public DefaultUnpaidInvoicesSummary map(final int index, final ResultSet r, final StatementContext ctx) throws SQLException {
+            return new DefaultUnpaidInvoicesSummary(r.getInt("nb_unpaid_invoices"),
+                                                    r.getBigDecimal("unpaid_balance"),
+                                                    getDate(r, "earliest_invoice_date"),
+                                                    getUUID(r, "earliest_invoice_id"));
+        }
+    }
+
+    class InternalTenantContextMapper extends MapperBase implements ResultSetMapper<InternalTenantContext> {
+
+        @Override
+        public InternalTenantContext map(final int index, final ResultSet r, final StatementContext ctx) throws SQLException {
+            return new InternalTenantContext(r.getLong("tenant_record_id"), r.getLong("account_record_id"));
+        }
+    }
+}
@@ -22,9 +22,11 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -39,14 +41,20 @@ import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 
+import com.google.common.base.Functions;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 public class InvoiceDaoHelper {
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     /**
      * Find amounts to adjust for individual items, if not specified.
      * The user gives us a list of items to adjust associated with a given amount (how much to refund per invoice item).
@@ -155,10 +163,62 @@ public class InvoiceDaoHelper {
     }
 
     public List<InvoiceModelDao> getUnpaidInvoicesByAccountFromTransaction(final UUID accountId, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final LocalDate upToDate, final InternalTenantContext context) {
-        final List<InvoiceModelDao> invoices = getAllInvoicesByAccountFromTransaction(entitySqlDaoWrapperFactory, context);
+        final InvoiceBalanceSqlDao invoiceBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+
+        // The index is kept up to date by the writes (see refreshInvoiceBalancesFromTransaction) and backfilled on upgrade (see InvoiceBalanceBackfill)
+        final Set<UUID> invoiceIds = new LinkedHashSet<UUID>();
+        for (final InvoiceBalanceModelDao invoiceBalance : invoiceBalanceSqlDao.getUnpaidByAccountRecordId(context)) {
+            if (upToDate == null || !invoiceBalance.getTargetDate().isAfter(upToDate)) {
+                invoiceIds.add(invoiceBalance.getInvoiceId());
+            }
+        }
+
+        // Only the unpaid invoices are loaded, instead of the full invoice history of the account
+        final List<InvoiceModelDao> invoices = getInvoicesWithChildrenFromTransaction(invoiceIds, entitySqlDaoWrapperFactory, context);
         return getUnpaidInvoicesByAccountFromTransaction(invoices, upToDate);
     }
 
+    /**
+     * Update the invoice_balances index for the specified invoices. This needs to be called in the same transaction
+     * as any write on invoice items or invoice payments.
+     */
+    public void refreshInvoiceBalancesFromTransaction(final Iterable<UUID> invoiceIds, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceBalanceSqlDao invoiceBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+        // Shell invoices (items only) don't exist in the invoices table and aren't indexed
+        for (final InvoiceModelDao invoice : getInvoicesWithChildrenFromTransaction(ImmutableSet.<UUID>copyOf(invoiceIds), entitySqlDaoWrapperFactory, context)) {
+            final InvoiceBalanceModelDao invoiceBalance = new InvoiceBalanceModelDao(invoice, InvoiceModelDaoHelper.getBalance(invoice));
+            if (invoiceBalanceSqlDao.update(invoiceBalance, context) == 0) {
+                invoiceBalanceSqlDao.create(invoiceBalance, context);
+            }
+        }
+    }
+
+    /**
+     * Insert the invoice_balances index entries of invoices which aren't indexed yet (see InvoiceBalanceBackfill). This fails on
+     * the unique invoice id if one of them got indexed concurrently, instead of overwriting a fresher balance.
+     */
+    public void createInvoiceBalancesFromTransaction(final Iterable<UUID> invoiceIds, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final InvoiceBalanceSqlDao invoiceBalanceSqlDao = entitySqlDaoWrapperFactory.getHandle().attach(InvoiceBalanceSqlDao.class);
+        for (final InvoiceModelDao invoice : getInvoicesWithChildrenFromTransaction(ImmutableSet.<UUID>copyOf(invoiceIds), entitySqlDaoWrapperFactory, context)) {
+            invoiceBalanceSqlDao.create(new InvoiceBalanceModelDao(invoice, InvoiceModelDaoHelper.getBalance(invoice)), context);
+        }
+    }
+
+    private List<InvoiceModelDao> getInvoicesWithChildrenFromTransaction(final Collection<UUID> invoiceIds, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        final List<InvoiceModelDao> invoices = new LinkedList<InvoiceModelDao>();
+        for (final List<UUID> invoiceIdsChunk : Lists.partition(ImmutableList.<UUID>copyOf(invoiceIds), MAX_IDS_PER_QUERY)) {
+            final List<String> ids = ImmutableList.<String>copyOf(Iterables.transform(invoiceIdsChunk, Functions.toStringFunction()));
+            final List<InvoiceModelDao> invoicesChunk = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class).getByIds(ids, context);
+            if (invoicesChunk.isEmpty()) {
+                continue;
+            }
+            addInvoiceItems(invoicesChunk, entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getInvoiceItemsByInvoiceIds(ids, context));
+            addInvoicePayments(invoicesChunk, entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class).getPaymentsForInvoiceIds(ids, context));
+            invoices.addAll(invoicesChunk);
+        }
+        return invoices;
+    }
+
     public List<InvoiceModelDao> getUnpaidInvoicesByAccountFromTransaction(final List<InvoiceModelDao> invoices, @Nullable final LocalDate upToDate) {
         final Collection<InvoiceModelDao> unpaidInvoices = Collections2.filter(invoices, new Predicate<InvoiceModelDao>() {
             @Override
@@ -229,8 +289,10 @@ public class InvoiceDaoHelper {
 
     private void getInvoiceItemsWithinTransaction(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         final InvoiceItemSqlDao invoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
-        final List<InvoiceItemModelDao> invoiceItemsForAccount = invoiceItemSqlDao.getByAccountRecordId(context);
+        addInvoiceItems(invoices, invoiceItemSqlDao.getByAccountRecordId(context));
+    }
 
+    private void addInvoiceItems(final Iterable<InvoiceModelDao> invoices, final Iterable<InvoiceItemModelDao> invoiceItemsForAccount) {
         final Map<UUID, List<InvoiceItemModelDao>> invoiceItemsPerInvoiceId = new HashMap<UUID, List<InvoiceItemModelDao>>();
         for (final InvoiceItemModelDao item : invoiceItemsForAccount) {
             if (invoiceItemsPerInvoiceId.get(item.getInvoiceId()) == null) {
@@ -248,8 +310,10 @@ public class InvoiceDaoHelper {
 
     private void getInvoicePaymentsWithinTransaction(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         final InvoicePaymentSqlDao invoicePaymentSqlDao = entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class);
-        final List<InvoicePaymentModelDao> invoicePaymentsForAccount = invoicePaymentSqlDao.getByAccountRecordId(context);
+        addInvoicePayments(invoices, invoicePaymentSqlDao.getByAccountRecordId(context));
+    }
 
+    private void addInvoicePayments(final Iterable<InvoiceModelDao> invoices, final Iterable<InvoicePaymentModelDao> invoicePaymentsForAccount) {
         final Map<UUID, List<InvoicePaymentModelDao>> invoicePaymentsPerInvoiceId = new HashMap<UUID, List<InvoicePaymentModelDao>>();
         for (final InvoicePaymentModelDao invoicePayment : invoicePaymentsForAccount) {
             if (invoicePaymentsPerInvoiceId.get(invoicePayment.getInvoiceId()) == null) {
@@ -18,6 +18,11 @@
 
 package org.killbill.billing.invoice.glue;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.killbill.billing.glue.InvoiceModule;
 import org.killbill.billing.invoice.InvoiceDispatcher;
 import org.killbill.billing.invoice.InvoiceListener;
@@ -47,6 +52,8 @@ import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.invoice.notification.NullInvoiceNotifier;
 import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
+import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
+import org.killbill.billing.invoice.template.TemplateCacheInvalidationCallback;
 import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
 import org.killbill.billing.invoice.usage.RawUsageOptimizer;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
@@ -54,12 +61,20 @@ import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.config.InvoiceConfig;
 import org.killbill.billing.util.glue.KillBillModule;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
+import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
 import org.skife.config.ConfigurationObjectFactory;
 
 import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
 
 public class DefaultInvoiceModule extends KillBillModule implements InvoiceModule {
 
+    public static final String INVOICE_RENDERING_EXECUTOR_NAMED = "InvoiceRenderingExecutor";
+    public static final String INVOICE_PLUGIN_EXECUTOR_NAMED = "InvoicePluginExecutor";
+
+    private static final String INVOICE_RENDERING_THREAD_PREFIX = "invoice-rendering-th-";
+    private static final String INVOICE_PLUGIN_THREAD_PREFIX = "invoice-plugin-th-";
+
     InvoiceConfig config;
 
     public DefaultInvoiceModule(final KillbillConfigSource configSource) {
@@ -98,6 +113,25 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         bind(ResourceBundleFactory.class).to(DefaultResourceBundleFactory.class).asEagerSingleton();
     }
 
+    protected void installHtmlInvoiceGenerator() {
+        final ExecutorService renderingExecutor = new WithProfilingThreadPoolExecutor(config.getInvoiceRenderingThreadNb(), config.getInvoiceRenderingThreadNb(),
+                                                                                      0L, TimeUnit.MILLISECONDS,
+                                                                                      new LinkedBlockingQueue<Runnable>(),
+                                                                                      new ThreadFactory() {
+
+                                                                                          @Override
+                                                                                          public Thread newThread(final Runnable r) {
+                                                                                              final Thread th = new Thread(r);
+                                                                                              th.setName(INVOICE_RENDERING_THREAD_PREFIX + th.getId());
+                                                                                              th.setDaemon(true);
+                                                                                              return th;
+                                                                                          }
+                                                                                      });
+        bind(ExecutorService.class).annotatedWith(Names.named(INVOICE_RENDERING_EXECUTOR_NAMED)).toInstance(renderingExecutor);
+        bind(HtmlInvoiceGenerator.class).asEagerSingleton();
+        bind(TemplateCacheInvalidationCallback.class).asEagerSingleton();
+    }
+
     @Override
     public void installInvoiceMigrationApi() {
         bind(InvoiceMigrationApi.class).to(DefaultInvoiceMigrationApi.class).asEagerSingleton();
@@ -137,6 +171,21 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
 
     protected void installInvoicePluginApi() {
         bind(new TypeLiteral<OSGIServiceRegistration<InvoicePluginApi>>() {}).toProvider(DefaultInvoiceProviderPluginRegistryProvider.class).asEagerSingleton();
+
+        final ExecutorService pluginExecutor = new WithProfilingThreadPoolExecutor(config.getInvoicePluginThreadNb(), config.getInvoicePluginThreadNb(),
+                                                                                   0L, TimeUnit.MILLISECONDS,
+                                                                                   new LinkedBlockingQueue<Runnable>(),
+                                                                                   new ThreadFactory() {
+
+                                                                                       @Override
+                                                                                       public Thread newThread(final Runnable r) {
+                                                                                           final Thread th = new Thread(r);
+                                                                                           th.setName(INVOICE_PLUGIN_THREAD_PREFIX + th.getId());
+                                                                                           th.setDaemon(true);
+                                                                                           return th;
+                                                                                       }
+                                                                                   });
+        bind(ExecutorService.class).annotatedWith(Names.named(INVOICE_PLUGIN_EXECUTOR_NAMED)).toInstance(pluginExecutor);
     }
 
     @Override
@@ -157,6 +206,7 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         installInvoicePaymentApi();
         installInvoiceMigrationApi();
         installResourceBundleFactory();
+        installHtmlInvoiceGenerator();
         bind(RawUsageOptimizer.class).asEagerSingleton();;
         bind(InvoiceApiHelper.class).asEagerSingleton();
     }
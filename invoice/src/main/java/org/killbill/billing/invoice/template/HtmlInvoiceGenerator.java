@@ -19,12 +19,19 @@ package org.killbill.billing.invoice.template;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
+import javax.inject.Named;
 
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -34,6 +41,7 @@ import org.killbill.billing.invoice.api.formatters.InvoiceFormatter;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatterFactory;
 import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory;
 import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory.ResourceBundleType;
+import org.killbill.billing.invoice.glue.DefaultInvoiceModule;
 import org.killbill.billing.invoice.template.translator.DefaultInvoiceTranslator;
 import org.killbill.billing.tenant.api.TenantInternalApi;
 import org.killbill.billing.util.LocaleUtils;
@@ -43,17 +51,30 @@ import org.killbill.billing.util.io.IOUtils;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
 import org.killbill.xmlloader.UriAccessor;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 
 public class HtmlInvoiceGenerator {
 
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+
     private final InvoiceFormatterFactory factory;
     private final TranslatorConfig config;
     private final CurrencyConversionApi currencyConversionApi;
     private final TemplateEngine templateEngine;
     private final TenantInternalApi tenantApi;
     private final ResourceBundleFactory bundleFactory;
+    private final ExecutorService renderingExecutor;
+
+    // Tenant templates, keyed by tenant, template type and locale (absent when the tenant didn't upload any). Invalidated
+    // through the tenant broadcast mechanism (see TemplateCacheInvalidationCallback)
+    private final Cache<String, Optional<String>> tenantTemplates;
+    // Default templates, keyed by name
+    private final Cache<String, String> defaultTemplates;
 
     @Inject
     public HtmlInvoiceGenerator(final InvoiceFormatterFactory factory,
@@ -61,13 +82,61 @@ public class HtmlInvoiceGenerator {
                                 final TranslatorConfig config,
                                 final CurrencyConversionApi currencyConversionApi,
                                 final ResourceBundleFactory bundleFactory,
-                                final TenantInternalApi tenantInternalApi) {
+                                final TenantInternalApi tenantInternalApi,
+                                @Named(DefaultInvoiceModule.INVOICE_RENDERING_EXECUTOR_NAMED) final ExecutorService renderingExecutor) {
         this.factory = factory;
         this.config = config;
         this.currencyConversionApi = currencyConversionApi;
         this.templateEngine = templateEngine;
         this.bundleFactory = bundleFactory;
         this.tenantApi = tenantInternalApi;
+        this.renderingExecutor = renderingExecutor;
+        this.tenantTemplates = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TEMPLATES).build();
+        this.defaultTemplates = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TEMPLATES).build();
+    }
+
+    /**
+     * Render a batch of invoices for the same account in parallel: the locale, translations and template are only
+     * resolved once for the whole batch.
+     *
+     * @return the rendered invoices, in the same order as the invoices passed (null for null invoices)
+     */
+    public List<HtmlInvoice> generateInvoices(final Account account, final List<Invoice> invoices, final boolean manualPay, final InternalTenantContext context) throws IOException {
+        final Locale locale = getLocale(account);
+        final DefaultInvoiceTranslator invoiceTranslator = createInvoiceTranslator(account, context);
+        final String templateText = getTemplateText(locale, manualPay, context);
+
+        final List<Future<HtmlInvoice>> futures = new ArrayList<Future<HtmlInvoice>>(invoices.size());
+        for (final Invoice invoice : invoices) {
+            futures.add(renderingExecutor.submit(new Callable<HtmlInvoice>() {
+                @Override
+                public HtmlInvoice call() throws IOException {
+                    return invoice == null ? null : renderInvoice(account, invoice, locale, invoiceTranslator, templateText, context);
+                }
+            }));
+        }
+
+        final List<HtmlInvoice> htmlInvoices = new ArrayList<HtmlInvoice>(invoices.size());
+        try {
+            for (final Future<HtmlInvoice> future : futures) {
+                htmlInvoices.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            for (final Future<HtmlInvoice> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return htmlInvoices;
     }
 
     public HtmlInvoice generateInvoice(final Account account, @Nullable final Invoice invoice, final boolean manualPay, final InternalTenantContext context) throws IOException {
@@ -76,17 +145,17 @@ public class HtmlInvoiceGenerator {
             return null;
         }
 
-        final String accountLocale = Strings.emptyToNull(account.getLocale());
-        final Locale locale = accountLocale == null ? Locale.getDefault() : LocaleUtils.toLocale(accountLocale);
+        final Locale locale = getLocale(account);
+        final DefaultInvoiceTranslator invoiceTranslator = createInvoiceTranslator(account, context);
+        final String templateText = getTemplateText(locale, manualPay, context);
+        return renderInvoice(account, invoice, locale, invoiceTranslator, templateText, context);
+    }
 
+    private HtmlInvoice renderInvoice(final Account account, final Invoice invoice, final Locale locale, final DefaultInvoiceTranslator invoiceTranslator,
+                                      final String templateText, final InternalTenantContext context) throws IOException {
         final HtmlInvoice invoiceData = new HtmlInvoice();
         final Map<String, Object> data = new HashMap<String, Object>();
 
-        final ResourceBundle invoiceBundle = accountLocale != null ?
-                                             bundleFactory.createBundle(LocaleUtils.toLocale(accountLocale), config.getInvoiceTemplateBundlePath(), ResourceBundleType.INVOICE_TRANSLATION, context) : null;
-        final ResourceBundle defaultInvoiceBundle = bundleFactory.createBundle(Locale.getDefault(), config.getInvoiceTemplateBundlePath(), ResourceBundleType.INVOICE_TRANSLATION, context);
-        final DefaultInvoiceTranslator invoiceTranslator = new DefaultInvoiceTranslator(invoiceBundle, defaultInvoiceBundle);
-
         data.put("text", invoiceTranslator);
         data.put("account", account);
 
@@ -94,30 +163,82 @@ public class HtmlInvoiceGenerator {
         data.put("invoice", formattedInvoice);
 
         invoiceData.setSubject(invoiceTranslator.getInvoiceEmailSubject());
-        final String templateText = getTemplateText(locale, manualPay, context);
         invoiceData.setBody(templateEngine.executeTemplateText(templateText, data));
         return invoiceData;
     }
 
+    private Locale getLocale(final Account account) {
+        final String accountLocale = Strings.emptyToNull(account.getLocale());
+        return accountLocale == null ? Locale.getDefault() : LocaleUtils.toLocale(accountLocale);
+    }
+
+    private DefaultInvoiceTranslator createInvoiceTranslator(final Account account, final InternalTenantContext context) {
+        final String accountLocale = Strings.emptyToNull(account.getLocale());
+        final ResourceBundle invoiceBundle = accountLocale != null ?
+                                             bundleFactory.createBundle(LocaleUtils.toLocale(accountLocale), config.getInvoiceTemplateBundlePath(), ResourceBundleType.INVOICE_TRANSLATION, context) : null;
+        final ResourceBundle defaultInvoiceBundle = bundleFactory.createBundle(Locale.getDefault(), config.getInvoiceTemplateBundlePath(), ResourceBundleType.INVOICE_TRANSLATION, context);
+        return new DefaultInvoiceTranslator(invoiceBundle, defaultInvoiceBundle);
+    }
+
+    public void invalidateCache(final boolean manualPay, final InternalTenantContext context) {
+        final String keyPrefix = getTenantTemplateKeyPrefix(manualPay, context);
+        for (final String key : tenantTemplates.asMap().keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                tenantTemplates.invalidate(key);
+            }
+        }
+    }
+
     private String getTemplateText(final Locale locale, final boolean manualPay, final InternalTenantContext context) throws IOException {
 
         if (context.getTenantRecordId() == InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID) {
             return getDefaultTemplate(manualPay ? config.getManualPayTemplateName() : config.getTemplateName());
         }
-        final String template = manualPay ?
-                                tenantApi.getManualPayInvoiceTemplate(locale, context) :
-                                tenantApi.getInvoiceTemplate(locale, context);
+        final String template = getTenantTemplate(locale, manualPay, context);
         return template == null ?
                getDefaultTemplate(manualPay ? config.getManualPayTemplateName() : config.getTemplateName()) :
                template;
     }
 
+    private String getTenantTemplate(final Locale locale, final boolean manualPay, final InternalTenantContext context) {
+        final String key = getTenantTemplateKeyPrefix(manualPay, context) + locale;
+        try {
+            return tenantTemplates.get(key, new Callable<Optional<String>>() {
+                @Override
+                public Optional<String> call() {
+                    final String template = manualPay ?
+                                            tenantApi.getManualPayInvoiceTemplate(locale, context) :
+                                            tenantApi.getInvoiceTemplate(locale, context);
+                    return Optional.<String>fromNullable(template);
+                }
+            }).orNull();
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private String getTenantTemplateKeyPrefix(final boolean manualPay, final InternalTenantContext context) {
+        return context.getTenantRecordId() + "/" + (manualPay ? "manualPay" : "autoPay") + "/";
+    }
+
     private String getDefaultTemplate(final String templateName) throws IOException {
         try {
-            final InputStream templateStream = UriAccessor.accessUri(templateName);
-            return IOUtils.toString(templateStream);
-        } catch (URISyntaxException e) {
-            throw new IOException(e);
+            return defaultTemplates.get(templateName, new Callable<String>() {
+                @Override
+                public String call() throws IOException, URISyntaxException {
+                    final InputStream templateStream = UriAccessor.accessUri(templateName);
+                    return IOUtils.toString(templateStream);
+                }
+            });
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
         }
     }
 }
@@ -25,6 +25,8 @@ import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
 
@@ -37,23 +39,90 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class DefaultResourceBundleFactory implements ResourceBundleFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultResourceBundleFactory.class);
 
+    private static final int MAX_CACHED_BUNDLES = 1000;
+
     private final TenantInternalApi tenantApi;
 
+    // Parsed bundles, keyed by tenant, type and locale (absent when the tenant didn't upload any). Invalidated
+    // through the tenant broadcast mechanism (see TemplateCacheInvalidationCallback)
+    private final Cache<String, Optional<ResourceBundle>> tenantBundles;
+    // Parsed global bundles, keyed by path and locale
+    private final Cache<String, Optional<ResourceBundle>> globalBundles;
+
     @Inject
     public DefaultResourceBundleFactory(final TenantInternalApi tenantApi) {
         this.tenantApi = tenantApi;
+        this.tenantBundles = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_BUNDLES).build();
+        this.globalBundles = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_BUNDLES).build();
     }
 
     @Override
     public ResourceBundle createBundle(final Locale locale, final String bundlePath, final ResourceBundleType type, final InternalTenantContext tenantContext) {
         if (tenantContext.getTenantRecordId() == InternalCallContextFactory.INTERNAL_TENANT_RECORD_ID) {
-            return getGlobalBundle(locale, bundlePath);
+            return getCachedGlobalBundle(locale, bundlePath);
+        }
+        final ResourceBundle tenantBundle = getCachedTenantBundle(locale, type, tenantContext);
+        if (tenantBundle != null) {
+            return tenantBundle;
+        }
+        return getCachedGlobalBundle(locale, bundlePath);
+    }
+
+    public void invalidateCache(final ResourceBundleType type, final InternalTenantContext tenantContext) {
+        final String keyPrefix = getTenantBundleKeyPrefix(type, tenantContext);
+        for (final String key : tenantBundles.asMap().keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                tenantBundles.invalidate(key);
+            }
         }
+    }
+
+    private ResourceBundle getCachedTenantBundle(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
+        final String key = getTenantBundleKeyPrefix(type, tenantContext) + locale;
+        try {
+            return tenantBundles.get(key, new Callable<Optional<ResourceBundle>>() {
+                @Override
+                public Optional<ResourceBundle> call() {
+                    return Optional.<ResourceBundle>fromNullable(getTenantBundle(locale, type, tenantContext));
+                }
+            }).orNull();
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private ResourceBundle getCachedGlobalBundle(final Locale locale, final String bundlePath) {
+        final String key = bundlePath + "/" + locale;
+        try {
+            return globalBundles.get(key, new Callable<Optional<ResourceBundle>>() {
+                @Override
+                public Optional<ResourceBundle> call() {
+                    return Optional.<ResourceBundle>fromNullable(getGlobalBundle(locale, bundlePath));
+                }
+            }).orNull();
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private String getTenantBundleKeyPrefix(final ResourceBundleType type, final InternalTenantContext tenantContext) {
+        return tenantContext.getTenantRecordId() + "/" + type + "/";
+    }
+
+    private ResourceBundle getTenantBundle(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
         final String bundle = getTenantBundleForType(locale, type, tenantContext);
         if (bundle != null) {
             try {
@@ -63,7 +132,7 @@ public class DefaultResourceBundleFactory implements ResourceBundleFactory {
                 // Fall through...
             }
         }
-        return getGlobalBundle(locale, bundlePath);
+        return null;
     }
 
     private String getTenantBundleForType(final Locale locale, final ResourceBundleType type, final InternalTenantContext tenantContext) {
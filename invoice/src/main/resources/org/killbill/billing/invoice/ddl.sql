@@ -50,6 +50,29 @@ CREATE UNIQUE INDEX invoices_id ON invoices(id);
 CREATE INDEX invoices_account_target ON invoices(account_id ASC, target_date);
 CREATE INDEX invoices_tenant_account_record_id ON invoices(tenant_record_id, account_record_id);
 
+DROP TABLE IF EXISTS invoice_balances;
+CREATE TABLE invoice_balances (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    invoice_id char(36) NOT NULL,
+    invoice_date date NOT NULL,
+    target_date date NOT NULL,
+    balance numeric(15,9) NOT NULL,
+    currency char(3) NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX invoice_balances_invoice_id ON invoice_balances(invoice_id);
+CREATE INDEX invoice_balances_tenant_account_record_id ON invoice_balances(tenant_record_id, account_record_id, balance);
+
+DROP TABLE IF EXISTS invoice_balances_backfill;
+CREATE TABLE invoice_balances_backfill (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    next_invoice_record_id int(11) unsigned NOT NULL,
+    last_invoice_record_id int(11) unsigned NOT NULL,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+
 DROP TABLE IF EXISTS invoice_payments;
 CREATE TABLE invoice_payments (
     record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
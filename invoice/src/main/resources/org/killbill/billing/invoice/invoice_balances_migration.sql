@@ -0,0 +1,30 @@
+/*
+ * Upgrade of an existing database to the invoice balances index (see InvoiceBalanceModelDao), to run while Kill Bill is stopped.
+ *
+ * Balances are indexed when invoice items or payments are written: existing invoices aren't. The range of record ids
+ * to backfill is recorded in invoice_balances_backfill, and InvoiceBalanceBackfill indexes it by chunks when the
+ * invoice service starts (it resumes where it stopped if interrupted), then deletes the row. Fresh databases (ddl.sql)
+ * don't need any backfill.
+ */
+
+CREATE TABLE invoice_balances (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    invoice_id char(36) NOT NULL,
+    invoice_date date NOT NULL,
+    target_date date NOT NULL,
+    balance numeric(15,9) NOT NULL,
+    currency char(3) NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX invoice_balances_invoice_id ON invoice_balances(invoice_id);
+CREATE INDEX invoice_balances_tenant_account_record_id ON invoice_balances(tenant_record_id, account_record_id, balance);
+
+CREATE TABLE invoice_balances_backfill (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    next_invoice_record_id int(11) unsigned NOT NULL,
+    last_invoice_record_id int(11) unsigned NOT NULL,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+INSERT INTO invoice_balances_backfill (next_invoice_record_id, last_invoice_record_id) SELECT 1, COALESCE(MAX(record_id), 0) FROM invoices;
@@ -22,39 +22,59 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.formatters.InvoiceFormatterFactory;
+import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory;
+import org.killbill.billing.invoice.api.formatters.ResourceBundleFactory.ResourceBundleType;
 import org.killbill.billing.invoice.template.HtmlInvoice;
 import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
+import org.killbill.billing.invoice.template.TemplateCacheInvalidationCallback;
+import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
 import org.killbill.billing.invoice.template.formatters.DefaultInvoiceFormatterFactory;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.util.email.templates.MustacheTemplateEngine;
 import org.killbill.billing.util.email.templates.TemplateEngine;
 import org.killbill.billing.util.template.translation.TranslatorConfig;
 import org.mockito.Mockito;
 import org.skife.config.ConfigurationObjectFactory;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 public class TestHtmlInvoiceGenerator extends InvoiceTestSuiteNoDB {
 
+    private TranslatorConfig config;
+    private TemplateEngine templateEngine;
+    private InvoiceFormatterFactory factory;
+    private ExecutorService renderingExecutor;
     private HtmlInvoiceGenerator g;
 
     @Override
     @BeforeClass(groups = "fast")
     public void beforeClass() throws Exception {
         super.beforeClass();
-        final TranslatorConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(TranslatorConfig.class);
-        final TemplateEngine templateEngine = new MustacheTemplateEngine();
-        final InvoiceFormatterFactory factory = new DefaultInvoiceFormatterFactory();
-        g = new HtmlInvoiceGenerator(factory, templateEngine, config, null, resourceBundleFactory, null);
+        config = new ConfigurationObjectFactory(skifeConfigSource).build(TranslatorConfig.class);
+        templateEngine = new MustacheTemplateEngine();
+        factory = new DefaultInvoiceFormatterFactory();
+        renderingExecutor = Executors.newFixedThreadPool(2);
+        g = new HtmlInvoiceGenerator(factory, templateEngine, config, null, resourceBundleFactory, null, renderingExecutor);
+    }
+
+    @AfterClass(groups = "fast")
+    public void afterClass() throws Exception {
+        renderingExecutor.shutdownNow();
     }
 
     @Test(groups = "fast")
@@ -80,6 +100,116 @@ public class TestHtmlInvoiceGenerator extends InvoiceTestSuiteNoDB {
         Assert.assertNull(output);
     }
 
+    @Test(groups = "fast")
+    public void testTenantTemplatesAndBundlesAreCached() throws Exception {
+        final InternalTenantContext tenantContext = new InternalTenantContext(42L, null);
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template v1");
+        Mockito.when(tenantInternalApi.getManualPayInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Manual pay template v1");
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("invoiceEmailSubject=Subject v1");
+
+        final ResourceBundleFactory bundleFactory = new DefaultResourceBundleFactory(tenantInternalApi);
+        final HtmlInvoiceGenerator generator = new HtmlInvoiceGenerator(factory, templateEngine, config, null, bundleFactory, tenantInternalApi, renderingExecutor);
+        final TemplateCacheInvalidationCallback callback = new TemplateCacheInvalidationCallback(generator, bundleFactory);
+
+        final Account account = createAccount();
+        final Invoice invoice = Mockito.mock(Invoice.class);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v1", "Template v1");
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, true, tenantContext), "Subject v1", "Manual pay template v1");
+
+        // The tenant data is only fetched once
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v1", "Template v1");
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTemplate(Locale.US, tenantContext);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getManualPayInvoiceTemplate(Locale.US, tenantContext);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTranslation(Locale.US, tenantContext);
+
+        // The tenant uploads new templates and translations: not seen until the invalidation is broadcast
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template v2");
+        Mockito.when(tenantInternalApi.getManualPayInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Manual pay template v2");
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("invoiceEmailSubject=Subject v2");
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v1", "Template v1");
+
+        // Only the invalidated entries are reloaded
+        callback.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, tenantContext);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v1", "Template v2");
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, true, tenantContext), "Subject v1", "Manual pay template v1");
+
+        callback.invalidateCache(TenantKey.INVOICE_MP_TEMPLATE, null, tenantContext);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, true, tenantContext), "Subject v1", "Manual pay template v2");
+
+        callback.invalidateCache(TenantKey.INVOICE_TRANSLATION_, null, tenantContext);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v2", "Template v2");
+        Mockito.verify(tenantInternalApi, Mockito.times(2)).getInvoiceTemplate(Locale.US, tenantContext);
+        Mockito.verify(tenantInternalApi, Mockito.times(2)).getManualPayInvoiceTemplate(Locale.US, tenantContext);
+        Mockito.verify(tenantInternalApi, Mockito.times(2)).getInvoiceTranslation(Locale.US, tenantContext);
+
+        // Other tenants have their own entries, untouched by the invalidation of this tenant
+        final InternalTenantContext otherTenantContext = new InternalTenantContext(43L, null);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, otherTenantContext), "Subject v2", "Template v2");
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template v3");
+        callback.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, tenantContext);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Subject v2", "Template v3");
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, otherTenantContext), "Subject v2", "Template v2");
+    }
+
+    @Test(groups = "fast")
+    public void testDefaultTemplateWhenNoTenantTemplate() throws Exception {
+        final InternalTenantContext tenantContext = new InternalTenantContext(42L, null);
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        final ResourceBundleFactory bundleFactory = new DefaultResourceBundleFactory(tenantInternalApi);
+        final HtmlInvoiceGenerator generator = new HtmlInvoiceGenerator(factory, templateEngine, config, null, bundleFactory, tenantInternalApi, renderingExecutor);
+        final TemplateCacheInvalidationCallback callback = new TemplateCacheInvalidationCallback(generator, bundleFactory);
+
+        final Account account = createAccount();
+        final Invoice invoice = createInvoice();
+        final String expectedBody = g.generateInvoice(account, invoice, false, internalCallContext).getBody();
+
+        // The absence of tenant template is cached as well
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Your invoice", expectedBody);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Your invoice", expectedBody);
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTemplate(Locale.US, tenantContext);
+
+        // Until the tenant uploads one
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template v1");
+        callback.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, tenantContext);
+        checkGeneratedInvoice(generator.generateInvoice(account, invoice, false, tenantContext), "Your invoice", "Template v1");
+    }
+
+    @Test(groups = "fast")
+    public void testGenerateInvoices() throws Exception {
+        final InternalTenantContext tenantContext = new InternalTenantContext(42L, null);
+        final TenantInternalApi tenantInternalApi = Mockito.mock(TenantInternalApi.class);
+        Mockito.when(tenantInternalApi.getInvoiceTemplate(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("Template v1");
+        Mockito.when(tenantInternalApi.getInvoiceTranslation(Mockito.<Locale>any(), Mockito.<InternalTenantContext>any())).thenReturn("invoiceEmailSubject=Subject v1");
+        final ResourceBundleFactory bundleFactory = Mockito.spy(new DefaultResourceBundleFactory(tenantInternalApi));
+        final HtmlInvoiceGenerator generator = new HtmlInvoiceGenerator(factory, templateEngine, config, null, bundleFactory, tenantInternalApi, renderingExecutor);
+
+        final Account account = createAccount();
+        final Invoice invoice = createInvoice();
+        final List<Invoice> invoices = new ArrayList<Invoice>();
+        invoices.add(invoice);
+        invoices.add(null);
+        invoices.add(invoice);
+        invoices.add(invoice);
+
+        final List<HtmlInvoice> output = generator.generateInvoices(account, invoices, false, tenantContext);
+        Assert.assertEquals(output.size(), 4);
+        Assert.assertNull(output.get(1));
+        checkGeneratedInvoice(output.get(0), "Subject v1", "Template v1");
+        checkGeneratedInvoice(output.get(2), "Subject v1", "Template v1");
+        checkGeneratedInvoice(output.get(3), "Subject v1", "Template v1");
+
+        // The template and the translations (account and default locales) are resolved once for the whole batch
+        Mockito.verify(tenantInternalApi, Mockito.times(1)).getInvoiceTemplate(Locale.US, tenantContext);
+        Mockito.verify(bundleFactory, Mockito.times(2)).createBundle(Mockito.<Locale>any(), Mockito.anyString(), Mockito.eq(ResourceBundleType.INVOICE_TRANSLATION), Mockito.<InternalTenantContext>any());
+    }
+
+    private void checkGeneratedInvoice(final HtmlInvoice output, final String expectedSubject, final String expectedBody) {
+        Assert.assertNotNull(output);
+        Assert.assertEquals(output.getSubject(), expectedSubject);
+        Assert.assertEquals(output.getBody(), expectedBody);
+    }
+
     private Account createAccount() {
         final Account account = Mockito.mock(Account.class);
         Mockito.when(account.getExternalKey()).thenReturn("1234abcd");
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoiceItem;
+import org.killbill.billing.invoice.api.InvoicePluginTimeoutException;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.TaxInvoiceItem;
+import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
+import org.killbill.billing.invoice.provider.DefaultInvoiceProviderPluginRegistry;
+import org.killbill.billing.osgi.api.OSGIServiceDescriptor;
+import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class TestInvoicePluginDispatcher extends InvoiceTestSuiteNoDB {
+
+    private OSGIServiceRegistration<InvoicePluginApi> pluginRegistry;
+    private InvoiceConfig invoiceConfig;
+    private MetricRegistry metricRegistry;
+    private ExecutorService pluginExecutor;
+    private Invoice invoice;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() {
+        super.beforeMethod();
+        pluginRegistry = new DefaultInvoiceProviderPluginRegistry();
+        invoiceConfig = Mockito.mock(InvoiceConfig.class);
+        Mockito.when(invoiceConfig.isInvoicePluginConcurrentDispatch()).thenReturn(true);
+        Mockito.when(invoiceConfig.getInvoicePluginTimeout()).thenReturn(new TimeSpan("0s"));
+        Mockito.when(invoiceConfig.getInvoicePluginTimeouts()).thenReturn(ImmutableList.<String>of());
+        Mockito.when(invoiceConfig.getInvoicePluginDependencies()).thenReturn(ImmutableList.<String>of());
+        metricRegistry = new MetricRegistry();
+        pluginExecutor = Executors.newFixedThreadPool(4);
+        invoice = new DefaultInvoice(UUID.randomUUID(), new LocalDate(2015, 6, 1), new LocalDate(2015, 6, 1), Currency.USD);
+    }
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() {
+        pluginExecutor.shutdownNow();
+        super.afterMethod();
+    }
+
+    @Test(groups = "fast")
+    public void testConcurrentDispatch() throws Exception {
+        // Both plugins only return once the other one has been called
+        final CountDownLatch latch = new CountDownLatch(2);
+        final InvoiceItem taxItem = createTaxItem("tax");
+        final InvoiceItem otherTaxItem = createTaxItem("other-tax");
+        registerPlugin("tax", new StubInvoicePluginApi(taxItem) {
+            @Override
+            protected void beforeReturning() throws InterruptedException {
+                latch.countDown();
+                Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            }
+        });
+        registerPlugin("other-tax", new StubInvoicePluginApi(otherTaxItem) {
+            @Override
+            protected void beforeReturning() throws InterruptedException {
+                latch.countDown();
+                Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            }
+        });
+
+        final List<InvoiceItem> items = createDispatcher().getAdditionalInvoiceItems(invoice, callContext);
+        Assert.assertEquals(ImmutableSet.<InvoiceItem>copyOf(items), ImmutableSet.<InvoiceItem>of(taxItem, otherTaxItem));
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(InvoicePluginDispatcher.class, "tax", "getAdditionalInvoiceItems")).getCount(), 1);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(InvoicePluginDispatcher.class, "other-tax", "getAdditionalInvoiceItems")).getCount(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testDependencies() throws Exception {
+        Mockito.when(invoiceConfig.getInvoicePluginDependencies()).thenReturn(ImmutableList.<String>of("tax:adjustments", "tax:not-registered"));
+
+        final AtomicBoolean adjustmentsReturned = new AtomicBoolean(false);
+        final AtomicBoolean taxCalledAfterAdjustments = new AtomicBoolean(false);
+        registerPlugin("adjustments", new StubInvoicePluginApi(createTaxItem("adjustments")) {
+            @Override
+            protected void beforeReturning() throws InterruptedException {
+                Thread.sleep(100);
+                adjustmentsReturned.set(true);
+            }
+        });
+        registerPlugin("tax", new StubInvoicePluginApi(createTaxItem("tax")) {
+            @Override
+            protected void beforeReturning() {
+                taxCalledAfterAdjustments.set(adjustmentsReturned.get());
+            }
+        });
+
+        Assert.assertEquals(createDispatcher().getAdditionalInvoiceItems(invoice, callContext).size(), 2);
+        Assert.assertTrue(taxCalledAfterAdjustments.get());
+
+        // Same ordering when calling plugins on the invoice thread
+        Mockito.when(invoiceConfig.isInvoicePluginConcurrentDispatch()).thenReturn(false);
+        adjustmentsReturned.set(false);
+        taxCalledAfterAdjustments.set(false);
+        Assert.assertEquals(createDispatcher().getAdditionalInvoiceItems(invoice, callContext).size(), 2);
+        Assert.assertTrue(taxCalledAfterAdjustments.get());
+    }
+
+    @Test(groups = "fast")
+    public void testTimeBudget() throws Exception {
+        Mockito.when(invoiceConfig.getInvoicePluginTimeouts()).thenReturn(ImmutableList.<String>of("slow-tax:100ms"));
+        registerPlugin("slow-tax", new StubInvoicePluginApi(createTaxItem("slow-tax")) {
+            @Override
+            protected void beforeReturning() throws InterruptedException {
+                Thread.sleep(10000);
+            }
+        });
+
+        try {
+            createDispatcher().getAdditionalInvoiceItems(invoice, callContext);
+            Assert.fail();
+        } catch (final InvoicePluginTimeoutException e) {
+            Assert.assertEquals(e.getPluginName(), "slow-tax");
+            Assert.assertEquals(e.getInvoiceId(), invoice.getId());
+            Assert.assertEquals(metricRegistry.counter(MetricRegistry.name(InvoicePluginDispatcher.class, "slow-tax", "getAdditionalInvoiceItems", "timeouts")).getCount(), 1);
+        }
+
+        // The budget applies when calling plugins one after the other as well
+        Mockito.when(invoiceConfig.isInvoicePluginConcurrentDispatch()).thenReturn(false);
+        try {
+            createDispatcher().getAdditionalInvoiceItems(invoice, callContext);
+            Assert.fail();
+        } catch (final InvoicePluginTimeoutException e) {
+            Assert.assertEquals(metricRegistry.counter(MetricRegistry.name(InvoicePluginDispatcher.class, "slow-tax", "getAdditionalInvoiceItems", "timeouts")).getCount(), 2);
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testSerialDispatchWithoutTimeBudgetIsInline() throws Exception {
+        Mockito.when(invoiceConfig.isInvoicePluginConcurrentDispatch()).thenReturn(false);
+
+        final List<Thread> callingThreads = new CopyOnWriteArrayList<Thread>();
+        registerPlugin("tax", new StubInvoicePluginApi(createTaxItem("tax")) {
+            @Override
+            protected void beforeReturning() {
+                callingThreads.add(Thread.currentThread());
+            }
+        });
+
+        // Plugin threads are all busy: the invoice run doesn't need them
+        final CountDownLatch pluginThreadsReleased = new CountDownLatch(1);
+        pluginExecutor.shutdownNow();
+        pluginExecutor = Executors.newFixedThreadPool(1);
+        pluginExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                pluginThreadsReleased.await();
+                return null;
+            }
+        });
+
+        try {
+            Assert.assertEquals(createDispatcher().getAdditionalInvoiceItems(invoice, callContext).size(), 1);
+            Assert.assertEquals(callingThreads, ImmutableList.<Thread>of(Thread.currentThread()));
+        } finally {
+            pluginThreadsReleased.countDown();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testTimeBudgetExcludesWaitingForAPluginThread() throws Exception {
+        Mockito.when(invoiceConfig.getInvoicePluginTimeouts()).thenReturn(ImmutableList.<String>of("tax:500ms"));
+        registerPlugin("tax", new StubInvoicePluginApi(createTaxItem("tax")));
+
+        // The only plugin thread is busy for longer than the budget of the plugin
+        pluginExecutor.shutdownNow();
+        pluginExecutor = Executors.newFixedThreadPool(1);
+        pluginExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Thread.sleep(1000);
+                return null;
+            }
+        });
+
+        Assert.assertEquals(createDispatcher().getAdditionalInvoiceItems(invoice, callContext).size(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testDependenciesSeeItemsFromPreviousStages() throws Exception {
+        Mockito.when(invoiceConfig.getInvoicePluginDependencies()).thenReturn(ImmutableList.<String>of("tax:adjustments"));
+
+        final InvoiceItem adjustmentItem = createTaxItem("adjustments");
+        final List<List<InvoiceItem>> itemsSeenByTax = new CopyOnWriteArrayList<List<InvoiceItem>>();
+        final List<List<InvoiceItem>> itemsSeenByAdjustments = new CopyOnWriteArrayList<List<InvoiceItem>>();
+        registerPlugin("adjustments", new StubInvoicePluginApi(adjustmentItem) {
+            @Override
+            protected void beforeReturning(final Invoice invoice) {
+                itemsSeenByAdjustments.add(ImmutableList.<InvoiceItem>copyOf(invoice.getInvoiceItems()));
+            }
+        });
+        registerPlugin("tax", new StubInvoicePluginApi(createTaxItem("tax")) {
+            @Override
+            protected void beforeReturning(final Invoice invoice) {
+                itemsSeenByTax.add(ImmutableList.<InvoiceItem>copyOf(invoice.getInvoiceItems()));
+            }
+        });
+
+        for (final boolean concurrentDispatch : new boolean[]{true, false}) {
+            Mockito.when(invoiceConfig.isInvoicePluginConcurrentDispatch()).thenReturn(concurrentDispatch);
+            Assert.assertEquals(createDispatcher().getAdditionalInvoiceItems(invoice, callContext).size(), 2);
+        }
+
+        Assert.assertEquals(itemsSeenByAdjustments, ImmutableList.<List<InvoiceItem>>of(ImmutableList.<InvoiceItem>of(), ImmutableList.<InvoiceItem>of()));
+        Assert.assertEquals(itemsSeenByTax, ImmutableList.<List<InvoiceItem>>of(ImmutableList.<InvoiceItem>of(adjustmentItem), ImmutableList.<InvoiceItem>of(adjustmentItem)));
+        // The original invoice is left untouched
+        Assert.assertTrue(invoice.getInvoiceItems().isEmpty());
+    }
+
+    private InvoicePluginDispatcher createDispatcher() {
+        return new InvoicePluginDispatcher(pluginRegistry, invoiceConfig, metricRegistry, pluginExecutor);
+    }
+
+    private InvoiceItem createTaxItem(final String description) {
+        return new TaxInvoiceItem(invoice.getId(), invoice.getAccountId(), null, description, invoice.getInvoiceDate(), BigDecimal.ONE, invoice.getCurrency());
+    }
+
+    private void registerPlugin(final String pluginName, final InvoicePluginApi invoicePluginApi) {
+        pluginRegistry.registerService(new OSGIServiceDescriptor() {
+            @Override
+            public String getPluginSymbolicName() {
+                return pluginName;
+            }
+
+            @Override
+            public String getRegistrationName() {
+                return pluginName;
+            }
+        }, invoicePluginApi);
+    }
+
+    private static class StubInvoicePluginApi implements InvoicePluginApi {
+
+        private final InvoiceItem item;
+
+        private StubInvoicePluginApi(final InvoiceItem item) {
+            this.item = item;
+        }
+
+        @Override
+        public List<InvoiceItem> getAdditionalInvoiceItems(final Invoice invoice, final Iterable<PluginProperty> properties, final CallContext context) {
+            try {
+                beforeReturning(invoice);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return ImmutableList.<InvoiceItem>of(item);
+        }
+
+        protected void beforeReturning(final Invoice invoice) throws InterruptedException {
+            beforeReturning();
+        }
+
+        protected void beforeReturning() throws InterruptedException {
+        }
+    }
+}
@@ -35,7 +35,9 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
+import org.killbill.billing.invoice.model.DefaultUnpaidInvoicesSummary;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.MockEntityDaoBase;
@@ -251,6 +253,10 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     public void consumeExstingCBAOnAccountWithUnpaidInvoices(final UUID accountId, final InternalCallContext context) {
     }
 
+    @Override
+    public void backfillInvoiceBalances() {
+    }
+
     @Override
     public BigDecimal getAccountBalance(final UUID accountId, final InternalTenantContext context) {
         BigDecimal balance = BigDecimal.ZERO;
@@ -277,6 +283,23 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return unpaidInvoices;
     }
 
+    @Override
+    public UnpaidInvoicesSummary getUnpaidInvoicesSummaryByAccountId(final UUID accountId, final LocalDate upToDate, final InternalTenantContext context) {
+        BigDecimal unpaidBalance = BigDecimal.ZERO;
+        InvoiceModelDao earliest = null;
+        final List<InvoiceModelDao> unpaidInvoices = getUnpaidInvoicesByAccountId(accountId, upToDate, context);
+        for (final InvoiceModelDao invoice : unpaidInvoices) {
+            unpaidBalance = unpaidBalance.add(InvoiceModelDaoHelper.getBalance(invoice));
+            if (earliest == null || invoice.getInvoiceDate().isBefore(earliest.getInvoiceDate())) {
+                earliest = invoice;
+            }
+        }
+
+        return new DefaultUnpaidInvoicesSummary(unpaidInvoices.size(), unpaidBalance,
+                                                earliest == null ? null : earliest.getInvoiceDate(),
+                                                earliest == null ? null : earliest.getId());
+    }
+
     @Override
     public List<InvoiceModelDao> getAllInvoicesByAccount(final InternalTenantContext context) {
         final List<InvoiceModelDao> result = new ArrayList<InvoiceModelDao>();
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.invoice.dao;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoicePaymentType;
+import org.killbill.billing.invoice.api.UnpaidInvoicesSummary;
+import org.killbill.billing.invoice.model.DefaultInvoice;
+import org.killbill.billing.invoice.model.DefaultInvoicePayment;
+import org.killbill.billing.invoice.model.RecurringInvoiceItem;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestInvoiceBalanceIndex extends InvoiceTestSuiteWithEmbeddedDB {
+
+    private static final LocalDate START_DATE = new LocalDate(2011, 3, 1);
+
+    private Account account;
+    private InternalCallContext context;
+    private InvoiceBalanceSqlDao invoiceBalanceSqlDao;
+
+    @BeforeMethod(groups = "slow")
+    public void setUp() throws Exception {
+        account = invoiceUtil.createAccount(callContext);
+        context = internalCallContextFactory.createInternalCallContext(account.getId(), callContext);
+        invoiceBalanceSqlDao = dbi.onDemand(InvoiceBalanceSqlDao.class);
+    }
+
+    @Test(groups = "slow", description = "The index is maintained by the invoice and payment writes")
+    public void testIndexIsMaintainedOnWrite() throws Exception {
+        final UUID invoiceId = createInvoiceWithItem(new BigDecimal("21.00"));
+        checkIndex(invoiceId, new BigDecimal("21.00"));
+        Assert.assertEquals(invoiceDao.getUnpaidInvoicesByAccountId(account.getId(), null, context).size(), 1);
+
+        invoiceDao.notifyOfPayment(new InvoicePaymentModelDao(new DefaultInvoicePayment(InvoicePaymentType.ATTEMPT, UUID.randomUUID(), invoiceId, clock.getUTCNow(),
+                                                                                         new BigDecimal("21.00"), Currency.USD, Currency.USD)), context);
+        Assert.assertTrue(invoiceBalanceSqlDao.getUnpaidByAccountRecordId(context).isEmpty());
+        Assert.assertTrue(invoiceDao.getUnpaidInvoicesByAccountId(account.getId(), null, context).isEmpty());
+    }
+
+    @Test(groups = "slow", description = "The unpaid invoices summary is aggregated from the index")
+    public void testUnpaidInvoicesSummary() throws Exception {
+        UnpaidInvoicesSummary summary = invoiceDao.getUnpaidInvoicesSummaryByAccountId(account.getId(), clock.getUTCToday(), context);
+        Assert.assertEquals(summary.getNumberOfUnpaidInvoices(), 0);
+        Assert.assertEquals(summary.getUnpaidInvoiceBalance().compareTo(BigDecimal.ZERO), 0);
+        Assert.assertNull(summary.getDateOfEarliestUnpaidInvoice());
+        Assert.assertNull(summary.getIdOfEarliestUnpaidInvoice());
+
+        final UUID firstInvoiceId = createInvoiceWithItem(new BigDecimal("21.00"), clock.getUTCToday().minusDays(1));
+        createInvoiceWithItem(new BigDecimal("5.00"), clock.getUTCToday());
+
+        summary = invoiceDao.getUnpaidInvoicesSummaryByAccountId(account.getId(), clock.getUTCToday(), context);
+        Assert.assertEquals(summary.getNumberOfUnpaidInvoices(), 2);
+        Assert.assertEquals(summary.getUnpaidInvoiceBalance().compareTo(new BigDecimal("26.00")), 0);
+        Assert.assertEquals(summary.getDateOfEarliestUnpaidInvoice(), clock.getUTCToday().minusDays(1));
+        Assert.assertEquals(summary.getIdOfEarliestUnpaidInvoice(), firstInvoiceId);
+
+        // Invoices with a target date after the cut-off date are left out
+        summary = invoiceDao.getUnpaidInvoicesSummaryByAccountId(account.getId(), clock.getUTCToday().minusDays(1), context);
+        Assert.assertEquals(summary.getNumberOfUnpaidInvoices(), 1);
+        Assert.assertEquals(summary.getUnpaidInvoiceBalance().compareTo(new BigDecimal("21.00")), 0);
+    }
+
+    @Test(groups = "slow", description = "Invoices created before the index existed are indexed by the backfill, which can be resumed")
+    public void testBackfill() throws Exception {
+        final UUID firstInvoiceId = createInvoiceWithItem(new BigDecimal("21.00"));
+        final UUID secondInvoiceId = createInvoiceWithItem(new BigDecimal("5.00"));
+
+        // Simulate an upgrade (see invoice_balances_migration.sql), interrupted after the first invoice
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("delete from invoice_balances where invoice_id = ?", secondInvoiceId.toString());
+                handle.execute("insert into invoice_balances_backfill (next_invoice_record_id, last_invoice_record_id) select max(record_id), max(record_id) from invoices");
+                return null;
+            }
+        });
+        Assert.assertEquals(invoiceDao.getUnpaidInvoicesByAccountId(account.getId(), null, context).size(), 1);
+
+        invoiceDao.backfillInvoiceBalances();
+
+        checkIndex(firstInvoiceId, new BigDecimal("21.00"));
+        checkIndex(secondInvoiceId, new BigDecimal("5.00"));
+        Assert.assertEquals(invoiceDao.getUnpaidInvoicesByAccountId(account.getId(), null, context).size(), 2);
+        Assert.assertNull(invoiceBalanceSqlDao.getBackfillNextInvoiceRecordId());
+
+        // Nothing left to do
+        invoiceDao.backfillInvoiceBalances();
+        Assert.assertEquals(invoiceBalanceSqlDao.getUnpaidByAccountRecordId(context).size(), 2);
+    }
+
+    private UUID createInvoiceWithItem(final BigDecimal amount) {
+        return createInvoiceWithItem(amount, clock.getUTCToday());
+    }
+
+    private UUID createInvoiceWithItem(final BigDecimal amount, final LocalDate invoiceDate) {
+        final Invoice invoice = new DefaultInvoice(account.getId(), invoiceDate, invoiceDate, Currency.USD);
+        invoice.addInvoiceItem(new RecurringInvoiceItem(invoice.getId(), account.getId(), UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase A", START_DATE, START_DATE.plusMonths(1),
+                                                        amount, amount, Currency.USD));
+        invoiceUtil.createInvoice(invoice, true, context);
+        return invoice.getId();
+    }
+
+    private void checkIndex(final UUID invoiceId, final BigDecimal expectedBalance) {
+        InvoiceBalanceModelDao found = null;
+        for (final InvoiceBalanceModelDao invoiceBalance : invoiceBalanceSqlDao.getUnpaidByAccountRecordId(context)) {
+            if (invoiceBalance.getInvoiceId().equals(invoiceId)) {
+                found = invoiceBalance;
+            }
+        }
+        Assert.assertNotNull(found);
+        Assert.assertEquals(found.getBalance().compareTo(expectedBalance), 0);
+        Assert.assertEquals(found.getCurrency(), Currency.USD);
+    }
+}
@@ -73,6 +73,8 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.killbill.billing.invoice.TestInvoiceHelper.EIGHT;
 import static org.killbill.billing.invoice.TestInvoiceHelper.FIFTEEN;
 import static org.killbill.billing.invoice.TestInvoiceHelper.FIVE;
@@ -127,6 +129,36 @@ public class TestDefaultInvoiceGenerator extends InvoiceTestSuiteNoDB {
             public int getMaxRawUsagePreviousPeriod() {
                 return -1;
             }
+
+            @Override
+            public int getInvoiceRenderingThreadNb() {
+                return 1;
+            }
+
+            @Override
+            public boolean isInvoicePluginConcurrentDispatch() {
+                return false;
+            }
+
+            @Override
+            public int getInvoicePluginThreadNb() {
+                return 1;
+            }
+
+            @Override
+            public TimeSpan getInvoicePluginTimeout() {
+                return new TimeSpan("0s");
+            }
+
+            @Override
+            public List<String> getInvoicePluginTimeouts() {
+                return ImmutableList.<String>of();
+            }
+
+            @Override
+            public List<String> getInvoicePluginDependencies() {
+                return ImmutableList.<String>of();
+            }
         };
         this.generator = new DefaultInvoiceGenerator(clock, invoiceConfig, null);
         this.account = new MockAccountBuilder().name(UUID.randomUUID().toString().substring(1, 8))
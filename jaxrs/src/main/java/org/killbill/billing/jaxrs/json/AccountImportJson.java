@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+// One record of an import file: an account and the subscriptions to create for it (ADD_ON subscriptions go into the bundle of the previous BASE one)
+public class AccountImportJson {
+
+    private final AccountJson account;
+    private final List<SubscriptionJson> subscriptions;
+
+    @JsonCreator
+    public AccountImportJson(@JsonProperty("account") final AccountJson account,
+                             @JsonProperty("subscriptions") @Nullable final List<SubscriptionJson> subscriptions) {
+        this.account = account;
+        this.subscriptions = subscriptions == null ? ImmutableList.<SubscriptionJson>of() : subscriptions;
+    }
+
+    public AccountJson getAccount() {
+        return account;
+    }
+
+    public List<SubscriptionJson> getSubscriptions() {
+        return subscriptions;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AccountImportJson{");
+        sb.append("account=").append(account);
+        sb.append(", subscriptions=").append(subscriptions);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final AccountImportJson that = (AccountImportJson) o;
+
+        if (account != null ? !account.equals(that.account) : that.account != null) {
+            return false;
+        }
+        if (subscriptions != null ? !subscriptions.equals(that.subscriptions) : that.subscriptions != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = account != null ? account.hashCode() : 0;
+        result = 31 * result + (subscriptions != null ? subscriptions.hashCode() : 0);
+        return result;
+    }
+}
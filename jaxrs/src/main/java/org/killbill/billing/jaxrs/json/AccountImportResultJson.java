@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+public class AccountImportResultJson {
+
+    public enum ImportStatus {
+        // Account (and subscriptions) created, or subscriptions created for an existing account which didn't have any
+        CREATED,
+        // An account with the same external key already exists (and has subscriptions, if the record has some), nothing was imported
+        ALREADY_EXISTS,
+        // The record couldn't be parsed or validated, nothing was imported
+        INVALID,
+        // The record couldn't be imported, or only partially: the account was created (see accountId) but not all of its subscriptions
+        FAILED,
+        // All records up to (and including) lineNumber have been processed
+        CHECKPOINT
+    }
+
+    private final Long lineNumber;
+    private final ImportStatus status;
+    private final String externalKey;
+    @ApiModelProperty(dataType = "java.util.UUID")
+    private final String accountId;
+    private final List<String> subscriptionIds;
+    private final String errorMessage;
+
+    @JsonCreator
+    public AccountImportResultJson(@JsonProperty("lineNumber") final Long lineNumber,
+                                   @JsonProperty("status") final ImportStatus status,
+                                   @JsonProperty("externalKey") @Nullable final String externalKey,
+                                   @JsonProperty("accountId") @Nullable final String accountId,
+                                   @JsonProperty("subscriptionIds") @Nullable final List<String> subscriptionIds,
+                                   @JsonProperty("errorMessage") @Nullable final String errorMessage) {
+        this.lineNumber = lineNumber;
+        this.status = status;
+        this.externalKey = externalKey;
+        this.accountId = accountId;
+        this.subscriptionIds = subscriptionIds;
+        this.errorMessage = errorMessage;
+    }
+
+    public static AccountImportResultJson checkpoint(final long lineNumber) {
+        return new AccountImportResultJson(lineNumber, ImportStatus.CHECKPOINT, null, null, null, null);
+    }
+
+    public Long getLineNumber() {
+        return lineNumber;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public String getExternalKey() {
+        return externalKey;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public List<String> getSubscriptionIds() {
+        return subscriptionIds;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AccountImportResultJson{");
+        sb.append("lineNumber=").append(lineNumber);
+        sb.append(", status=").append(status);
+        sb.append(", externalKey='").append(externalKey).append('\'');
+        sb.append(", accountId='").append(accountId).append('\'');
+        sb.append(", subscriptionIds=").append(subscriptionIds);
+        sb.append(", errorMessage='").append(errorMessage).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final AccountImportResultJson that = (AccountImportResultJson) o;
+
+        if (accountId != null ? !accountId.equals(that.accountId) : that.accountId != null) {
+            return false;
+        }
+        if (errorMessage != null ? !errorMessage.equals(that.errorMessage) : that.errorMessage != null) {
+            return false;
+        }
+        if (externalKey != null ? !externalKey.equals(that.externalKey) : that.externalKey != null) {
+            return false;
+        }
+        if (lineNumber != null ? !lineNumber.equals(that.lineNumber) : that.lineNumber != null) {
+            return false;
+        }
+        if (status != that.status) {
+            return false;
+        }
+        if (subscriptionIds != null ? !subscriptionIds.equals(that.subscriptionIds) : that.subscriptionIds != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = lineNumber != null ? lineNumber.hashCode() : 0;
+        result = 31 * result + (status != null ? status.hashCode() : 0);
+        result = 31 * result + (externalKey != null ? externalKey.hashCode() : 0);
+        result = 31 * result + (accountId != null ? accountId.hashCode() : 0);
+        result = 31 * result + (subscriptionIds != null ? subscriptionIds.hashCode() : 0);
+        result = 31 * result + (errorMessage != null ? errorMessage.hashCode() : 0);
+        return result;
+    }
+}
@@ -18,9 +18,9 @@
 
 package org.killbill.billing.jaxrs.json;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -38,6 +38,10 @@ import org.killbill.billing.util.audit.AuditLog;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 public class AccountTimelineJson {
 
@@ -64,37 +68,81 @@ public class AccountTimelineJson {
                                final List<SubscriptionBundle> bundles,
                                final AccountAuditLogs accountAuditLogs) {
         this.account = new AccountJson(account, null, null, accountAuditLogs);
-        this.bundles = new LinkedList<BundleJson>();
-        for (final SubscriptionBundle bundle : bundles) {
-            final BundleJson jsonWithSubscriptions = new BundleJson(bundle, accountAuditLogs);
-            this.bundles.add(jsonWithSubscriptions);
-        }
+        this.bundles = Lists.newLinkedList(toBundlesJson(bundles, accountAuditLogs));
+        this.invoices = Lists.newLinkedList(toInvoicesJson(invoices, bundles, accountAuditLogs));
+        this.payments = Lists.newLinkedList(toPaymentsJson(payments, invoicePayments, accountAuditLogs));
+    }
 
-        this.invoices = new LinkedList<InvoiceJson>();
-        // Extract the credits from the invoices first
-        final List<CreditJson> credits = new ArrayList<CreditJson>();
-        for (final Invoice invoice : invoices) {
-            for (final InvoiceItem invoiceItem : invoice.getInvoiceItems()) {
-                if (InvoiceItemType.CREDIT_ADJ.equals(invoiceItem.getInvoiceItemType())) {
-                    final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoiceItem(invoiceItem.getId());
-                    credits.add(new CreditJson(invoice, invoiceItem, auditLogs));
-                }
-            }
+    // Same output as serializing the AccountTimelineJson, but one element at a time
+    public static void writeTimeline(final JsonGenerator generator,
+                                     final Account account,
+                                     final List<Invoice> invoices,
+                                     final List<Payment> payments,
+                                     final List<InvoicePayment> invoicePayments,
+                                     final List<SubscriptionBundle> bundles,
+                                     final AccountAuditLogs accountAuditLogs) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeFieldName("account");
+        generator.writeObject(new AccountJson(account, null, null, accountAuditLogs));
+
+        generator.writeArrayFieldStart("bundles");
+        for (final BundleJson bundleJson : toBundlesJson(bundles, accountAuditLogs)) {
+            generator.writeObject(bundleJson);
         }
-        // Create now the invoice json objects
-        for (final Invoice invoice : invoices) {
-            final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoice(invoice.getId());
-            this.invoices.add(new InvoiceJson(invoice,
-                                              getBundleExternalKey(invoice, bundles),
-                                              credits,
-                                              auditLogs));
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("invoices");
+        for (final InvoiceJson invoiceJson : toInvoicesJson(invoices, bundles, accountAuditLogs)) {
+            generator.writeObject(invoiceJson);
         }
+        generator.writeEndArray();
 
-        this.payments = new LinkedList<InvoicePaymentJson>();
-        for (final Payment payment : payments) {
-            final UUID invoiceId = JaxRsResourceBase.getInvoiceId(invoicePayments, payment);
-            this.payments.add(new InvoicePaymentJson(payment, invoiceId, accountAuditLogs));
+        generator.writeArrayFieldStart("payments");
+        for (final InvoicePaymentJson invoicePaymentJson : toPaymentsJson(payments, invoicePayments, accountAuditLogs)) {
+            generator.writeObject(invoicePaymentJson);
         }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private static Iterable<BundleJson> toBundlesJson(final List<SubscriptionBundle> bundles, final AccountAuditLogs accountAuditLogs) {
+        return Iterables.<SubscriptionBundle, BundleJson>transform(bundles,
+                                                                   new Function<SubscriptionBundle, BundleJson>() {
+                                                                       @Override
+                                                                       public BundleJson apply(final SubscriptionBundle bundle) {
+                                                                           return new BundleJson(bundle, accountAuditLogs);
+                                                                       }
+                                                                   });
+    }
+
+    private static Iterable<InvoiceJson> toInvoicesJson(final List<Invoice> invoices, final List<SubscriptionBundle> bundles, final AccountAuditLogs accountAuditLogs) {
+        // Extract the credits from the invoices first
+        final List<CreditJson> credits = extractCredits(invoices, accountAuditLogs);
+        // Create now the invoice json objects
+        return Iterables.<Invoice, InvoiceJson>transform(invoices,
+                                                         new Function<Invoice, InvoiceJson>() {
+                                                             @Override
+                                                             public InvoiceJson apply(final Invoice invoice) {
+                                                                 final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoice(invoice.getId());
+                                                                 return new InvoiceJson(invoice,
+                                                                                        getBundleExternalKey(invoice, bundles),
+                                                                                        credits,
+                                                                                        auditLogs);
+                                                             }
+                                                         });
+    }
+
+    private static Iterable<InvoicePaymentJson> toPaymentsJson(final List<Payment> payments, final List<InvoicePayment> invoicePayments, final AccountAuditLogs accountAuditLogs) {
+        return Iterables.<Payment, InvoicePaymentJson>transform(payments,
+                                                                new Function<Payment, InvoicePaymentJson>() {
+                                                                    @Override
+                                                                    public InvoicePaymentJson apply(final Payment payment) {
+                                                                        final UUID invoiceId = JaxRsResourceBase.getInvoiceId(invoicePayments, payment);
+                                                                        return new InvoicePaymentJson(payment, invoiceId, accountAuditLogs);
+                                                                    }
+                                                                });
     }
 
     public AccountJson getAccount() {
@@ -161,19 +209,20 @@ public class AccountTimelineJson {
         return result;
     }
 
-    private String getBundleExternalKey(final UUID invoiceId, final List<Invoice> invoices, final List<SubscriptionBundle> bundles) {
-        if (invoiceId == null) {
-            return null;
-        }
-        for (final Invoice cur : invoices) {
-            if (cur.getId().equals(invoiceId)) {
-                return getBundleExternalKey(cur, bundles);
+    public static List<CreditJson> extractCredits(final Iterable<Invoice> invoices, final AccountAuditLogs accountAuditLogs) {
+        final List<CreditJson> credits = new ArrayList<CreditJson>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem invoiceItem : invoice.getInvoiceItems()) {
+                if (InvoiceItemType.CREDIT_ADJ.equals(invoiceItem.getInvoiceItemType())) {
+                    final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoiceItem(invoiceItem.getId());
+                    credits.add(new CreditJson(invoice, invoiceItem, auditLogs));
+                }
             }
         }
-        return null;
+        return credits;
     }
 
-    private String getBundleExternalKey(final Invoice invoice, final List<SubscriptionBundle> bundles) {
+    public static String getBundleExternalKey(final Invoice invoice, final List<SubscriptionBundle> bundles) {
         final Set<UUID> b = new HashSet<UUID>();
         for (final InvoiceItem cur : invoice.getInvoiceItems()) {
             b.add(cur.getBundleId());
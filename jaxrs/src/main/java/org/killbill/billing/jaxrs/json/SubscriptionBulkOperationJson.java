@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.entitlement.EntitlementBulkOperation;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+public class SubscriptionBulkOperationJson {
+
+    @ApiModelProperty(required = true, allowableValues = "CHANGE_PLAN, CANCEL, UNCANCEL")
+    private final String changeType;
+    @ApiModelProperty(dataType = "java.util.UUID", required = true)
+    private final String subscriptionId;
+    private final String productName;
+    private final String billingPeriod;
+    private final String priceList;
+    private final LocalDate requestedDate;
+    private final String billingPolicy;
+
+    @JsonCreator
+    public SubscriptionBulkOperationJson(@JsonProperty("changeType") final String changeType,
+                                         @JsonProperty("subscriptionId") final String subscriptionId,
+                                         @JsonProperty("productName") @Nullable final String productName,
+                                         @JsonProperty("billingPeriod") @Nullable final String billingPeriod,
+                                         @JsonProperty("priceList") @Nullable final String priceList,
+                                         @JsonProperty("requestedDate") @Nullable final LocalDate requestedDate,
+                                         @JsonProperty("billingPolicy") @Nullable final String billingPolicy) {
+        this.changeType = changeType;
+        this.subscriptionId = subscriptionId;
+        this.productName = productName;
+        this.billingPeriod = billingPeriod;
+        this.priceList = priceList;
+        this.requestedDate = requestedDate;
+        this.billingPolicy = billingPolicy;
+    }
+
+    public EntitlementBulkOperation toEntitlementBulkOperation() {
+        return new EntitlementBulkOperation(ChangeType.valueOf(changeType),
+                                            UUID.fromString(subscriptionId),
+                                            productName,
+                                            billingPeriod == null ? null : BillingPeriod.valueOf(billingPeriod),
+                                            priceList,
+                                            requestedDate,
+                                            billingPolicy == null ? null : BillingActionPolicy.valueOf(billingPolicy.toUpperCase()));
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getBillingPeriod() {
+        return billingPeriod;
+    }
+
+    public String getPriceList() {
+        return priceList;
+    }
+
+    public LocalDate getRequestedDate() {
+        return requestedDate;
+    }
+
+    public String getBillingPolicy() {
+        return billingPolicy;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SubscriptionBulkOperationJson{");
+        sb.append("changeType='").append(changeType).append('\'');
+        sb.append(", subscriptionId='").append(subscriptionId).append('\'');
+        sb.append(", productName='").append(productName).append('\'');
+        sb.append(", billingPeriod='").append(billingPeriod).append('\'');
+        sb.append(", priceList='").append(priceList).append('\'');
+        sb.append(", requestedDate=").append(requestedDate);
+        sb.append(", billingPolicy='").append(billingPolicy).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final SubscriptionBulkOperationJson that = (SubscriptionBulkOperationJson) o;
+
+        if (billingPeriod != null ? !billingPeriod.equals(that.billingPeriod) : that.billingPeriod != null) {
+            return false;
+        }
+        if (billingPolicy != null ? !billingPolicy.equals(that.billingPolicy) : that.billingPolicy != null) {
+            return false;
+        }
+        if (changeType != null ? !changeType.equals(that.changeType) : that.changeType != null) {
+            return false;
+        }
+        if (priceList != null ? !priceList.equals(that.priceList) : that.priceList != null) {
+            return false;
+        }
+        if (productName != null ? !productName.equals(that.productName) : that.productName != null) {
+            return false;
+        }
+        if (requestedDate != null ? requestedDate.compareTo(that.requestedDate) != 0 : that.requestedDate != null) {
+            return false;
+        }
+        if (subscriptionId != null ? !subscriptionId.equals(that.subscriptionId) : that.subscriptionId != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = changeType != null ? changeType.hashCode() : 0;
+        result = 31 * result + (subscriptionId != null ? subscriptionId.hashCode() : 0);
+        result = 31 * result + (productName != null ? productName.hashCode() : 0);
+        result = 31 * result + (billingPeriod != null ? billingPeriod.hashCode() : 0);
+        result = 31 * result + (priceList != null ? priceList.hashCode() : 0);
+        result = 31 * result + (requestedDate != null ? requestedDate.hashCode() : 0);
+        result = 31 * result + (billingPolicy != null ? billingPolicy.hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+public class SubscriptionBulkResultJson {
+
+    @ApiModelProperty(dataType = "java.util.UUID")
+    private final String subscriptionId;
+    private final Boolean isSuccess;
+    private final DateTime effectiveDate;
+    private final Integer errorCode;
+    private final String errorMessage;
+
+    @JsonCreator
+    public SubscriptionBulkResultJson(@JsonProperty("subscriptionId") final String subscriptionId,
+                                      @JsonProperty("isSuccess") final Boolean isSuccess,
+                                      @JsonProperty("effectiveDate") @Nullable final DateTime effectiveDate,
+                                      @JsonProperty("errorCode") @Nullable final Integer errorCode,
+                                      @JsonProperty("errorMessage") @Nullable final String errorMessage) {
+        this.subscriptionId = subscriptionId;
+        this.isSuccess = isSuccess;
+        this.effectiveDate = effectiveDate;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public SubscriptionBulkResultJson(final SubscriptionBaseBulkChangeResult result) {
+        this(result.getSubscriptionId().toString(),
+             result.isSuccess(),
+             result.getEffectiveDate(),
+             result.getErrorCode(),
+             result.getErrorMessage());
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    @JsonProperty("isSuccess")
+    public Boolean isSuccess() {
+        return isSuccess;
+    }
+
+    public DateTime getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    public Integer getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SubscriptionBulkResultJson{");
+        sb.append("subscriptionId='").append(subscriptionId).append('\'');
+        sb.append(", isSuccess=").append(isSuccess);
+        sb.append(", effectiveDate=").append(effectiveDate);
+        sb.append(", errorCode=").append(errorCode);
+        sb.append(", errorMessage='").append(errorMessage).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final SubscriptionBulkResultJson that = (SubscriptionBulkResultJson) o;
+
+        if (effectiveDate != null ? effectiveDate.compareTo(that.effectiveDate) != 0 : that.effectiveDate != null) {
+            return false;
+        }
+        if (errorCode != null ? !errorCode.equals(that.errorCode) : that.errorCode != null) {
+            return false;
+        }
+        if (errorMessage != null ? !errorMessage.equals(that.errorMessage) : that.errorMessage != null) {
+            return false;
+        }
+        if (isSuccess != null ? !isSuccess.equals(that.isSuccess) : that.isSuccess != null) {
+            return false;
+        }
+        if (subscriptionId != null ? !subscriptionId.equals(that.subscriptionId) : that.subscriptionId != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = subscriptionId != null ? subscriptionId.hashCode() : 0;
+        result = 31 * result + (isSuccess != null ? isSuccess.hashCode() : 0);
+        result = 31 * result + (effectiveDate != null ? effectiveDate.hashCode() : 0);
+        result = 31 * result + (errorCode != null ? errorCode.hashCode() : 0);
+        result = 31 * result + (errorMessage != null ? errorMessage.hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.util.export.api.TenantExport;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class TenantExportJson {
+
+    private final String exportName;
+    private final String state;
+    private final String directory;
+    private final DateTime since;
+    private final DateTime startedDate;
+    private final List<String> chunkFiles;
+
+    @JsonCreator
+    public TenantExportJson(@JsonProperty("exportName") final String exportName,
+                            @JsonProperty("state") final String state,
+                            @JsonProperty("directory") final String directory,
+                            @JsonProperty("since") @Nullable final DateTime since,
+                            @JsonProperty("startedDate") final DateTime startedDate,
+                            @JsonProperty("chunkFiles") final List<String> chunkFiles) {
+        this.exportName = exportName;
+        this.state = state;
+        this.directory = directory;
+        this.since = since;
+        this.startedDate = startedDate;
+        this.chunkFiles = chunkFiles;
+    }
+
+    public TenantExportJson(final TenantExport tenantExport) {
+        this(tenantExport.getExportName(),
+             tenantExport.getState().toString(),
+             tenantExport.getDirectory(),
+             tenantExport.getSince(),
+             tenantExport.getStartedDate(),
+             tenantExport.getChunkFiles());
+    }
+
+    public String getExportName() {
+        return exportName;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public DateTime getSince() {
+        return since;
+    }
+
+    public DateTime getStartedDate() {
+        return startedDate;
+    }
+
+    public List<String> getChunkFiles() {
+        return chunkFiles;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TenantExportJson{");
+        sb.append("exportName='").append(exportName).append('\'');
+        sb.append(", state='").append(state).append('\'');
+        sb.append(", directory='").append(directory).append('\'');
+        sb.append(", since=").append(since);
+        sb.append(", startedDate=").append(startedDate);
+        sb.append(", chunkFiles=").append(chunkFiles);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final TenantExportJson that = (TenantExportJson) o;
+
+        if (chunkFiles != null ? !chunkFiles.equals(that.chunkFiles) : that.chunkFiles != null) {
+            return false;
+        }
+        if (directory != null ? !directory.equals(that.directory) : that.directory != null) {
+            return false;
+        }
+        if (exportName != null ? !exportName.equals(that.exportName) : that.exportName != null) {
+            return false;
+        }
+        if (state != null ? !state.equals(that.state) : that.state != null) {
+            return false;
+        }
+        if (since != null ? since.compareTo(that.since) != 0 : that.since != null) {
+            return false;
+        }
+        if (startedDate != null ? startedDate.compareTo(that.startedDate) != 0 : that.startedDate != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = exportName != null ? exportName.hashCode() : 0;
+        result = 31 * result + (state != null ? state.hashCode() : 0);
+        result = 31 * result + (directory != null ? directory.hashCode() : 0);
+        result = 31 * result + (since != null ? since.hashCode() : 0);
+        result = 31 * result + (startedDate != null ? startedDate.hashCode() : 0);
+        result = 31 * result + (chunkFiles != null ? chunkFiles.hashCode() : 0);
+        return result;
+    }
+}
@@ -27,6 +27,7 @@ import javax.ws.rs.ext.Provider;
 
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoicePluginTimeoutException;
 
 @Singleton
 @Provider
@@ -40,7 +41,9 @@ public class InvoiceApiExceptionMapper extends ExceptionMapperBase implements Ex
 
     @Override
     public Response toResponse(final InvoiceApiException exception) {
-        if (exception.getCode() == ErrorCode.INVOICE_ACCOUNT_ID_INVALID.getCode()) {
+        if (exception instanceof InvoicePluginTimeoutException) {
+            return buildPluginTimeoutResponse(exception, uriInfo);
+        } else if (exception.getCode() == ErrorCode.INVOICE_ACCOUNT_ID_INVALID.getCode()) {
             return buildBadRequestResponse(exception, uriInfo);
         } else if (exception.getCode() == ErrorCode.INVOICE_INVALID_DATE_SEQUENCE.getCode()) {
             return buildBadRequestResponse(exception, uriInfo);
@@ -58,6 +58,8 @@ public class PaymentApiExceptionMapper extends ExceptionMapperBase implements Ex
             return buildNotFoundResponse(exception, uriInfo);
         } else if (exception.getCode() == ErrorCode.PAYMENT_NO_SUCH_PAYMENT_METHOD.getCode()) {
             return buildNotFoundResponse(exception, uriInfo);
+        } else if (exception.getCode() == ErrorCode.PAYMENT_NO_SUCH_PAYMENT_PLUGIN.getCode()) {
+            return buildNotFoundResponse(exception, uriInfo);
         } else if (exception.getCode() == ErrorCode.PAYMENT_NO_SUCH_SUCCESS_PAYMENT.getCode()) {
             return buildNotFoundResponse(exception, uriInfo);
         } else if (exception.getCode() == ErrorCode.PAYMENT_NULL_INVOICE.getCode()) {
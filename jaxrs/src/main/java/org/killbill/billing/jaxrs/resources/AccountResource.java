@@ -18,6 +18,8 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.util.ArrayList;
@@ -26,6 +28,12 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -39,8 +47,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.killbill.billing.ErrorCode;
@@ -74,6 +84,7 @@ import org.killbill.billing.jaxrs.json.PaymentMethodJson;
 import org.killbill.billing.jaxrs.json.PaymentTransactionJson;
 import org.killbill.billing.jaxrs.json.TagJson;
 import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.overdue.OverdueInternalApi;
 import org.killbill.billing.overdue.api.OverdueApiException;
@@ -102,6 +113,7 @@ import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.clock.Clock;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
@@ -129,6 +141,7 @@ public class AccountResource extends JaxRsResourceBase {
     private final InvoicePaymentApi invoicePaymentApi;
     private final OverdueInternalApi overdueApi;
     private final PaymentConfig paymentConfig;
+    private final JaxrsExecutors jaxrsExecutors;
 
     @Inject
     public AccountResource(final JaxrsUriBuilder uriBuilder,
@@ -143,6 +156,7 @@ public class AccountResource extends JaxRsResourceBase {
                            final OverdueInternalApi overdueApi,
                            final Clock clock,
                            final PaymentConfig paymentConfig,
+                           final JaxrsExecutors jaxrsExecutors,
                            final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountApi, paymentApi, clock, context);
         this.subscriptionApi = subscriptionApi;
@@ -150,6 +164,7 @@ public class AccountResource extends JaxRsResourceBase {
         this.invoicePaymentApi = invoicePaymentApi;
         this.overdueApi = overdueApi;
         this.paymentConfig = paymentConfig;
+        this.jaxrsExecutors = jaxrsExecutors;
     }
 
     @Timed
@@ -369,24 +384,108 @@ public class AccountResource extends JaxRsResourceBase {
         final UUID accountId = UUID.fromString(accountIdString);
         final Account account = accountUserApi.getAccountById(accountId, tenantContext);
 
+        // The reads below are independent: issue them in parallel
+        final ExecutorService executor = jaxrsExecutors.getJaxrsExecutorService();
+
         // Get the invoices
-        final List<Invoice> invoices = invoiceApi.getInvoicesByAccount(account.getId(), tenantContext);
+        final Future<List<Invoice>> invoicesFuture = executor.submit(new Callable<List<Invoice>>() {
+            @Override
+            public List<Invoice> call() throws Exception {
+                return invoiceApi.getInvoicesByAccount(accountId, tenantContext);
+            }
+        });
 
         // Get the payments
-        final List<Payment> payments = paymentApi.getAccountPayments(accountId, false, ImmutableList.<PluginProperty>of(), tenantContext);
+        final Future<List<Payment>> paymentsFuture = executor.submit(new Callable<List<Payment>>() {
+            @Override
+            public List<Payment> call() throws Exception {
+                return paymentApi.getAccountPayments(accountId, false, ImmutableList.<PluginProperty>of(), tenantContext);
+            }
+        });
 
         // Get the bundles
-        final List<SubscriptionBundle> bundles = subscriptionApi.getSubscriptionBundlesForAccountId(account.getId(), tenantContext);
+        final Future<List<SubscriptionBundle>> bundlesFuture = executor.submit(new Callable<List<SubscriptionBundle>>() {
+            @Override
+            public List<SubscriptionBundle> call() throws Exception {
+                return subscriptionApi.getSubscriptionBundlesForAccountId(accountId, tenantContext);
+            }
+        });
 
         // Get all audit logs
-        final AccountAuditLogs accountAuditLogs = auditUserApi.getAccountAuditLogs(accountId, auditMode.getLevel(), tenantContext);
+        final Future<AccountAuditLogs> accountAuditLogsFuture = executor.submit(new Callable<AccountAuditLogs>() {
+            @Override
+            public AccountAuditLogs call() throws Exception {
+                return auditUserApi.getAccountAuditLogs(accountId, auditMode.getLevel(), tenantContext);
+            }
+        });
 
-        final List<InvoicePayment> invoicePayments = invoicePaymentApi.getInvoicePaymentsByAccount(accountId, tenantContext);
-        final AccountTimelineJson json = new AccountTimelineJson(account, invoices, payments, invoicePayments, bundles,
-                                                                 accountAuditLogs);
+        final Future<List<InvoicePayment>> invoicePaymentsFuture = executor.submit(new Callable<List<InvoicePayment>>() {
+            @Override
+            public List<InvoicePayment> call() throws Exception {
+                return invoicePaymentApi.getInvoicePaymentsByAccount(accountId, tenantContext);
+            }
+        });
+
+        final List<Invoice> invoices;
+        final List<Payment> payments;
+        final List<SubscriptionBundle> bundles;
+        final AccountAuditLogs accountAuditLogs;
+        final List<InvoicePayment> invoicePayments;
+        boolean completed = false;
+        try {
+            final long deadline = System.currentTimeMillis() + jaxrsExecutors.getJaxrsTimeoutMillis();
+            invoices = waitForTimelineFuture(invoicesFuture, deadline);
+            payments = waitForTimelineFuture(paymentsFuture, deadline);
+            bundles = waitForTimelineFuture(bundlesFuture, deadline);
+            accountAuditLogs = waitForTimelineFuture(accountAuditLogsFuture, deadline);
+            invoicePayments = waitForTimelineFuture(invoicePaymentsFuture, deadline);
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Don't let the other reads run (or wait in the queue) for nothing
+                for (final Future<?> future : ImmutableList.<Future<?>>of(invoicesFuture, paymentsFuture, bundlesFuture, accountAuditLogsFuture, invoicePaymentsFuture)) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        // Serialize the timeline one element at a time, instead of building the full AccountTimelineJson first
+        final StreamingOutput json = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                final JsonGenerator generator = mapper.getFactory().createJsonGenerator(output);
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                AccountTimelineJson.writeTimeline(generator, account, invoices, payments, invoicePayments, bundles, accountAuditLogs);
+                generator.close();
+            }
+        };
         return Response.status(Status.OK).entity(json).build();
     }
 
+    private <T> T waitForTimelineFuture(final Future<T> future, final long deadline) throws AccountApiException, PaymentApiException, SubscriptionApiException {
+        try {
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+        } catch (final TimeoutException e) {
+            throw new WebApplicationException(e, Status.SERVICE_UNAVAILABLE);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof AccountApiException) {
+                throw (AccountApiException) cause;
+            } else if (cause instanceof PaymentApiException) {
+                throw (PaymentApiException) cause;
+            } else if (cause instanceof SubscriptionApiException) {
+                throw (SubscriptionApiException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new WebApplicationException(cause, Status.INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
     /*
     * ************************** EMAIL NOTIFICATIONS FOR INVOICES ********************************
     */
@@ -17,30 +17,49 @@
 package org.killbill.billing.jaxrs.resources;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.customfield.CustomFieldInternalApi;
 import org.killbill.billing.jaxrs.json.CustomFieldJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.util.api.AuditLevel;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.api.TagUserApi;
+import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.customfield.CustomField;
+import org.killbill.billing.util.customfield.StringCustomField;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.clock.Clock;
 
@@ -51,6 +70,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
@@ -60,8 +80,13 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Api(value = JaxrsResource.CUSTOM_FIELDS_PATH, description = "Operations on custom fields")
 public class CustomFieldResource extends JaxRsResourceBase {
 
+    private final CustomFieldInternalApi customFieldInternalApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+
     @Inject
-    public CustomFieldResource(final JaxrsUriBuilder uriBuilder,
+    public CustomFieldResource(final CustomFieldInternalApi customFieldInternalApi,
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final JaxrsUriBuilder uriBuilder,
                                final TagUserApi tagUserApi,
                                final CustomFieldUserApi customFieldUserApi,
                                final AuditUserApi auditUserApi,
@@ -70,6 +95,120 @@ public class CustomFieldResource extends JaxRsResourceBase {
                                final Clock clock,
                                final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
+        this.customFieldInternalApi = customFieldInternalApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    @Timed
+    @GET
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Retrieve custom fields for a set of objects of the same type", response = CustomFieldJson.class, responseContainer = "Map")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid object type or object id supplied")})
+    public Response getCustomFieldsForObjects(@QueryParam(QUERY_OBJECT_TYPE) final ObjectType objectType,
+                                              @QueryParam(QUERY_OBJECT_ID) final List<String> objectIds,
+                                              @QueryParam(QUERY_ACCOUNT_ID) final String accountId,
+                                              @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
+                                              @javax.ws.rs.core.Context final HttpServletRequest request) {
+        verifyNonNullOrEmpty(objectType, "objectType needs to be specified");
+
+        final TenantContext tenantContext = context.createContext(request);
+        final List<UUID> objectUUIDs = new ArrayList<UUID>(objectIds.size());
+        for (final String objectId : objectIds) {
+            objectUUIDs.add(UUID.fromString(objectId));
+        }
+        final InternalTenantContext internalTenantContext = accountId == null ?
+                                                            internalCallContextFactory.createInternalTenantContext(tenantContext) :
+                                                            internalCallContextFactory.createInternalTenantContext(UUID.fromString(accountId), tenantContext);
+        final Map<UUID, List<CustomField>> customFieldsPerObject = customFieldInternalApi.getCustomFieldsForObjects(objectUUIDs, objectType, internalTenantContext);
+
+        final AccountAuditLogsForObjectType customFieldsAuditLogs = accountId == null || AuditLevel.NONE.equals(auditMode.getLevel()) ?
+                                                                    null :
+                                                                    auditUserApi.getAccountAuditLogs(UUID.fromString(accountId), ObjectType.CUSTOM_FIELD, auditMode.getLevel(), tenantContext);
+
+        final Map<String, List<CustomFieldJson>> result = new LinkedHashMap<String, List<CustomFieldJson>>();
+        for (final UUID objectId : customFieldsPerObject.keySet()) {
+            final List<CustomFieldJson> customFieldsJson = new ArrayList<CustomFieldJson>();
+            for (final CustomField customField : customFieldsPerObject.get(objectId)) {
+                final List<AuditLog> auditLogs = customFieldsAuditLogs != null ?
+                                                 customFieldsAuditLogs.getAuditLogs(customField.getId()) :
+                                                 auditUserApi.getAuditLogs(customField.getId(), ObjectType.CUSTOM_FIELD, auditMode.getLevel(), tenantContext);
+                customFieldsJson.add(new CustomFieldJson(customField, auditLogs));
+            }
+            result.put(objectId.toString(), customFieldsJson);
+        }
+        return Response.status(Status.OK).entity(result).build();
+    }
+
+    @Timed
+    @POST
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Add custom fields to a set of objects (one transaction per account)")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid custom fields supplied")})
+    public Response createCustomFields(final List<CustomFieldJson> customFields,
+                                       @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                       @HeaderParam(HDR_REASON) final String reason,
+                                       @HeaderParam(HDR_COMMENT) final String comment,
+                                       @javax.ws.rs.core.Context final HttpServletRequest request) throws CustomFieldApiException {
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+
+        final List<CustomField> input = new LinkedList<CustomField>();
+        for (final CustomFieldJson cur : customFields) {
+            verifyNonNullOrEmpty(cur.getObjectId(), "CustomFieldJson objectId needs to be set",
+                                 cur.getObjectType(), "CustomFieldJson objectType needs to be set",
+                                 cur.getName(), "CustomFieldJson name needs to be set",
+                                 cur.getValue(), "CustomFieldJson value needs to be set");
+            input.add(new StringCustomField(cur.getName(), cur.getValue(), cur.getObjectType(), UUID.fromString(cur.getObjectId()), callContext.getCreatedDate()));
+        }
+
+        customFieldUserApi.addCustomFields(input, callContext);
+        return Response.status(Status.CREATED).build();
+    }
+
+    @Timed
+    @DELETE
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Remove custom fields from a set of objects (one transaction per account)")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid custom fields supplied")})
+    public Response deleteCustomFields(final List<CustomFieldJson> customFields,
+                                       @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                       @HeaderParam(HDR_REASON) final String reason,
+                                       @HeaderParam(HDR_COMMENT) final String comment,
+                                       @javax.ws.rs.core.Context final HttpServletRequest request) throws CustomFieldApiException {
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+
+        // Requested custom field ids, per object type
+        final Map<ObjectType, Map<UUID, UUID>> requestedIdsPerObjectType = new HashMap<ObjectType, Map<UUID, UUID>>();
+        for (final CustomFieldJson cur : customFields) {
+            verifyNonNullOrEmpty(cur.getCustomFieldId(), "CustomFieldJson customFieldId needs to be set",
+                                 cur.getObjectId(), "CustomFieldJson objectId needs to be set",
+                                 cur.getObjectType(), "CustomFieldJson objectType needs to be set");
+            if (requestedIdsPerObjectType.get(cur.getObjectType()) == null) {
+                requestedIdsPerObjectType.put(cur.getObjectType(), new HashMap<UUID, UUID>());
+            }
+            requestedIdsPerObjectType.get(cur.getObjectType()).put(UUID.fromString(cur.getCustomFieldId()), UUID.fromString(cur.getObjectId()));
+        }
+
+        // Only keep the custom fields that exist and indeed match their object
+        final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(callContext);
+        final List<CustomField> input = new LinkedList<CustomField>();
+        for (final ObjectType objectType : requestedIdsPerObjectType.keySet()) {
+            final Map<UUID, UUID> requestedIds = requestedIdsPerObjectType.get(objectType);
+            final Collection<List<CustomField>> existingFields = customFieldInternalApi.getCustomFieldsForObjects(requestedIds.values(), objectType, internalTenantContext).values();
+            for (final List<CustomField> fields : existingFields) {
+                for (final CustomField field : fields) {
+                    if (field.getObjectId().equals(requestedIds.get(field.getId()))) {
+                        input.add(field);
+                    }
+                }
+            }
+        }
+
+        if (!input.isEmpty()) {
+            customFieldUserApi.removeCustomFields(input, callContext);
+        }
+        return Response.status(Status.OK).build();
     }
 
     @Timed
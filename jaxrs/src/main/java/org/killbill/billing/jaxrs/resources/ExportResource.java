@@ -24,13 +24,20 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.jaxrs.json.TenantExportJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.PaymentApi;
@@ -39,6 +46,9 @@ import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.api.ExportUserApi;
 import org.killbill.billing.util.api.TagUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.export.api.TenantExport;
+import org.killbill.billing.util.export.api.TenantExportInternalApi;
 import org.killbill.clock.Clock;
 
 import com.codahale.metrics.annotation.Timed;
@@ -48,6 +58,7 @@ import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 
 @Singleton
@@ -56,9 +67,13 @@ import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 public class ExportResource extends JaxRsResourceBase {
 
     private final ExportUserApi exportUserApi;
+    private final TenantExportInternalApi tenantExportInternalApi;
+    private final InternalCallContextFactory internalCallContextFactory;
 
     @Inject
     public ExportResource(final ExportUserApi exportUserApi,
+                          final TenantExportInternalApi tenantExportInternalApi,
+                          final InternalCallContextFactory internalCallContextFactory,
                           final JaxrsUriBuilder uriBuilder,
                           final TagUserApi tagUserApi,
                           final CustomFieldUserApi customFieldUserApi,
@@ -69,6 +84,8 @@ public class ExportResource extends JaxRsResourceBase {
                           final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.exportUserApi = exportUserApi;
+        this.tenantExportInternalApi = tenantExportInternalApi;
+        this.internalCallContextFactory = internalCallContextFactory;
     }
 
     @Timed
@@ -92,4 +109,42 @@ public class ExportResource extends JaxRsResourceBase {
             }
         };
     }
+
+    @Timed
+    @POST
+    @Path("/" + EXPORT_TENANT)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Start exporting the data of all accounts of the tenant in the background, as chunk files on the server (call it again to resume an interrupted export)", response = TenantExportJson.class)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid export name or since date supplied")})
+    public Response exportDataForTenant(@QueryParam(QUERY_EXPORT_NAME) final String exportName,
+                                        @QueryParam(QUERY_EXPORT_SINCE) final String since,
+                                        @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                        @HeaderParam(HDR_REASON) final String reason,
+                                        @HeaderParam(HDR_COMMENT) final String comment,
+                                        @javax.ws.rs.core.Context final HttpServletRequest request) throws IOException {
+        verifyNonNullOrEmpty(exportName, "exportName needs to be specified");
+
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+        final DateTime sinceDateTime = since == null ? null : DATE_TIME_FORMATTER.parseDateTime(since).toDateTime(DateTimeZone.UTC);
+        final TenantExport tenantExport = tenantExportInternalApi.startExportForTenant(exportName, sinceDateTime, internalCallContextFactory.createInternalTenantContext(callContext));
+        return Response.status(Status.ACCEPTED).entity(new TenantExportJson(tenantExport)).build();
+    }
+
+    @Timed
+    @GET
+    @Path("/" + EXPORT_TENANT)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Retrieve the state and chunk files of a tenant export", response = TenantExportJson.class)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid export name supplied"),
+                           @ApiResponse(code = 404, message = "Export not found")})
+    public Response getExportForTenant(@QueryParam(QUERY_EXPORT_NAME) final String exportName,
+                                       @javax.ws.rs.core.Context final HttpServletRequest request) throws IOException {
+        verifyNonNullOrEmpty(exportName, "exportName needs to be specified");
+
+        final TenantExport tenantExport = tenantExportInternalApi.getExportForTenant(exportName, internalCallContextFactory.createInternalTenantContext(context.createContext(request)));
+        if (tenantExport == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        return Response.status(Status.OK).entity(new TenantExportJson(tenantExport)).build();
+    }
 }
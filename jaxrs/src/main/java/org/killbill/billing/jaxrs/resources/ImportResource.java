@@ -0,0 +1,505 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountApiException;
+import org.killbill.billing.account.api.AccountData;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.CatalogUserApi;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.billing.entitlement.EntitlementBulkCreation;
+import org.killbill.billing.entitlement.EntitlementInternalApi;
+import org.killbill.billing.entitlement.api.Entitlement;
+import org.killbill.billing.entitlement.api.EntitlementApi;
+import org.killbill.billing.entitlement.api.EntitlementApiException;
+import org.killbill.billing.entitlement.api.Subscription;
+import org.killbill.billing.entitlement.api.SubscriptionApi;
+import org.killbill.billing.entitlement.api.SubscriptionApiException;
+import org.killbill.billing.entitlement.api.SubscriptionBundle;
+import org.killbill.billing.jaxrs.json.AccountImportJson;
+import org.killbill.billing.jaxrs.json.AccountImportResultJson;
+import org.killbill.billing.jaxrs.json.AccountImportResultJson.ImportStatus;
+import org.killbill.billing.jaxrs.json.SubscriptionJson;
+import org.killbill.billing.jaxrs.util.AccountImportReader;
+import org.killbill.billing.jaxrs.util.AccountImportReader.Format;
+import org.killbill.billing.jaxrs.util.AccountImportReader.Record;
+import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
+import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
+import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.util.api.AuditUserApi;
+import org.killbill.billing.util.api.CustomFieldUserApi;
+import org.killbill.billing.util.api.TagUserApi;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Singleton;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiResponse;
+import com.wordnik.swagger.annotations.ApiResponses;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+
+/**
+ * Imports accounts and their subscriptions from a JSON lines or CSV file (see {@link AccountImportReader}).
+ * <p/>
+ * Records are grouped in batches of {@code org.killbill.jaxrs.import.batch.size} accounts, and up to
+ * {@code org.killbill.jaxrs.import.threads.pool.nb} batches are processed in parallel: the accounts of a batch are
+ * created in a single transaction (see {@link AccountInternalApi#createAccounts}), then the bundles, subscriptions and
+ * events of each account are created in a single transaction (see {@link EntitlementInternalApi#createBulkEntitlements}).
+ * <p/>
+ * The response is a stream of {@link AccountImportResultJson}, one per line: one result per record, in order, and a
+ * CHECKPOINT after each batch. An interrupted import can be resumed by passing the line following the last checkpoint
+ * as the {@code startLine} query parameter. Records are re-playable: the subscriptions of an existing account are
+ * compared with the ones of the record (bundles by external key, add-ons by product) and only the missing ones are
+ * created, so that re-running an import completes the records which were only partially imported.
+ */
+@Singleton
+@Path(JaxrsResource.IMPORT_PATH)
+@Api(value = JaxrsResource.IMPORT_PATH, description = "Import endpoints")
+public class ImportResource extends JaxRsResourceBase {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportResource.class);
+
+    private final AccountInternalApi accountInternalApi;
+    private final EntitlementApi entitlementApi;
+    private final EntitlementInternalApi entitlementInternalApi;
+    private final SubscriptionApi subscriptionApi;
+    private final CatalogUserApi catalogUserApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final JaxrsExecutors jaxrsExecutors;
+
+    @Inject
+    public ImportResource(final AccountInternalApi accountInternalApi,
+                          final EntitlementApi entitlementApi,
+                          final EntitlementInternalApi entitlementInternalApi,
+                          final SubscriptionApi subscriptionApi,
+                          final CatalogUserApi catalogUserApi,
+                          final InternalCallContextFactory internalCallContextFactory,
+                          final JaxrsExecutors jaxrsExecutors,
+                          final JaxrsUriBuilder uriBuilder,
+                          final TagUserApi tagUserApi,
+                          final CustomFieldUserApi customFieldUserApi,
+                          final AuditUserApi auditUserApi,
+                          final AccountUserApi accountUserApi,
+                          final PaymentApi paymentApi,
+                          final Clock clock,
+                          final Context context) {
+        super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
+        this.accountInternalApi = accountInternalApi;
+        this.entitlementApi = entitlementApi;
+        this.entitlementInternalApi = entitlementInternalApi;
+        this.subscriptionApi = subscriptionApi;
+        this.catalogUserApi = catalogUserApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.jaxrsExecutors = jaxrsExecutors;
+    }
+
+    @Timed
+    @POST
+    @Path("/" + ACCOUNTS)
+    @Consumes({TEXT_PLAIN, APPLICATION_OCTET_STREAM})
+    @Produces(TEXT_PLAIN)
+    @ApiOperation(value = "Import accounts and their subscriptions", response = String.class)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid import format supplied")})
+    public StreamingOutput importAccounts(final InputStream input,
+                                         @QueryParam(QUERY_IMPORT_FORMAT) @DefaultValue("JSON") final String format,
+                                         @QueryParam(QUERY_IMPORT_START_LINE) @DefaultValue("1") final Long startLine,
+                                         @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                         @HeaderParam(HDR_REASON) final String reason,
+                                         @HeaderParam(HDR_COMMENT) final String comment,
+                                         @javax.ws.rs.core.Context final HttpServletRequest request) throws CatalogApiException {
+        final Format importFormat = Format.valueOf(format.toUpperCase());
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+        final InternalCallContext internalCallContext = internalCallContextFactory.createInternalCallContext(callContext);
+        // Validate all records against the same catalog version
+        final StaticCatalog catalog = catalogUserApi.getCurrentCatalog(null, callContext);
+
+        return new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                final Writer writer = new OutputStreamWriter(output, Charsets.UTF_8);
+                final AccountImportReader reader = new AccountImportReader(input, importFormat, mapper);
+                try {
+                    importAccounts(reader, startLine, catalog, writer, callContext, internalCallContext);
+                } finally {
+                    reader.close();
+                    writer.flush();
+                }
+            }
+        };
+    }
+
+    private void importAccounts(final AccountImportReader reader, final long startLine, final StaticCatalog catalog, final Writer writer,
+                                final CallContext callContext, final InternalCallContext internalCallContext) throws IOException {
+        final int batchSize = jaxrsExecutors.getImportBatchSize();
+        final LinkedList<ImportBatch> inFlightBatches = new LinkedList<ImportBatch>();
+
+        List<Record> records = new ArrayList<Record>(batchSize);
+        Record record;
+        while ((record = reader.next()) != null) {
+            if (record.getFirstLineNumber() < startLine) {
+                continue;
+            }
+
+            records.add(record);
+            if (records.size() == batchSize) {
+                inFlightBatches.add(submitBatch(records, catalog, callContext, internalCallContext));
+                records = new ArrayList<Record>(batchSize);
+            }
+
+            // Bound the number of records in memory
+            if (inFlightBatches.size() >= jaxrsExecutors.getImportThreadNb()) {
+                writeBatchResults(inFlightBatches.poll(), writer);
+            }
+        }
+
+        if (!records.isEmpty()) {
+            inFlightBatches.add(submitBatch(records, catalog, callContext, internalCallContext));
+        }
+        while (!inFlightBatches.isEmpty()) {
+            writeBatchResults(inFlightBatches.poll(), writer);
+        }
+    }
+
+    private ImportBatch submitBatch(final List<Record> records, final StaticCatalog catalog, final CallContext callContext, final InternalCallContext internalCallContext) {
+        final Future<List<AccountImportResultJson>> future = jaxrsExecutors.getImportExecutorService().submit(new Callable<List<AccountImportResultJson>>() {
+            @Override
+            public List<AccountImportResultJson> call() throws Exception {
+                return importBatch(records, catalog, callContext, internalCallContext);
+            }
+        });
+        return new ImportBatch(records.get(records.size() - 1).getLastLineNumber(), future);
+    }
+
+    private void writeBatchResults(final ImportBatch batch, final Writer writer) throws IOException {
+        final List<AccountImportResultJson> results;
+        try {
+            results = batch.getResults().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted before line " + batch.getLastLineNumber());
+        } catch (final ExecutionException e) {
+            throw new IOException("Import failed before line " + batch.getLastLineNumber(), e.getCause());
+        }
+
+        for (final AccountImportResultJson result : results) {
+            writer.write(mapper.writeValueAsString(result));
+            writer.write('\n');
+        }
+        writer.write(mapper.writeValueAsString(AccountImportResultJson.checkpoint(batch.getLastLineNumber())));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private List<AccountImportResultJson> importBatch(final List<Record> records, final StaticCatalog catalog, final CallContext callContext, final InternalCallContext internalCallContext) {
+        final AccountImportResultJson[] results = new AccountImportResultJson[records.size()];
+
+        // Validate the records first, to only create valid accounts
+        final List<Integer> validRecordIndexes = new ArrayList<Integer>(records.size());
+        final List<AccountData> accountData = new ArrayList<AccountData>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            final Record record = records.get(i);
+            final String error = record.getAccountImport() == null ? record.getError() : validateAccountImport(record.getAccountImport(), catalog);
+            if (error != null) {
+                results[i] = createResult(record, ImportStatus.INVALID, null, null, error);
+                continue;
+            }
+
+            try {
+                accountData.add(record.getAccountImport().getAccount().toAccountData());
+                validRecordIndexes.add(i);
+            } catch (final IllegalArgumentException e) {
+                results[i] = createResult(record, ImportStatus.INVALID, null, null, e.getMessage());
+            }
+        }
+
+        if (accountData.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        Map<String, Account> createdAccounts = new HashMap<String, Account>();
+        try {
+            for (final Account account : accountInternalApi.createAccounts(accountData, internalCallContext)) {
+                createdAccounts.put(account.getExternalKey(), account);
+            }
+        } catch (final RuntimeException e) {
+            // Most likely, a concurrent import created one of these accounts (unique index on the external key):
+            // create the accounts one by one instead, so that only the conflicting records are affected
+            log.info("Failed to create accounts for import in a single batch, creating them one by one", e);
+            createdAccounts = null;
+        }
+
+        for (int j = 0; j < validRecordIndexes.size(); j++) {
+            final int i = validRecordIndexes.get(j);
+            final Record record = records.get(i);
+            final String externalKey = record.getAccountImport().getAccount().getExternalKey();
+            if (createdAccounts != null) {
+                // Remove the account, so that a duplicate external key later in the batch is handled as an existing account
+                final Account account = createdAccounts.remove(externalKey);
+                results[i] = account == null ? importExistingAccount(record, null, callContext, internalCallContext) : importSubscriptions(record, account, true, callContext);
+                continue;
+            }
+
+            try {
+                final List<Account> accounts = accountInternalApi.createAccounts(ImmutableList.<AccountData>of(accountData.get(j)), internalCallContext);
+                results[i] = accounts.isEmpty() ? importExistingAccount(record, null, callContext, internalCallContext) : importSubscriptions(record, accounts.get(0), true, callContext);
+            } catch (final RuntimeException e) {
+                results[i] = importExistingAccount(record, e, callContext, internalCallContext);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private AccountImportResultJson importExistingAccount(final Record record, @Nullable final RuntimeException creationFailure, final CallContext callContext, final InternalCallContext internalCallContext) {
+        final Account account;
+        try {
+            account = accountInternalApi.getAccountByKey(record.getAccountImport().getAccount().getExternalKey(), internalCallContext);
+        } catch (final AccountApiException e) {
+            // The account creation didn't fail because of a concurrent import
+            log.warn("Failed to create account for import", creationFailure);
+            return createResult(record, ImportStatus.FAILED, null, null, creationFailure == null ? e.getMessage() : creationFailure.getMessage());
+        }
+
+        return importSubscriptions(record, account, false, callContext);
+    }
+
+    // Creates the subscriptions of the record which don't exist yet: bundles are matched on their external key, add-ons on their product
+    private AccountImportResultJson importSubscriptions(final Record record, final Account account, final boolean newAccount, final CallContext callContext) {
+        final List<SubscriptionJson> subscriptions = record.getAccountImport().getSubscriptions();
+        final Map<String, SubscriptionBundle> existingBundles = new HashMap<String, SubscriptionBundle>();
+        if (!newAccount && !subscriptions.isEmpty()) {
+            try {
+                for (final SubscriptionBundle bundle : subscriptionApi.getSubscriptionBundlesForAccountId(account.getId(), callContext)) {
+                    existingBundles.put(bundle.getExternalKey(), bundle);
+                }
+            } catch (final SubscriptionApiException e) {
+                return createResult(record, ImportStatus.FAILED, account.getId(), null, e.getMessage());
+            }
+        }
+
+        final String[] subscriptionIds = new String[subscriptions.size()];
+        final List<Integer> creationsIndexes = new ArrayList<Integer>(subscriptions.size());
+        final List<EntitlementBulkCreation> creations = new ArrayList<EntitlementBulkCreation>(subscriptions.size());
+        boolean created = false;
+        String errorMessage = null;
+        String bundleKey = null;
+        SubscriptionBundle existingBundle = null;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            final SubscriptionJson subscription = subscriptions.get(i);
+            final ProductCategory productCategory = ProductCategory.valueOf(subscription.getProductCategory());
+            if (productCategory != ProductCategory.ADD_ON) {
+                bundleKey = subscription.getExternalKey();
+                existingBundle = existingBundles.get(bundleKey);
+                if (existingBundle != null && findSubscription(existingBundle, subscription.getProductName()) == null) {
+                    // Bundle left without its base subscription: re-create it, as a new base entitlement would
+                    existingBundle = null;
+                }
+            }
+
+            final Subscription existingSubscription = existingBundle == null ? null : findSubscription(existingBundle, subscription.getProductName());
+            if (existingSubscription != null) {
+                subscriptionIds[i] = existingSubscription.getId().toString();
+            } else if (existingBundle == null) {
+                creationsIndexes.add(i);
+                creations.add(new EntitlementBulkCreation(bundleKey, toPlanPhaseSpecifier(subscription), subscription.getStartDate()));
+            } else {
+                // Add-on missing from an existing bundle
+                try {
+                    final Entitlement entitlement = entitlementApi.addEntitlement(existingBundle.getId(), toPlanPhaseSpecifier(subscription), ImmutableList.<PlanPhasePriceOverride>of(), subscription.getStartDate(), callContext);
+                    subscriptionIds[i] = entitlement.getId().toString();
+                    created = true;
+                } catch (final EntitlementApiException e) {
+                    errorMessage = errorMessage == null ? e.getMessage() : errorMessage;
+                }
+            }
+        }
+
+        if (!creations.isEmpty()) {
+            final List<SubscriptionBaseBulkChangeResult> creationResults = entitlementInternalApi.createBulkEntitlements(account.getId(), creations, callContext);
+            for (int j = 0; j < creationsIndexes.size(); j++) {
+                final SubscriptionBaseBulkChangeResult result = creationResults.get(j);
+                if (result.isSuccess()) {
+                    subscriptionIds[creationsIndexes.get(j)] = result.getSubscriptionId().toString();
+                    created = true;
+                } else {
+                    errorMessage = errorMessage == null ? result.getErrorMessage() : errorMessage;
+                }
+            }
+        }
+
+        final List<String> importedSubscriptionIds = new ArrayList<String>(subscriptions.size());
+        for (final String subscriptionId : subscriptionIds) {
+            if (subscriptionId != null) {
+                importedSubscriptionIds.add(subscriptionId);
+            }
+        }
+        if (errorMessage != null) {
+            return createResult(record, ImportStatus.FAILED, account.getId(), importedSubscriptionIds, errorMessage);
+        }
+        return createResult(record, newAccount || created ? ImportStatus.CREATED : ImportStatus.ALREADY_EXISTS, account.getId(), importedSubscriptionIds, null);
+    }
+
+    private Subscription findSubscription(final SubscriptionBundle bundle, final String productName) {
+        for (final Subscription subscription : bundle.getSubscriptions()) {
+            if (subscription.getLastActiveProduct() != null && productName.equals(subscription.getLastActiveProduct().getName())) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    private PlanPhaseSpecifier toPlanPhaseSpecifier(final SubscriptionJson subscription) {
+        return new PlanPhaseSpecifier(subscription.getProductName(),
+                                      ProductCategory.valueOf(subscription.getProductCategory()),
+                                      BillingPeriod.valueOf(subscription.getBillingPeriod()),
+                                      subscription.getPriceList(),
+                                      null);
+    }
+
+    private String validateAccountImport(final AccountImportJson accountImport, final StaticCatalog catalog) {
+        if (accountImport.getAccount() == null) {
+            return "account needs to be set";
+        }
+        // The external key is what makes an import re-playable
+        if (accountImport.getAccount().getExternalKey() == null) {
+            return "account externalKey needs to be set";
+        }
+
+        boolean hasBaseSubscription = false;
+        final Set<String> bundleKeys = new HashSet<String>();
+        for (final SubscriptionJson subscription : accountImport.getSubscriptions()) {
+            if (subscription.getProductName() == null || subscription.getProductCategory() == null ||
+                subscription.getBillingPeriod() == null || subscription.getPriceList() == null) {
+                return "subscription productName, productCategory, billingPeriod and priceList need to be set";
+            }
+
+            final ProductCategory productCategory;
+            final BillingPeriod billingPeriod;
+            try {
+                productCategory = ProductCategory.valueOf(subscription.getProductCategory());
+                billingPeriod = BillingPeriod.valueOf(subscription.getBillingPeriod());
+            } catch (final IllegalArgumentException e) {
+                return e.getMessage();
+            }
+
+            if (productCategory == ProductCategory.ADD_ON && !hasBaseSubscription) {
+                return "ADD_ON subscription " + subscription.getProductName() + " needs to be preceded by a BASE subscription";
+            }
+            hasBaseSubscription = hasBaseSubscription || productCategory == ProductCategory.BASE;
+
+            // The bundle external key is what makes the subscriptions re-playable
+            if (productCategory != ProductCategory.ADD_ON) {
+                if (subscription.getExternalKey() == null) {
+                    return "subscription externalKey needs to be set for " + productCategory + " subscription " + subscription.getProductName();
+                }
+                if (!bundleKeys.add(subscription.getExternalKey())) {
+                    return "subscription externalKey " + subscription.getExternalKey() + " is used more than once";
+                }
+            }
+
+            try {
+                final Plan plan = catalog.createOrFindCurrentPlan(subscription.getProductName(), billingPeriod, subscription.getPriceList(), null);
+                if (plan.getProduct().getCategory() != productCategory) {
+                    return "product " + subscription.getProductName() + " is not of category " + productCategory;
+                }
+            } catch (final CatalogApiException e) {
+                return e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    private AccountImportResultJson createResult(final Record record, final ImportStatus status, final UUID accountId, final List<String> subscriptionIds, final String errorMessage) {
+        final String externalKey = record.getAccountImport() == null || record.getAccountImport().getAccount() == null ? null : record.getAccountImport().getAccount().getExternalKey();
+        return new AccountImportResultJson(record.getFirstLineNumber(),
+                                           status,
+                                           externalKey,
+                                           accountId == null ? null : accountId.toString(),
+                                           subscriptionIds,
+                                           errorMessage);
+    }
+
+    private static final class ImportBatch {
+
+        private final long lastLineNumber;
+        private final Future<List<AccountImportResultJson>> results;
+
+        private ImportBatch(final long lastLineNumber, final Future<List<AccountImportResultJson>> results) {
+            this.lastLineNumber = lastLineNumber;
+            this.results = results;
+        }
+
+        public long getLastLineNumber() {
+            return lastLineNumber;
+        }
+
+        public Future<List<AccountImportResultJson>> getResults() {
+            return results;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.DateTime;
@@ -77,6 +78,7 @@ import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.customfield.CustomField;
 import org.killbill.billing.util.customfield.StringCustomField;
+import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.jackson.ObjectMapper;
@@ -279,10 +281,20 @@ public abstract class JaxRsResourceBase implements JaxrsResource {
                        .header(HDR_PAGINATION_NEXT_OFFSET, entities.getNextOffset())
                        .header(HDR_PAGINATION_TOTAL_NB_RECORDS, entities.getTotalNbRecords())
                        .header(HDR_PAGINATION_MAX_NB_RECORDS, entities.getMaxNbRecords())
-                       .header(HDR_PAGINATION_NEXT_PAGE_URI, nextPageUri)
+                       .header(HDR_PAGINATION_NEXT_PAGE_URI, withNextPageToken(nextPageUri, entities))
                        .build();
     }
 
+    // Lets the next page be resumed by seeking past the last row of this one (on any node)
+    private URI withNextPageToken(@Nullable final URI nextPageUri, final Pagination<?> entities) {
+        if (nextPageUri == null || !(entities instanceof DefaultPagination) || ((DefaultPagination) entities).getNextPageToken() == null) {
+            return nextPageUri;
+        }
+        return UriBuilder.fromUri(nextPageUri)
+                         .queryParam(QUERY_PAGINATION_TOKEN, ((DefaultPagination) entities).getNextPageToken())
+                         .build();
+    }
+
     protected void validatePaymentMethodForAccount(final UUID accountId, final UUID paymentMethodId, final CallContext callContext) throws PaymentApiException {
         verifyNonNull(paymentMethodId, "paymentMethodId should be specified");
 
@@ -72,6 +72,7 @@ public interface JaxrsResource {
     public static final String QUERY_ENTITLEMENT_POLICY = "entitlementPolicy";
     public static final String QUERY_SEARCH_OFFSET = "offset";
     public static final String QUERY_SEARCH_LIMIT = "limit";
+    public static final String QUERY_PAGINATION_TOKEN = "paginationToken";
 
     public static final String QUERY_ACCOUNT_WITH_BALANCE = "accountWithBalance";
     public static final String QUERY_ACCOUNT_WITH_BALANCE_AND_CBA = "accountWithBalanceAndCBA";
@@ -90,6 +91,8 @@ public interface JaxrsResource {
 
     public static final String QUERY_TAGS = "tagList";
     public static final String QUERY_TAGS_INCLUDED_DELETED = "includedDeleted";
+    public static final String QUERY_OBJECT_TYPE = "objectType";
+    public static final String QUERY_OBJECT_ID = "objectId";
     public static final String QUERY_CUSTOM_FIELDS = "customFieldList";
 
     public static final String QUERY_PAYMENT_METHOD_PLUGIN_NAME = "pluginName";
@@ -115,6 +118,12 @@ public interface JaxrsResource {
 
     public static final String QUERY_NOTIFICATION_CALLBACK = "cb";
 
+    public static final String QUERY_IMPORT_FORMAT = "format";
+    public static final String QUERY_IMPORT_START_LINE = "startLine";
+
+    public static final String QUERY_EXPORT_NAME = "exportName";
+    public static final String QUERY_EXPORT_SINCE = "since";
+
     public static final String PAGINATION = "pagination";
 
     public static final String ACCOUNTS = "accounts";
@@ -131,6 +140,7 @@ public interface JaxrsResource {
 
     public static final String SUBSCRIPTIONS = "subscriptions";
     public static final String SUBSCRIPTIONS_PATH = PREFIX + "/" + SUBSCRIPTIONS;
+    public static final String SUBSCRIPTIONS_BULK_PATH_POSTFIX = "bulk";
 
     public static final String ENTITLEMENTS = "entitlements";
     public static final String ENTITLEMENTS_PATH = PREFIX + "/" + ENTITLEMENTS;
@@ -158,6 +168,7 @@ public interface JaxrsResource {
     public static final String PAYMENT_METHODS = "paymentMethods";
     public static final String PAYMENT_METHODS_PATH = PREFIX + "/" + PAYMENT_METHODS;
     public static final String PAYMENT_METHODS_DEFAULT_PATH_POSTFIX = "setDefault";
+    public static final String PAYMENT_METHODS_REFRESH_PATH_POSTFIX = "refresh";
 
     public static final String CREDITS = "credits";
     public static final String CREDITS_PATH = PREFIX + "/" + CREDITS;
@@ -192,6 +203,10 @@ public interface JaxrsResource {
 
     public static final String EXPORT = "export";
     public static final String EXPORT_PATH = PREFIX + "/" + EXPORT;
+    public static final String EXPORT_TENANT = "tenant";
+
+    public static final String IMPORT = "import";
+    public static final String IMPORT_PATH = PREFIX + "/" + IMPORT;
 
     public static final String PLUGINS = "plugins";
     // No PREFIX here!
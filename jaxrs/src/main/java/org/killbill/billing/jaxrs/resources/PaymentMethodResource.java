@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -47,6 +48,7 @@ import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.api.PaymentMethod;
+import org.killbill.billing.payment.api.PaymentMethodRefreshInternalApi;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldUserApi;
@@ -75,6 +77,8 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Api(value = JaxrsResource.PAYMENT_METHODS_PATH, description = "Operations on payment methods")
 public class PaymentMethodResource extends JaxRsResourceBase {
 
+    private final PaymentMethodRefreshInternalApi paymentMethodRefreshApi;
+
     @Inject
     public PaymentMethodResource(final AccountUserApi accountUserApi,
                                  final JaxrsUriBuilder uriBuilder,
@@ -82,9 +86,11 @@ public class PaymentMethodResource extends JaxRsResourceBase {
                                  final CustomFieldUserApi customFieldUserApi,
                                  final AuditUserApi auditUserApi,
                                  final PaymentApi paymentApi,
+                                 final PaymentMethodRefreshInternalApi paymentMethodRefreshApi,
                                  final Clock clock,
                                  final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
+        this.paymentMethodRefreshApi = paymentMethodRefreshApi;
     }
 
     @Timed
@@ -270,6 +276,22 @@ public class PaymentMethodResource extends JaxRsResourceBase {
         return Response.status(Status.OK).build();
     }
 
+    @Timed
+    @POST
+    @Produces(APPLICATION_JSON)
+    @Path("/" + PAYMENT_METHODS_REFRESH_PATH_POSTFIX)
+    @ApiOperation(value = "Refresh the payment methods of all accounts, in the background")
+    @ApiResponses(value = {@ApiResponse(code = 404, message = "Plugin not found")})
+    public Response refreshPaymentMethodsForAllAccounts(@QueryParam(QUERY_PAYMENT_METHOD_PLUGIN_NAME) final String pluginName,
+                                                        @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                                        @HeaderParam(HDR_REASON) final String reason,
+                                                        @HeaderParam(HDR_COMMENT) final String comment,
+                                                        @javax.ws.rs.core.Context final HttpServletRequest request) throws PaymentApiException {
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+        paymentMethodRefreshApi.refreshPaymentMethodsForAllAccounts(pluginName, callContext);
+        return Response.status(Status.ACCEPTED).build();
+    }
+
     @Override
     protected ObjectType getObjectType() {
         return ObjectType.PAYMENT_METHOD;
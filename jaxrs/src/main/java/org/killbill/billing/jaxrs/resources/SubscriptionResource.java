@@ -19,6 +19,7 @@
 package org.killbill.billing.jaxrs.resources;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeoutException;
@@ -50,6 +51,8 @@ import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
 import org.killbill.billing.catalog.api.PlanSpecifier;
 import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.entitlement.EntitlementBulkOperation;
+import org.killbill.billing.entitlement.EntitlementInternalApi;
 import org.killbill.billing.entitlement.api.Entitlement;
 import org.killbill.billing.entitlement.api.Entitlement.EntitlementActionPolicy;
 import org.killbill.billing.entitlement.api.EntitlementApi;
@@ -66,12 +69,15 @@ import org.killbill.billing.events.PaymentInfoInternalEvent;
 import org.killbill.billing.events.PaymentPluginErrorInternalEvent;
 import org.killbill.billing.jaxrs.json.CustomFieldJson;
 import org.killbill.billing.jaxrs.json.PhasePriceOverrideJson;
+import org.killbill.billing.jaxrs.json.SubscriptionBulkOperationJson;
+import org.killbill.billing.jaxrs.json.SubscriptionBulkResultJson;
 import org.killbill.billing.jaxrs.json.SubscriptionJson;
 import org.killbill.billing.jaxrs.json.TagJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.jaxrs.util.KillbillEventHandler;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
@@ -105,6 +111,7 @@ public class SubscriptionResource extends JaxRsResourceBase {
     private final KillbillEventHandler killbillHandler;
     private final EntitlementApi entitlementApi;
     private final SubscriptionApi subscriptionApi;
+    private final EntitlementInternalApi entitlementInternalApi;
 
     @Inject
     public SubscriptionResource(final KillbillEventHandler killbillHandler,
@@ -114,6 +121,7 @@ public class SubscriptionResource extends JaxRsResourceBase {
                                 final AuditUserApi auditUserApi,
                                 final EntitlementApi entitlementApi,
                                 final SubscriptionApi subscriptionApi,
+                                final EntitlementInternalApi entitlementInternalApi,
                                 final AccountUserApi accountUserApi,
                                 final PaymentApi paymentApi,
                                 final Clock clock,
@@ -122,6 +130,7 @@ public class SubscriptionResource extends JaxRsResourceBase {
         this.killbillHandler = killbillHandler;
         this.entitlementApi = entitlementApi;
         this.subscriptionApi = subscriptionApi;
+        this.entitlementInternalApi = entitlementInternalApi;
     }
 
     @Timed
@@ -207,6 +216,35 @@ public class SubscriptionResource extends JaxRsResourceBase {
 
 
 
+    @Timed
+    @POST
+    @Path("/" + SUBSCRIPTIONS_BULK_PATH_POSTFIX)
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Change, cancel or un-cancel entitlements in bulk", response = SubscriptionBulkResultJson.class, responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid operations supplied")})
+    public Response bulkEntitlementOperations(final List<SubscriptionBulkOperationJson> operationsJson,
+                                              @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                              @HeaderParam(HDR_REASON) final String reason,
+                                              @HeaderParam(HDR_COMMENT) final String comment,
+                                              @javax.ws.rs.core.Context final HttpServletRequest request) {
+        verifyNonNullOrEmpty(operationsJson, "SubscriptionBulkOperationJson list should be specified");
+        final List<EntitlementBulkOperation> operations = new ArrayList<EntitlementBulkOperation>(operationsJson.size());
+        for (final SubscriptionBulkOperationJson operationJson : operationsJson) {
+            verifyNonNullOrEmpty(operationJson.getChangeType(), "SubscriptionBulkOperationJson changeType needs to be set",
+                                 operationJson.getSubscriptionId(), "SubscriptionBulkOperationJson subscriptionId needs to be set");
+            operations.add(operationJson.toEntitlementBulkOperation());
+        }
+
+        final List<SubscriptionBaseBulkChangeResult> results = entitlementInternalApi.applyBulkOperations(operations, context.createContext(createdBy, reason, comment, request));
+
+        final List<SubscriptionBulkResultJson> resultsJson = new ArrayList<SubscriptionBulkResultJson>(results.size());
+        for (final SubscriptionBaseBulkChangeResult result : results) {
+            resultsJson.add(new SubscriptionBulkResultJson(result));
+        }
+        return Response.status(Status.OK).entity(resultsJson).build();
+    }
+
     @Timed
     @PUT
     @Path("/{subscriptionId:" + UUID_PATTERN + "}/uncancel")
@@ -17,7 +17,9 @@
 package org.killbill.billing.jaxrs.resources;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -33,16 +35,21 @@ import javax.ws.rs.core.Response;
 
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.clock.Clock;
 import org.killbill.billing.jaxrs.json.TagJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
+import org.killbill.billing.util.api.AuditLevel;
 import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.api.TagUserApi;
+import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
 import org.killbill.billing.util.audit.AuditLog;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.tag.Tag;
@@ -65,8 +72,13 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 @Api(value = JaxrsResource.TAGS_PATH, description = "Operations on tags")
 public class TagResource extends JaxRsResourceBase {
 
+    private final TagInternalApi tagInternalApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+
     @Inject
-    public TagResource(final JaxrsUriBuilder uriBuilder,
+    public TagResource(final TagInternalApi tagInternalApi,
+                       final InternalCallContextFactory internalCallContextFactory,
+                       final JaxrsUriBuilder uriBuilder,
                        final TagUserApi tagUserApi,
                        final CustomFieldUserApi customFieldUserApi,
                        final AuditUserApi auditUserApi,
@@ -75,6 +87,54 @@ public class TagResource extends JaxRsResourceBase {
                        final Clock clock,
                        final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
+        this.tagInternalApi = tagInternalApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    @Timed
+    @GET
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Retrieve tags for a set of objects of the same type", response = TagJson.class, responseContainer = "Map")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid object type or object id supplied")})
+    public Response getTagsForObjects(@QueryParam(QUERY_OBJECT_TYPE) final ObjectType objectType,
+                                      @QueryParam(QUERY_OBJECT_ID) final List<String> objectIds,
+                                      @QueryParam(QUERY_ACCOUNT_ID) final String accountId,
+                                      @QueryParam(QUERY_TAGS_INCLUDED_DELETED) @DefaultValue("false") final Boolean includedDeleted,
+                                      @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
+                                      @javax.ws.rs.core.Context final HttpServletRequest request) {
+        verifyNonNullOrEmpty(objectType, "objectType needs to be specified");
+
+        final TenantContext tenantContext = context.createContext(request);
+        final List<UUID> objectUUIDs = new ArrayList<UUID>(objectIds.size());
+        for (final String objectId : objectIds) {
+            objectUUIDs.add(UUID.fromString(objectId));
+        }
+        // When the account is specified, the lookup is served by the account tags index
+        final InternalTenantContext internalTenantContext = accountId == null ?
+                                                            internalCallContextFactory.createInternalTenantContext(tenantContext) :
+                                                            internalCallContextFactory.createInternalTenantContext(UUID.fromString(accountId), tenantContext);
+        final Map<UUID, List<Tag>> tagsPerObject = tagInternalApi.getTagsForObjects(objectUUIDs, objectType, includedDeleted, internalTenantContext);
+
+        final Map<UUID, TagDefinition> tagDefinitionsCache = new HashMap<UUID, TagDefinition>();
+        for (final TagDefinition tagDefinition : tagUserApi.getTagDefinitions(tenantContext)) {
+            tagDefinitionsCache.put(tagDefinition.getId(), tagDefinition);
+        }
+        final AccountAuditLogsForObjectType tagsAuditLogs = accountId == null || AuditLevel.NONE.equals(auditMode.getLevel()) ?
+                                                            null :
+                                                            auditUserApi.getAccountAuditLogs(UUID.fromString(accountId), ObjectType.TAG, auditMode.getLevel(), tenantContext);
+
+        final Map<String, List<TagJson>> result = new LinkedHashMap<String, List<TagJson>>();
+        for (final UUID objectId : tagsPerObject.keySet()) {
+            final List<TagJson> tagsJson = new ArrayList<TagJson>();
+            for (final Tag tag : tagsPerObject.get(objectId)) {
+                final List<AuditLog> auditLogs = tagsAuditLogs != null ?
+                                                 tagsAuditLogs.getAuditLogs(tag.getId()) :
+                                                 auditUserApi.getAuditLogs(tag.getId(), ObjectType.TAG, auditMode.getLevel(), tenantContext);
+                tagsJson.add(new TagJson(tag, tagDefinitionsCache.get(tag.getTagDefinitionId()), auditLogs));
+            }
+            result.put(objectId.toString(), tagsJson);
+        }
+        return Response.status(Response.Status.OK).entity(result).build();
     }
 
     @Timed
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.jaxrs.json.AccountImportJson;
+import org.killbill.billing.jaxrs.json.AccountJson;
+import org.killbill.billing.jaxrs.json.SubscriptionJson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+
+/**
+ * Streams the records of an import file, one at a time.
+ * <p/>
+ * In JSON format, each (non blank) line is an {@link AccountImportJson}. In CSV format, the first line is a header
+ * containing {@link AccountJson} property names for account columns, and {@link SubscriptionJson} property names
+ * prefixed with {@code subscription.} for subscription columns: consecutive rows for the same account external key
+ * are merged into a single record, with one subscription per row (empty cells are ignored).
+ */
+public class AccountImportReader implements Closeable {
+
+    public enum Format {
+        JSON,
+        CSV
+    }
+
+    public static final String CSV_SUBSCRIPTION_PREFIX = "subscription.";
+
+    private static final String CSV_EXTERNAL_KEY = "externalKey";
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper mapper;
+
+    private long lineNumber = 0;
+    private List<String> csvHeader;
+    // CSV only: first row of the next record, already read
+    private List<String> pendingRow;
+    private long pendingRowLineNumber;
+
+    public AccountImportReader(final InputStream input, final Format format, final ObjectMapper mapper) {
+        this.reader = new BufferedReader(new InputStreamReader(input, Charsets.UTF_8));
+        this.format = format;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return the next record, or null at the end of the input
+     */
+    @Nullable
+    public Record next() throws IOException {
+        return format == Format.CSV ? nextCSVRecord() : nextJSONRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Record nextJSONRecord() throws IOException {
+        final String line = nextNonBlankLine();
+        if (line == null) {
+            return null;
+        }
+
+        try {
+            return new Record(lineNumber, lineNumber, mapper.readValue(line, AccountImportJson.class), null);
+        } catch (final IOException e) {
+            return new Record(lineNumber, lineNumber, null, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    private Record nextCSVRecord() throws IOException {
+        if (csvHeader == null) {
+            final String header = nextNonBlankLine();
+            if (header == null) {
+                return null;
+            }
+            csvHeader = splitCSVLine(header);
+            if (!csvHeader.contains(CSV_EXTERNAL_KEY)) {
+                throw new IOException("CSV header should contain an " + CSV_EXTERNAL_KEY + " column");
+            }
+        }
+
+        if (pendingRow == null && !readPendingRow()) {
+            return null;
+        }
+
+        final long firstLineNumber = pendingRowLineNumber;
+        final List<List<String>> rows = new ArrayList<List<String>>();
+        final String externalKey = getCSVValue(pendingRow, CSV_EXTERNAL_KEY);
+        do {
+            if (pendingRow.size() != csvHeader.size()) {
+                final String error = String.format("Expected %s columns but got %s at line %s", csvHeader.size(), pendingRow.size(), pendingRowLineNumber);
+                pendingRow = null;
+                return new Record(firstLineNumber, lineNumber, null, error);
+            }
+            rows.add(pendingRow);
+            pendingRow = null;
+        } while (readPendingRow() && externalKey != null && externalKey.equals(getCSVValue(pendingRow, CSV_EXTERNAL_KEY)));
+
+        final long lastLineNumber = pendingRow == null ? lineNumber : pendingRowLineNumber - 1;
+        try {
+            return new Record(firstLineNumber, lastLineNumber, toAccountImportJson(rows), null);
+        } catch (final IllegalArgumentException e) {
+            return new Record(firstLineNumber, lastLineNumber, null, "Invalid CSV: " + e.getMessage());
+        }
+    }
+
+    private boolean readPendingRow() throws IOException {
+        final String line = nextNonBlankLine();
+        if (line == null) {
+            return false;
+        }
+        pendingRow = splitCSVLine(line);
+        pendingRowLineNumber = lineNumber;
+        return true;
+    }
+
+    private AccountImportJson toAccountImportJson(final List<List<String>> rows) {
+        final Map<String, String> account = new LinkedHashMap<String, String>();
+        final List<SubscriptionJson> subscriptions = new ArrayList<SubscriptionJson>();
+        for (final List<String> row : rows) {
+            final Map<String, String> subscription = new LinkedHashMap<String, String>();
+            for (int i = 0; i < csvHeader.size(); i++) {
+                final String value = row.get(i);
+                if (value.isEmpty()) {
+                    continue;
+                }
+
+                final String column = csvHeader.get(i);
+                if (column.startsWith(CSV_SUBSCRIPTION_PREFIX)) {
+                    subscription.put(column.substring(CSV_SUBSCRIPTION_PREFIX.length()), value);
+                } else if (!account.containsKey(column)) {
+                    // Account columns only need to be specified in the first row
+                    account.put(column, value);
+                }
+            }
+            if (!subscription.isEmpty()) {
+                subscriptions.add(mapper.convertValue(subscription, SubscriptionJson.class));
+            }
+        }
+        return new AccountImportJson(mapper.convertValue(account, AccountJson.class), subscriptions);
+    }
+
+    private String getCSVValue(final List<String> row, final String column) {
+        final int index = csvHeader.indexOf(column);
+        return index < row.size() && !row.get(index).isEmpty() ? row.get(index) : null;
+    }
+
+    private String nextNonBlankLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.trim().isEmpty());
+        return line;
+    }
+
+    // Values can be quoted (with doubled quotes as escape), but cannot span multiple lines
+    static List<String> splitCSVLine(final String line) {
+        final List<String> values = new ArrayList<String>();
+        final StringBuilder value = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    public static final class Record {
+
+        private final long firstLineNumber;
+        private final long lastLineNumber;
+        private final AccountImportJson accountImport;
+        private final String error;
+
+        private Record(final long firstLineNumber, final long lastLineNumber, @Nullable final AccountImportJson accountImport, @Nullable final String error) {
+            this.firstLineNumber = firstLineNumber;
+            this.lastLineNumber = lastLineNumber;
+            this.accountImport = accountImport;
+            this.error = error;
+        }
+
+        public long getFirstLineNumber() {
+            return firstLineNumber;
+        }
+
+        public long getLastLineNumber() {
+            return lastLineNumber;
+        }
+
+        // Null if the record couldn't be parsed
+        public AccountImportJson getAccountImport() {
+            return accountImport;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.util.UUID;
 
 import javax.servlet.ServletRequest;
 
+import org.killbill.billing.callcontext.PaginationTenantContext;
 import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.util.callcontext.CallContext;
@@ -27,6 +28,7 @@ import org.killbill.billing.util.callcontext.CallContextFactory;
 import org.killbill.billing.util.callcontext.CallOrigin;
 import org.killbill.billing.util.callcontext.TenantContext;
 import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.JaxrsConfig;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
@@ -36,12 +38,14 @@ public class Context {
     private final CallOrigin origin;
     private final UserType userType;
     final CallContextFactory contextFactory;
+    private final JaxrsConfig jaxrsConfig;
 
     @Inject
-    public Context(final CallContextFactory factory) {
+    public Context(final CallContextFactory factory, final JaxrsConfig jaxrsConfig) {
         this.origin = CallOrigin.EXTERNAL;
         this.userType = UserType.CUSTOMER;
         this.contextFactory = factory;
+        this.jaxrsConfig = jaxrsConfig;
     }
 
     public CallContext createContext(final String createdBy, final String reason, final String comment, final ServletRequest request)
@@ -58,12 +62,13 @@ public class Context {
 
     public TenantContext createContext(final ServletRequest request) {
         final Tenant tenant = getTenantFromRequest(request);
-        if (tenant == null) {
-            // Multi-tenancy may not have been configured - default to "default" tenant (see InternalCallContextFactory)
-            return contextFactory.createTenantContext(null);
-        } else {
-            return contextFactory.createTenantContext(tenant.getId());
-        }
+        // Multi-tenancy may not have been configured - default to "default" tenant (see InternalCallContextFactory)
+        final UUID tenantId = tenant == null ? null : tenant.getId();
+        // The pagination state is only used by listing and search calls (see DefaultPaginationSqlDaoHelper)
+        return new PaginationTenantContext(tenantId,
+                                           request.getParameter(JaxrsResource.QUERY_PAGINATION_TOKEN),
+                                           jaxrsConfig.getPaginationTokenMaxPageSize(),
+                                           jaxrsConfig.isPaginationCountEnabled());
     }
 
     private Tenant getTenantFromRequest(final ServletRequest request) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.killbill.billing.util.config.JaxrsConfig;
+import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Shared pool used by resources to issue independent (read-only) api calls in parallel
+@Singleton
+public class JaxrsExecutors {
+
+    private static final Logger log = LoggerFactory.getLogger(JaxrsExecutors.class);
+
+    private static final String JAXRS_THREAD_PREFIX = "jaxrs-th-";
+    private static final String JAXRS_IMPORT_THREAD_PREFIX = "jaxrs-import-th-";
+
+    private final JaxrsConfig jaxrsConfig;
+    private final ExecutorService jaxrsExecutorService;
+    // Import batches write to the database, keep them away from the (read-only) shared pool
+    private final ExecutorService importExecutorService;
+
+    @Inject
+    public JaxrsExecutors(final JaxrsConfig jaxrsConfig) {
+        this.jaxrsConfig = jaxrsConfig;
+        this.jaxrsExecutorService = createExecutorService(jaxrsConfig.getJaxrsThreadNb(), JAXRS_THREAD_PREFIX);
+        this.importExecutorService = createExecutorService(jaxrsConfig.getImportThreadNb(), JAXRS_IMPORT_THREAD_PREFIX);
+    }
+
+    private static ExecutorService createExecutorService(final int nbThreads, final String threadPrefix) {
+        return new WithProfilingThreadPoolExecutor(nbThreads, nbThreads,
+                                                   0L, TimeUnit.MILLISECONDS,
+                                                   new LinkedBlockingQueue<Runnable>(),
+                                                   new ThreadFactory() {
+
+                                                       @Override
+                                                       public Thread newThread(final Runnable r) {
+                                                           final Thread th = new Thread(r);
+                                                           th.setName(threadPrefix + th.getId());
+                                                           th.setDaemon(true);
+                                                           return th;
+                                                       }
+                                                   });
+    }
+
+    public ExecutorService getJaxrsExecutorService() {
+        return jaxrsExecutorService;
+    }
+
+    public ExecutorService getImportExecutorService() {
+        return importExecutorService;
+    }
+
+    public int getImportThreadNb() {
+        return jaxrsConfig.getImportThreadNb();
+    }
+
+    public int getImportBatchSize() {
+        return jaxrsConfig.getImportBatchSize();
+    }
+
+    public long getJaxrsTimeoutMillis() {
+        return jaxrsConfig.getJaxrsTimeout().getMillis();
+    }
+
+    public void shutdown() {
+        jaxrsExecutorService.shutdownNow();
+        // Let the in-flight import batches commit
+        importExecutorService.shutdown();
+        try {
+            if (!importExecutorService.awaitTermination(jaxrsConfig.getJaxrsTimeout().getMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for the import batches to complete");
+                importExecutorService.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
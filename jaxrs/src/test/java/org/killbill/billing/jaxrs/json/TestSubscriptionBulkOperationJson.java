@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import java.util.UUID;
+
+import org.joda.time.LocalDate;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.entitlement.EntitlementBulkOperation;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestSubscriptionBulkOperationJson extends JaxrsTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testJson() throws Exception {
+        final String subscriptionId = UUID.randomUUID().toString();
+        final LocalDate requestedDate = clock.getUTCToday();
+        final SubscriptionBulkOperationJson operationJson = new SubscriptionBulkOperationJson("CHANGE_PLAN", subscriptionId, "Shotgun", "MONTHLY",
+                                                                                              "DEFAULT", requestedDate, "immediate");
+
+        final String asJson = mapper.writeValueAsString(operationJson);
+        final SubscriptionBulkOperationJson fromJson = mapper.readValue(asJson, SubscriptionBulkOperationJson.class);
+        Assert.assertEquals(fromJson, operationJson);
+
+        final EntitlementBulkOperation operation = fromJson.toEntitlementBulkOperation();
+        Assert.assertEquals(operation.getChangeType(), ChangeType.CHANGE_PLAN);
+        Assert.assertEquals(operation.getEntitlementId().toString(), subscriptionId);
+        Assert.assertEquals(operation.getProductName(), "Shotgun");
+        Assert.assertEquals(operation.getBillingPeriod(), BillingPeriod.MONTHLY);
+        Assert.assertEquals(operation.getPriceList(), "DEFAULT");
+        Assert.assertEquals(operation.getRequestedDate(), requestedDate);
+        Assert.assertEquals(operation.getBillingPolicy(), BillingActionPolicy.IMMEDIATE);
+    }
+
+    @Test(groups = "fast")
+    public void testCancelWithDefaults() throws Exception {
+        final String subscriptionId = UUID.randomUUID().toString();
+        final String asJson = "{\"changeType\":\"CANCEL\",\"subscriptionId\":\"" + subscriptionId + "\"}";
+        final EntitlementBulkOperation operation = mapper.readValue(asJson, SubscriptionBulkOperationJson.class).toEntitlementBulkOperation();
+        Assert.assertEquals(operation.getChangeType(), ChangeType.CANCEL);
+        Assert.assertEquals(operation.getEntitlementId().toString(), subscriptionId);
+        Assert.assertNull(operation.getBillingPeriod());
+        Assert.assertNull(operation.getRequestedDate());
+        Assert.assertNull(operation.getBillingPolicy());
+    }
+}
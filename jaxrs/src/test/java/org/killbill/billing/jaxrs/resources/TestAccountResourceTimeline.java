@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.entitlement.api.SubscriptionApi;
+import org.killbill.billing.entitlement.api.SubscriptionBundle;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.invoice.api.InvoicePayment;
+import org.killbill.billing.invoice.api.InvoicePaymentApi;
+import org.killbill.billing.invoice.api.InvoiceUserApi;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.jaxrs.json.AccountTimelineJson;
+import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
+import org.killbill.billing.mock.MockAccountBuilder;
+import org.killbill.billing.payment.api.Payment;
+import org.killbill.billing.payment.api.PaymentApi;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.util.api.AuditLevel;
+import org.killbill.billing.util.api.AuditUserApi;
+import org.killbill.billing.util.audit.AccountAuditLogs;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.JaxrsConfig;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestAccountResourceTimeline extends JaxrsTestSuiteNoDB {
+
+    private static final int NB_READS = 5;
+
+    private final UUID accountId = UUID.randomUUID();
+
+    private TenantContext tenantContext;
+    private Account account;
+    private AccountAuditLogs accountAuditLogs;
+    private InvoiceUserApi invoiceApi;
+    private InvoicePaymentApi invoicePaymentApi;
+    private PaymentApi paymentApi;
+    private SubscriptionApi subscriptionApi;
+    private AuditUserApi auditUserApi;
+    private JaxrsExecutors jaxrsExecutors;
+    private AccountResource accountResource;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        tenantContext = Mockito.mock(TenantContext.class);
+        account = new MockAccountBuilder(accountId).externalKey("timeline")
+                                                   .currency(Currency.USD)
+                                                   .timeZone(DateTimeZone.UTC)
+                                                   .build();
+        accountAuditLogs = Mockito.mock(AccountAuditLogs.class);
+
+        final AccountUserApi accountUserApi = Mockito.mock(AccountUserApi.class);
+        Mockito.when(accountUserApi.getAccountById(accountId, tenantContext)).thenReturn(account);
+        final Context context = Mockito.mock(Context.class);
+        Mockito.when(context.createContext(Mockito.<ServletRequest>any())).thenReturn(tenantContext);
+
+        invoiceApi = Mockito.mock(InvoiceUserApi.class);
+        invoicePaymentApi = Mockito.mock(InvoicePaymentApi.class);
+        paymentApi = Mockito.mock(PaymentApi.class);
+        subscriptionApi = Mockito.mock(SubscriptionApi.class);
+        auditUserApi = Mockito.mock(AuditUserApi.class);
+
+        final JaxrsConfig jaxrsConfig = Mockito.mock(JaxrsConfig.class);
+        Mockito.when(jaxrsConfig.getJaxrsThreadNb()).thenReturn(NB_READS);
+        Mockito.when(jaxrsConfig.getImportThreadNb()).thenReturn(1);
+        Mockito.when(jaxrsConfig.getJaxrsTimeout()).thenReturn(new TimeSpan("1s"));
+        jaxrsExecutors = new JaxrsExecutors(jaxrsConfig);
+
+        accountResource = new AccountResource(null, accountUserApi, invoiceApi, invoicePaymentApi, paymentApi, null, auditUserApi, null, subscriptionApi, null, null, null, jaxrsExecutors, context);
+    }
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() throws Exception {
+        jaxrsExecutors.shutdown();
+    }
+
+    @Test(groups = "fast")
+    public void testReadsAreIssuedInParallel() throws Exception {
+        // Each read only returns once all of them have started: this would time out if they were sequential
+        final CountDownLatch allReadsStarted = new CountDownLatch(NB_READS);
+        final ReadCounters readCounters = new ReadCounters();
+        final WaitForLatch listAnswer = new WaitForLatch(allReadsStarted, ImmutableList.of(), readCounters);
+        Mockito.when(invoiceApi.getInvoicesByAccount(accountId, tenantContext)).thenAnswer(listAnswer);
+        mockOtherReads(listAnswer, new WaitForLatch(allReadsStarted, accountAuditLogs, readCounters));
+
+        final Response response = accountResource.getAccountTimeline(accountId.toString(), new AuditMode(AuditLevel.NONE.toString()), null);
+        Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+
+        // Same output as the (non-streamed) AccountTimelineJson
+        final AccountTimelineJson expected = new AccountTimelineJson(account,
+                                                                     ImmutableList.<Invoice>of(),
+                                                                     ImmutableList.<Payment>of(),
+                                                                     ImmutableList.<InvoicePayment>of(),
+                                                                     ImmutableList.<SubscriptionBundle>of(),
+                                                                     accountAuditLogs);
+        Assert.assertEquals(mapper.readTree(output.toByteArray()), mapper.readTree(mapper.writeValueAsString(expected)));
+    }
+
+    @Test(groups = "fast")
+    public void testOtherReadsAreCancelledOnFailure() throws Exception {
+        final ReadCounters readCounters = new ReadCounters();
+        final CountDownLatch never = new CountDownLatch(NB_READS + 1);
+        // The invoices are waited for first
+        Mockito.when(invoiceApi.getInvoicesByAccount(accountId, tenantContext)).thenThrow(new IllegalStateException("Invoices are unavailable"));
+        mockOtherReads(new WaitForLatch(never, ImmutableList.of(), readCounters),
+                       new WaitForLatch(never, accountAuditLogs, readCounters));
+
+        try {
+            accountResource.getAccountTimeline(accountId.toString(), new AuditMode(AuditLevel.NONE.toString()), null);
+            Assert.fail("The timeline shouldn't have been built");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "Invoices are unavailable");
+        }
+        // Reads still queued were cancelled, the running ones were interrupted
+        Assert.assertTrue(readCounters.waitForRunningReads(5000L));
+        Assert.assertEquals(readCounters.getCompletedReads(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testAllReadsAreCancelledOnTimeout() throws Exception {
+        final ReadCounters readCounters = new ReadCounters();
+        final CountDownLatch never = new CountDownLatch(NB_READS + 1);
+        final WaitForLatch listAnswer = new WaitForLatch(never, ImmutableList.of(), readCounters);
+        Mockito.when(invoiceApi.getInvoicesByAccount(accountId, tenantContext)).thenAnswer(listAnswer);
+        mockOtherReads(listAnswer, new WaitForLatch(never, accountAuditLogs, readCounters));
+
+        try {
+            accountResource.getAccountTimeline(accountId.toString(), new AuditMode(AuditLevel.NONE.toString()), null);
+            Assert.fail("The timeline shouldn't have been built");
+        } catch (final WebApplicationException e) {
+            Assert.assertEquals(e.getResponse().getStatus(), Status.SERVICE_UNAVAILABLE.getStatusCode());
+        }
+        // Reads still queued were cancelled, the running ones were interrupted
+        Assert.assertTrue(readCounters.waitForRunningReads(5000L));
+        Assert.assertEquals(readCounters.getCompletedReads(), 0);
+    }
+
+    private void mockOtherReads(final Answer<Object> listAnswer, final Answer<Object> auditLogsAnswer) throws Exception {
+        Mockito.when(paymentApi.getAccountPayments(Mockito.eq(accountId), Mockito.eq(false), Mockito.<Iterable<PluginProperty>>any(), Mockito.eq(tenantContext))).thenAnswer(listAnswer);
+        Mockito.when(subscriptionApi.getSubscriptionBundlesForAccountId(accountId, tenantContext)).thenAnswer(listAnswer);
+        Mockito.when(invoicePaymentApi.getInvoicePaymentsByAccount(accountId, tenantContext)).thenAnswer(listAnswer);
+        Mockito.when(auditUserApi.getAccountAuditLogs(accountId, AuditLevel.NONE, tenantContext)).thenAnswer(auditLogsAnswer);
+    }
+
+    private static final class ReadCounters {
+
+        private final AtomicInteger startedReads = new AtomicInteger(0);
+        private final AtomicInteger interruptedReads = new AtomicInteger(0);
+        private final AtomicInteger completedReads = new AtomicInteger(0);
+
+        public boolean waitForRunningReads(final long timeoutMillis) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (startedReads.get() != interruptedReads.get() + completedReads.get()) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+
+        public int getCompletedReads() {
+            return completedReads.get();
+        }
+    }
+
+    // Counts down the latch and waits for it to reach zero
+    private static final class WaitForLatch implements Answer<Object> {
+
+        private final CountDownLatch latch;
+        private final Object result;
+        private final ReadCounters readCounters;
+
+        private WaitForLatch(final CountDownLatch latch, final Object result, final ReadCounters readCounters) {
+            this.latch = latch;
+            this.result = result;
+            this.readCounters = readCounters;
+        }
+
+        @Override
+        public Object answer(final InvocationOnMock invocation) throws Throwable {
+            readCounters.startedReads.incrementAndGet();
+            latch.countDown();
+            try {
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Timed out waiting for the other reads");
+                }
+            } catch (final InterruptedException e) {
+                readCounters.interruptedReads.incrementAndGet();
+                throw e;
+            }
+            readCounters.completedReads.incrementAndGet();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.resources;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.ServletRequest;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountData;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.CatalogUserApi;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhasePriceOverridesWithCallContext;
+import org.killbill.billing.catalog.api.Product;
+import org.killbill.billing.catalog.api.ProductCategory;
+import org.killbill.billing.catalog.api.StaticCatalog;
+import org.killbill.billing.entitlement.EntitlementBulkCreation;
+import org.killbill.billing.entitlement.EntitlementInternalApi;
+import org.killbill.billing.entitlement.api.EntitlementApi;
+import org.killbill.billing.entitlement.api.Subscription;
+import org.killbill.billing.entitlement.api.SubscriptionApi;
+import org.killbill.billing.entitlement.api.SubscriptionBundle;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.jaxrs.json.AccountImportResultJson;
+import org.killbill.billing.jaxrs.json.AccountImportResultJson.ImportStatus;
+import org.killbill.billing.jaxrs.util.Context;
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.JaxrsConfig;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+public class TestImportResource extends JaxrsTestSuiteNoDB {
+
+    private static final String SUBSCRIPTION = "{\"externalKey\":\"%s\",\"productName\":\"Shotgun\",\"productCategory\":\"BASE\",\"billingPeriod\":\"MONTHLY\",\"priceList\":\"DEFAULT\"}";
+    private static final String WITH_SUBSCRIPTION = "\"subscriptions\":[" + SUBSCRIPTION + "]";
+    private static final String WITH_TWO_SUBSCRIPTIONS = "\"subscriptions\":[" + SUBSCRIPTION + "," + SUBSCRIPTION + "]";
+
+    private CallContext callContext;
+    private AccountInternalApi accountInternalApi;
+    private EntitlementApi entitlementApi;
+    private EntitlementInternalApi entitlementInternalApi;
+    private SubscriptionApi subscriptionApi;
+    private JaxrsExecutors jaxrsExecutors;
+    private ImportResource importResource;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        callContext = Mockito.mock(CallContext.class);
+        final Context context = Mockito.mock(Context.class);
+        Mockito.when(context.createContext(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.<ServletRequest>any())).thenReturn(callContext);
+
+        final Product product = Mockito.mock(Product.class);
+        Mockito.when(product.getCategory()).thenReturn(ProductCategory.BASE);
+        final Plan plan = Mockito.mock(Plan.class);
+        Mockito.when(plan.getProduct()).thenReturn(product);
+        final StaticCatalog catalog = Mockito.mock(StaticCatalog.class);
+        Mockito.when(catalog.createOrFindCurrentPlan(Mockito.eq("Shotgun"), Mockito.eq(BillingPeriod.MONTHLY), Mockito.eq("DEFAULT"), Mockito.<PlanPhasePriceOverridesWithCallContext>any())).thenReturn(plan);
+        final CatalogUserApi catalogUserApi = Mockito.mock(CatalogUserApi.class);
+        Mockito.when(catalogUserApi.getCurrentCatalog(Mockito.anyString(), Mockito.<TenantContext>any())).thenReturn(catalog);
+
+        accountInternalApi = Mockito.mock(AccountInternalApi.class);
+        subscriptionApi = Mockito.mock(SubscriptionApi.class);
+        entitlementApi = Mockito.mock(EntitlementApi.class);
+        entitlementInternalApi = Mockito.mock(EntitlementInternalApi.class);
+        Mockito.when(entitlementInternalApi.createBulkEntitlements(Mockito.<UUID>any(), Mockito.<List<EntitlementBulkCreation>>any(), Mockito.<CallContext>any()))
+               .thenAnswer(new Answer<List<SubscriptionBaseBulkChangeResult>>() {
+                   @Override
+                   public List<SubscriptionBaseBulkChangeResult> answer(final InvocationOnMock invocation) throws Throwable {
+                       final List<EntitlementBulkCreation> creations = (List<EntitlementBulkCreation>) invocation.getArguments()[1];
+                       final List<SubscriptionBaseBulkChangeResult> results = new ArrayList<SubscriptionBaseBulkChangeResult>();
+                       for (int i = 0; i < creations.size(); i++) {
+                           results.add(SubscriptionBaseBulkChangeResult.success(UUID.randomUUID(), null));
+                       }
+                       return results;
+                   }
+               });
+
+        final JaxrsConfig jaxrsConfig = Mockito.mock(JaxrsConfig.class);
+        Mockito.when(jaxrsConfig.getJaxrsThreadNb()).thenReturn(1);
+        Mockito.when(jaxrsConfig.getImportThreadNb()).thenReturn(1);
+        Mockito.when(jaxrsConfig.getImportBatchSize()).thenReturn(10);
+        Mockito.when(jaxrsConfig.getJaxrsTimeout()).thenReturn(new TimeSpan("1s"));
+        jaxrsExecutors = new JaxrsExecutors(jaxrsConfig);
+
+        importResource = new ImportResource(accountInternalApi, entitlementApi, entitlementInternalApi, subscriptionApi, catalogUserApi, Mockito.mock(InternalCallContextFactory.class), jaxrsExecutors,
+                                            null, null, null, null, null, null, null, context);
+    }
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() throws Exception {
+        jaxrsExecutors.shutdown();
+    }
+
+    @Test(groups = "fast", description = "Re-running an import creates the subscriptions of existing accounts without any")
+    public void testReRunResumesAccountsWithoutSubscriptions() throws Exception {
+        // Both accounts were created by a previous run, which stopped before creating the subscriptions of the first one
+        final Account interruptedAccount = mockExistingAccount("acct-1");
+        final Account importedAccount = mockExistingAccount("acct-2");
+        Mockito.when(accountInternalApi.createAccounts(Mockito.<List<AccountData>>any(), Mockito.<InternalCallContext>any())).thenReturn(ImmutableList.<Account>of());
+        Mockito.when(subscriptionApi.getSubscriptionBundlesForAccountId(interruptedAccount.getId(), callContext)).thenReturn(ImmutableList.<SubscriptionBundle>of());
+        Mockito.when(subscriptionApi.getSubscriptionBundlesForAccountId(importedAccount.getId(), callContext)).thenReturn(ImmutableList.<SubscriptionBundle>of(mockBundle("bundle-2")));
+
+        final List<AccountImportResultJson> results = importAccounts(record("acct-1", String.format(WITH_SUBSCRIPTION, "bundle-1")),
+                                                                     record("acct-2", String.format(WITH_SUBSCRIPTION, "bundle-2")));
+
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).getStatus(), ImportStatus.CREATED);
+        Assert.assertEquals(results.get(0).getAccountId(), interruptedAccount.getId().toString());
+        Assert.assertEquals(results.get(0).getSubscriptionIds().size(), 1);
+        Assert.assertEquals(results.get(1).getStatus(), ImportStatus.ALREADY_EXISTS);
+        Assert.assertEquals(results.get(1).getAccountId(), importedAccount.getId().toString());
+        Assert.assertEquals(results.get(2).getStatus(), ImportStatus.CHECKPOINT);
+
+        Assert.assertEquals(getCreatedBundleKeys(interruptedAccount), ImmutableList.<String>of("bundle-1"));
+        Mockito.verify(entitlementInternalApi, Mockito.never()).createBulkEntitlements(Mockito.eq(importedAccount.getId()), Mockito.<List<EntitlementBulkCreation>>any(), Mockito.<CallContext>any());
+    }
+
+    @Test(groups = "fast", description = "Re-running an import only creates the bundles missing from a partially imported record")
+    public void testReRunResumesPartiallyImportedRecords() throws Exception {
+        // The previous run created the account and its first bundle only
+        final Account account = mockExistingAccount("acct-1");
+        final SubscriptionBundle existingBundle = mockBundle("bundle-1");
+        Mockito.when(accountInternalApi.createAccounts(Mockito.<List<AccountData>>any(), Mockito.<InternalCallContext>any())).thenReturn(ImmutableList.<Account>of());
+        Mockito.when(subscriptionApi.getSubscriptionBundlesForAccountId(account.getId(), callContext)).thenReturn(ImmutableList.<SubscriptionBundle>of(existingBundle));
+
+        final List<AccountImportResultJson> results = importAccounts(record("acct-1", String.format(WITH_TWO_SUBSCRIPTIONS, "bundle-1", "bundle-2")));
+
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertEquals(results.get(0).getStatus(), ImportStatus.CREATED);
+        Assert.assertEquals(results.get(0).getSubscriptionIds().size(), 2);
+        Assert.assertEquals(results.get(0).getSubscriptionIds().get(0), existingBundle.getSubscriptions().get(0).getId().toString());
+        Assert.assertEquals(getCreatedBundleKeys(account), ImmutableList.<String>of("bundle-2"));
+
+        // Once complete, the record is reported as already imported
+        final List<AccountImportResultJson> reRunResults = importAccounts(record("acct-1", String.format(WITH_SUBSCRIPTION, "bundle-1")));
+        Assert.assertEquals(reRunResults.get(0).getStatus(), ImportStatus.ALREADY_EXISTS);
+    }
+
+    @Test(groups = "fast", description = "An account created concurrently only affects its own record")
+    public void testConcurrentDuplicateIsHandledPerRecord() throws Exception {
+        final Account createdAccount = mockAccount("acct-1");
+        final Account concurrentAccount = mockAccount("acct-2");
+        Mockito.when(accountInternalApi.createAccounts(Mockito.<List<AccountData>>any(), Mockito.<InternalCallContext>any())).thenAnswer(new Answer<List<Account>>() {
+            @Override
+            public List<Account> answer(final InvocationOnMock invocation) throws Throwable {
+                final List<AccountData> accountData = (List<AccountData>) invocation.getArguments()[0];
+                if (accountData.size() > 1 || "acct-2".equals(accountData.get(0).getExternalKey())) {
+                    // Unique index violation on acct-2
+                    throw new IllegalStateException("Duplicate entry 'acct-2' for key 'accounts_external_key'");
+                }
+                return ImmutableList.<Account>of(createdAccount);
+            }
+        });
+        Mockito.when(accountInternalApi.getAccountByKey(Mockito.eq("acct-2"), Mockito.<InternalTenantContext>any())).thenReturn(concurrentAccount);
+
+        final List<AccountImportResultJson> results = importAccounts(record("acct-1", null), record("acct-2", null));
+
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).getStatus(), ImportStatus.CREATED);
+        Assert.assertEquals(results.get(0).getAccountId(), createdAccount.getId().toString());
+        Assert.assertEquals(results.get(1).getStatus(), ImportStatus.ALREADY_EXISTS);
+        Assert.assertEquals(results.get(1).getAccountId(), concurrentAccount.getId().toString());
+        Assert.assertEquals(results.get(2).getStatus(), ImportStatus.CHECKPOINT);
+    }
+
+    private List<AccountImportResultJson> importAccounts(final String... records) throws Exception {
+        final StringBuilder input = new StringBuilder();
+        for (final String record : records) {
+            input.append(record).append('\n');
+        }
+
+        final StreamingOutput streamingOutput = importResource.importAccounts(new ByteArrayInputStream(input.toString().getBytes(Charsets.UTF_8)), "JSON", 1L, "importer", null, null, null);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamingOutput.write(output);
+
+        final List<AccountImportResultJson> results = new ArrayList<AccountImportResultJson>();
+        final BufferedReader reader = new BufferedReader(new StringReader(new String(output.toByteArray(), Charsets.UTF_8)));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            results.add(mapper.readValue(line, AccountImportResultJson.class));
+        }
+        return results;
+    }
+
+    private String record(final String externalKey, final String subscriptions) {
+        return "{\"account\":{\"externalKey\":\"" + externalKey + "\",\"currency\":\"USD\"}" + (subscriptions == null ? "" : "," + subscriptions) + "}";
+    }
+
+    private List<String> getCreatedBundleKeys(final Account account) {
+        final ArgumentCaptor<List> creations = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(entitlementInternalApi).createBulkEntitlements(Mockito.eq(account.getId()), creations.capture(), Mockito.<CallContext>any());
+        final List<String> bundleKeys = new ArrayList<String>();
+        for (final Object creation : creations.getValue()) {
+            bundleKeys.add(((EntitlementBulkCreation) creation).getBundleExternalKey());
+        }
+        return bundleKeys;
+    }
+
+    private SubscriptionBundle mockBundle(final String externalKey) {
+        final Product product = Mockito.mock(Product.class);
+        Mockito.when(product.getName()).thenReturn("Shotgun");
+        final Subscription subscription = Mockito.mock(Subscription.class);
+        Mockito.when(subscription.getId()).thenReturn(UUID.randomUUID());
+        Mockito.when(subscription.getLastActiveProduct()).thenReturn(product);
+        final SubscriptionBundle bundle = Mockito.mock(SubscriptionBundle.class);
+        Mockito.when(bundle.getId()).thenReturn(UUID.randomUUID());
+        Mockito.when(bundle.getExternalKey()).thenReturn(externalKey);
+        Mockito.when(bundle.getSubscriptions()).thenReturn(ImmutableList.<Subscription>of(subscription));
+        return bundle;
+    }
+
+    private Account mockExistingAccount(final String externalKey) throws Exception {
+        final Account account = mockAccount(externalKey);
+        Mockito.when(accountInternalApi.getAccountByKey(Mockito.eq(externalKey), Mockito.<InternalTenantContext>any())).thenReturn(account);
+        return account;
+    }
+
+    private Account mockAccount(final String externalKey) {
+        final Account account = Mockito.mock(Account.class);
+        Mockito.when(account.getId()).thenReturn(UUID.randomUUID());
+        Mockito.when(account.getExternalKey()).thenReturn(externalKey);
+        return account;
+    }
+}
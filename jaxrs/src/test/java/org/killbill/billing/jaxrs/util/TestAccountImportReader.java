@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.io.ByteArrayInputStream;
+
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.jaxrs.json.AccountImportJson;
+import org.killbill.billing.jaxrs.util.AccountImportReader.Format;
+import org.killbill.billing.jaxrs.util.AccountImportReader.Record;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+public class TestAccountImportReader extends JaxrsTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testJSONLines() throws Exception {
+        final String input = "{\"account\":{\"externalKey\":\"acct-1\",\"name\":\"Jean\",\"currency\":\"USD\"}," +
+                             "\"subscriptions\":[{\"externalKey\":\"bundle-1\",\"productName\":\"Shotgun\",\"productCategory\":\"BASE\",\"billingPeriod\":\"MONTHLY\",\"priceList\":\"DEFAULT\"}]}\n" +
+                             "\n" +
+                             "{not json}\n" +
+                             "{\"account\":{\"externalKey\":\"acct-2\"}}\n";
+        final AccountImportReader reader = new AccountImportReader(new ByteArrayInputStream(input.getBytes(Charsets.UTF_8)), Format.JSON, mapper);
+
+        final Record first = reader.next();
+        Assert.assertEquals(first.getFirstLineNumber(), 1);
+        Assert.assertEquals(first.getLastLineNumber(), 1);
+        Assert.assertEquals(first.getAccountImport().getAccount().getExternalKey(), "acct-1");
+        Assert.assertEquals(first.getAccountImport().getAccount().getCurrency(), "USD");
+        Assert.assertEquals(first.getAccountImport().getSubscriptions().size(), 1);
+        Assert.assertEquals(first.getAccountImport().getSubscriptions().get(0).getProductName(), "Shotgun");
+
+        final Record invalid = reader.next();
+        Assert.assertEquals(invalid.getFirstLineNumber(), 3);
+        Assert.assertNull(invalid.getAccountImport());
+        Assert.assertNotNull(invalid.getError());
+
+        final Record last = reader.next();
+        Assert.assertEquals(last.getFirstLineNumber(), 4);
+        Assert.assertEquals(last.getAccountImport().getAccount().getExternalKey(), "acct-2");
+        Assert.assertTrue(last.getAccountImport().getSubscriptions().isEmpty());
+
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test(groups = "fast")
+    public void testCSV() throws Exception {
+        final String input = "externalKey,name,billCycleDayLocal,subscription.externalKey,subscription.productName,subscription.productCategory,subscription.billingPeriod,subscription.priceList\n" +
+                             "acct-1,\"Doe, Jean\",15,bundle-1,Shotgun,BASE,MONTHLY,DEFAULT\n" +
+                             "acct-1,,,,Telescopic-Scope,ADD_ON,MONTHLY,DEFAULT\n" +
+                             "acct-2,\"Jean \"\"JD\"\" Doe\",,,,,,\n" +
+                             "acct-3,Jean\n" +
+                             "acct-4,Jean,1,,,,,\n";
+        final AccountImportReader reader = new AccountImportReader(new ByteArrayInputStream(input.getBytes(Charsets.UTF_8)), Format.CSV, mapper);
+
+        final Record first = reader.next();
+        Assert.assertEquals(first.getFirstLineNumber(), 2);
+        Assert.assertEquals(first.getLastLineNumber(), 3);
+        final AccountImportJson firstImport = first.getAccountImport();
+        Assert.assertEquals(firstImport.getAccount().getExternalKey(), "acct-1");
+        Assert.assertEquals(firstImport.getAccount().getName(), "Doe, Jean");
+        Assert.assertEquals(firstImport.getAccount().getBillCycleDayLocal(), (Integer) 15);
+        Assert.assertEquals(firstImport.getSubscriptions().size(), 2);
+        Assert.assertEquals(firstImport.getSubscriptions().get(0).getExternalKey(), "bundle-1");
+        Assert.assertEquals(firstImport.getSubscriptions().get(0).getProductCategory(), "BASE");
+        Assert.assertEquals(firstImport.getSubscriptions().get(1).getProductName(), "Telescopic-Scope");
+        Assert.assertEquals(firstImport.getSubscriptions().get(1).getProductCategory(), "ADD_ON");
+
+        final Record second = reader.next();
+        Assert.assertEquals(second.getFirstLineNumber(), 4);
+        Assert.assertEquals(second.getLastLineNumber(), 4);
+        Assert.assertEquals(second.getAccountImport().getAccount().getName(), "Jean \"JD\" Doe");
+        Assert.assertTrue(second.getAccountImport().getSubscriptions().isEmpty());
+
+        final Record invalid = reader.next();
+        Assert.assertEquals(invalid.getFirstLineNumber(), 5);
+        Assert.assertNull(invalid.getAccountImport());
+        Assert.assertNotNull(invalid.getError());
+
+        final Record last = reader.next();
+        Assert.assertEquals(last.getFirstLineNumber(), 6);
+        Assert.assertEquals(last.getAccountImport().getAccount().getExternalKey(), "acct-4");
+
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test(groups = "fast")
+    public void testSplitCSVLine() throws Exception {
+        Assert.assertEquals(AccountImportReader.splitCSVLine("a,,\"b,c\",\"d\"\"e\""), ImmutableList.<String>of("a", "", "b,c", "d\"e"));
+        Assert.assertEquals(AccountImportReader.splitCSVLine(""), ImmutableList.<String>of(""));
+    }
+}
@@ -19,7 +19,9 @@ package org.killbill.billing.junction.plumbing.billing;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -82,6 +84,9 @@ public class BlockingCalculator {
 
     /**
      * Given a set of billing events, add corresponding blocking (overdue) billing events.
+     * <p/>
+     * The billing events of each subscription are merged with the (sorted) disabled durations of the account in a single
+     * pass, see {@link #sweepSubscriptionEvents}.
      *
      * @param billingEvents the original list of billing events to update (without overdue events)
      */
@@ -90,20 +95,16 @@ public class BlockingCalculator {
             return;
         }
 
-        final Account account = billingEvents.first().getAccount();
-
-        final Hashtable<UUID, List<SubscriptionBase>> bundleMap = createBundleSubscriptionMap(billingEvents);
+        final List<BlockingState> blockingEvents = blockingApi.getBlockingAllForAccount(context);
+        final List<DisabledDuration> blockingDurations = createBlockingDurations(blockingEvents);
+        if (blockingDurations.isEmpty()) {
+            return;
+        }
 
         final SortedSet<BillingEvent> billingEventsToAdd = new TreeSet<BillingEvent>();
         final SortedSet<BillingEvent> billingEventsToRemove = new TreeSet<BillingEvent>();
-
-        final List<BlockingState> blockingEvents = blockingApi.getBlockingAllForAccount(context);
-        final List<DisabledDuration> blockingDurations = createBlockingDurations(blockingEvents);
-        for (final UUID bundleId : bundleMap.keySet()) {
-            for (final SubscriptionBase subscription : bundleMap.get(bundleId)) {
-                billingEventsToAdd.addAll(createNewEvents(blockingDurations, billingEvents, account, subscription));
-                billingEventsToRemove.addAll(eventsToRemove(blockingDurations, billingEvents, subscription));
-            }
+        for (final List<BillingEvent> subscriptionEvents : groupBySubscription(billingEvents).values()) {
+            sweepSubscriptionEvents(blockingDurations, subscriptionEvents, billingEventsToAdd, billingEventsToRemove);
         }
 
         for (final BillingEvent eventToAdd : billingEventsToAdd) {
@@ -118,43 +119,84 @@ public class BlockingCalculator {
     protected SortedSet<BillingEvent> eventsToRemove(final List<DisabledDuration> disabledDuration,
                                                      final SortedSet<BillingEvent> billingEvents, final SubscriptionBase subscription) {
         final SortedSet<BillingEvent> result = new TreeSet<BillingEvent>();
-
-        final SortedSet<BillingEvent> filteredBillingEvents = filter(billingEvents, subscription);
-        for (final DisabledDuration duration : disabledDuration) {
-            for (final BillingEvent event : filteredBillingEvents) {
-                if (duration.getEnd() == null || event.getEffectiveDate().isBefore(duration.getEnd())) {
-                    if (event.getEffectiveDate().isAfter(duration.getStart())) { //between the pair
-                        result.add(event);
-                    }
-                } else { //after the last event of the pair no need to keep checking
-                    break;
-                }
-            }
-        }
+        sweepSubscriptionEvents(disabledDuration, new ArrayList<BillingEvent>(filter(billingEvents, subscription)), new TreeSet<BillingEvent>(), result);
         return result;
     }
 
     protected SortedSet<BillingEvent> createNewEvents(final List<DisabledDuration> disabledDuration, final SortedSet<BillingEvent> billingEvents, final Account account, final SubscriptionBase subscription) {
         final SortedSet<BillingEvent> result = new TreeSet<BillingEvent>();
-        for (final DisabledDuration duration : disabledDuration) {
+        sweepSubscriptionEvents(disabledDuration, new ArrayList<BillingEvent>(filter(billingEvents, subscription)), result, new TreeSet<BillingEvent>());
+        return result;
+    }
+
+    /**
+     * Sweeps the billing events of a single subscription (in ascending order) and the disabled durations (in ascending
+     * order, not overlapping, see {@link #createBlockingDurations}) together: the events to add (disable and re-enable
+     * events) and the events to remove (the ones strictly within a disabled duration) are computed in
+     * O(durations + events), each event being looked at most twice.
+     */
+    protected void sweepSubscriptionEvents(final List<DisabledDuration> disabledDurations, final List<BillingEvent> subscriptionEvents,
+                                           final SortedSet<BillingEvent> billingEventsToAdd, final SortedSet<BillingEvent> billingEventsToRemove) {
+        if (subscriptionEvents.isEmpty()) {
+            return;
+        }
+
+        // Number of events strictly before the current sweep date
+        int nbPrecedingEvents = 0;
+        for (final DisabledDuration duration : disabledDurations) {
             // The first one before the blocked duration
-            final BillingEvent precedingInitialEvent = precedingBillingEventForSubscription(duration.getStart(), billingEvents, subscription);
-            // The last one during of before the duration
-            final BillingEvent precedingFinalEvent = precedingBillingEventForSubscription(duration.getEnd(), billingEvents, subscription);
+            nbPrecedingEvents = countPrecedingEvents(subscriptionEvents, nbPrecedingEvents, duration.getStart());
+            final BillingEvent precedingInitialEvent = precedingEvent(subscriptionEvents, nbPrecedingEvents, duration.getStart());
 
-            if (precedingInitialEvent != null) { // there is a preceding billing event
-                result.add(createNewDisableEvent(duration.getStart(), precedingInitialEvent));
-                if (duration.getEnd() != null) { // no second event in the pair means they are still disabled (no re-enable)
-                    result.add(createNewReenableEvent(duration.getEnd(), precedingFinalEvent));
+            // The events strictly within the duration
+            int i = nbPrecedingEvents;
+            while (i < subscriptionEvents.size() && !subscriptionEvents.get(i).getEffectiveDate().isAfter(duration.getStart())) {
+                i++;
+            }
+            while (i < subscriptionEvents.size() && (duration.getEnd() == null || subscriptionEvents.get(i).getEffectiveDate().isBefore(duration.getEnd()))) {
+                billingEventsToRemove.add(subscriptionEvents.get(i));
+                i++;
+            }
+
+            if (duration.getEnd() == null) {
+                // No second event in the pair means they are still disabled (no re-enable)
+                if (precedingInitialEvent != null) {
+                    billingEventsToAdd.add(createNewDisableEvent(duration.getStart(), precedingInitialEvent));
                 }
+                continue;
+            }
+
+            // The last one during or before the duration
+            nbPrecedingEvents = countPrecedingEvents(subscriptionEvents, nbPrecedingEvents, duration.getEnd());
+            final BillingEvent precedingFinalEvent = precedingEvent(subscriptionEvents, nbPrecedingEvents, duration.getEnd());
+
+            if (precedingInitialEvent != null) { // there is a preceding billing event
+                billingEventsToAdd.add(createNewDisableEvent(duration.getStart(), precedingInitialEvent));
+                billingEventsToAdd.add(createNewReenableEvent(duration.getEnd(), precedingFinalEvent));
             } else if (precedingFinalEvent != null) { // can happen - e.g. phase event
-                result.add(createNewReenableEvent(duration.getEnd(), precedingFinalEvent));
+                billingEventsToAdd.add(createNewReenableEvent(duration.getEnd(), precedingFinalEvent));
             }
             // N.B. if there's no precedingInitial and no precedingFinal then there's nothing to do
         }
+    }
+
+    private int countPrecedingEvents(final List<BillingEvent> subscriptionEvents, final int fromIndex, final DateTime datetime) {
+        int result = fromIndex;
+        while (result < subscriptionEvents.size() && subscriptionEvents.get(result).getEffectiveDate().isBefore(datetime)) {
+            result++;
+        }
         return result;
     }
 
+    // Same semantics as precedingBillingEventForSubscription, given the number of events strictly before datetime
+    private BillingEvent precedingEvent(final List<BillingEvent> subscriptionEvents, final int nbPrecedingEvents, final DateTime datetime) {
+        if (datetime.isBefore(subscriptionEvents.get(0).getEffectiveDate())) {
+            //This case can happen, for example, if we have an add on and the bundle goes into disabled before the add on is created
+            return null;
+        }
+        return nbPrecedingEvents == 0 ? subscriptionEvents.get(0) : subscriptionEvents.get(nbPrecedingEvents - 1);
+    }
+
     protected BillingEvent precedingBillingEventForSubscription(final DateTime datetime, final SortedSet<BillingEvent> billingEvents, final SubscriptionBase subscription) {
         if (datetime == null) { //second of a pair can be null if there's no re-enabling
             return null;
@@ -178,6 +220,20 @@ public class BlockingCalculator {
         return result;
     }
 
+    // The billing events are sorted, so each list is sorted as well
+    protected Map<SubscriptionBase, List<BillingEvent>> groupBySubscription(final SortedSet<BillingEvent> billingEvents) {
+        final Map<SubscriptionBase, List<BillingEvent>> result = new IdentityHashMap<SubscriptionBase, List<BillingEvent>>();
+        for (final BillingEvent event : billingEvents) {
+            List<BillingEvent> subscriptionEvents = result.get(event.getSubscription());
+            if (subscriptionEvents == null) {
+                subscriptionEvents = new ArrayList<BillingEvent>();
+                result.put(event.getSubscription(), subscriptionEvents);
+            }
+            subscriptionEvents.add(event);
+        }
+        return result;
+    }
+
     protected SortedSet<BillingEvent> filter(final SortedSet<BillingEvent> billingEvents, final SubscriptionBase subscription) {
         final SortedSet<BillingEvent> result = new TreeSet<BillingEvent>();
         for (final BillingEvent event : billingEvents) {
@@ -140,6 +140,51 @@ public class TestBlockingCalculator extends JunctionTestSuiteNoDB {
         assertEquals(it3.next(), D);
     }
 
+    // Several durations for the same subscription
+    // B1 ------[----]--[----]------[-----------
+    // S1 --A------B------C-----D--------E------
+
+    //Result
+    // S1 --A---[----]--[----]--D---[-----------
+    @Test(groups = "fast")
+    public void testInsertBlockingEventsForSeveralDurations() {
+        final DateTime now = clock.getUTCNow();
+
+        final BillingEvent A = createRealEvent(now, subscription1);
+        final BillingEvent B = createRealEvent(now.plusDays(5), subscription1);
+        final BillingEvent C = createRealEvent(now.plusDays(12), subscription1);
+        final BillingEvent D = createRealEvent(now.plusDays(20), subscription1);
+        final BillingEvent E = createRealEvent(now.plusDays(31), subscription1);
+        final SortedSet<BillingEvent> billingEvents = new TreeSet<BillingEvent>();
+        billingEvents.add(A);
+        billingEvents.add(B);
+        billingEvents.add(C);
+        billingEvents.add(D);
+        billingEvents.add(E);
+
+        final List<BlockingState> blockingStates = new ArrayList<BlockingState>();
+        blockingStates.add(new DefaultBlockingState(bundleId1, BlockingStateType.SUBSCRIPTION_BUNDLE, DISABLED_BUNDLE, "test", true, true, true, now.plusDays(3)));
+        blockingStates.add(new DefaultBlockingState(bundleId1, BlockingStateType.SUBSCRIPTION_BUNDLE, CLEAR_BUNDLE, "test", false, false, false, now.plusDays(8)));
+        blockingStates.add(new DefaultBlockingState(bundleId1, BlockingStateType.SUBSCRIPTION_BUNDLE, DISABLED_BUNDLE, "test", true, true, true, now.plusDays(10)));
+        blockingStates.add(new DefaultBlockingState(bundleId1, BlockingStateType.SUBSCRIPTION_BUNDLE, CLEAR_BUNDLE, "test", false, false, false, now.plusDays(15)));
+        blockingStates.add(new DefaultBlockingState(bundleId1, BlockingStateType.SUBSCRIPTION_BUNDLE, DISABLED_BUNDLE, "test", true, true, true, now.plusDays(25)));
+
+        setBlockingStates(blockingStates);
+
+        blockingCalculator.insertBlockingEvents(billingEvents, internalCallContext);
+
+        assertEquals(billingEvents.size(), 7);
+
+        final Iterator<BillingEvent> it = billingEvents.iterator();
+        assertEquals(it.next(), A);
+        checkBlockingEvent(it.next(), now.plusDays(3), SubscriptionBaseTransitionType.START_BILLING_DISABLED);
+        checkBlockingEvent(it.next(), now.plusDays(8), SubscriptionBaseTransitionType.END_BILLING_DISABLED);
+        checkBlockingEvent(it.next(), now.plusDays(10), SubscriptionBaseTransitionType.START_BILLING_DISABLED);
+        checkBlockingEvent(it.next(), now.plusDays(15), SubscriptionBaseTransitionType.END_BILLING_DISABLED);
+        assertEquals(it.next(), D);
+        checkBlockingEvent(it.next(), now.plusDays(25), SubscriptionBaseTransitionType.START_BILLING_DISABLED);
+    }
+
     // Open ended duration with a previous event
     // --X--[----------------------------------
     @Test(groups = "fast")
@@ -771,6 +816,11 @@ public class TestBlockingCalculator extends JunctionTestSuiteNoDB {
         assertEquals(events.get(4).getTransitionType(), SubscriptionBaseTransitionType.CHANGE);
     }
 
+    private void checkBlockingEvent(final BillingEvent event, final DateTime effectiveDate, final SubscriptionBaseTransitionType type) {
+        assertEquals(event.getEffectiveDate(), effectiveDate);
+        assertEquals(event.getTransitionType(), type);
+    }
+
     private void setBlockingStates(final List<BlockingState> blockingStates) {
         for (final BlockingState blockingState : blockingStates) {
             blockingStateDao.setBlockingState(blockingState, clock, internalCallContext);
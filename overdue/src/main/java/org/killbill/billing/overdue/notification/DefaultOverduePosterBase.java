@@ -38,6 +38,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 
 public abstract class DefaultOverduePosterBase implements OverduePoster {
@@ -49,9 +50,9 @@ public abstract class DefaultOverduePosterBase implements OverduePoster {
 
     public DefaultOverduePosterBase(final NotificationQueueService notificationQueueService,
                                     final IDBI dbi, final Clock clock,
-                                    final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
+                                    final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
         this.notificationQueueService = notificationQueueService;
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao);
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry);
     }
 
     @Override
@@ -68,10 +69,10 @@ public abstract class DefaultOverduePosterBase implements OverduePoster {
                     final Collection<NotificationEventWithMetadata<T>> futureNotifications = getFutureNotificationsForAccountInTransaction(entitySqlDaoWrapperFactory, overdueQueue,
                                                                                                                                            clazz, context);
 
-                    final boolean shouldInsertNewNotification = cleanupFutureNotificationsFormTransaction(entitySqlDaoWrapperFactory, futureNotifications, futureNotificationTime, overdueQueue);
-                    if (shouldInsertNewNotification) {
-                        log.debug("Queuing overdue check notification. Account id: {}, timestamp: {}", accountId.toString(), futureNotificationTime.toString());
-                        overdueQueue.recordFutureNotificationFromTransaction(entitySqlDaoWrapperFactory.getHandle().getConnection(), futureNotificationTime, notificationKey, context.getUserToken(), context.getAccountRecordId(), context.getTenantRecordId());
+                    final DateTime newNotificationTime = cleanupFutureNotificationsFormTransaction(entitySqlDaoWrapperFactory, futureNotifications, futureNotificationTime, notificationKey, overdueQueue);
+                    if (newNotificationTime != null) {
+                        log.debug("Queuing overdue check notification. Account id: {}, timestamp: {}", accountId.toString(), newNotificationTime.toString());
+                        overdueQueue.recordFutureNotificationFromTransaction(entitySqlDaoWrapperFactory.getHandle().getConnection(), newNotificationTime, notificationKey, context.getUserToken(), context.getAccountRecordId(), context.getTenantRecordId());
                     } else {
                         log.debug("Skipping queuing overdue check notification. Account id: {}, timestamp: {}", accountId.toString(), futureNotificationTime.toString());
                     }
@@ -113,8 +114,15 @@ public abstract class DefaultOverduePosterBase implements OverduePoster {
         return checkOverdueQueue.getFutureNotificationFromTransactionForSearchKeys(context.getAccountRecordId(), context.getTenantRecordId(), entitySqlDaoWrapperFactory.getHandle().getConnection());
     }
 
-    protected abstract <T extends OverdueCheckNotificationKey> boolean cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
-                                                                                                                 final Collection<NotificationEventWithMetadata<T>> futureNotifications,
-                                                                                                                 final DateTime futureNotificationTime, final NotificationQueue overdueQueue);
+    /**
+     * Collapse the pending notifications for the account with the new one.
+     *
+     * @return the effective date of the notification to insert, or null if the new notification is already covered by a pending one
+     */
+    protected abstract <T extends OverdueCheckNotificationKey> DateTime cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+                                                                                                                  final Collection<NotificationEventWithMetadata<T>> futureNotifications,
+                                                                                                                  final DateTime futureNotificationTime,
+                                                                                                                  final T notificationKey,
+                                                                                                                  final NotificationQueue overdueQueue);
 
 }
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.overdue.notification;
 
+import java.util.Collection;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.killbill.billing.overdue.OverdueProperties;
 import org.killbill.billing.overdue.listener.OverdueDispatcher;
@@ -67,6 +69,7 @@ public class OverdueAsyncBusNotifier extends DefaultOverdueNotifierBase implemen
                     dispatcher.clearOverdueForAccount(key.getUuidKey(), createCallContext(userToken, accountRecordId, tenantRecordId));
                     break;
                 case REFRESH:
+                    removePendingRefreshNotifications(key, accountRecordId, tenantRecordId);
                     dispatcher.processOverdueForAccount(key.getUuidKey(), createCallContext(userToken, accountRecordId, tenantRecordId));
                     break;
                 default:
@@ -77,5 +80,15 @@ public class OverdueAsyncBusNotifier extends DefaultOverdueNotifierBase implemen
         }
     }
 
+    // The refresh we are about to run will see the changes which triggered any other pending refresh for that account
+    private void removePendingRefreshNotifications(final OverdueAsyncBusNotificationKey key, final Long accountRecordId, final Long tenantRecordId) {
+        final Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>> futureNotifications = overdueQueue.getFutureNotificationForSearchKeys(accountRecordId, tenantRecordId);
+        for (final NotificationEventWithMetadata<OverdueAsyncBusNotificationKey> cur : futureNotifications) {
+            if (key.equals(cur.getEvent())) {
+                overdueQueue.removeNotification(cur.getRecordId());
+            }
+        }
+    }
+
 
 }
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.overdue.notification;
 
+import java.sql.Connection;
 import java.util.Collection;
 
 import org.joda.time.DateTime;
@@ -30,6 +31,7 @@ import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.skife.jdbi.v2.IDBI;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 
 public class OverdueAsyncBusPoster extends DefaultOverduePosterBase {
@@ -37,18 +39,35 @@ public class OverdueAsyncBusPoster extends DefaultOverduePosterBase {
     @Inject
     public OverdueAsyncBusPoster(final NotificationQueueService notificationQueueService,
                                  final IDBI dbi, final Clock clock,
-                                 final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(notificationQueueService, dbi, clock, cacheControllerDispatcher, nonEntityDao);
+                                 final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
+        super(notificationQueueService, dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry);
     }
 
     @Override
-    protected <T extends OverdueCheckNotificationKey> boolean cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
-                                                                                                        final Collection<NotificationEventWithMetadata<T>> futureNotifications,
-                                                                                                        final DateTime futureNotificationTime,
-                                                                                                        final NotificationQueue overdueQueue) {
-        // If we already have notification for that account we don't insert the new one
-        // Note that this is slightly incorrect because we could for instance already have a REFRESH and insert a CLEAR, but if that were the case,
-        // if means overdue state would change very rapidly and the behavior would anyway be non deterministic
-        return futureNotifications.isEmpty();
+    protected <T extends OverdueCheckNotificationKey> DateTime cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+                                                                                                         final Collection<NotificationEventWithMetadata<T>> futureNotifications,
+                                                                                                         final DateTime futureNotificationTime,
+                                                                                                         final T notificationKey,
+                                                                                                         final NotificationQueue overdueQueue) {
+        // Pending refreshes for the account (e.g. a payment retry storm) are collapsed into a single entry per action: if the same
+        // action is already pending no later than requested, we keep it and drop any other. Otherwise, the requested action is queued
+        // and the pending ones are dropped. Entries for other actions are left alone: in particular, a pending CLEAR must survive a
+        // REFRESH (which is a no-op when overdue enforcement is off, see OverdueStateApplicator), or the account would stay blocked.
+        final Connection connection = entitySqlDaoWrapperFactory.getHandle().getConnection();
+        boolean isAlreadyPending = false;
+        // Results are ordered by effective date asc
+        for (final NotificationEventWithMetadata<T> futureNotification : futureNotifications) {
+            if (!notificationKey.equals(futureNotification.getEvent())) {
+                continue;
+            }
+
+            if (!isAlreadyPending && !futureNotification.getEffectiveDate().isAfter(futureNotificationTime)) {
+                isAlreadyPending = true;
+            } else {
+                overdueQueue.removeNotificationFromTransaction(connection, futureNotification.getRecordId());
+            }
+        }
+
+        return isAlreadyPending ? null : futureNotificationTime;
     }
 }
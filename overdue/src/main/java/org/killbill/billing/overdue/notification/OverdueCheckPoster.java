@@ -30,6 +30,7 @@ import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService;
 import org.skife.jdbi.v2.IDBI;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 
 public class OverdueCheckPoster extends DefaultOverduePosterBase {
@@ -37,14 +38,16 @@ public class OverdueCheckPoster extends DefaultOverduePosterBase {
     @Inject
     public OverdueCheckPoster(final NotificationQueueService notificationQueueService,
                               final IDBI dbi, final Clock clock,
-                              final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(notificationQueueService, dbi, clock, cacheControllerDispatcher, nonEntityDao);
+                              final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
+        super(notificationQueueService, dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry);
     }
 
     @Override
-    protected <T extends OverdueCheckNotificationKey> boolean cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
-                                                                                                        final Collection<NotificationEventWithMetadata<T>> futureNotifications,
-                                                                                                        final DateTime futureNotificationTime, final NotificationQueue overdueQueue) {
+    protected <T extends OverdueCheckNotificationKey> DateTime cleanupFutureNotificationsFormTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory,
+                                                                                                         final Collection<NotificationEventWithMetadata<T>> futureNotifications,
+                                                                                                         final DateTime futureNotificationTime,
+                                                                                                         final T notificationKey,
+                                                                                                         final NotificationQueue overdueQueue) {
 
         boolean shouldInsertNewNotification = true;
         if (!futureNotifications.isEmpty()) {
@@ -69,6 +72,6 @@ public class OverdueCheckPoster extends DefaultOverduePosterBase {
                 index++;
             }
         }
-        return shouldInsertNewNotification;
+        return shouldInsertNewNotification ? futureNotificationTime : null;
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.overdue.notification;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.overdue.OverdueTestSuiteWithEmbeddedDB;
+import org.killbill.billing.overdue.notification.OverdueAsyncBusNotificationKey.OverdueAsyncBusNotificationAction;
+import org.killbill.billing.overdue.service.DefaultOverdueService;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class TestOverdueAsyncBusPoster extends OverdueTestSuiteWithEmbeddedDB {
+
+    private NotificationQueue asyncBusQueue;
+    private DateTime testReferenceTime;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        asyncBusQueue = notificationQueueService.getNotificationQueue(DefaultOverdueService.OVERDUE_SERVICE_NAME,
+                                                                      OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE);
+        Assert.assertTrue(asyncBusQueue.isStarted());
+
+        testReferenceTime = clock.getUTCNow();
+    }
+
+    @Test(groups = "slow")
+    public void testPendingNotificationsAreCollapsed() throws Exception {
+        final UUID accountId = UUID.randomUUID();
+
+        // Earliest effective date wins
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 10, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 10));
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 5, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 5));
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 15, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 5));
+
+        // Actions are collapsed separately
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 20, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 5,
+                                                                                                                                                      OverdueAsyncBusNotificationAction.CLEAR, 20));
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 8, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 5,
+                                                                                                                                                     OverdueAsyncBusNotificationAction.CLEAR, 8));
+    }
+
+    @Test(groups = "slow", description = "A pending CLEAR must never be replaced by a REFRESH, which is a no-op when overdue enforcement is off")
+    public void testPendingClearIsKept() throws Exception {
+        final UUID accountId = UUID.randomUUID();
+
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.CLEAR, 10, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.CLEAR, 10));
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 3, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 3,
+                                                                                                                                                       OverdueAsyncBusNotificationAction.CLEAR, 10));
+        insertAndVerifyQueueContent(accountId, OverdueAsyncBusNotificationAction.REFRESH, 1, ImmutableMap.<OverdueAsyncBusNotificationAction, Integer>of(OverdueAsyncBusNotificationAction.REFRESH, 1,
+                                                                                                                                                       OverdueAsyncBusNotificationAction.CLEAR, 10));
+    }
+
+    private void insertAndVerifyQueueContent(final UUID accountId, final OverdueAsyncBusNotificationAction action, final int nbDaysInFuture,
+                                             final Map<OverdueAsyncBusNotificationAction, Integer> expectedNbDaysInFuture) {
+        final OverdueAsyncBusNotificationKey notificationKey = new OverdueAsyncBusNotificationKey(accountId, action);
+        asyncPoster.insertOverdueNotification(accountId, testReferenceTime.plusDays(nbDaysInFuture), OverdueAsyncBusNotifier.OVERDUE_ASYNC_BUS_NOTIFIER_QUEUE, notificationKey, internalCallContext);
+
+        final Collection<NotificationEventWithMetadata<OverdueAsyncBusNotificationKey>> notifications = asyncBusQueue.getFutureNotificationForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+        Assert.assertEquals(notifications.size(), expectedNbDaysInFuture.size());
+        for (final NotificationEventWithMetadata<OverdueAsyncBusNotificationKey> nm : notifications) {
+            final OverdueAsyncBusNotificationAction pendingAction = nm.getEvent().getAction();
+            Assert.assertTrue(expectedNbDaysInFuture.containsKey(pendingAction));
+            Assert.assertEquals(nm.getEvent(), new OverdueAsyncBusNotificationKey(accountId, pendingAction));
+            Assert.assertEquals(nm.getEffectiveDate(), testReferenceTime.plusDays(expectedNbDaysInFuture.get(pendingAction)));
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.killbill.billing.payment.core;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -49,6 +50,8 @@ import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.LockMode;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
@@ -63,12 +66,21 @@ import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 public abstract class ProcessorBase {
 
     private static final int NB_LOCK_TRY = 5;
 
+    // Payment transactions are serialized per account, and wait for invoice runs (CBA) and payment methods changes.
+    // Payment methods changes only wait for in-flight payment transactions, not for invoice runs. Both take the ACCNT_INV_PAY account lock
+    // first (see GlobalLockerWithModes), so plugins holding it still exclude them.
+    public static final Map<LockerType, LockMode> PAYMENT_LOCK_MODES = ImmutableMap.<LockerType, LockMode>of(LockerType.CBA, LockMode.SHARED,
+                                                                                                            LockerType.PAYMENT, LockMode.EXCLUSIVE,
+                                                                                                            LockerType.PAYMENT_METHOD, LockMode.SHARED);
+    public static final Map<LockerType, LockMode> PAYMENT_METHOD_LOCK_MODES = ImmutableMap.<LockerType, LockMode>of(LockerType.PAYMENT_METHOD, LockMode.EXCLUSIVE);
+
     protected final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry;
     protected final AccountInternalApi accountInternalApi;
     protected final GlobalLocker locker;
@@ -192,30 +204,34 @@ public abstract class ProcessorBase {
     public static class CallableWithAccountLock<ReturnType, ExceptionType extends Exception> implements Callable<PluginDispatcherReturnType<ReturnType>> {
 
         private final GlobalLocker locker;
-        private final String accountExternalKey;
+        private final String accountId;
+        private final Map<LockerType, LockMode> lockModes;
         private final WithAccountLockCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback;
 
         public CallableWithAccountLock(final GlobalLocker locker,
-                                       final String accountExternalKey,
+                                       final String accountId,
+                                       final Map<LockerType, LockMode> lockModes,
                                        final WithAccountLockCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback) {
             this.locker = locker;
-            this.accountExternalKey = accountExternalKey;
+            this.accountId = accountId;
+            this.lockModes = lockModes;
             this.callback = callback;
         }
 
         @Override
         public PluginDispatcherReturnType<ReturnType> call() throws ExceptionType, LockFailedException {
-            return new WithAccountLock<ReturnType, ExceptionType>().processAccountWithLock(locker, accountExternalKey, callback);
+            return new WithAccountLock<ReturnType, ExceptionType>().processAccountWithLock(locker, accountId, lockModes, callback);
         }
     }
 
     public static class WithAccountLock<ReturnType, ExceptionType extends Exception> {
 
-        public PluginDispatcherReturnType<ReturnType> processAccountWithLock(final GlobalLocker locker, final String accountExternalKey, final WithAccountLockCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback)
+        public PluginDispatcherReturnType<ReturnType> processAccountWithLock(final GlobalLocker locker, final String accountId, final Map<LockerType, LockMode> lockModes,
+                                                                             final WithAccountLockCallback<PluginDispatcherReturnType<ReturnType>, ExceptionType> callback)
                 throws ExceptionType, LockFailedException {
             GlobalLock lock = null;
             try {
-                lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountExternalKey, NB_LOCK_TRY);
+                lock = GlobalLockerWithModes.withModes(locker).lockWithNumberOfTries(lockModes, accountId, NB_LOCK_TRY);
                 return callback.doOperation();
             } finally {
                 if (lock != null) {
@@ -225,11 +241,12 @@ public abstract class ProcessorBase {
         }
     }
 
-    protected static <ReturnType> ReturnType dispatchWithExceptionHandling(@Nullable final Account account, final Callable<PluginDispatcherReturnType<ReturnType>> callable, PluginDispatcher<ReturnType> pluginFormDispatcher) throws PaymentApiException {
+    protected static <ReturnType> ReturnType dispatchWithExceptionHandling(@Nullable final Account account, @Nullable final String pluginName, final String pluginOperation,
+                                                                           final Callable<PluginDispatcherReturnType<ReturnType>> callable, PluginDispatcher<ReturnType> pluginFormDispatcher) throws PaymentApiException {
         final UUID accountId = account != null ? account.getId() : null;
         final String accountExternalKey = account != null ? account.getExternalKey() : "";
         try {
-            return pluginFormDispatcher.dispatchWithTimeout(callable);
+            return pluginFormDispatcher.dispatchWithTimeout(callable, pluginName, pluginOperation);
         } catch (final TimeoutException e) {
             throw new PaymentApiException(ErrorCode.PAYMENT_PLUGIN_TIMEOUT, accountId, null);
         } catch (final InterruptedException e) {
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.refresh;
+
+import javax.annotation.Nullable;
+
+import org.killbill.notificationq.api.NotificationEvent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class PaymentMethodRefreshNotificationKey implements NotificationEvent {
+
+    // Null to refresh the payment methods of all plugins
+    private final String pluginName;
+    // Number of accounts (ordered by record id) already refreshed
+    private final Long offset;
+
+    @JsonCreator
+    public PaymentMethodRefreshNotificationKey(@JsonProperty("pluginName") @Nullable final String pluginName,
+                                               @JsonProperty("offset") final Long offset) {
+        this.pluginName = pluginName;
+        this.offset = offset;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PaymentMethodRefreshNotificationKey{");
+        sb.append("pluginName='").append(pluginName).append('\'');
+        sb.append(", offset=").append(offset);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.refresh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.payment.api.PaymentApiException;
+import org.killbill.billing.payment.api.PaymentMethodRefreshInternalApi;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.core.PaymentMethodProcessor;
+import org.killbill.billing.payment.glue.DefaultPaymentService;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.PaymentConfig;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+
+import static org.killbill.billing.payment.glue.PaymentModule.PAYMENT_METHOD_REFRESH_EXECUTOR_NAMED;
+
+/**
+ * Refreshes the payment methods of all accounts of a tenant, against one or all payment plugins.
+ * <p/>
+ * Accounts are processed in pages of {@code org.killbill.payment.method.refresh.batch.size} accounts: each page is
+ * fanned out on the refresh executor (one task per account and plugin, each plugin being called by at most
+ * {@code org.killbill.payment.method.refresh.plugin.concurrency} threads at a time), and the notification for the next
+ * page is only recorded once the current one has been processed. A restart will therefore resume from the last
+ * page, refreshing at most one page twice (refreshing payment methods is idempotent).
+ */
+public class PaymentMethodRefresher implements PaymentMethodRefreshInternalApi {
+
+    public static final String QUEUE_NAME = "payment-method-refresh";
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentMethodRefresher.class);
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+    private static final String PAYMENT_METHOD_REFRESHER = "PaymentMethodRefresher";
+    private static final Iterable<PluginProperty> PLUGIN_PROPERTIES = ImmutableList.<PluginProperty>of();
+
+    private final NotificationQueueService notificationQueueService;
+    private final PaymentMethodProcessor paymentMethodProcessor;
+    private final AccountInternalApi accountInternalApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final PaymentConfig paymentConfig;
+    private final MetricRegistry metricRegistry;
+    private final Clock clock;
+    private final ExecutorService refreshExecutor;
+    private final ConcurrentMap<String, Semaphore> pluginSemaphores = new ConcurrentHashMap<String, Semaphore>();
+
+    private NotificationQueue refreshQueue;
+
+    @Inject
+    public PaymentMethodRefresher(final NotificationQueueService notificationQueueService,
+                                  final PaymentMethodProcessor paymentMethodProcessor,
+                                  final AccountInternalApi accountInternalApi,
+                                  final InternalCallContextFactory internalCallContextFactory,
+                                  final PaymentConfig paymentConfig,
+                                  final MetricRegistry metricRegistry,
+                                  final Clock clock,
+                                  @Named(PAYMENT_METHOD_REFRESH_EXECUTOR_NAMED) final ExecutorService refreshExecutor) {
+        this.notificationQueueService = notificationQueueService;
+        this.paymentMethodProcessor = paymentMethodProcessor;
+        this.accountInternalApi = accountInternalApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.paymentConfig = paymentConfig;
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public void initialize() throws NotificationQueueAlreadyExists {
+        refreshQueue = notificationQueueService.createNotificationQueue(DefaultPaymentService.SERVICE_NAME,
+                                                                        QUEUE_NAME,
+                                                                        new NotificationQueueHandler() {
+                                                                            @Override
+                                                                            public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                                if (!(notificationKey instanceof PaymentMethodRefreshNotificationKey)) {
+                                                                                    log.error("Payment service got an unexpected notification type {}", notificationKey.getClass().getName());
+                                                                                    return;
+                                                                                }
+                                                                                refreshPage((PaymentMethodRefreshNotificationKey) notificationKey, userToken, tenantRecordId);
+                                                                            }
+                                                                        }
+                                                                       );
+    }
+
+    public void start() {
+        refreshQueue.startQueue();
+    }
+
+    public void stop() throws NoSuchNotificationQueue {
+        if (refreshQueue != null) {
+            refreshQueue.stopQueue();
+            notificationQueueService.deleteNotificationQueue(refreshQueue.getServiceName(), refreshQueue.getQueueName());
+        }
+
+        // Let the in-flight refreshes complete, so that the page being processed (if any) can record its successor
+        refreshExecutor.shutdown();
+        try {
+            if (!refreshExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+                log.warn("Payment methods refresh failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
+                cancelPendingRefreshes(refreshExecutor.shutdownNow());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Payment methods refresh stop sequence got interrupted");
+            cancelPendingRefreshes(refreshExecutor.shutdownNow());
+        }
+    }
+
+    // The tasks which never started are discarded by shutdownNow(): cancel them, so that refreshPage doesn't wait on them forever
+    private void cancelPendingRefreshes(final List<Runnable> pendingRefreshes) {
+        for (final Runnable pendingRefresh : pendingRefreshes) {
+            if (pendingRefresh instanceof Future) {
+                ((Future<?>) pendingRefresh).cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public void refreshPaymentMethodsForAllAccounts(@Nullable final String pluginName, final CallContext context) throws PaymentApiException {
+        if (pluginName != null && !paymentMethodProcessor.getAvailablePlugins().contains(pluginName)) {
+            throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT_PLUGIN, pluginName);
+        }
+
+        final InternalCallContext internalCallContext = internalCallContextFactory.createInternalCallContext(context);
+        try {
+            recordPage(new PaymentMethodRefreshNotificationKey(pluginName, 0L), internalCallContext.getUserToken(), internalCallContext.getTenantRecordId());
+        } catch (final IOException e) {
+            throw new PaymentApiException(ErrorCode.PAYMENT_INTERNAL_ERROR, "Failed to schedule the payment methods refresh: " + e.getMessage());
+        }
+    }
+
+    private void refreshPage(final PaymentMethodRefreshNotificationKey key, final UUID userToken, final Long tenantRecordId) {
+        final InternalCallContext tenantContext = internalCallContextFactory.createInternalCallContext(tenantRecordId, null, PAYMENT_METHOD_REFRESHER, CallOrigin.INTERNAL, UserType.SYSTEM, userToken);
+        final int batchSize = paymentConfig.getPaymentMethodRefreshBatchSize();
+        final List<Account> accounts = ImmutableList.<Account>copyOf(accountInternalApi.getAccounts(key.getOffset(), (long) batchSize, tenantContext));
+        final Collection<String> pluginNames = key.getPluginName() == null ? paymentMethodProcessor.getAvailablePlugins() : ImmutableList.<String>of(key.getPluginName());
+
+        final List<Future<?>> futures = new ArrayList<Future<?>>(accounts.size() * pluginNames.size());
+        for (final Account account : accounts) {
+            for (final String pluginName : pluginNames) {
+                futures.add(refreshExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        refreshPaymentMethods(pluginName, account, userToken, tenantRecordId);
+                    }
+                }));
+            }
+        }
+
+        PaymentMethodRefreshNotificationKey nextKey = accounts.size() < batchSize ? null : new PaymentMethodRefreshNotificationKey(key.getPluginName(), key.getOffset() + accounts.size());
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                // We are shutting down: re-schedule the current page, so that it gets processed on restart
+                log.warn("Interrupted while refreshing payment methods, will resume at offset {}", key.getOffset());
+                Thread.currentThread().interrupt();
+                nextKey = key;
+                break;
+            } catch (final CancellationException e) {
+                // Same as above, the refresh was discarded by stop()
+                log.warn("Payment methods refresh was cancelled, will resume at offset {}", key.getOffset());
+                nextKey = key;
+                break;
+            } catch (final ExecutionException e) {
+                log.warn("Unexpected exception while refreshing payment methods", e.getCause());
+            }
+        }
+
+        if (nextKey == null) {
+            log.info("Done refreshing payment methods for tenantRecordId {} and plugin(s) {}", tenantRecordId, pluginNames);
+            return;
+        }
+
+        try {
+            recordPage(nextKey, userToken, tenantRecordId);
+        } catch (final IOException e) {
+            log.error(String.format("Failed to schedule the payment methods refresh for tenantRecordId %s at offset %s", tenantRecordId, nextKey.getOffset()), e);
+        }
+    }
+
+    private void refreshPaymentMethods(final String pluginName, final Account account, final UUID userToken, final Long tenantRecordId) {
+        final Semaphore semaphore = getPluginSemaphore(pluginName);
+        try {
+            semaphore.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final Timer.Context timerContext = metricRegistry.timer(MetricRegistry.name(PaymentMethodRefresher.class, pluginName, "refresh")).time();
+        try {
+            final InternalCallContext context = internalCallContextFactory.createInternalCallContext(account.getId(), ObjectType.ACCOUNT, PAYMENT_METHOD_REFRESHER, CallOrigin.INTERNAL, UserType.SYSTEM, userToken, tenantRecordId);
+            paymentMethodProcessor.refreshPaymentMethods(pluginName, account, PLUGIN_PROPERTIES, internalCallContextFactory.createCallContext(context), context);
+        } catch (final PaymentApiException e) {
+            onRefreshFailure(pluginName, account, e);
+        } catch (final RuntimeException e) {
+            // Plugins may throw anything: this shouldn't abort the rest of the page
+            onRefreshFailure(pluginName, account, e);
+        } finally {
+            timerContext.stop();
+            semaphore.release();
+        }
+    }
+
+    private void onRefreshFailure(final String pluginName, final Account account, final Exception e) {
+        metricRegistry.meter(MetricRegistry.name(PaymentMethodRefresher.class, pluginName, "errors")).mark();
+        log.warn(String.format("Failed to refresh payment methods for accountId %s and plugin %s", account.getId(), pluginName), e);
+    }
+
+    private Semaphore getPluginSemaphore(final String pluginName) {
+        final Semaphore semaphore = pluginSemaphores.get(pluginName);
+        if (semaphore != null) {
+            return semaphore;
+        }
+        final Semaphore newSemaphore = new Semaphore(paymentConfig.getPaymentMethodRefreshPluginConcurrency());
+        final Semaphore existingSemaphore = pluginSemaphores.putIfAbsent(pluginName, newSemaphore);
+        return existingSemaphore != null ? existingSemaphore : newSemaphore;
+    }
+
+    private void recordPage(final PaymentMethodRefreshNotificationKey key, final UUID userToken, final Long tenantRecordId) throws IOException {
+        refreshQueue.recordFutureNotification(clock.getUTCNow(), key, userToken, null, tenantRecordId);
+    }
+}
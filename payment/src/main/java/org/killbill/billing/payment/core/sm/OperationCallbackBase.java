@@ -21,6 +21,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.killbill.automaton.OperationException;
 import org.killbill.automaton.OperationResult;
 import org.killbill.billing.account.api.Account;
@@ -55,14 +57,20 @@ public abstract class OperationCallbackBase<CallbackOperationResult, CallbackOpe
     // callback to eventually throw a OperationException, that will be used to drive the state machine in the right direction.
     //
     protected <ExceptionType extends Exception> OperationResult dispatchWithAccountLockAndTimeout(final WithAccountLockCallback<PluginDispatcherReturnType<OperationResult>, ExceptionType> callback) throws OperationException {
+        return dispatchWithAccountLockAndTimeout(null, callback);
+    }
+
+    protected <ExceptionType extends Exception> OperationResult dispatchWithAccountLockAndTimeout(@Nullable final String pluginName, final WithAccountLockCallback<PluginDispatcherReturnType<OperationResult>, ExceptionType> callback) throws OperationException {
         final Account account = paymentStateContext.getAccount();
         logger.debug("Dispatching plugin call for account {}", account.getExternalKey());
 
         try {
             final Callable<PluginDispatcherReturnType<OperationResult>> task = new CallableWithAccountLock<OperationResult, ExceptionType>(locker,
-                                                                                                                                           account.getExternalKey(),
+                                                                                                                                           account.getId().toString(),
+                                                                                                                                           ProcessorBase.PAYMENT_LOCK_MODES,
                                                                                                                                            callback);
-            final OperationResult operationResult = paymentPluginDispatcher.dispatchWithTimeout(task);
+            final String pluginOperation = paymentStateContext.getTransactionType() == null ? null : paymentStateContext.getTransactionType().toString();
+            final OperationResult operationResult = paymentPluginDispatcher.dispatchWithTimeout(task, pluginName, pluginOperation);
             logger.debug("Successful plugin call for account {} with result {}", account.getExternalKey(), operationResult);
             return operationResult;
         } catch (final ExecutionException e) {
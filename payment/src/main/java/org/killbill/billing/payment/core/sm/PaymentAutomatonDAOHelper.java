@@ -46,6 +46,9 @@ public class PaymentAutomatonDAOHelper {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentAutomatonDAOHelper.class);
 
+    // Completion updates are retried when a concurrent update to a non final status is detected
+    private static final int MAX_COMPLETION_UPDATE_ATTEMPTS = 3;
+
     protected final PaymentStateContext paymentStateContext;
     protected final DateTime utcNow;
     protected final InternalCallContext internalCallContext;
@@ -76,16 +79,18 @@ public class PaymentAutomatonDAOHelper {
 
         final PaymentTransactionModelDao paymentTransactionModelDao;
         final List<PaymentTransactionModelDao> existingTransactions;
+        final PaymentSnapshot paymentSnapshot = paymentStateContext.getPaymentSnapshot();
         if (paymentStateContext.getPaymentId() == null) {
             final PaymentModelDao newPaymentModelDao = buildNewPaymentModelDao();
             final PaymentTransactionModelDao newPaymentTransactionModelDao = buildNewPaymentTransactionModelDao(newPaymentModelDao.getId());
 
             existingTransactions = ImmutableList.of();
             final PaymentModelDao paymentModelDao = paymentDao.insertPaymentWithFirstTransaction(newPaymentModelDao, newPaymentTransactionModelDao, internalCallContext);
-            paymentTransactionModelDao = paymentDao.getTransactionsForPayment(paymentModelDao.getId(), internalCallContext).get(0);
+            paymentSnapshot.reload(paymentModelDao, paymentDao.getTransactionsForPayment(paymentModelDao.getId(), internalCallContext));
+            paymentTransactionModelDao = paymentSnapshot.getTransactions().get(0);
 
         } else {
-            existingTransactions = paymentDao.getTransactionsForPayment(paymentStateContext.getPaymentId(), internalCallContext);
+            existingTransactions = loadPaymentSnapshotIfNeeded() ? paymentSnapshot.getTransactions() : ImmutableList.<PaymentTransactionModelDao>of();
             if (existingTransactions.isEmpty()) {
                 throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_SUCCESS_PAYMENT, paymentStateContext.getPaymentId());
             }
@@ -95,6 +100,7 @@ public class PaymentAutomatonDAOHelper {
 
             final PaymentTransactionModelDao newPaymentTransactionModelDao = buildNewPaymentTransactionModelDao(paymentStateContext.getPaymentId());
             paymentTransactionModelDao = paymentDao.updatePaymentWithNewTransaction(paymentStateContext.getPaymentId(), newPaymentTransactionModelDao, internalCallContext);
+            paymentSnapshot.addTransaction(paymentTransactionModelDao);
         }
         // Update the context
         paymentStateContext.setPaymentTransactionModelDao(paymentTransactionModelDao);
@@ -109,40 +115,95 @@ public class PaymentAutomatonDAOHelper {
         final String gatewayErrorMsg = paymentInfoPlugin == null ? null : paymentInfoPlugin.getGatewayError();
 
         final String lastSuccessPaymentState = paymentSMHelper.isSuccessState(currentPaymentStateName) ? currentPaymentStateName : null;
-        paymentDao.updatePaymentAndTransactionOnCompletion(paymentStateContext.getAccount().getId(),
-                                                           paymentStateContext.getPaymentId(),
-                                                           paymentStateContext.getTransactionType(),
-                                                           currentPaymentStateName,
-                                                           lastSuccessPaymentState,
-                                                           paymentStateContext.getPaymentTransactionModelDao().getId(),
-                                                           paymentStatus,
-                                                           processedAmount,
-                                                           processedCurrency,
-                                                           gatewayErrorCode,
-                                                           gatewayErrorMsg,
-                                                           internalCallContext);
+        final PaymentSnapshot paymentSnapshot = paymentStateContext.getPaymentSnapshot();
+        final UUID transactionId = paymentStateContext.getPaymentTransactionModelDao().getId();
+        PaymentTransactionModelDao paymentTransactionModelDao = paymentStateContext.getPaymentTransactionModelDao();
+        if (!paymentSnapshot.isLoaded() || paymentSnapshot.getTransaction(transactionId) != paymentTransactionModelDao) {
+            // Not tracked (yet), compare with the current row
+            paymentTransactionModelDao = reloadPaymentSnapshot() ? paymentSnapshot.getTransaction(transactionId) : null;
+        }
+
+        for (int i = 0; paymentTransactionModelDao != null && i < MAX_COMPLETION_UPDATE_ATTEMPTS; i++) {
+            if (i > 0 && !isOverridable(paymentTransactionModelDao.getTransactionStatus())) {
+                // The transaction was completed behind our back (e.g. by the janitor): keep that outcome
+                log.warn("Not updating paymentId='{}', transactionId='{}' to status {}: it was concurrently updated to status {}",
+                         paymentStateContext.getPaymentId(), transactionId, paymentStatus, paymentTransactionModelDao.getTransactionStatus());
+                break;
+            }
+
+            if (paymentDao.updatePaymentAndTransactionOnCompletionIfUnchanged(paymentStateContext.getAccount().getId(),
+                                                                              paymentStateContext.getPaymentId(),
+                                                                              paymentStateContext.getTransactionType(),
+                                                                              currentPaymentStateName,
+                                                                              lastSuccessPaymentState,
+                                                                              transactionId,
+                                                                              paymentTransactionModelDao.getTransactionStatus(),
+                                                                              paymentStatus,
+                                                                              processedAmount,
+                                                                              processedCurrency,
+                                                                              gatewayErrorCode,
+                                                                              gatewayErrorMsg,
+                                                                              internalCallContext)) {
+                // Update the context in place
+                paymentSnapshot.updateOnCompletion(currentPaymentStateName, lastSuccessPaymentState, paymentTransactionModelDao, paymentStatus, processedAmount, processedCurrency, gatewayErrorCode, gatewayErrorMsg);
+                break;
+            }
+
+            // The transaction status changed since it was read: reload, and decide again
+            paymentTransactionModelDao = reloadPaymentSnapshot() ? paymentSnapshot.getTransaction(transactionId) : null;
+        }
 
         // Update the context
-        paymentStateContext.setPaymentTransactionModelDao(paymentDao.getPaymentTransaction(paymentStateContext.getPaymentTransactionModelDao().getId(), internalCallContext));
+        paymentStateContext.setPaymentTransactionModelDao(paymentTransactionModelDao != null ? paymentTransactionModelDao : paymentDao.getPaymentTransaction(transactionId, internalCallContext));
+    }
+
+    // Only the statuses the janitor fixes can be overridden by a concurrent completion
+    private boolean isOverridable(final TransactionStatus transactionStatus) {
+        return transactionStatus == TransactionStatus.UNKNOWN || transactionStatus == TransactionStatus.PENDING;
     }
 
     public PaymentPluginApi getPaymentProviderPlugin() throws PaymentApiException {
+        return getPaymentPluginApi(getPaymentProviderPluginName());
+    }
 
+    public String getPaymentProviderPluginName() throws PaymentApiException {
         final UUID paymentMethodId = paymentStateContext.getPaymentMethodId();
         final PaymentMethodModelDao methodDao = paymentDao.getPaymentMethodIncludedDeleted(paymentMethodId, internalCallContext);
         if (methodDao == null) {
             throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT_METHOD, paymentMethodId);
         }
-        return getPaymentPluginApi(methodDao.getPluginName());
+        return methodDao.getPluginName();
     }
 
     public PaymentModelDao getPayment() throws PaymentApiException {
-        final PaymentModelDao paymentModelDao;
-        paymentModelDao = paymentDao.getPayment(paymentStateContext.getPaymentId(), internalCallContext);
-        if (paymentModelDao == null) {
+        if (!loadPaymentSnapshotIfNeeded()) {
             throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT, paymentStateContext.getPaymentId());
         }
-        return paymentModelDao;
+        return paymentStateContext.getPaymentSnapshot().getPayment();
+    }
+
+    public PaymentTransactionModelDao getPaymentTransaction(final UUID transactionId) {
+        final PaymentTransactionModelDao paymentTransactionModelDao = loadPaymentSnapshotIfNeeded() ? paymentStateContext.getPaymentSnapshot().getTransaction(transactionId) : null;
+        return paymentTransactionModelDao != null ? paymentTransactionModelDao : paymentDao.getPaymentTransaction(transactionId, internalCallContext);
+    }
+
+    // The payment and its transactions are only read once per automaton run, returns false if the payment doesn't exist
+    private boolean loadPaymentSnapshotIfNeeded() {
+        final PaymentSnapshot paymentSnapshot = paymentStateContext.getPaymentSnapshot();
+        if (paymentSnapshot.isLoaded() && paymentSnapshot.getPayment().getId().equals(paymentStateContext.getPaymentId())) {
+            return true;
+        }
+        return reloadPaymentSnapshot();
+    }
+
+    private boolean reloadPaymentSnapshot() {
+        final UUID paymentId = paymentStateContext.getPaymentId();
+        final PaymentModelDao paymentModelDao = paymentId == null ? null : paymentDao.getPayment(paymentId, internalCallContext);
+        if (paymentModelDao == null) {
+            return false;
+        }
+        paymentStateContext.getPaymentSnapshot().reload(paymentModelDao, paymentDao.getTransactionsForPayment(paymentId, internalCallContext));
+        return true;
     }
 
     public PersistentBus getEventBus() {
@@ -181,7 +242,7 @@ public class PaymentAutomatonDAOHelper {
                                               gatewayErrorMsg);
     }
 
-    private PaymentPluginApi getPaymentPluginApi(final String pluginName) throws PaymentApiException {
+    public PaymentPluginApi getPaymentPluginApi(final String pluginName) throws PaymentApiException {
         final PaymentPluginApi pluginApi = pluginRegistry.getServiceForName(pluginName);
         if (pluginApi == null) {
             throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT_PLUGIN, pluginName);
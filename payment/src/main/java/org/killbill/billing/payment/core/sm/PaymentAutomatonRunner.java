@@ -57,6 +57,7 @@ import org.killbill.bus.api.PersistentBus;
 import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLocker;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -84,7 +85,8 @@ public class PaymentAutomatonRunner {
                                   final Clock clock,
                                   @Named(PLUGIN_EXECUTOR_NAMED) final ExecutorService executor,
                                   final PersistentBus eventBus,
-                                  final PaymentStateMachineHelper paymentSMHelper) {
+                                  final PaymentStateMachineHelper paymentSMHelper,
+                                  final MetricRegistry metricRegistry) {
         this.paymentSMHelper = paymentSMHelper;
         this.paymentDao = paymentDao;
         this.locker = locker;
@@ -93,7 +95,7 @@ public class PaymentAutomatonRunner {
         this.eventBus = eventBus;
 
         final long paymentPluginTimeoutSec = TimeUnit.SECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
-        this.paymentPluginDispatcher = new PluginDispatcher<OperationResult>(paymentPluginTimeoutSec, executor);
+        this.paymentPluginDispatcher = new PluginDispatcher<OperationResult>(paymentPluginTimeoutSec, executor, metricRegistry);
 
     }
 
@@ -51,6 +51,7 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
 
     protected final PaymentAutomatonDAOHelper daoHelper;
     protected PaymentPluginApi plugin;
+    protected String pluginName;
 
     protected PaymentOperation(final GlobalLocker locker,
                                final PaymentAutomatonDAOHelper daoHelper,
@@ -63,7 +64,8 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
     @Override
     public OperationResult doOperationCallback() throws OperationException {
         try {
-            this.plugin = daoHelper.getPaymentProviderPlugin();
+            this.pluginName = daoHelper.getPaymentProviderPluginName();
+            this.plugin = daoHelper.getPaymentPluginApi(pluginName);
 
             if (paymentStateContext.shouldLockAccountAndDispatch()) {
                 return doOperationCallbackWithDispatchAndAccountLock();
@@ -140,7 +142,7 @@ public abstract class PaymentOperation extends OperationCallbackBase<PaymentTran
     }
 
     private OperationResult doOperationCallbackWithDispatchAndAccountLock() throws OperationException {
-        return dispatchWithAccountLockAndTimeout(new WithAccountLockCallback<PluginDispatcherReturnType<OperationResult>, OperationException>() {
+        return dispatchWithAccountLockAndTimeout(pluginName, new WithAccountLockCallback<PluginDispatcherReturnType<OperationResult>, OperationException>() {
             @Override
             public PluginDispatcherReturnType<OperationResult> doOperation() throws OperationException {
                 final OperationResult result = doSimpleOperationCallback();
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.sm;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.TransactionStatus;
+import org.killbill.billing.payment.dao.PaymentModelDao;
+import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Payment and transactions rows, as seen by an automaton run. The snapshot is loaded once, and PaymentAutomatonDAOHelper
+ * writes through it: each database update is applied in place, instead of reading the rows back.
+ * <p/>
+ * The account lock serializes the automaton runs for a payment, but the janitor can update transactions concurrently:
+ * completion updates are conditional on the transaction status seen in the snapshot (see
+ * PaymentDao#updatePaymentAndTransactionOnCompletionIfUnchanged), and the snapshot is reloaded when the check fails.
+ * Note that the updated dates aren't maintained in place.
+ */
+public class PaymentSnapshot {
+
+    private PaymentModelDao payment;
+    private List<PaymentTransactionModelDao> transactions = ImmutableList.<PaymentTransactionModelDao>of();
+
+    public boolean isLoaded() {
+        return payment != null;
+    }
+
+    @Nullable
+    public PaymentModelDao getPayment() {
+        return payment;
+    }
+
+    public List<PaymentTransactionModelDao> getTransactions() {
+        return ImmutableList.<PaymentTransactionModelDao>copyOf(transactions);
+    }
+
+    @Nullable
+    public PaymentTransactionModelDao getTransaction(final UUID transactionId) {
+        for (final PaymentTransactionModelDao transaction : transactions) {
+            if (transaction.getId().equals(transactionId)) {
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    void reload(final PaymentModelDao payment, final List<PaymentTransactionModelDao> transactions) {
+        this.payment = payment;
+        this.transactions = new ArrayList<PaymentTransactionModelDao>(transactions);
+    }
+
+    void addTransaction(final PaymentTransactionModelDao transaction) {
+        transactions.add(transaction);
+    }
+
+    // Mirrors PaymentDao#updatePaymentAndTransactionOnCompletion
+    void updateOnCompletion(final String currentPaymentStateName, @Nullable final String lastPaymentSuccessStateName, final PaymentTransactionModelDao transaction,
+                            final TransactionStatus transactionStatus, @Nullable final BigDecimal processedAmount, @Nullable final Currency processedCurrency,
+                            @Nullable final String gatewayErrorCode, @Nullable final String gatewayErrorMsg) {
+        payment.setStateName(currentPaymentStateName);
+        if (lastPaymentSuccessStateName != null) {
+            payment.setLastSuccessStateName(lastPaymentSuccessStateName);
+        }
+
+        transaction.setTransactionStatus(transactionStatus);
+        transaction.setProcessedAmount(processedAmount);
+        transaction.setProcessedCurrency(processedCurrency);
+        transaction.setGatewayErrorCode(gatewayErrorCode);
+        transaction.setGatewayErrorMsg(gatewayErrorMsg);
+    }
+}
@@ -49,6 +49,8 @@ public class PaymentStateContext {
     protected String paymentExternalKey;
     protected String paymentTransactionExternalKey;
     protected Currency currency;
+    // Payment and transactions rows, kept up-to-date by PaymentAutomatonDAOHelper
+    protected final PaymentSnapshot paymentSnapshot = new PaymentSnapshot();
 
     // Can be updated later via paymentTransactionModelDao (e.g. for auth or purchase)
     protected final UUID paymentId;
@@ -120,6 +122,10 @@ public class PaymentStateContext {
         this.onLeavingStateExistingTransactions = onLeavingStateExistingTransactions;
     }
 
+    public PaymentSnapshot getPaymentSnapshot() {
+        return paymentSnapshot;
+    }
+
     public PaymentTransactionInfoPlugin getPaymentInfoPlugin() {
         return paymentInfoPlugin;
     }
@@ -17,6 +17,9 @@
 
 package org.killbill.billing.payment.core.sm;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 import org.killbill.automaton.MissingEntryException;
@@ -25,14 +28,9 @@ import org.killbill.automaton.OperationResult;
 import org.killbill.automaton.State;
 import org.killbill.automaton.StateMachine;
 import org.killbill.automaton.StateMachineConfig;
-import org.killbill.automaton.Transition;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.payment.glue.PaymentModule;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-
 /**
  * This class needs to know about the payment state machine xml file. All the knowledge about the xml file is encapsulated here.
  */
@@ -77,12 +75,33 @@ public class PaymentStateMachineHelper {
     private final StateMachineConfig stateMachineConfig;
     private final String[] errorStateNames = {AUTH_ERRORED, CAPTURE_ERRORED, PURCHASE_ERRORED, REFUND_ERRORED, CREDIT_ERRORED, VOID_ERRORED, CHARGEBACK_ERRORED};
 
+    // Lookup tables, computed once as these lookups happen several times per payment operation
+    private final StateMachineTransitions transitions;
+    private final Map<TransactionType, StateMachine> stateMachinesPerTransactionType = new EnumMap<TransactionType, StateMachine>(TransactionType.class);
+    private final Map<TransactionType, Operation> operationsPerTransactionType = new EnumMap<TransactionType, Operation>(TransactionType.class);
+
     @Inject
-    public PaymentStateMachineHelper(@javax.inject.Named(PaymentModule.STATE_MACHINE_PAYMENT) final StateMachineConfig stateMachineConfig) {
+    public PaymentStateMachineHelper(@javax.inject.Named(PaymentModule.STATE_MACHINE_PAYMENT) final StateMachineConfig stateMachineConfig) throws MissingEntryException {
         this.stateMachineConfig = stateMachineConfig;
+        this.transitions = new StateMachineTransitions(stateMachineConfig);
+        for (final TransactionType transactionType : TransactionType.values()) {
+            final String stateMachineName = getStateMachineNameForTransaction(transactionType);
+            if (stateMachineName == null) {
+                continue;
+            }
+            final StateMachine stateMachine = stateMachineConfig.getStateMachine(stateMachineName);
+            stateMachinesPerTransactionType.put(transactionType, stateMachine);
+            // Only one operation defined, this is the current PaymentStates.xml model
+            operationsPerTransactionType.put(transactionType, stateMachine.getOperations()[0]);
+        }
     }
 
     public State getState(final String stateName) throws MissingEntryException {
+        final State state = transitions.getState(stateName);
+        if (state != null) {
+            return state;
+        }
+        // Unknown state, let the automaton throw
         final StateMachine stateMachine = stateMachineConfig.getStateMachineForState(stateName);
         return stateMachine.getState(stateName);
     }
@@ -164,33 +183,45 @@ public class PaymentStateMachineHelper {
     }
 
     public StateMachine getStateMachineForStateName(final String stateName) throws MissingEntryException {
-        return stateMachineConfig.getStateMachineForState(stateName);
+        final StateMachine stateMachine = transitions.getStateMachineForState(stateName);
+        return stateMachine != null ? stateMachine : stateMachineConfig.getStateMachineForState(stateName);
     }
 
     public Operation getOperationForTransaction(final TransactionType transactionType) throws MissingEntryException {
-        final StateMachine stateMachine = getStateMachineForTransaction(transactionType);
-        // Only one operation defined, this is the current PaymentStates.xml model
-        return stateMachine.getOperations()[0];
+        final Operation operation = operationsPerTransactionType.get(transactionType);
+        if (operation == null) {
+            throw new IllegalStateException("Unsupported transaction type " + transactionType + " for null payment id");
+        }
+        return operation;
     }
 
     public StateMachine getStateMachineForTransaction(final TransactionType transactionType) throws MissingEntryException {
+        final StateMachine stateMachine = stateMachinesPerTransactionType.get(transactionType);
+        if (stateMachine == null) {
+            throw new IllegalStateException("Unsupported transaction type " + transactionType + " for null payment id");
+        }
+        return stateMachine;
+    }
+
+    private String getStateMachineNameForTransaction(final TransactionType transactionType) {
+        // Null for unsupported transaction types
         switch (transactionType) {
             case AUTHORIZE:
-                return stateMachineConfig.getStateMachine(AUTHORIZE_STATE_MACHINE_NAME);
+                return AUTHORIZE_STATE_MACHINE_NAME;
             case CAPTURE:
-                return stateMachineConfig.getStateMachine(CAPTURE_STATE_MACHINE_NAME);
+                return CAPTURE_STATE_MACHINE_NAME;
             case PURCHASE:
-                return stateMachineConfig.getStateMachine(PURCHASE_STATE_MACHINE_NAME);
+                return PURCHASE_STATE_MACHINE_NAME;
             case REFUND:
-                return stateMachineConfig.getStateMachine(REFUND_STATE_MACHINE_NAME);
+                return REFUND_STATE_MACHINE_NAME;
             case CREDIT:
-                return stateMachineConfig.getStateMachine(CREDIT_STATE_MACHINE_NAME);
+                return CREDIT_STATE_MACHINE_NAME;
             case VOID:
-                return stateMachineConfig.getStateMachine(VOID_STATE_MACHINE_NAME);
+                return VOID_STATE_MACHINE_NAME;
             case CHARGEBACK:
-                return stateMachineConfig.getStateMachine(CHARGEBACK_STATE_MACHINE_NAME);
+                return CHARGEBACK_STATE_MACHINE_NAME;
             default:
-                throw new IllegalStateException("Unsupported transaction type " + transactionType + " for null payment id");
+                return null;
         }
     }
 
@@ -200,16 +231,10 @@ public class PaymentStateMachineHelper {
     }
 
     public final State fetchNextState(final String prevStateName, final boolean isSuccess) throws MissingEntryException {
-        final StateMachine stateMachine = getStateMachineForStateName(prevStateName);
-        final Transition transition = Iterables.tryFind(ImmutableList.copyOf(stateMachine.getTransitions()), new Predicate<Transition>() {
-            @Override
-            public boolean apply(final Transition input) {
-                // This works because there is only one operation defined for a given state machine, which is our model for PaymentStates.xml
-                return input.getInitialState().getName().equals(prevStateName) &&
-                       input.getOperationResult().equals(isSuccess ? OperationResult.SUCCESS : OperationResult.FAILURE);
-            }
-        }).orNull();
-        return transition != null ? transition.getFinalState() : null;
+        // Throws for unknown states
+        getStateMachineForStateName(prevStateName);
+        // This works because there is only one operation defined for a given state machine, which is our model for PaymentStates.xml
+        return transitions.getNextState(prevStateName, isSuccess ? OperationResult.SUCCESS : OperationResult.FAILURE);
     }
 
     public String[] getErroredStateNames() {
@@ -42,6 +42,7 @@ public class RetryStateMachineHelper {
     private final Operation retryOperation;
     private final State initialState;
     private final State retriedState;
+    private final StateMachineTransitions transitions;
 
     @Inject
     public RetryStateMachineHelper(@Named(PaymentModule.STATE_MACHINE_RETRY) final StateMachineConfig retryStateMachineConfig) throws MissingEntryException {
@@ -50,10 +51,14 @@ public class RetryStateMachineHelper {
         this.retryOperation = retryStateMachine.getOperation(RETRY_OPERATION_NAME);
         this.initialState = retryStateMachine.getState(INIT_STATE_NAME);
         this.retriedState = retryStateMachine.getState(RETRIED_STATE_NAME);
+        this.transitions = new StateMachineTransitions(retryStateMachineConfig);
     }
 
     public State getState(final String stateName) throws MissingEntryException {
-        return retryStateMachine.getState(stateName);
+        // RetryStates.xml only defines the retry state machine
+        final State state = transitions.getState(stateName);
+        // Unknown state, let the automaton throw
+        return state != null ? state : retryStateMachine.getState(stateName);
     }
 
     public StateMachineConfig getRetryStateMachineConfig() {
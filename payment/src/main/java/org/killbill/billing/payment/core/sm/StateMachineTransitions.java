@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.sm;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.killbill.automaton.OperationResult;
+import org.killbill.automaton.State;
+import org.killbill.automaton.StateMachine;
+import org.killbill.automaton.StateMachineConfig;
+import org.killbill.automaton.Transition;
+
+/**
+ * Indexed view of a StateMachineConfig, built once when the xml file is loaded: states (and their state machine) by name,
+ * and next state by (initial state, operation result). The automaton only provides linear lookups over its arrays.
+ * <p/>
+ * The next state doesn't depend on the operation: our xml files (PaymentStates.xml, RetryStates.xml) define a single
+ * operation per state machine. As with a scan of the transitions, the first matching transition wins.
+ */
+final class StateMachineTransitions {
+
+    private final Map<String, StateMachine> stateMachinesByStateName = new HashMap<String, StateMachine>();
+    private final Map<String, State> statesByName = new HashMap<String, State>();
+    private final Map<String, Map<OperationResult, State>> nextStatesByStateName = new HashMap<String, Map<OperationResult, State>>();
+
+    StateMachineTransitions(final StateMachineConfig stateMachineConfig) {
+        for (final StateMachine stateMachine : stateMachineConfig.getStateMachines()) {
+            for (final State state : stateMachine.getStates()) {
+                if (!statesByName.containsKey(state.getName())) {
+                    stateMachinesByStateName.put(state.getName(), stateMachine);
+                    statesByName.put(state.getName(), state);
+                }
+            }
+
+            for (final Transition transition : stateMachine.getTransitions()) {
+                final String initialStateName = transition.getInitialState().getName();
+                if (stateMachinesByStateName.get(initialStateName) != stateMachine) {
+                    // Only the state machine of the initial state is looked at
+                    continue;
+                }
+                Map<OperationResult, State> nextStates = nextStatesByStateName.get(initialStateName);
+                if (nextStates == null) {
+                    nextStates = new EnumMap<OperationResult, State>(OperationResult.class);
+                    nextStatesByStateName.put(initialStateName, nextStates);
+                }
+                if (!nextStates.containsKey(transition.getOperationResult())) {
+                    nextStates.put(transition.getOperationResult(), transition.getFinalState());
+                }
+            }
+        }
+    }
+
+    @Nullable
+    StateMachine getStateMachineForState(final String stateName) {
+        return stateMachinesByStateName.get(stateName);
+    }
+
+    @Nullable
+    State getState(final String stateName) {
+        return statesByName.get(stateName);
+    }
+
+    @Nullable
+    State getNextState(final String stateName, final OperationResult operationResult) {
+        final Map<OperationResult, State> nextStates = nextStatesByStateName.get(stateName);
+        return nextStates == null ? null : nextStates.get(operationResult);
+    }
+}
@@ -21,7 +21,9 @@ package org.killbill.billing.payment.dao;
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -42,12 +44,15 @@ import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchIndexBackfill;
+import org.killbill.billing.util.entity.dao.SearchIndexKeys;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
@@ -55,6 +60,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -69,13 +75,17 @@ public class DefaultPaymentDao implements PaymentDao {
     private final DefaultPaginationSqlDaoHelper paginationHelper;
     private final PersistentBus eventBus;
     private final Clock clock;
+    private final SearchIndexBackfill<PaymentModelDao, Payment> paymentSearchIndexBackfill;
+    private final SearchIndexBackfill<PaymentMethodModelDao, PaymentMethod> paymentMethodSearchIndexBackfill;
 
     @Inject
-    public DefaultPaymentDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final PersistentBus eventBus) {
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao);
+    public DefaultPaymentDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry, final PersistentBus eventBus) {
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry);
         this.paginationHelper = new DefaultPaginationSqlDaoHelper(transactionalSqlDao);
         this.eventBus = eventBus;
         this.clock = clock;
+        this.paymentSearchIndexBackfill = new SearchIndexBackfill<PaymentModelDao, Payment>(transactionalSqlDao, PaymentSqlDao.class, TableName.PAYMENTS);
+        this.paymentMethodSearchIndexBackfill = new SearchIndexBackfill<PaymentMethodModelDao, PaymentMethod>(transactionalSqlDao, PaymentMethodSqlDao.class, TableName.PAYMENT_METHODS);
     }
 
     @Override
@@ -217,16 +227,24 @@ public class DefaultPaymentDao implements PaymentDao {
 
     @Override
     public Pagination<PaymentModelDao> searchPayments(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final Set<String> searchIndexKeys = SearchIndexKeys.forSearchKey(searchKey);
+        final boolean searchUnindexedRows = paymentSearchIndexBackfill.hasUnindexedRows();
         return paginationHelper.getPagination(PaymentSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<PaymentModelDao, Payment, PaymentSqlDao>() {
                                                   @Override
                                                   public Long getCount(final PaymentSqlDao paymentSqlDao, final InternalTenantContext context) {
-                                                      return paymentSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return paymentSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<PaymentModelDao> build(final PaymentSqlDao paymentSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return paymentSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return paymentSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<PaymentModelDao> build(final PaymentSqlDao paymentSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return paymentSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, fromRecordId, limit, context);
                                                   }
                                               },
                                               offset,
@@ -276,22 +294,58 @@ public class DefaultPaymentDao implements PaymentDao {
 
             @Override
             public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                entitySqlDaoWrapperFactory.become(TransactionSqlDao.class).updateTransactionStatus(transactionId.toString(),
-                                                                                                   processedAmount, processedCurrency == null ? null : processedCurrency.toString(),
-                                                                                                   transactionStatus == null ? null : transactionStatus.toString(),
-                                                                                                   gatewayErrorCode, gatewayErrorMsg, context);
-                if (lastPaymentSuccessStateName != null) {
-                    entitySqlDaoWrapperFactory.become(PaymentSqlDao.class).updateLastSuccessPaymentStateName(paymentId.toString(), currentPaymentStateName, lastPaymentSuccessStateName, context);
-                } else {
-                    entitySqlDaoWrapperFactory.become(PaymentSqlDao.class).updatePaymentStateName(paymentId.toString(), currentPaymentStateName, context);
-                }
-                postPaymentEventFromTransaction(accountId, transactionStatus, transactionType, paymentId, processedAmount, processedCurrency, clock.getUTCNow(), gatewayErrorCode, entitySqlDaoWrapperFactory, context);
+                updatePaymentAndTransactionOnCompletion(accountId, paymentId, transactionType, currentPaymentStateName, lastPaymentSuccessStateName, transactionId, transactionStatus,
+                                                        processedAmount, processedCurrency, gatewayErrorCode, gatewayErrorMsg, entitySqlDaoWrapperFactory, context);
                 return null;
             }
         });
 
     }
 
+    @Override
+    public boolean updatePaymentAndTransactionOnCompletionIfUnchanged(final UUID accountId, final UUID paymentId, final TransactionType transactionType,
+                                                                      final String currentPaymentStateName, @Nullable final String lastPaymentSuccessStateName,
+                                                                      final UUID transactionId, final TransactionStatus expectedTransactionStatus, final TransactionStatus transactionStatus,
+                                                                      final BigDecimal processedAmount, final Currency processedCurrency,
+                                                                      final String gatewayErrorCode, final String gatewayErrorMsg,
+                                                                      final InternalCallContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Boolean>() {
+
+            @Override
+            public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                // Compare-and-set: the row stays locked until the end of the transaction, so the status can't change until the update below
+                final int claimed = entitySqlDaoWrapperFactory.become(TransactionSqlDao.class).claimTransactionForUpdate(transactionId.toString(),
+                                                                                                                          expectedTransactionStatus == null ? null : expectedTransactionStatus.toString(),
+                                                                                                                          context);
+                if (claimed == 0) {
+                    return false;
+                }
+
+                updatePaymentAndTransactionOnCompletion(accountId, paymentId, transactionType, currentPaymentStateName, lastPaymentSuccessStateName, transactionId, transactionStatus,
+                                                        processedAmount, processedCurrency, gatewayErrorCode, gatewayErrorMsg, entitySqlDaoWrapperFactory, context);
+                return true;
+            }
+        });
+    }
+
+    private void updatePaymentAndTransactionOnCompletion(final UUID accountId, final UUID paymentId, final TransactionType transactionType,
+                                                         final String currentPaymentStateName, @Nullable final String lastPaymentSuccessStateName,
+                                                         final UUID transactionId, final TransactionStatus transactionStatus,
+                                                         final BigDecimal processedAmount, final Currency processedCurrency,
+                                                         final String gatewayErrorCode, final String gatewayErrorMsg,
+                                                         final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        entitySqlDaoWrapperFactory.become(TransactionSqlDao.class).updateTransactionStatus(transactionId.toString(),
+                                                                                           processedAmount, processedCurrency == null ? null : processedCurrency.toString(),
+                                                                                           transactionStatus == null ? null : transactionStatus.toString(),
+                                                                                           gatewayErrorCode, gatewayErrorMsg, context);
+        if (lastPaymentSuccessStateName != null) {
+            entitySqlDaoWrapperFactory.become(PaymentSqlDao.class).updateLastSuccessPaymentStateName(paymentId.toString(), currentPaymentStateName, lastPaymentSuccessStateName, context);
+        } else {
+            entitySqlDaoWrapperFactory.become(PaymentSqlDao.class).updatePaymentStateName(paymentId.toString(), currentPaymentStateName, context);
+        }
+        postPaymentEventFromTransaction(accountId, transactionStatus, transactionType, paymentId, processedAmount, processedCurrency, clock.getUTCNow(), gatewayErrorCode, entitySqlDaoWrapperFactory, context);
+    }
+
     @Override
     public PaymentModelDao getPayment(final UUID paymentId, final InternalTenantContext context) {
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<PaymentModelDao>() {
@@ -424,16 +478,24 @@ public class DefaultPaymentDao implements PaymentDao {
 
     @Override
     public Pagination<PaymentMethodModelDao> searchPaymentMethods(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final Set<String> searchIndexKeys = SearchIndexKeys.forSearchKey(searchKey);
+        final boolean searchUnindexedRows = paymentMethodSearchIndexBackfill.hasUnindexedRows();
         return paginationHelper.getPagination(PaymentMethodSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<PaymentMethodModelDao, PaymentMethod, PaymentMethodSqlDao>() {
                                                   @Override
                                                   public Long getCount(final PaymentMethodSqlDao paymentMethodSqlDao, final InternalTenantContext context) {
-                                                      return paymentMethodSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return paymentMethodSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<PaymentMethodModelDao> build(final PaymentMethodSqlDao paymentMethodSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return paymentMethodSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return paymentMethodSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<PaymentMethodModelDao> build(final PaymentMethodSqlDao paymentMethodSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return paymentMethodSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, fromRecordId, limit, context);
                                                   }
                                               },
                                               offset,
@@ -441,6 +503,12 @@ public class DefaultPaymentDao implements PaymentDao {
                                               context);
     }
 
+    @Override
+    public void backfillSearchIndex() {
+        paymentSearchIndexBackfill.backfill();
+        paymentMethodSearchIndexBackfill.backfill();
+    }
+
     @Override
     public Pagination<PaymentMethodModelDao> getPaymentMethods(final String pluginName, final Long offset, final Long limit, final InternalTenantContext context) {
         return paginationHelper.getPagination(PaymentMethodSqlDao.class,
@@ -504,6 +572,7 @@ public class DefaultPaymentDao implements PaymentDao {
                                                                                                      }
                                                                                                     );
 
+                final List<PaymentMethodModelDao> paymentMethodsToCreate = new LinkedList<PaymentMethodModelDao>();
                 for (final PaymentMethodModelDao finalPaymentMethod : newPaymentMethods) {
                     PaymentMethodModelDao foundExistingPaymentMethod = null;
                     for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
@@ -521,11 +590,15 @@ public class DefaultPaymentDao implements PaymentDao {
                     }
 
                     if (foundExistingPaymentMethod == null) {
-                        insertPaymentMethodInTransaction(entitySqlDaoWrapperFactory, finalPaymentMethod, context);
+                        paymentMethodsToCreate.add(finalPaymentMethod);
                     } else {
                         existingPaymentMethods.remove(foundExistingPaymentMethod);
                     }
                 }
+                // New payment methods (e.g. after a gateway migration) are inserted in a single batch
+                if (!paymentMethodsToCreate.isEmpty()) {
+                    transactional.createPaymentMethods(paymentMethodsToCreate, context);
+                }
 
                 // Finally, all payment methods left in the existingPaymentMethods should be marked as deleted
                 for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
@@ -58,6 +58,11 @@ public interface PaymentDao {
                                                         TransactionStatus paymentStatus, BigDecimal processedAmount, Currency processedCurrency,
                                                         String gatewayErrorCode, String gatewayErrorMsg, InternalCallContext context);
 
+    // Optimistic version of updatePaymentAndTransactionOnCompletion: nothing is updated (and false is returned) if the transaction status isn't expectedTransactionStatus anymore
+    public boolean updatePaymentAndTransactionOnCompletionIfUnchanged(UUID accountId, UUID paymentId, TransactionType transactionType, String currentPaymentStateName, String lastPaymentSuccessStateName, UUID transactionId,
+                                                                      TransactionStatus expectedTransactionStatus, TransactionStatus paymentStatus, BigDecimal processedAmount, Currency processedCurrency,
+                                                                      String gatewayErrorCode, String gatewayErrorMsg, InternalCallContext context);
+
     public PaymentModelDao getPayment(UUID paymentId, InternalTenantContext context);
 
     public PaymentTransactionModelDao getPaymentTransaction(UUID transactionId, InternalTenantContext context);
@@ -88,6 +93,9 @@ public interface PaymentDao {
 
     public Pagination<PaymentMethodModelDao> searchPaymentMethods(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
+    // Indexes the payments and payment methods created before the search index (see SearchIndexBackfill)
+    public void backfillSearchIndex();
+
     public void deletedPaymentMethod(UUID paymentMethodId, InternalCallContext context);
 
     public List<PaymentMethodModelDao> refreshPaymentMethods(UUID accountId, String pluginName, List<PaymentMethodModelDao> paymentMethods, InternalCallContext context);
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.payment.dao;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -27,10 +29,11 @@ import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.entity.EntityBase;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableModelDao;
 
 import com.google.common.base.Objects;
 
-public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityModelDao<PaymentMethod> {
+public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityModelDao<PaymentMethod>, SearchableModelDao {
 
     private String externalKey;
     private UUID accountId;
@@ -158,4 +161,8 @@ public class PaymentMethodModelDao extends EntityModelDaoBase implements EntityM
         return TableName.PAYMENT_METHOD_HISTORY;
     }
 
+    @Override
+    public List<String> getSearchableValues() {
+        return Arrays.<String>asList(getExternalKey(), getPluginName());
+    }
 }
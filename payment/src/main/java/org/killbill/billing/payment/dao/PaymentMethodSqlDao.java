@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
@@ -36,6 +37,11 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
 @EntitySqlDaoStringTemplate
 public interface PaymentMethodSqlDao extends EntitySqlDao<PaymentMethodModelDao, PaymentMethod> {
 
+    @SqlBatch
+    @Audited(ChangeType.INSERT)
+    void createPaymentMethods(@BindBean final Iterable<PaymentMethodModelDao> paymentMethods,
+                              @BindBean final InternalCallContext context);
+
     @SqlUpdate
     @Audited(ChangeType.UPDATE)
     void markPaymentMethodAsDeleted(@Bind("id") final String paymentMethodId,
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.payment.dao;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -25,10 +27,11 @@ import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableModelDao;
 
 import com.google.common.base.Objects;
 
-public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDao<Payment> {
+public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDao<Payment>, SearchableModelDao {
 
     public static final Integer INVALID_PAYMENT_NUMBER = new Integer(-17);
 
@@ -157,4 +160,9 @@ public class PaymentModelDao extends EntityModelDaoBase implements EntityModelDa
     public TableName getHistoryTableName() {
         return TableName.PAYMENT_HISTORY;
     }
+
+    @Override
+    public List<String> getSearchableValues() {
+        return Arrays.<String>asList(getExternalKey(), getStateName());
+    }
 }
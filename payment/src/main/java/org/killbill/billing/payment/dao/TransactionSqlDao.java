@@ -48,6 +48,13 @@ public interface TransactionSqlDao extends EntitySqlDao<PaymentTransactionModelD
                                  @Bind("gatewayErrorMsg") final String gatewayErrorMsg,
                                  @BindBean final InternalCallContext context);
 
+    // Locks the row for the current transaction, unless its status isn't expectedTransactionStatus anymore (returns the number of rows updated).
+    // Not audited: the actual change is made by updateTransactionStatus.
+    @SqlUpdate
+    int claimTransactionForUpdate(@Bind("id") final String transactionId,
+                                  @Bind("expectedTransactionStatus") final String expectedTransactionStatus,
+                                  @BindBean final InternalCallContext context);
+
     @SqlQuery
     List<PaymentTransactionModelDao> getPaymentTransactionsByExternalKey(@Bind("transactionExternalKey") final String transactionExternalKey,
                                                                          @BindBean final InternalTenantContext context);
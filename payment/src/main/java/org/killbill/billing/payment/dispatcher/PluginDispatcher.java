@@ -25,19 +25,30 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.killbill.commons.profiling.Profiling;
 import org.killbill.commons.profiling.ProfilingData;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
 public class PluginDispatcher<ReturnType> {
 
     private final TimeUnit DEEFAULT_PLUGIN_TIMEOUT_UNIT = TimeUnit.SECONDS;
 
     private final long timeoutSeconds;
     private final ExecutorService executor;
+    private final MetricRegistry metricRegistry;
 
     public PluginDispatcher(final long timeoutSeconds, final ExecutorService executor) {
+        this(timeoutSeconds, executor, null);
+    }
+
+    public PluginDispatcher(final long timeoutSeconds, final ExecutorService executor, @Nullable final MetricRegistry metricRegistry) {
         this.timeoutSeconds = timeoutSeconds;
         this.executor = executor;
+        this.metricRegistry = metricRegistry;
     }
 
     // TODO Once we switch fully to automata, should this throw PaymentPluginApiException instead?
@@ -47,9 +58,37 @@ public class PluginDispatcher<ReturnType> {
 
     public ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final long timeout, final TimeUnit unit)
             throws TimeoutException, ExecutionException, InterruptedException {
+        return dispatchWithTimeout(task, timeout, unit, null, null);
+    }
 
-        final Future<PluginDispatcherReturnType<ReturnType>> future = executor.submit(task);
-        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult = future.get(timeout, unit);
+    public ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, @Nullable final String pluginName, @Nullable final String pluginOperation)
+            throws TimeoutException, ExecutionException, InterruptedException {
+        return dispatchWithTimeout(task, timeoutSeconds, DEEFAULT_PLUGIN_TIMEOUT_UNIT, pluginName, pluginOperation);
+    }
+
+    //
+    // The plugin name and operation (when known by the caller) are only used to break down the dispatch metrics, e.g. PluginDispatcher.killbill-stripe.PURCHASE.
+    // The timer includes the time spent waiting for a plugin thread, and timeouts are also counted separately.
+    //
+    public ReturnType dispatchWithTimeout(final Callable<PluginDispatcherReturnType<ReturnType>> task, final long timeout, final TimeUnit unit,
+                                          @Nullable final String pluginName, @Nullable final String pluginOperation)
+            throws TimeoutException, ExecutionException, InterruptedException {
+
+        final Timer.Context timerContext = metricRegistry == null ? null : metricRegistry.timer(MetricRegistry.name(PluginDispatcher.class, pluginName, pluginOperation)).time();
+        final PluginDispatcherReturnType<ReturnType> pluginDispatcherResult;
+        try {
+            final Future<PluginDispatcherReturnType<ReturnType>> future = executor.submit(task);
+            pluginDispatcherResult = future.get(timeout, unit);
+        } catch (final TimeoutException e) {
+            if (metricRegistry != null) {
+                metricRegistry.counter(MetricRegistry.name(PluginDispatcher.class, pluginName, pluginOperation, "timeouts")).inc();
+            }
+            throw e;
+        } finally {
+            if (timerContext != null) {
+                timerContext.stop();
+            }
+        }
 
         if (pluginDispatcherResult instanceof WithProfilingPluginDispatcherReturnType) {
             // Transfer state from dispatch thread into current one.
@@ -23,6 +23,8 @@ import org.killbill.billing.payment.api.PaymentService;
 import org.killbill.billing.payment.bus.InvoiceHandler;
 import org.killbill.billing.payment.invoice.PaymentTagHandler;
 import org.killbill.billing.payment.core.janitor.Janitor;
+import org.killbill.billing.payment.core.refresh.PaymentMethodRefresher;
+import org.killbill.billing.payment.dao.PaymentDao;
 import org.killbill.billing.payment.retry.DefaultRetryService;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
@@ -46,6 +48,8 @@ public class DefaultPaymentService implements PaymentService {
     private final PaymentApi api;
     private final DefaultRetryService retryService;
     private final Janitor janitor;
+    private final PaymentMethodRefresher paymentMethodRefresher;
+    private final PaymentDao paymentDao;
 
     @Inject
     public DefaultPaymentService(final InvoiceHandler invoiceHandler,
@@ -53,13 +57,17 @@ public class DefaultPaymentService implements PaymentService {
                                  final PaymentApi api,
                                  final DefaultRetryService retryService,
                                  final PersistentBus eventBus,
-                                 final Janitor janitor) {
+                                 final Janitor janitor,
+                                 final PaymentMethodRefresher paymentMethodRefresher,
+                                 final PaymentDao paymentDao) {
         this.invoiceHandler = invoiceHandler;
         this.tagHandler = tagHandler;
         this.eventBus = eventBus;
         this.api = api;
         this.retryService = retryService;
         this.janitor = janitor;
+        this.paymentMethodRefresher = paymentMethodRefresher;
+        this.paymentDao = paymentDao;
     }
 
     @Override
@@ -76,11 +84,15 @@ public class DefaultPaymentService implements PaymentService {
             log.error("Unable to register with the EventBus!", e);
         }
         retryService.initialize(SERVICE_NAME);
+        paymentMethodRefresher.initialize();
     }
 
     @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
     public void start() {
+        // Index the payments and payment methods created before the search index, the searches scan them until then
+        paymentDao.backfillSearchIndex();
         retryService.start();
+        paymentMethodRefresher.start();
         janitor.start();
     }
 
@@ -93,6 +105,7 @@ public class DefaultPaymentService implements PaymentService {
             throw new RuntimeException("Unable to unregister to the EventBus!", e);
         }
         retryService.stop();
+        paymentMethodRefresher.stop();
         janitor.stop();
     }
 
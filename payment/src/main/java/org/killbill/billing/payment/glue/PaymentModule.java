@@ -33,6 +33,7 @@ import org.killbill.billing.payment.api.DefaultPaymentApi;
 import org.killbill.billing.payment.api.DefaultPaymentGatewayApi;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentGatewayApi;
+import org.killbill.billing.payment.api.PaymentMethodRefreshInternalApi;
 import org.killbill.billing.payment.api.PaymentService;
 import org.killbill.billing.payment.bus.InvoiceHandler;
 import org.killbill.billing.payment.invoice.PaymentTagHandler;
@@ -42,6 +43,7 @@ import org.killbill.billing.payment.core.PaymentGatewayProcessor;
 import org.killbill.billing.payment.core.PaymentMethodProcessor;
 import org.killbill.billing.payment.core.PaymentProcessor;
 import org.killbill.billing.payment.core.PluginRoutingPaymentProcessor;
+import org.killbill.billing.payment.core.refresh.PaymentMethodRefresher;
 import org.killbill.billing.payment.core.sm.PaymentStateMachineHelper;
 import org.killbill.billing.payment.core.sm.PluginRoutingPaymentAutomatonRunner;
 import org.killbill.billing.payment.core.sm.RetryStateMachineHelper;
@@ -69,9 +71,11 @@ import com.google.inject.name.Names;
 public class PaymentModule extends KillBillModule {
 
     private static final String PLUGIN_THREAD_PREFIX = "Plugin-th-";
+    private static final String PAYMENT_METHOD_REFRESH_THREAD_PREFIX = "PaymentMethodRefresh-th-";
 
     public static final String JANITOR_EXECUTOR_NAMED = "JanitorExecutor";
     public static final String PLUGIN_EXECUTOR_NAMED = "PluginExecutor";
+    public static final String PAYMENT_METHOD_REFRESH_EXECUTOR_NAMED = "PaymentMethodRefreshExecutor";
     public static final String RETRYABLE_NAMED = "Retryable";
 
     public static final String STATE_MACHINE_RETRY = "RetryStateMachine";
@@ -164,6 +168,24 @@ public class PaymentModule extends KillBillModule {
         bind(PaymentMethodProcessor.class).asEagerSingleton();
     }
 
+    protected void installPaymentMethodRefresher(final PaymentConfig paymentConfig) {
+        final ExecutorService refreshExecutorService = new WithProfilingThreadPoolExecutor(paymentConfig.getPaymentMethodRefreshThreadNb(), paymentConfig.getPaymentMethodRefreshThreadNb(),
+                                                                                           0L, TimeUnit.MILLISECONDS,
+                                                                                           new LinkedBlockingQueue<Runnable>(),
+                                                                                           new ThreadFactory() {
+
+                                                                                               @Override
+                                                                                               public Thread newThread(final Runnable r) {
+                                                                                                   final Thread th = new Thread(r);
+                                                                                                   th.setName(PAYMENT_METHOD_REFRESH_THREAD_PREFIX + th.getId());
+                                                                                                   return th;
+                                                                                               }
+                                                                                           });
+        bind(ExecutorService.class).annotatedWith(Names.named(PAYMENT_METHOD_REFRESH_EXECUTOR_NAMED)).toInstance(refreshExecutorService);
+        bind(PaymentMethodRefresher.class).asEagerSingleton();
+        bind(PaymentMethodRefreshInternalApi.class).to(PaymentMethodRefresher.class);
+    }
+
     @Override
     protected void configure() {
         final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
@@ -181,6 +203,7 @@ public class PaymentModule extends KillBillModule {
         installPaymentProviderPlugins(paymentConfig);
         installPaymentDao();
         installProcessors(paymentConfig);
+        installPaymentMethodRefresher(paymentConfig);
         installStateMachines();
         installAutomatonRunner();
         installRetryEngines();
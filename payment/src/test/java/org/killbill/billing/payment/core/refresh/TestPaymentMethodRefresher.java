@@ -0,0 +1,224 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.refresh;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.core.PaymentMethodProcessor;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.config.PaymentConfig;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.clock.ClockMock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class TestPaymentMethodRefresher {
+
+    private static final Long TENANT_RECORD_ID = 12L;
+
+    private NotificationQueueService notificationQueueService;
+    private NotificationQueue refreshQueue;
+    private PaymentMethodProcessor paymentMethodProcessor;
+    private AccountInternalApi accountInternalApi;
+    private PaymentConfig paymentConfig;
+    private MetricRegistry metricRegistry;
+    private ExecutorService refreshExecutor;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        refreshQueue = Mockito.mock(NotificationQueue.class);
+        notificationQueueService = Mockito.mock(NotificationQueueService.class);
+        Mockito.when(notificationQueueService.createNotificationQueue(Mockito.anyString(), Mockito.anyString(), Mockito.<NotificationQueueHandler>any())).thenReturn(refreshQueue);
+
+        paymentMethodProcessor = Mockito.mock(PaymentMethodProcessor.class);
+        Mockito.when(paymentMethodProcessor.getAvailablePlugins()).thenReturn(ImmutableSet.<String>of("plugin-a", "plugin-b"));
+
+        accountInternalApi = Mockito.mock(AccountInternalApi.class);
+
+        paymentConfig = Mockito.mock(PaymentConfig.class);
+        Mockito.when(paymentConfig.getPaymentMethodRefreshBatchSize()).thenReturn(2);
+        Mockito.when(paymentConfig.getPaymentMethodRefreshPluginConcurrency()).thenReturn(1);
+
+        metricRegistry = new MetricRegistry();
+    }
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() throws Exception {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testRefreshIsPaginated() throws Exception {
+        final Account account1 = createAccount();
+        final Account account2 = createAccount();
+        final Account account3 = createAccount();
+        mockAccounts(0L, account1, account2);
+        mockAccounts(2L, account3);
+
+        final NotificationQueueHandler handler = initialize(createRefresher(Executors.newFixedThreadPool(4)));
+
+        handler.handleReadyNotification(new PaymentMethodRefreshNotificationKey(null, 0L), null, null, null, TENANT_RECORD_ID);
+        for (final Account account : ImmutableList.<Account>of(account1, account2)) {
+            verifyRefreshed("plugin-a", account);
+            verifyRefreshed("plugin-b", account);
+        }
+        final PaymentMethodRefreshNotificationKey nextKey = verifyRecordedPage();
+        Assert.assertNull(nextKey.getPluginName());
+        Assert.assertEquals(nextKey.getOffset(), (Long) 2L);
+
+        // Last page: nothing else should be scheduled
+        handler.handleReadyNotification(nextKey, null, null, null, TENANT_RECORD_ID);
+        verifyRefreshed("plugin-a", account3);
+        verifyRefreshed("plugin-b", account3);
+        Mockito.verify(refreshQueue, Mockito.times(1)).recordFutureNotification(Mockito.<DateTime>any(), Mockito.<NotificationEvent>any(), Mockito.<UUID>any(), Mockito.<Long>any(), Mockito.<Long>any());
+
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(PaymentMethodRefresher.class, "plugin-a", "refresh")).getCount(), 3);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(PaymentMethodRefresher.class, "plugin-b", "refresh")).getCount(), 3);
+    }
+
+    @Test(groups = "fast")
+    public void testPluginFailuresDoNotAbortThePage() throws Exception {
+        final Account account1 = createAccount();
+        final Account account2 = createAccount();
+        mockAccounts(0L, account1, account2);
+        Mockito.when(paymentMethodProcessor.refreshPaymentMethods(Mockito.eq("plugin-a"), Mockito.eq(account1), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any(), Mockito.<InternalCallContext>any()))
+               .thenThrow(new IllegalStateException("Plugin bug"));
+
+        final NotificationQueueHandler handler = initialize(createRefresher(Executors.newFixedThreadPool(4)));
+        handler.handleReadyNotification(new PaymentMethodRefreshNotificationKey("plugin-a", 0L), null, null, null, TENANT_RECORD_ID);
+
+        verifyRefreshed("plugin-a", account1);
+        verifyRefreshed("plugin-a", account2);
+        Mockito.verify(paymentMethodProcessor, Mockito.never()).refreshPaymentMethods(Mockito.eq("plugin-b"), Mockito.<Account>any(), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any(), Mockito.<InternalCallContext>any());
+        Assert.assertEquals(metricRegistry.meter(MetricRegistry.name(PaymentMethodRefresher.class, "plugin-a", "errors")).getCount(), 1);
+
+        // The next page is still scheduled
+        final PaymentMethodRefreshNotificationKey nextKey = verifyRecordedPage();
+        Assert.assertEquals(nextKey.getPluginName(), "plugin-a");
+        Assert.assertEquals(nextKey.getOffset(), (Long) 2L);
+    }
+
+    @Test(groups = "fast")
+    public void testStopReschedulesTheCurrentPage() throws Exception {
+        final Account account1 = createAccount();
+        final Account account2 = createAccount();
+        mockAccounts(0L, account1, account2);
+
+        // The first refresh hangs until the executor is shut down, the second one never starts
+        final CountDownLatch refreshStarted = new CountDownLatch(1);
+        Mockito.when(paymentMethodProcessor.refreshPaymentMethods(Mockito.eq("plugin-a"), Mockito.eq(account1), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any(), Mockito.<InternalCallContext>any()))
+               .thenAnswer(new Answer<Object>() {
+                   @Override
+                   public Object answer(final InvocationOnMock invocation) throws Throwable {
+                       refreshStarted.countDown();
+                       new CountDownLatch(1).await();
+                       return null;
+                   }
+               });
+
+        final PaymentMethodRefresher refresher = createRefresher(Executors.newSingleThreadExecutor());
+        final NotificationQueueHandler handler = initialize(refresher);
+        final Thread notificationThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                handler.handleReadyNotification(new PaymentMethodRefreshNotificationKey("plugin-a", 0L), null, null, null, TENANT_RECORD_ID);
+            }
+        });
+        notificationThread.start();
+        Assert.assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+        refresher.stop();
+        notificationThread.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse(notificationThread.isAlive());
+
+        Mockito.verify(paymentMethodProcessor, Mockito.never()).refreshPaymentMethods(Mockito.eq("plugin-a"), Mockito.eq(account2), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any(), Mockito.<InternalCallContext>any());
+        // The current page will be processed again on restart
+        final PaymentMethodRefreshNotificationKey nextKey = verifyRecordedPage();
+        Assert.assertEquals(nextKey.getOffset(), (Long) 0L);
+    }
+
+    private PaymentMethodRefresher createRefresher(final ExecutorService refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+        return new PaymentMethodRefresher(notificationQueueService,
+                                          paymentMethodProcessor,
+                                          accountInternalApi,
+                                          Mockito.mock(InternalCallContextFactory.class),
+                                          paymentConfig,
+                                          metricRegistry,
+                                          new ClockMock(),
+                                          refreshExecutor);
+    }
+
+    private NotificationQueueHandler initialize(final PaymentMethodRefresher refresher) throws Exception {
+        refresher.initialize();
+
+        final ArgumentCaptor<NotificationQueueHandler> handlerCaptor = ArgumentCaptor.forClass(NotificationQueueHandler.class);
+        Mockito.verify(notificationQueueService).createNotificationQueue(Mockito.anyString(), Mockito.eq(PaymentMethodRefresher.QUEUE_NAME), handlerCaptor.capture());
+        return handlerCaptor.getValue();
+    }
+
+    private Account createAccount() {
+        final Account account = Mockito.mock(Account.class);
+        Mockito.when(account.getId()).thenReturn(UUID.randomUUID());
+        return account;
+    }
+
+    private void mockAccounts(final Long offset, final Account... accounts) {
+        final List<Account> page = ImmutableList.<Account>copyOf(accounts);
+        Mockito.when(accountInternalApi.getAccounts(Mockito.eq(offset), Mockito.eq(2L), Mockito.<InternalTenantContext>any()))
+               .thenReturn(new DefaultPagination<Account>(offset, 2L, null, null, page.iterator()));
+    }
+
+    private void verifyRefreshed(final String pluginName, final Account account) throws Exception {
+        Mockito.verify(paymentMethodProcessor).refreshPaymentMethods(Mockito.eq(pluginName), Mockito.eq(account), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any(), Mockito.<InternalCallContext>any());
+    }
+
+    private PaymentMethodRefreshNotificationKey verifyRecordedPage() throws Exception {
+        final ArgumentCaptor<NotificationEvent> keyCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
+        Mockito.verify(refreshQueue).recordFutureNotification(Mockito.<DateTime>any(), keyCaptor.capture(), Mockito.<UUID>any(), Mockito.<Long>any(), Mockito.eq(TENANT_RECORD_ID));
+        return (PaymentMethodRefreshNotificationKey) keyCaptor.getValue();
+    }
+}
@@ -31,6 +31,7 @@ import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.payment.api.TransactionStatus;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.payment.dao.PaymentModelDao;
+import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
 import org.killbill.billing.payment.plugin.api.PaymentPluginStatus;
 import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
 import org.mockito.Mockito;
@@ -96,6 +97,72 @@ public class TestPaymentAutomatonDAOHelper extends PaymentTestSuiteWithEmbeddedD
         Assert.assertEquals(paymentStateContext.getPaymentTransactionModelDao().getGatewayErrorMsg(), paymentInfoPlugin.getGatewayError());
     }
 
+    @Test(groups = "slow")
+    public void testPaymentSnapshotIsUpdatedInPlace() throws Exception {
+        final PaymentAutomatonDAOHelper daoHelper = createDAOHelper(null, paymentExternalKey, paymentTransactionExternalKey, amount, currency);
+        daoHelper.createNewPaymentTransaction();
+
+        final PaymentSnapshot paymentSnapshot = paymentStateContext.getPaymentSnapshot();
+        final PaymentTransactionModelDao transaction = paymentStateContext.getPaymentTransactionModelDao();
+        Assert.assertSame(paymentSnapshot.getTransaction(transaction.getId()), transaction);
+        final PaymentModelDao snapshotPayment = paymentSnapshot.getPayment();
+
+        daoHelper.processPaymentInfoPlugin(TransactionStatus.SUCCESS, null, "AUTH_SUCCESS");
+
+        // No reload
+        Assert.assertSame(paymentSnapshot.getPayment(), snapshotPayment);
+        Assert.assertSame(paymentStateContext.getPaymentTransactionModelDao(), transaction);
+        Assert.assertSame(daoHelper.getPayment(), paymentSnapshot.getPayment());
+        Assert.assertEquals(transaction.getTransactionStatus(), TransactionStatus.SUCCESS);
+        Assert.assertEquals(paymentSnapshot.getPayment().getStateName(), "AUTH_SUCCESS");
+        Assert.assertEquals(paymentSnapshot.getPayment().getLastSuccessStateName(), "AUTH_SUCCESS");
+
+        // Verify the snapshot matches the database
+        Assert.assertEquals(paymentDao.getPaymentTransaction(transaction.getId(), internalCallContext).getTransactionStatus(), TransactionStatus.SUCCESS);
+        final PaymentModelDao payment = paymentDao.getPayment(transaction.getPaymentId(), internalCallContext);
+        Assert.assertEquals(payment.getStateName(), "AUTH_SUCCESS");
+        Assert.assertEquals(payment.getLastSuccessStateName(), "AUTH_SUCCESS");
+    }
+
+    @Test(groups = "slow")
+    public void testConcurrentCompletionIsKept() throws Exception {
+        final PaymentAutomatonDAOHelper daoHelper = createDAOHelper(null, paymentExternalKey, paymentTransactionExternalKey, amount, currency);
+        daoHelper.createNewPaymentTransaction();
+        final PaymentTransactionModelDao transaction = paymentStateContext.getPaymentTransactionModelDao();
+
+        // Completed behind the back of the automaton (e.g. janitor)
+        paymentDao.updatePaymentAndTransactionOnCompletion(paymentStateContext.getAccount().getId(), transaction.getPaymentId(), TransactionType.CAPTURE, "CAPTURE_FAILED", null,
+                                                           transaction.getId(), TransactionStatus.PAYMENT_FAILURE, null, null, null, null, internalCallContext);
+
+        daoHelper.processPaymentInfoPlugin(TransactionStatus.SUCCESS, null, "CAPTURE_SUCCESS");
+
+        // Not overwritten, the context has been reloaded
+        Assert.assertNotSame(paymentStateContext.getPaymentTransactionModelDao(), transaction);
+        Assert.assertEquals(paymentStateContext.getPaymentTransactionModelDao().getId(), transaction.getId());
+        Assert.assertEquals(paymentStateContext.getPaymentTransactionModelDao().getTransactionStatus(), TransactionStatus.PAYMENT_FAILURE);
+        Assert.assertEquals(daoHelper.getPayment().getStateName(), "CAPTURE_FAILED");
+        Assert.assertEquals(paymentDao.getPaymentTransaction(transaction.getId(), internalCallContext).getTransactionStatus(), TransactionStatus.PAYMENT_FAILURE);
+        Assert.assertEquals(paymentDao.getPayment(transaction.getPaymentId(), internalCallContext).getStateName(), "CAPTURE_FAILED");
+    }
+
+    @Test(groups = "slow")
+    public void testConcurrentPendingUpdateIsOverridden() throws Exception {
+        final PaymentAutomatonDAOHelper daoHelper = createDAOHelper(null, paymentExternalKey, paymentTransactionExternalKey, amount, currency);
+        daoHelper.createNewPaymentTransaction();
+        final PaymentTransactionModelDao transaction = paymentStateContext.getPaymentTransactionModelDao();
+
+        // Moved to another non final status behind the back of the automaton
+        paymentDao.updatePaymentAndTransactionOnCompletion(paymentStateContext.getAccount().getId(), transaction.getPaymentId(), TransactionType.CAPTURE, "CAPTURE_PENDING", null,
+                                                           transaction.getId(), TransactionStatus.PENDING, null, null, null, null, internalCallContext);
+
+        daoHelper.processPaymentInfoPlugin(TransactionStatus.SUCCESS, null, "CAPTURE_SUCCESS");
+
+        Assert.assertNotSame(paymentStateContext.getPaymentTransactionModelDao(), transaction);
+        Assert.assertEquals(paymentStateContext.getPaymentTransactionModelDao().getTransactionStatus(), TransactionStatus.SUCCESS);
+        Assert.assertEquals(daoHelper.getPayment().getStateName(), "CAPTURE_SUCCESS");
+        Assert.assertEquals(paymentDao.getPaymentTransaction(transaction.getId(), internalCallContext).getTransactionStatus(), TransactionStatus.SUCCESS);
+    }
+
     @Test(groups = "slow")
     public void testNoPaymentMethod() throws Exception {
         final PaymentAutomatonDAOHelper daoHelper = createDAOHelper(UUID.randomUUID(), paymentExternalKey, paymentTransactionExternalKey, amount, currency);
@@ -55,6 +55,8 @@ import org.killbill.billing.routing.plugin.api.PaymentRoutingPluginApi;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.LockMode;
 import org.killbill.billing.util.globallocker.LockerType;
 import org.killbill.commons.locker.GlobalLock;
 import org.killbill.commons.locker.GlobalLocker;
@@ -700,7 +702,7 @@ public class TestRetryablePayment extends PaymentTestSuiteNoDB {
         GlobalLock lock = null;
         try {
             // Grab lock so that operation later will fail...
-            lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), account.getExternalKey(), 1);
+            lock = GlobalLockerWithModes.withModes(locker).lockWithNumberOfTries(LockerType.PAYMENT, LockMode.EXCLUSIVE, account.getId().toString(), 1);
 
             mockRetryProviderPlugin
                     .setAborted(false)
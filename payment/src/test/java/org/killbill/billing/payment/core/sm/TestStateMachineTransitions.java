@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.sm;
+
+import org.killbill.automaton.OperationResult;
+import org.killbill.automaton.State;
+import org.killbill.automaton.StateMachine;
+import org.killbill.automaton.StateMachineConfig;
+import org.killbill.automaton.Transition;
+import org.killbill.billing.payment.PaymentTestSuiteNoDB;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.glue.PaymentModule.StateMachineProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestStateMachineTransitions extends PaymentTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testPaymentStateMachineTables() throws Exception {
+        final StateMachineConfig stateMachineConfig = new StateMachineProvider("org/killbill/billing/payment/PaymentStates.xml").get();
+        checkTransitions(stateMachineConfig);
+
+        final PaymentStateMachineHelper helper = new PaymentStateMachineHelper(stateMachineConfig);
+        Assert.assertEquals(helper.fetchNextState("PURCHASE_INIT", true).getName(), "PURCHASE_SUCCESS");
+        Assert.assertEquals(helper.fetchNextState("PURCHASE_INIT", false).getName(), "PURCHASE_FAILED");
+        Assert.assertEquals(helper.fetchNextState("AUTH_PENDING", true).getName(), "AUTH_SUCCESS");
+        Assert.assertEquals(helper.getStateMachineForStateName("REFUND_INIT").getName(), "REFUND");
+        for (final TransactionType transactionType : TransactionType.values()) {
+            Assert.assertSame(helper.getOperationForTransaction(transactionType), helper.getStateMachineForTransaction(transactionType).getOperations()[0]);
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testRetryStateMachineTables() throws Exception {
+        final StateMachineConfig stateMachineConfig = new StateMachineProvider("org/killbill/billing/payment/retry/RetryStates.xml").get();
+        checkTransitions(stateMachineConfig);
+
+        final RetryStateMachineHelper helper = new RetryStateMachineHelper(stateMachineConfig);
+        Assert.assertSame(helper.getState("RETRIED"), helper.getRetriedState());
+        Assert.assertSame(helper.getState("INIT"), helper.getInitialState());
+    }
+
+    // Compare the indexed lookups with a scan of the configuration
+    private void checkTransitions(final StateMachineConfig stateMachineConfig) throws Exception {
+        final StateMachineTransitions transitions = new StateMachineTransitions(stateMachineConfig);
+        for (final StateMachine stateMachine : stateMachineConfig.getStateMachines()) {
+            for (final State state : stateMachine.getStates()) {
+                final StateMachine expectedStateMachine = stateMachineConfig.getStateMachineForState(state.getName());
+                Assert.assertSame(transitions.getStateMachineForState(state.getName()), expectedStateMachine);
+                Assert.assertSame(transitions.getState(state.getName()), expectedStateMachine.getState(state.getName()));
+
+                for (final OperationResult operationResult : OperationResult.values()) {
+                    Assert.assertSame(transitions.getNextState(state.getName(), operationResult), scanNextState(expectedStateMachine, state.getName(), operationResult));
+                }
+            }
+        }
+        Assert.assertNull(transitions.getState("UNKNOWN"));
+        Assert.assertNull(transitions.getNextState("UNKNOWN", OperationResult.SUCCESS));
+    }
+
+    private State scanNextState(final StateMachine stateMachine, final String stateName, final OperationResult operationResult) {
+        for (final Transition transition : stateMachine.getTransitions()) {
+            if (transition.getInitialState().getName().equals(stateName) && transition.getOperationResult().equals(operationResult)) {
+                return transition.getFinalState();
+            }
+        }
+        return null;
+    }
+}
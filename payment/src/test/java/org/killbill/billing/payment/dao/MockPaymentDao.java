@@ -217,6 +217,23 @@ public class MockPaymentDao implements PaymentDao {
         }
     }
 
+    @Override
+    public boolean updatePaymentAndTransactionOnCompletionIfUnchanged(final UUID accountId, final UUID paymentId, final TransactionType transactionType,
+                                                                      final String currentPaymentStateName, final String lastSuccessPaymentStateName, final UUID transactionId,
+                                                                      final TransactionStatus expectedTransactionStatus, final TransactionStatus paymentStatus,
+                                                                      final BigDecimal processedAmount, final Currency processedCurrency,
+                                                                      final String gatewayErrorCode, final String gatewayErrorMsg, final InternalCallContext context) {
+        synchronized (this) {
+            final PaymentTransactionModelDao transaction = transactions.get(transactionId);
+            if (transaction == null || transaction.getTransactionStatus() != expectedTransactionStatus) {
+                return false;
+            }
+            updatePaymentAndTransactionOnCompletion(accountId, paymentId, transactionType, currentPaymentStateName, lastSuccessPaymentStateName, transactionId,
+                                                    paymentStatus, processedAmount, processedCurrency, gatewayErrorCode, gatewayErrorMsg, context);
+            return true;
+        }
+    }
+
     @Override
     public PaymentModelDao getPayment(final UUID paymentId, final InternalTenantContext context) {
         synchronized (this) {
@@ -346,6 +363,10 @@ public class MockPaymentDao implements PaymentDao {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void backfillSearchIndex() {
+    }
+
     @Override
     public void deletedPaymentMethod(final UUID paymentMethodId, final InternalCallContext context) {
         synchronized (this) {
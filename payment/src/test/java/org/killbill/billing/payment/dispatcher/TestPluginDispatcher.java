@@ -29,6 +29,8 @@ import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcher
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.MetricRegistry;
+
 public class TestPluginDispatcher extends PaymentTestSuiteNoDB {
 
     private final PluginDispatcher<Void> voidPluginDispatcher = new PluginDispatcher<Void>(10, Executors.newSingleThreadExecutor());
@@ -106,4 +108,33 @@ public class TestPluginDispatcher extends PaymentTestSuiteNoDB {
         }
         Assert.assertTrue(gotIt);
     }
+
+    @Test(groups = "fast")
+    public void testDispatchMetrics() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final PluginDispatcher<Void> instrumentedPluginDispatcher = new PluginDispatcher<Void>(10, Executors.newSingleThreadExecutor(), metricRegistry);
+
+        instrumentedPluginDispatcher.dispatchWithTimeout(new Callable<PluginDispatcherReturnType<Void>>() {
+            @Override
+            public PluginDispatcherReturnType<Void> call() throws Exception {
+                return PluginDispatcher.<Void>createPluginDispatcherReturnType(null);
+            }
+        }, "test-plugin", "PURCHASE");
+
+        try {
+            instrumentedPluginDispatcher.dispatchWithTimeout(new Callable<PluginDispatcherReturnType<Void>>() {
+                @Override
+                public PluginDispatcherReturnType<Void> call() throws Exception {
+                    Thread.sleep(1000);
+                    return null;
+                }
+            }, 100, TimeUnit.MILLISECONDS, "test-plugin", "PURCHASE");
+            Assert.fail("Failed : should have had Timeout exception");
+        } catch (final TimeoutException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(PluginDispatcher.class, "test-plugin", "PURCHASE")).getCount(), 2);
+        Assert.assertEquals(metricRegistry.counter(MetricRegistry.name(PluginDispatcher.class, "test-plugin", "PURCHASE", "timeouts")).getCount(), 1);
+    }
 }
@@ -21,12 +21,16 @@ package org.killbill.billing.server;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
 import org.killbill.billing.lifecycle.glue.BusModule;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
 import org.killbill.billing.server.notifications.PushNotificationListener;
+import org.killbill.billing.server.notifications.PushNotificationRetryService;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,15 +38,22 @@ public class DefaultServerService implements ServerService {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultServerService.class);
 
-    private static final String SERVER_SERVICE = "server-service";
+    public static final String SERVER_SERVICE = "server-service";
 
     private final PersistentBus bus;
     private final PushNotificationListener pushNotificationListener;
+    private final PushNotificationRetryService pushNotificationRetryService;
+    private final JaxrsExecutors jaxrsExecutors;
 
     @Inject
-    public DefaultServerService(@Named(BusModule.EXTERNAL_BUS_NAMED) final PersistentBus bus, final PushNotificationListener pushNotificationListener) {
+    public DefaultServerService(@Named(BusModule.EXTERNAL_BUS_NAMED) final PersistentBus bus,
+                                final PushNotificationListener pushNotificationListener,
+                                final PushNotificationRetryService pushNotificationRetryService,
+                                final JaxrsExecutors jaxrsExecutors) {
         this.bus = bus;
         this.pushNotificationListener = pushNotificationListener;
+        this.pushNotificationRetryService = pushNotificationRetryService;
+        this.jaxrsExecutors = jaxrsExecutors;
     }
 
     @Override
@@ -52,6 +63,12 @@ public class DefaultServerService implements ServerService {
 
     @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
     public void registerForNotifications() {
+        // Retries are independent of the bus registration
+        try {
+            pushNotificationRetryService.initialize();
+        } catch (final NotificationQueueAlreadyExists e) {
+            log.warn("Failed to initialize Server service :", e);
+        }
         try {
             bus.register(pushNotificationListener);
         } catch (final EventBusException e) {
@@ -59,6 +76,11 @@ public class DefaultServerService implements ServerService {
         }
     }
 
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        pushNotificationRetryService.start();
+    }
+
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
     public void unregisterForNotifications() {
         try {
@@ -66,5 +88,13 @@ public class DefaultServerService implements ServerService {
         } catch (final EventBusException e) {
             log.warn("Failed to stop Server service :", e);
         }
+        // Record the outcome of the pending requests before stopping the queue
+        pushNotificationListener.shutdown();
+        try {
+            pushNotificationRetryService.stop();
+        } catch (final NoSuchNotificationQueue e) {
+            log.warn("Failed to stop Server service :", e);
+        }
+        jaxrsExecutors.shutdown();
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.server.log.obfuscators;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * CombinedObfuscator applies the rules of ConfigMagicObfuscator, PatternObfuscator and LuhnMaskingObfuscator
+ * (in that order), but scans the message only once.
+ * <p/>
+ * The scan looks for the keywords all patterns are anchored on (e.g. the sensitive key names) and for sequences
+ * of digits long enough to be a PAN. Messages with none of them are returned as is, otherwise only the patterns
+ * whose keyword was found are evaluated.
+ */
+public class CombinedObfuscator extends Obfuscator {
+
+    private static final String CONFIG_MAGIC_KEYWORD = "assigning value [";
+    private static final int ASCII_SIZE = 128;
+
+    // Lower-cased keywords
+    private final List<String> keywords = new ArrayList<String>();
+    // Indexes of the keywords starting with a given (ASCII) character, both cases
+    private final int[][] keywordsByFirstChar = new int[ASCII_SIZE][];
+    // All patterns, in the order the chained obfuscators would apply them
+    private final List<KeywordPattern> patterns = new ArrayList<KeywordPattern>();
+
+    private final LuhnMaskingObfuscator luhnMaskingObfuscator = new LuhnMaskingObfuscator();
+
+    public CombinedObfuscator() {
+        super();
+
+        final int configMagicKeyword = addKeyword(CONFIG_MAGIC_KEYWORD);
+        for (final String sensitiveKey : ConfigMagicObfuscator.DEFAULT_SENSITIVE_KEYS) {
+            patterns.add(new KeywordPattern(configMagicKeyword, ConfigMagicObfuscator.buildPattern(sensitiveKey)));
+        }
+        for (final String sensitiveKey : PatternObfuscator.DEFAULT_SENSITIVE_KEYS) {
+            final int keyword = addKeyword(sensitiveKey);
+            patterns.add(new KeywordPattern(keyword, PatternObfuscator.buildJSONPattern(sensitiveKey)));
+            patterns.add(new KeywordPattern(keyword, PatternObfuscator.buildXMLPattern(sensitiveKey)));
+            patterns.add(new KeywordPattern(keyword, PatternObfuscator.buildMultiValuesXMLPattern(sensitiveKey)));
+        }
+    }
+
+    @Override
+    public String obfuscate(final String originalString) {
+        final boolean[] keywordsFound = new boolean[keywords.size()];
+        int nbKeywordsFound = 0;
+        int digits = 0;
+        boolean hasEnoughDigits = false;
+
+        final int length = originalString.length();
+        for (int i = 0; i < length; i++) {
+            final char current = originalString.charAt(i);
+            if (current >= '0' && current <= '9') {
+                if (++digits >= LuhnMaskingObfuscator.MIN_CC_DIGITS) {
+                    hasEnoughDigits = true;
+                }
+                continue;
+            } else if (digits > 0 && current != ' ' && current != '-') {
+                // Same separators as LuhnMaskingObfuscator
+                digits = 0;
+            }
+
+            // Patterns are case insensitive for US-ASCII characters only
+            if (nbKeywordsFound == keywordsFound.length || current >= ASCII_SIZE || keywordsByFirstChar[current] == null) {
+                continue;
+            }
+            for (final int keyword : keywordsByFirstChar[current]) {
+                if (!keywordsFound[keyword] && originalString.regionMatches(true, i, keywords.get(keyword), 0, keywords.get(keyword).length())) {
+                    keywordsFound[keyword] = true;
+                    nbKeywordsFound++;
+                }
+            }
+        }
+
+        if (nbKeywordsFound == 0 && !hasEnoughDigits) {
+            return originalString;
+        }
+
+        String obfuscatedString = originalString;
+        if (nbKeywordsFound > 0) {
+            final List<Pattern> matchingPatterns = new LinkedList<Pattern>();
+            for (final KeywordPattern pattern : patterns) {
+                if (keywordsFound[pattern.getKeyword()]) {
+                    matchingPatterns.add(pattern.getPattern());
+                }
+            }
+            obfuscatedString = obfuscate(obfuscatedString, matchingPatterns);
+        }
+        if (hasEnoughDigits) {
+            obfuscatedString = luhnMaskingObfuscator.obfuscate(obfuscatedString);
+        }
+        return obfuscatedString;
+    }
+
+    private int addKeyword(final String keyword) {
+        final String lowerCaseKeyword = keyword.toLowerCase();
+        final int index = keywords.size();
+        keywords.add(lowerCaseKeyword);
+
+        final char firstChar = lowerCaseKeyword.charAt(0);
+        addKeywordForFirstChar(firstChar, index);
+        if (Character.toUpperCase(firstChar) != firstChar) {
+            addKeywordForFirstChar(Character.toUpperCase(firstChar), index);
+        }
+        return index;
+    }
+
+    private void addKeywordForFirstChar(final char firstChar, final int index) {
+        final int[] existing = keywordsByFirstChar[firstChar];
+        final int[] updated = new int[existing == null ? 1 : existing.length + 1];
+        if (existing != null) {
+            System.arraycopy(existing, 0, updated, 0, existing.length);
+        }
+        updated[updated.length - 1] = index;
+        keywordsByFirstChar[firstChar] = updated;
+    }
+
+    private static final class KeywordPattern {
+
+        private final int keyword;
+        private final Pattern pattern;
+
+        private KeywordPattern(final int keyword, final Pattern pattern) {
+            this.keyword = keyword;
+            this.pattern = pattern;
+        }
+
+        public int getKeyword() {
+            return keyword;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+    }
+}
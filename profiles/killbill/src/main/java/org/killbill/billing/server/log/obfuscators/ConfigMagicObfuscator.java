@@ -26,7 +26,7 @@ import com.google.common.collect.ImmutableList;
 // See ConfigurationObjectFactory
 public class ConfigMagicObfuscator extends Obfuscator {
 
-    private static final String[] DEFAULT_SENSITIVE_KEYS = {
+    static final String[] DEFAULT_SENSITIVE_KEYS = {
             "key",
             "pass",
             "password"
@@ -52,7 +52,7 @@ public class ConfigMagicObfuscator extends Obfuscator {
         return obfuscate(originalString, patterns);
     }
 
-    private Pattern buildPattern(final String key) {
+    static Pattern buildPattern(final String key) {
         return Pattern.compile("^Assigning value \\[([^\\]]*)\\] for \\[[^\\]]*" + key + "\\] on \\[[^\\]]*\\]$", DEFAULT_PATTERN_FLAGS);
     }
 }
@@ -31,7 +31,7 @@ public class LuhnMaskingObfuscator extends Obfuscator {
     /**
      * The minimum number of digits a credit card can have.
      */
-    private static final int MIN_CC_DIGITS = 13;
+    static final int MIN_CC_DIGITS = 13;
 
     public LuhnMaskingObfuscator() {
         super();
@@ -21,6 +21,7 @@ import java.util.Collection;
 
 import ch.qos.logback.classic.pattern.ClassicConverter;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -41,21 +42,53 @@ import com.google.common.collect.ImmutableList;
  *         </root>
  *     </configuration>
  * </pre>
+ * The ConfigMagicObfuscator, PatternObfuscator and LuhnMaskingObfuscator rules are applied in a single scan
+ * of the message, see CombinedObfuscator. If it fails, the obfuscators are chained instead, and if one of them fails too,
+ * the whole message is masked: the raw message is never logged.
  */
 public class ObfuscatorConverter extends ClassicConverter {
 
-    private final Collection<Obfuscator> obfuscators = ImmutableList.<Obfuscator>of(new ConfigMagicObfuscator(),
-                                                                                    new PatternObfuscator(),
-                                                                                    new LuhnMaskingObfuscator());
+    @VisibleForTesting
+    static final String MASKED_MESSAGE = "*** " + Obfuscator.MASK_LABEL + " (failed to obfuscate the message) ***";
+
+    private final Obfuscator obfuscator;
+    private final Collection<Obfuscator> fallbackObfuscators;
+
+    public ObfuscatorConverter() {
+        this(new CombinedObfuscator(), ImmutableList.<Obfuscator>of(new ConfigMagicObfuscator(),
+                                                                    new PatternObfuscator(),
+                                                                    new LuhnMaskingObfuscator()));
+    }
+
+    @VisibleForTesting
+    ObfuscatorConverter(final Obfuscator obfuscator, final Collection<Obfuscator> fallbackObfuscators) {
+        this.obfuscator = obfuscator;
+        this.fallbackObfuscators = fallbackObfuscators;
+    }
 
     @Override
     public String convert(final ILoggingEvent event) {
-        String convertedMessage = event.getFormattedMessage();
-        for (final Obfuscator obfuscator : obfuscators) {
+        final String formattedMessage = event.getFormattedMessage();
+        if (formattedMessage == null) {
+            return null;
+        }
+
+        try {
+            return obfuscator.obfuscate(formattedMessage);
+        } catch (final RuntimeException e) {
+            // Not logged, as we are the logger
+            return obfuscateWithFallbackObfuscators(formattedMessage);
+        }
+    }
+
+    private String obfuscateWithFallbackObfuscators(final String formattedMessage) {
+        String convertedMessage = formattedMessage;
+        for (final Obfuscator fallbackObfuscator : fallbackObfuscators) {
             try {
-                convertedMessage = obfuscator.obfuscate(convertedMessage);
+                convertedMessage = fallbackObfuscator.obfuscate(convertedMessage);
             } catch (final RuntimeException e) {
-                // Ignore? Not sure the impact of importing a logger here
+                // Fail closed
+                return MASKED_MESSAGE;
             }
         }
         return convertedMessage;
@@ -26,7 +26,7 @@ import com.google.common.collect.ImmutableList;
 public class PatternObfuscator extends Obfuscator {
 
     // Hide by default sensitive bank, PCI and PII data. For PANs, see LuhnMaskingObfuscator
-    private static final String[] DEFAULT_SENSITIVE_KEYS = {
+    static final String[] DEFAULT_SENSITIVE_KEYS = {
             "accountnumber",
             "authenticationdata",
             "bankaccountnumber",
@@ -67,15 +67,15 @@ public class PatternObfuscator extends Obfuscator {
         return obfuscate(originalString, patterns);
     }
 
-    private Pattern buildJSONPattern(final String key) {
+    static Pattern buildJSONPattern(final String key) {
         return Pattern.compile(key + "\":\\s*([^,{]+)", DEFAULT_PATTERN_FLAGS);
     }
 
-    private Pattern buildXMLPattern(final String key) {
+    static Pattern buildXMLPattern(final String key) {
         return Pattern.compile(key + ">([^<\\n]+)", DEFAULT_PATTERN_FLAGS);
     }
 
-    private Pattern buildMultiValuesXMLPattern(final String key) {
+    static Pattern buildMultiValuesXMLPattern(final String key) {
         return Pattern.compile(key + "</key>\\s*<value[^>]*>([^<\\n]+)</value>", DEFAULT_PATTERN_FLAGS);
     }
 }
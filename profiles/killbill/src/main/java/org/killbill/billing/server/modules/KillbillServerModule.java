@@ -32,6 +32,7 @@ import org.killbill.billing.jaxrs.resources.CatalogResource;
 import org.killbill.billing.jaxrs.resources.CreditResource;
 import org.killbill.billing.jaxrs.resources.CustomFieldResource;
 import org.killbill.billing.jaxrs.resources.ExportResource;
+import org.killbill.billing.jaxrs.resources.ImportResource;
 import org.killbill.billing.jaxrs.resources.InvoicePaymentResource;
 import org.killbill.billing.jaxrs.resources.InvoiceResource;
 import org.killbill.billing.jaxrs.resources.PaymentGatewayResource;
@@ -46,6 +47,7 @@ import org.killbill.billing.jaxrs.resources.TenantResource;
 import org.killbill.billing.jaxrs.resources.TestResource;
 import org.killbill.billing.jaxrs.resources.TransactionResource;
 import org.killbill.billing.jaxrs.resources.UsageResource;
+import org.killbill.billing.jaxrs.util.JaxrsExecutors;
 import org.killbill.billing.jaxrs.util.KillbillEventHandler;
 import org.killbill.billing.junction.glue.DefaultJunctionModule;
 import org.killbill.billing.overdue.glue.DefaultOverdueModule;
@@ -56,10 +58,14 @@ import org.killbill.billing.server.ServerService;
 import org.killbill.billing.server.config.KillbillServerConfig;
 import org.killbill.billing.server.filters.ResponseCorsFilter;
 import org.killbill.billing.server.notifications.PushNotificationListener;
+import org.killbill.billing.server.notifications.PushNotificationRetryService;
+import org.killbill.billing.server.security.TenantCredentialsCache;
 import org.killbill.billing.subscription.glue.DefaultSubscriptionModule;
 import org.killbill.billing.tenant.glue.DefaultTenantModule;
 import org.killbill.billing.usage.glue.UsageModule;
 import org.killbill.billing.util.dao.AuditLogModelDaoMapper;
+import org.killbill.billing.util.config.JaxrsConfig;
+import org.killbill.billing.util.config.NotificationConfig;
 import org.killbill.billing.util.dao.RecordIdIdMappingsMapper;
 import org.killbill.billing.util.email.EmailModule;
 import org.killbill.billing.util.email.templates.TemplateModule;
@@ -72,6 +78,7 @@ import org.killbill.billing.util.glue.ExportModule;
 import org.killbill.billing.util.glue.GlobalLockerModule;
 import org.killbill.billing.util.glue.KillBillShiroAopModule;
 import org.killbill.billing.util.glue.KillbillApiAopModule;
+import org.killbill.billing.util.glue.KillbillBusHandlerAopModule;
 import org.killbill.billing.util.glue.NonEntityDaoModule;
 import org.killbill.billing.util.glue.RecordIdModule;
 import org.killbill.billing.util.glue.SecurityModule;
@@ -81,6 +88,7 @@ import org.killbill.clock.Clock;
 import org.killbill.clock.ClockMock;
 import org.killbill.commons.embeddeddb.EmbeddedDB;
 import org.killbill.commons.jdbi.mapper.LowerToCamelBeanMapperFactory;
+import org.skife.config.ConfigurationObjectFactory;
 import org.skife.jdbi.v2.ResultSetMapperFactory;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
@@ -151,6 +159,7 @@ public class KillbillServerModule extends KillbillPlatformModule {
         install(new GlobalLockerModule(configSource));
         install(new KillBillShiroAopModule());
         install(new KillbillApiAopModule());
+        install(new KillbillBusHandlerAopModule());
         install(new KillBillShiroWebModule(servletContext, skifeConfigSource));
         install(new NonEntityDaoModule(configSource));
         install(new PaymentModule(configSource));
@@ -163,12 +172,17 @@ public class KillbillServerModule extends KillbillPlatformModule {
     }
 
     protected void configureResources() {
+        final JaxrsConfig jaxrsConfig = new ConfigurationObjectFactory(skifeConfigSource).build(JaxrsConfig.class);
+        bind(JaxrsConfig.class).toInstance(jaxrsConfig);
+        bind(JaxrsExecutors.class).asEagerSingleton();
+
         bind(AccountResource.class).asEagerSingleton();
         bind(BundleResource.class).asEagerSingleton();
         bind(CatalogResource.class).asEagerSingleton();
         bind(CreditResource.class).asEagerSingleton();
         bind(CustomFieldResource.class).asEagerSingleton();
         bind(ExportResource.class).asEagerSingleton();
+        bind(ImportResource.class).asEagerSingleton();
         bind(InvoicePaymentResource.class).asEagerSingleton();
         bind(InvoiceResource.class).asEagerSingleton();
         bind(KillbillEventHandler.class).asEagerSingleton();
@@ -188,10 +202,15 @@ public class KillbillServerModule extends KillbillPlatformModule {
 
     protected void configureFilters() {
         bind(ResponseCorsFilter.class).asEagerSingleton();
+        bind(TenantCredentialsCache.class).asEagerSingleton();
     }
 
     protected void configurePushNotification() {
+        final NotificationConfig notificationConfig = new ConfigurationObjectFactory(skifeConfigSource).build(NotificationConfig.class);
+        bind(NotificationConfig.class).toInstance(notificationConfig);
+
         bind(ServerService.class).to(DefaultServerService.class).asEagerSingleton();
         bind(PushNotificationListener.class).asEagerSingleton();
+        bind(PushNotificationRetryService.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+import org.killbill.clock.Clock;
+
+/*
+ * Per callback url circuit breaker: after too many consecutive failures, the endpoint is skipped
+ * until the open duration expires, at which point a single probe request is let through.
+ */
+public class PushNotificationCircuitBreaker {
+
+    private final ConcurrentMap<String, EndpointState> endpoints = new ConcurrentHashMap<String, EndpointState>();
+
+    private final Clock clock;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+
+    public PushNotificationCircuitBreaker(final Clock clock, final int failureThreshold, final long openDurationMillis) {
+        this.clock = clock;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    public boolean allowRequest(final String url) {
+        final EndpointState state = endpoints.get(url);
+        if (state == null || state.consecutiveFailures.get() < failureThreshold) {
+            return true;
+        }
+        if (clock.getUTCNow().getMillis() < state.openUntilMillis) {
+            return false;
+        }
+        // Half-open: only let one probe through
+        return state.probeInFlight.compareAndSet(false, true);
+    }
+
+    public DateTime getNextAvailableDate(final String url) {
+        final DateTime now = clock.getUTCNow();
+        final EndpointState state = endpoints.get(url);
+        if (state == null || state.openUntilMillis <= now.getMillis()) {
+            return now.plusMillis((int) openDurationMillis);
+        }
+        return new DateTime(state.openUntilMillis, now.getZone());
+    }
+
+    public void recordSuccess(final String url) {
+        final EndpointState state = endpoints.get(url);
+        if (state != null) {
+            state.consecutiveFailures.set(0);
+            state.probeInFlight.set(false);
+        }
+    }
+
+    public void recordFailure(final String url) {
+        final EndpointState state = getOrCreateState(url);
+        if (state.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            state.openUntilMillis = clock.getUTCNow().getMillis() + openDurationMillis;
+        }
+        state.probeInFlight.set(false);
+    }
+
+    public boolean isOpen(final String url) {
+        final EndpointState state = endpoints.get(url);
+        return state != null && state.consecutiveFailures.get() >= failureThreshold;
+    }
+
+    private EndpointState getOrCreateState(final String url) {
+        EndpointState state = endpoints.get(url);
+        if (state == null) {
+            final EndpointState newState = new EndpointState();
+            state = endpoints.putIfAbsent(url, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    private static final class EndpointState {
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+        private final AtomicBoolean probeInFlight = new AtomicBoolean(false);
+        private volatile long openUntilMillis = 0L;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.jaxrs.json.NotificationJson;
+import org.killbill.notificationq.api.NotificationEvent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/*
+ * Outbox entry for a push notification to a single callback url. The delivery id identifies the entry
+ * recorded while a request is in flight, so that it can be removed once the outcome is known.
+ */
+public class PushNotificationKey implements NotificationEvent {
+
+    private final UUID tenantId;
+    private final UUID accountId;
+    private final String eventType;
+    private final String objectType;
+    private final UUID objectId;
+    private final String url;
+    private final int attemptNumber;
+    private final DateTime createdDate;
+    private final UUID deliveryId;
+
+    @JsonCreator
+    public PushNotificationKey(@JsonProperty("tenantId") final UUID tenantId,
+                               @JsonProperty("accountId") final UUID accountId,
+                               @JsonProperty("eventType") final String eventType,
+                               @JsonProperty("objectType") final String objectType,
+                               @JsonProperty("objectId") final UUID objectId,
+                               @JsonProperty("url") final String url,
+                               @JsonProperty("attemptNumber") final int attemptNumber,
+                               @JsonProperty("createdDate") final DateTime createdDate,
+                               @JsonProperty("deliveryId") @Nullable final UUID deliveryId) {
+        this.tenantId = tenantId;
+        this.accountId = accountId;
+        this.eventType = eventType;
+        this.objectType = objectType;
+        this.objectId = objectId;
+        this.url = url;
+        this.attemptNumber = attemptNumber;
+        this.createdDate = createdDate;
+        this.deliveryId = deliveryId;
+    }
+
+    public PushNotificationKey(final PushNotificationKey key, final int attemptNumber, @Nullable final UUID deliveryId) {
+        this(key.getTenantId(), key.getAccountId(), key.getEventType(), key.getObjectType(), key.getObjectId(), key.getUrl(), attemptNumber, key.getCreatedDate(), deliveryId);
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public UUID getAccountId() {
+        return accountId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getObjectType() {
+        return objectType;
+    }
+
+    public UUID getObjectId() {
+        return objectId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getAttemptNumber() {
+        return attemptNumber;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public UUID getDeliveryId() {
+        return deliveryId;
+    }
+
+    @JsonIgnore
+    public NotificationJson toNotificationJson() {
+        return new NotificationJson(eventType,
+                                    accountId != null ? accountId.toString() : null,
+                                    objectType,
+                                    objectId != null ? objectId.toString() : null);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PushNotificationKey{");
+        sb.append("tenantId=").append(tenantId);
+        sb.append(", accountId=").append(accountId);
+        sb.append(", eventType='").append(eventType).append('\'');
+        sb.append(", objectType='").append(objectType).append('\'');
+        sb.append(", objectId=").append(objectId);
+        sb.append(", url='").append(url).append('\'');
+        sb.append(", attemptNumber=").append(attemptNumber);
+        sb.append(", createdDate=").append(createdDate);
+        sb.append(", deliveryId=").append(deliveryId);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -19,55 +19,139 @@
 package org.killbill.billing.server.notifications;
 
 import java.io.IOException;
+import java.sql.Connection;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
-import org.killbill.billing.jaxrs.json.NotificationJson;
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.notification.plugin.api.ExtBusEvent;
+import org.killbill.billing.server.DefaultServerService;
 import org.killbill.billing.tenant.api.TenantApiException;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.api.TenantUserApi;
 import org.killbill.billing.util.callcontext.CallContextFactory;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.NotificationConfig;
+import org.killbill.clock.Clock;
+import org.killbill.commons.concurrent.WithProfilingThreadPoolExecutor;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
 import com.ning.http.client.AsyncHttpClientConfig;
-import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.Subscribe;
 
+/*
+ * Push notifications are sent asynchronously: the bus thread only enqueues the HTTP requests, and failed deliveries
+ * are recorded in the push notification queue (see PushNotificationRetryService) to be retried with an exponential backoff.
+ *
+ * Before each request, an in-flight entry (the next attempt) is recorded in that queue: it is removed once the outcome
+ * is known, and would otherwise trigger the retry, should the node go down before. Its record id is kept with the request,
+ * so that it is removed directly (on failure, in the same transaction as the retry). Outcomes are handled on a dedicated
+ * pool, to keep the queue writes away from the HTTP client I/O threads.
+ *
+ * Entries are keyed by account record id, or by tenant record id for tenant-level events, so that the lookup of the
+ * in-flight entry is never a tenant-wide scan.
+ */
 public class PushNotificationListener {
 
     private static final Logger log = LoggerFactory.getLogger(PushNotificationListener.class);
 
+    private static final String PUSH_NOTIFICATION_THREAD_PREFIX = "push-notification-th-";
+
     @VisibleForTesting
     public static final String HTTP_HEADER_CONTENT_TYPE = "Content-Type";
     @VisibleForTesting
     public static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
-    private static final int TIMEOUT_NOTIFICATION = 15; // 15 seconds
-
     private final TenantUserApi tenantApi;
     private final CallContextFactory contextFactory;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final NotificationQueueService notificationQueueService;
+    private final IDBI dbi;
+    private final NotificationConfig notificationConfig;
+    private final Clock clock;
     private final AsyncHttpClient httpClient;
+    private final ExecutorService completionExecutor;
     private final ObjectMapper mapper;
+    private final PushNotificationCircuitBreaker circuitBreaker;
+
+    private final Timer deliveryTimer;
+    private final Histogram deliveryLag;
+    private final Meter successMeter;
+    private final Meter failureMeter;
+    private final Meter droppedMeter;
+    private final Meter circuitOpenMeter;
 
     @Inject
-    public PushNotificationListener(final ObjectMapper mapper, final TenantUserApi tenantApi, final CallContextFactory contextFactory) {
-        this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout(TIMEOUT_NOTIFICATION * 1000).build());
+    public PushNotificationListener(final ObjectMapper mapper,
+                                    final TenantUserApi tenantApi,
+                                    final CallContextFactory contextFactory,
+                                    final InternalCallContextFactory internalCallContextFactory,
+                                    final NotificationQueueService notificationQueueService,
+                                    final IDBI dbi,
+                                    final NotificationConfig notificationConfig,
+                                    final MetricRegistry metricRegistry,
+                                    final Clock clock) {
+        this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout((int) notificationConfig.getPushNotificationTimeout().getMillis()).build());
+        this.completionExecutor = new WithProfilingThreadPoolExecutor(notificationConfig.getPushNotificationThreadNb(), notificationConfig.getPushNotificationThreadNb(),
+                                                                      0L, TimeUnit.MILLISECONDS,
+                                                                      new LinkedBlockingQueue<Runnable>(),
+                                                                      new ThreadFactory() {
+
+                                                                          @Override
+                                                                          public Thread newThread(final Runnable r) {
+                                                                              final Thread th = new Thread(r);
+                                                                              th.setName(PUSH_NOTIFICATION_THREAD_PREFIX + th.getId());
+                                                                              return th;
+                                                                          }
+                                                                      });
         this.tenantApi = tenantApi;
         this.contextFactory = contextFactory;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.notificationQueueService = notificationQueueService;
+        this.dbi = dbi;
+        this.notificationConfig = notificationConfig;
+        this.clock = clock;
         this.mapper = mapper;
+        this.circuitBreaker = new PushNotificationCircuitBreaker(clock,
+                                                                 notificationConfig.getPushNotificationCircuitBreakerFailureThreshold(),
+                                                                 notificationConfig.getPushNotificationCircuitBreakerOpenDuration().getMillis());
+
+        this.deliveryTimer = metricRegistry.timer(MetricRegistry.name(PushNotificationListener.class, "delivery"));
+        this.deliveryLag = metricRegistry.histogram(MetricRegistry.name(PushNotificationListener.class, "lag"));
+        this.successMeter = metricRegistry.meter(MetricRegistry.name(PushNotificationListener.class, "success"));
+        this.failureMeter = metricRegistry.meter(MetricRegistry.name(PushNotificationListener.class, "failure"));
+        this.droppedMeter = metricRegistry.meter(MetricRegistry.name(PushNotificationListener.class, "dropped"));
+        this.circuitOpenMeter = metricRegistry.meter(MetricRegistry.name(PushNotificationListener.class, "circuitOpen"));
     }
 
     @Subscribe
@@ -79,42 +163,256 @@ public class PushNotificationListener {
                 // Optimization - see https://github.com/killbill/killbill/issues/297
                 return;
             }
-            dispatchCallback(event.getTenantId(), event, callbacks);
+            dispatchCallback(event, callbacks);
         } catch (final TenantApiException e) {
             log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
-        } catch (final IOException e) {
-            log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
         }
     }
 
-    private void dispatchCallback(final UUID tenantId, final ExtBusEvent event, final Iterable<String> callbacks) throws IOException {
-        final NotificationJson notification = new NotificationJson(event);
-        final String body = mapper.writeValueAsString(notification);
+    public void resendPushNotification(final PushNotificationKey key) {
+        if (key.getAttemptNumber() >= notificationConfig.getPushNotificationMaxAttempts()) {
+            // In-flight entry of the last attempt, whose outcome was never recorded
+            droppedMeter.mark();
+            log.warn("Giving up on push notification {} after {} attempts", key, key.getAttemptNumber());
+            return;
+        }
+        doPost(key);
+    }
+
+    public void shutdown() {
+        // Pending requests fail fast, their outcome is still recorded
+        httpClient.close();
+        completionExecutor.shutdown();
+        try {
+            if (!completionExecutor.awaitTermination(notificationConfig.getPushNotificationTimeout().getMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for the push notification outcomes to be recorded");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchCallback(final ExtBusEvent event, final Iterable<String> callbacks) {
+        final DateTime createdDate = clock.getUTCNow();
         for (final String cur : callbacks) {
-            doPost(tenantId, cur, body, TIMEOUT_NOTIFICATION);
+            final PushNotificationKey key = new PushNotificationKey(event.getTenantId(),
+                                                                    event.getAccountId(),
+                                                                    event.getEventType().toString(),
+                                                                    event.getObjectType().toString(),
+                                                                    event.getObjectId(),
+                                                                    cur,
+                                                                    0,
+                                                                    createdDate,
+                                                                    null);
+            doPost(key);
         }
     }
 
-    private boolean doPost(final UUID tenantId, final String url, final String body, final int timeoutSec) {
+    private void doPost(final PushNotificationKey key) {
+        final String url = key.getUrl();
+        if (!circuitBreaker.allowRequest(url)) {
+            // Park the notification until the endpoint is available again, without consuming an attempt
+            circuitOpenMeter.mark();
+            saveRetryPushNotificationInQueue(new PushNotificationKey(key, key.getAttemptNumber(), null), circuitBreaker.getNextAvailableDate(url));
+            return;
+        }
+
+        final String body;
+        try {
+            body = mapper.writeValueAsString(key.toNotificationJson());
+        } catch (final IOException e) {
+            log.warn(String.format("Failed to serialize push notification %s", key), e);
+            return;
+        }
+
+        final int nextAttemptNumber = key.getAttemptNumber() + 1;
+        final PushNotificationKey inFlightKey = new PushNotificationKey(key, nextAttemptNumber, UUID.randomUUID());
+        final DateTime inFlightExpirationDate = getNextRetryDate(nextAttemptNumber).plus(notificationConfig.getPushNotificationTimeout().getMillis());
+        // Best effort if the in-flight entry couldn't be recorded
+        final Long inFlightRecordId = saveInFlightPushNotificationInQueue(inFlightKey, inFlightExpirationDate);
+
         final BoundRequestBuilder builder = httpClient.preparePost(url);
-        builder.setBody(body == null ? "{}" : body);
+        builder.setBody(body);
         builder.addHeader(HTTP_HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
 
-        final Response response;
+        final Timer.Context timerContext = deliveryTimer.time();
+        try {
+            builder.execute(new AsyncCompletionHandler<Response>() {
+                @Override
+                public Response onCompleted(final Response response) throws Exception {
+                    timerContext.stop();
+                    if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
+                        onOutcome(key, inFlightRecordId, true);
+                    } else {
+                        log.warn("Failed to push notification {} for the tenant {}: status code {}", url, key.getTenantId(), response.getStatusCode());
+                        onOutcome(key, inFlightRecordId, false);
+                    }
+                    return response;
+                }
+
+                @Override
+                public void onThrowable(final Throwable t) {
+                    timerContext.stop();
+                    log.warn(String.format("Failed to push notification %s for the tenant %s", url, key.getTenantId()), t);
+                    onOutcome(key, inFlightRecordId, false);
+                }
+            });
+        } catch (final IOException e) {
+            timerContext.stop();
+            log.warn(String.format("Failed to push notification %s for the tenant %s", url, key.getTenantId()), e);
+            onOutcome(key, inFlightRecordId, false);
+        }
+    }
+
+    private void onOutcome(final PushNotificationKey key, final Long inFlightRecordId, final boolean success) {
+        final Runnable handler = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (success) {
+                        onSuccess(key, inFlightRecordId);
+                    } else {
+                        onFailure(key, inFlightRecordId);
+                    }
+                } catch (final RuntimeException e) {
+                    log.warn(String.format("Failed to record the outcome of push notification %s", key), e);
+                }
+            }
+        };
+
+        try {
+            completionExecutor.execute(handler);
+        } catch (final RejectedExecutionException e) {
+            // Shutting down: the in-flight entry will take care of it
+            log.info("Not recording the outcome of push notification {}, shutting down", key);
+        }
+    }
+
+    private void onSuccess(final PushNotificationKey key, final Long inFlightRecordId) {
+        circuitBreaker.recordSuccess(key.getUrl());
+        successMeter.mark();
+        if (key.getCreatedDate() != null) {
+            deliveryLag.update(clock.getUTCNow().getMillis() - key.getCreatedDate().getMillis());
+        }
+        if (inFlightRecordId != null) {
+            try {
+                getRetryQueue().removeNotification(inFlightRecordId);
+            } catch (final NoSuchNotificationQueue e) {
+                log.error(String.format("Failed to retrieve notification queue %s:%s", DefaultServerService.SERVER_SERVICE, PushNotificationRetryService.QUEUE_NAME));
+            }
+        }
+    }
+
+    private void onFailure(final PushNotificationKey key, final Long inFlightRecordId) {
+        circuitBreaker.recordFailure(key.getUrl());
+        failureMeter.mark();
+
+        final int nextAttemptNumber = key.getAttemptNumber() + 1;
+        final PushNotificationKey retryKey;
+        if (nextAttemptNumber >= notificationConfig.getPushNotificationMaxAttempts()) {
+            droppedMeter.mark();
+            log.warn("Giving up on push notification {} after {} attempts", key, nextAttemptNumber);
+            retryKey = null;
+        } else {
+            retryKey = new PushNotificationKey(key, nextAttemptNumber, null);
+        }
+
+        if (inFlightRecordId == null && retryKey == null) {
+            return;
+        }
+
+        // Swap the in-flight entry for the retry atomically: a crash in between would otherwise either lose the retry, or resend twice
         try {
-            final ListenableFuture<Response> futureStatus =
-                    builder.execute(new AsyncCompletionHandler<Response>() {
-                        @Override
-                        public Response onCompleted(final Response response) throws Exception {
-                            return response;
+            final NotificationQueue retryQueue = getRetryQueue();
+            final InternalTenantContext internalTenantContext = createInternalTenantContext(key);
+            final DateTime retryDate = retryKey != null ? getNextRetryDate(nextAttemptNumber) : null;
+            dbi.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                    final Connection connection = handle.getConnection();
+                    if (inFlightRecordId != null) {
+                        retryQueue.removeNotificationFromTransaction(connection, inFlightRecordId);
+                    }
+                    if (retryKey != null) {
+                        retryQueue.recordFutureNotificationFromTransaction(connection, retryDate, retryKey, null, getSearchKey1(internalTenantContext), internalTenantContext.getTenantRecordId());
+                    }
+                    return null;
+                }
+            });
+        } catch (final NoSuchNotificationQueue e) {
+            log.error(String.format("Failed to retrieve notification queue %s:%s", DefaultServerService.SERVER_SERVICE, PushNotificationRetryService.QUEUE_NAME));
+        }
+    }
+
+    @VisibleForTesting
+    DateTime getNextRetryDate(final int attemptNumber) {
+        return clock.getUTCNow().plus(getRetryDelayMillis(notificationConfig.getPushNotificationInitialRetryDelay().getMillis(),
+                                                          notificationConfig.getPushNotificationRetryMultiplier(),
+                                                          notificationConfig.getPushNotificationMaxRetryDelay().getMillis(),
+                                                          attemptNumber));
+    }
+
+    @VisibleForTesting
+    static long getRetryDelayMillis(final long initialDelayMillis, final double multiplier, final long maxDelayMillis, final int attemptNumber) {
+        double delayMillis = initialDelayMillis;
+        for (int i = 1; i < attemptNumber && delayMillis < maxDelayMillis; i++) {
+            delayMillis *= multiplier;
+        }
+        return Math.min((long) delayMillis, maxDelayMillis);
+    }
+
+    private boolean saveRetryPushNotificationInQueue(final PushNotificationKey key, final DateTime effectiveDate) {
+        try {
+            final InternalTenantContext internalTenantContext = createInternalTenantContext(key);
+            getRetryQueue().recordFutureNotification(effectiveDate, key, null, getSearchKey1(internalTenantContext), internalTenantContext.getTenantRecordId());
+            return true;
+        } catch (final NoSuchNotificationQueue e) {
+            log.error(String.format("Failed to retrieve notification queue %s:%s", DefaultServerService.SERVER_SERVICE, PushNotificationRetryService.QUEUE_NAME));
+        } catch (final IOException e) {
+            log.error(String.format("Failed to serialize push notification %s", key), e);
+        }
+        return false;
+    }
+
+    // Returns the record id of the in-flight entry, read back in the transaction which recorded it (null if it couldn't be recorded)
+    private Long saveInFlightPushNotificationInQueue(final PushNotificationKey inFlightKey, final DateTime effectiveDate) {
+        try {
+            final NotificationQueue retryQueue = getRetryQueue();
+            final InternalTenantContext internalTenantContext = createInternalTenantContext(inFlightKey);
+            final Long searchKey1 = getSearchKey1(internalTenantContext);
+            return dbi.inTransaction(new TransactionCallback<Long>() {
+                @Override
+                public Long inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                    final Connection connection = handle.getConnection();
+                    retryQueue.recordFutureNotificationFromTransaction(connection, effectiveDate, inFlightKey, null, searchKey1, internalTenantContext.getTenantRecordId());
+                    for (final NotificationEventWithMetadata<NotificationEvent> notification : retryQueue.getFutureNotificationFromTransactionForSearchKeys(searchKey1, internalTenantContext.getTenantRecordId(), connection)) {
+                        if (notification.getEvent() instanceof PushNotificationKey &&
+                            inFlightKey.getDeliveryId().equals(((PushNotificationKey) notification.getEvent()).getDeliveryId())) {
+                            return notification.getRecordId();
                         }
-                    });
-            response = futureStatus.get(timeoutSec, TimeUnit.SECONDS);
-        } catch (final Exception e) {
-            log.warn(String.format("Failed to push notification %s for the tenant %s", url, tenantId), e);
-            return false;
+                    }
+                    return null;
+                }
+            });
+        } catch (final NoSuchNotificationQueue e) {
+            log.error(String.format("Failed to retrieve notification queue %s:%s", DefaultServerService.SERVER_SERVICE, PushNotificationRetryService.QUEUE_NAME));
+        } catch (final RuntimeException e) {
+            log.error(String.format("Failed to record in-flight push notification %s", inFlightKey), e);
         }
-        return response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+        return null;
+    }
+
+    private Long getSearchKey1(final InternalTenantContext internalTenantContext) {
+        return internalTenantContext.getAccountRecordId() != null ? internalTenantContext.getAccountRecordId() : internalTenantContext.getTenantRecordId();
+    }
+
+    private InternalTenantContext createInternalTenantContext(final PushNotificationKey key) {
+        final TenantContext context = contextFactory.createTenantContext(key.getTenantId());
+        return internalCallContextFactory.createInternalTenantContext(context);
+    }
+
+    private NotificationQueue getRetryQueue() throws NoSuchNotificationQueue {
+        return notificationQueueService.getNotificationQueue(DefaultServerService.SERVER_SERVICE, PushNotificationRetryService.QUEUE_NAME);
     }
 
     private List<String> getCallbacksForTenant(final TenantContext context) throws TenantApiException {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.server.DefaultServerService;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PushNotificationRetryService {
+
+    private static final Logger log = LoggerFactory.getLogger(PushNotificationRetryService.class);
+
+    public static final String QUEUE_NAME = "push-notification-queue";
+
+    private final NotificationQueueService notificationQueueService;
+    private final PushNotificationListener pushNotificationListener;
+
+    private NotificationQueue retryQueue;
+
+    @Inject
+    public PushNotificationRetryService(final NotificationQueueService notificationQueueService,
+                                        final PushNotificationListener pushNotificationListener) {
+        this.notificationQueueService = notificationQueueService;
+        this.pushNotificationListener = pushNotificationListener;
+    }
+
+    public void initialize() throws NotificationQueueAlreadyExists {
+        retryQueue = notificationQueueService.createNotificationQueue(DefaultServerService.SERVER_SERVICE,
+                                                                      QUEUE_NAME,
+                                                                      new NotificationQueueHandler() {
+                                                                          @Override
+                                                                          public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                              if (!(notificationKey instanceof PushNotificationKey)) {
+                                                                                  log.error("Push notification service got an unexpected notification type {}", notificationKey.getClass().getName());
+                                                                                  return;
+                                                                              }
+                                                                              pushNotificationListener.resendPushNotification((PushNotificationKey) notificationKey);
+                                                                          }
+                                                                      }
+                                                                     );
+    }
+
+    public void start() {
+        if (retryQueue == null) {
+            log.warn("Push notification queue {} wasn't initialized, failed push notifications won't be retried", QUEUE_NAME);
+            return;
+        }
+        retryQueue.startQueue();
+    }
+
+    public void stop() throws NoSuchNotificationQueue {
+        if (retryQueue != null) {
+            retryQueue.stopQueue();
+            notificationQueueService.deleteNotificationQueue(retryQueue.getServiceName(), retryQueue.getQueueName());
+        }
+    }
+}
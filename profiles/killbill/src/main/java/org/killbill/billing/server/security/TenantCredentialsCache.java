@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.security;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.shiro.crypto.SecureRandomNumberGenerator;
+import org.apache.shiro.crypto.hash.Sha256Hash;
+import org.apache.shiro.util.ByteSource;
+import org.killbill.billing.tenant.api.Tenant;
+import org.killbill.billing.util.config.SecurityConfig;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * In-memory cache of the tenants whose api credentials have already been verified by the KillbillJdbcTenantRealm.
+ * <p/>
+ * Secrets are never kept in clear: we only store a (cheap) digest of the secret, salted with a random value generated
+ * at startup. Failed authentications are never cached.
+ */
+@Singleton
+public class TenantCredentialsCache {
+
+    private final Cache<String, CachedTenant> tenantsByApiKey;
+    private final ByteSource digestSalt;
+    private final Meter hitMeter;
+    private final Meter missMeter;
+
+    @Inject
+    public TenantCredentialsCache(final SecurityConfig securityConfig, final MetricRegistry metricRegistry) {
+        this.tenantsByApiKey = CacheBuilder.newBuilder()
+                                           .maximumSize(securityConfig.getTenantCredentialsCacheMaxSize())
+                                           .expireAfterWrite(securityConfig.getTenantCredentialsCacheTimeToLive().getMillis(), TimeUnit.MILLISECONDS)
+                                           .build();
+        this.digestSalt = new SecureRandomNumberGenerator().nextBytes();
+        this.hitMeter = metricRegistry.meter(MetricRegistry.name(TenantCredentialsCache.class, "hit"));
+        this.missMeter = metricRegistry.meter(MetricRegistry.name(TenantCredentialsCache.class, "miss"));
+    }
+
+    /**
+     * @param apiKey    the tenant api key
+     * @param apiSecret the (clear) tenant api secret
+     * @return the tenant if these credentials have already been verified, null otherwise
+     */
+    public Tenant getTenant(final String apiKey, final String apiSecret) {
+        final CachedTenant cachedTenant = tenantsByApiKey.getIfPresent(apiKey);
+        if (cachedTenant == null || !MessageDigest.isEqual(cachedTenant.getSecretDigest(), digest(apiSecret))) {
+            missMeter.mark();
+            return null;
+        }
+
+        hitMeter.mark();
+        return cachedTenant.getTenant();
+    }
+
+    public void put(final String apiKey, final String apiSecret, final Tenant tenant) {
+        tenantsByApiKey.put(apiKey, new CachedTenant(digest(apiSecret), tenant));
+    }
+
+    public void invalidate(final String apiKey) {
+        tenantsByApiKey.invalidate(apiKey);
+    }
+
+    public void invalidateAll() {
+        tenantsByApiKey.invalidateAll();
+    }
+
+    private byte[] digest(final String apiSecret) {
+        return new Sha256Hash(apiSecret, digestSalt).getBytes();
+    }
+
+    private static final class CachedTenant {
+
+        private final byte[] secretDigest;
+        private final Tenant tenant;
+
+        private CachedTenant(final byte[] secretDigest, final Tenant tenant) {
+            this.secretDigest = secretDigest;
+            this.tenant = tenant;
+        }
+
+        public byte[] getSecretDigest() {
+            return secretDigest;
+        }
+
+        public Tenant getTenant() {
+            return tenant;
+        }
+    }
+}
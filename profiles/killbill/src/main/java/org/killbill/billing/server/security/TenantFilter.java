@@ -64,6 +64,9 @@ public class TenantFilter implements Filter {
     @Named(KillbillPlatformModule.SHIRO_DATA_SOURCE_ID_NAMED)
     protected DataSource dataSource;
 
+    @Inject
+    protected TenantCredentialsCache tenantCredentialsCache;
+
     private ModularRealmAuthenticator modularRealmAuthenticator;
 
     @Override
@@ -92,6 +95,14 @@ public class TenantFilter implements Filter {
             return;
         }
 
+        // Fast path: these credentials have already been verified
+        final Tenant cachedTenant = tenantCredentialsCache.getTenant(apiKey, apiSecret);
+        if (cachedTenant != null) {
+            request.setAttribute(TENANT, cachedTenant);
+            chain.doFilter(request, response);
+            return;
+        }
+
         // Verify the apiKey/apiSecret combo
         final AuthenticationToken token = new UsernamePasswordToken(apiKey, apiSecret);
         try {
@@ -105,6 +116,7 @@ public class TenantFilter implements Filter {
         try {
             // Load the tenant in the request object (apiKey is unique across tenants)
             final Tenant tenant = tenantUserApi.getTenantByApiKey(apiKey);
+            tenantCredentialsCache.put(apiKey, apiSecret, tenant);
             request.setAttribute(TENANT, tenant);
 
             chain.doFilter(request, response);
@@ -52,6 +52,7 @@ import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.server.config.KillbillServerConfig;
 import org.killbill.billing.server.listeners.KillbillGuiceListener;
 import org.killbill.billing.server.modules.KillbillServerModule;
+import org.killbill.billing.server.security.TenantCredentialsCache;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.config.PaymentConfig;
 import org.killbill.bus.api.PersistentBus;
@@ -81,6 +82,9 @@ public class TestJaxrsBase extends KillbillClient {
     @Inject
     protected CacheControllerDispatcher cacheControllerDispatcher;
 
+    @Inject
+    protected TenantCredentialsCache tenantCredentialsCache;
+
     @Inject
     protected
     @javax.inject.Named(BusModule.EXTERNAL_BUS_NAMED)
@@ -188,6 +192,8 @@ public class TestJaxrsBase extends KillbillClient {
         externalBus.start();
         internalBus.start();
         cacheControllerDispatcher.clearAll();
+        // Tenants are re-created with the same credentials after each clean-up
+        tenantCredentialsCache.invalidateAll();
         busHandler.reset();
         clock.resetDeltaFromReality();
         clock.setDay(new LocalDate(2012, 8, 25));
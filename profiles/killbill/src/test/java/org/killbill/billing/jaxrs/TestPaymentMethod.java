@@ -22,13 +22,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.ws.rs.core.Response.Status;
+
+import org.killbill.billing.client.KillBillClientException;
+import org.killbill.billing.client.KillBillHttpClient;
 import org.killbill.billing.client.model.Account;
 import org.killbill.billing.client.model.PaymentMethod;
 import org.killbill.billing.client.model.PaymentMethods;
 import org.killbill.billing.client.model.PluginProperty;
+import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.ning.http.client.Response;
+
 public class TestPaymentMethod extends TestJaxrsBase {
 
     @Test(groups = "slow", description = "Create/retrieve by externalKey")
@@ -97,6 +106,38 @@ public class TestPaymentMethod extends TestJaxrsBase {
         Assert.assertNull(page);
     }
 
+    @Test(groups = "slow", description = "Can refresh the payment methods of all accounts")
+    public void testRefreshPaymentMethodsForAllAccounts() throws Exception {
+        final Account accountJson = createAccountWithDefaultPaymentMethod();
+        final PaymentMethod paymentMethodJson = killBillClient.getPaymentMethod(accountJson.getPaymentMethodId(), true);
+
+        // All plugins
+        Assert.assertEquals(refreshPaymentMethods(null).getStatusCode(), Status.ACCEPTED.getStatusCode());
+        // A given plugin
+        Assert.assertEquals(refreshPaymentMethods(PLUGIN_NAME).getStatusCode(), Status.ACCEPTED.getStatusCode());
+
+        try {
+            refreshPaymentMethods(UUID.randomUUID().toString());
+            Assert.fail();
+        } catch (final KillBillClientException e) {
+            Assert.assertEquals(e.getResponse().getStatusCode(), Status.NOT_FOUND.getStatusCode());
+        }
+
+        // The plugin knows about the existing payment method, which is left untouched
+        Assert.assertEquals(killBillClient.getPaymentMethod(accountJson.getPaymentMethodId(), true), paymentMethodJson);
+    }
+
+    private Response refreshPaymentMethods(final String pluginName) throws Exception {
+        final Multimap<String, String> options = HashMultimap.<String, String>create();
+        if (pluginName != null) {
+            options.put(JaxrsResource.QUERY_PAYMENT_METHOD_PLUGIN_NAME, pluginName);
+        }
+        options.put(KillBillHttpClient.AUDIT_OPTION_CREATED_BY, createdBy);
+        options.put(KillBillHttpClient.AUDIT_OPTION_REASON, reason);
+        options.put(KillBillHttpClient.AUDIT_OPTION_COMMENT, comment);
+        return killBillHttpClient.doPost(JaxrsResource.PAYMENT_METHODS_PATH + "/" + JaxrsResource.PAYMENT_METHODS_REFRESH_PATH_POSTFIX, null, options);
+    }
+
     private void doSearch(final String searchKey, final PaymentMethod paymentMethodJson) throws Exception {
         final List<PaymentMethod> results1 = killBillClient.searchPaymentMethodsByKey(searchKey, true);
         Assert.assertEquals(results1.size(), 1);
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.log.obfuscators;
+
+import org.killbill.billing.server.log.ServerTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCombinedObfuscator extends ServerTestSuiteNoDB {
+
+    private final ConfigMagicObfuscator configMagicObfuscator = new ConfigMagicObfuscator();
+    private final PatternObfuscator patternObfuscator = new PatternObfuscator();
+    private final LuhnMaskingObfuscator luhnMaskingObfuscator = new LuhnMaskingObfuscator();
+    private final CombinedObfuscator obfuscator = new CombinedObfuscator();
+
+    @Test(groups = "fast")
+    public void testNothingToObfuscate() throws Exception {
+        final String message = "Starting payment transaction for accountId 2a9d5b6e-4a4f-4c8e-9f34-a1e7c0f0d3b2, amount 12.50 USD";
+        Assert.assertSame(obfuscator.obfuscate(message), message);
+
+        // Not enough digits for a PAN
+        final String shortNumbers = "Retry 3 of 5 in 1200 ms (2015-06-01)";
+        Assert.assertSame(obfuscator.obfuscate(shortNumbers), shortNumbers);
+    }
+
+    @Test(groups = "fast")
+    public void testConfigMagic() throws Exception {
+        verify("Assigning value [pass2b78b7ce] for [org.killbill.dao.pass] on [org.killbill.commons.jdbi.guice.DaoConfig#getPass()]",
+               "Assigning value [***MASKED***] for [org.killbill.dao.pass] on [org.killbill.commons.jdbi.guice.DaoConfig#getPass()]");
+        verify("ASSIGNING VALUE [pass2b78b7cef] for [org.killbill.billing.plugin.avatax.licenseKey] on [org.killbill.billing.plugins.avatax#getLicenseKey()]");
+    }
+
+    @Test(groups = "fast")
+    public void testJSON() throws Exception {
+        verify("Calling plugin with properties [{\"Email\": \"bob@example.org\", \"cardNumber\": \"4111111111111111\", \"CVV\": \"123\", \"amount\": 10}]");
+    }
+
+    @Test(groups = "fast")
+    public void testXML() throws Exception {
+        verify("<ns:expiryMonth>04</expiryMonth>\n" +
+               "<ns:holderName>  test  </holderName>\n" +
+               "<ns:number>5123456789012346</number>\n" +
+               "<ns2:shopperEmail>Bob@example.org</ns2:shopperEmail>\n" +
+               "<ns2:shopperName>\n" +
+               "    <firstName>Bob</firstName>\n" +
+               "    <lastName>Smith</lastName>\n" +
+               "</ns2:shopperName>\n");
+    }
+
+    @Test(groups = "fast")
+    public void testCardNumbers() throws Exception {
+        verify("try 5137 0049 8639 6403 multiple 5137 0049 8639 6404 possible 4111-1111-1111 1111 card 4111111111111112 numbers",
+               "try ****MASKED*****6403 multiple 5137 0049 8639 6404 possible ****MASKED*****1111 card 4111111111111112 numbers");
+    }
+
+    private void verify(final String input, final String output) {
+        verify(input);
+        Assert.assertEquals(obfuscator.obfuscate(input), output);
+    }
+
+    // The result must match the one of the chained obfuscators
+    private void verify(final String input) {
+        final String expected = luhnMaskingObfuscator.obfuscate(patternObfuscator.obfuscate(configMagicObfuscator.obfuscate(input)));
+        Assert.assertEquals(obfuscator.obfuscate(input), expected);
+        Assert.assertNotEquals(expected, input);
+    }
+}
@@ -23,6 +23,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.collect.ImmutableList;
 
 public class TestObfuscatorConverter extends ServerTestSuiteNoDB {
 
@@ -60,7 +61,38 @@ public class TestObfuscatorConverter extends ServerTestSuiteNoDB {
                "</gateway>");
     }
 
+    @Test(groups = "fast")
+    public void testFallBackToChainedObfuscators() throws Exception {
+        final ObfuscatorConverter failingConverter = new ObfuscatorConverter(failingObfuscator(),
+                                                                             ImmutableList.<Obfuscator>of(new ConfigMagicObfuscator(),
+                                                                                                          new PatternObfuscator(),
+                                                                                                          new LuhnMaskingObfuscator()));
+        verify(failingConverter,
+               "<card>4111111111111111</card>\n<password>supersecret</password>",
+               "<card>***MASKED***1111</card>\n<password>**MASKED***</password>");
+    }
+
+    @Test(groups = "fast")
+    public void testMaskTheWholeMessageIfObfuscationFails() throws Exception {
+        final ObfuscatorConverter failingConverter = new ObfuscatorConverter(failingObfuscator(),
+                                                                             ImmutableList.<Obfuscator>of(new PatternObfuscator(),
+                                                                                                          failingObfuscator()));
+        verify(failingConverter,
+               "<card>4111111111111111</card>\n<password>supersecret</password>",
+               ObfuscatorConverter.MASKED_MESSAGE);
+    }
+
+    private Obfuscator failingObfuscator() {
+        final Obfuscator obfuscator = Mockito.mock(Obfuscator.class);
+        Mockito.when(obfuscator.obfuscate(Mockito.anyString())).thenThrow(new IllegalStateException("Simulated failure"));
+        return obfuscator;
+    }
+
     private void verify(final String input, final String output) {
+        verify(converter, input, output);
+    }
+
+    private void verify(final ObfuscatorConverter converter, final String input, final String output) {
         final ILoggingEvent event = Mockito.mock(ILoggingEvent.class);
         Mockito.when(event.getFormattedMessage()).thenReturn(input);
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import org.killbill.billing.server.log.ServerTestSuiteNoDB;
+import org.killbill.clock.ClockMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPushNotificationCircuitBreaker extends ServerTestSuiteNoDB {
+
+    private static final String URL = "http://127.0.0.1:8087/callmeback";
+
+    @Test(groups = "fast")
+    public void testCircuitOpensAfterConsecutiveFailures() {
+        final ClockMock clock = new ClockMock();
+        final PushNotificationCircuitBreaker circuitBreaker = new PushNotificationCircuitBreaker(clock, 3, 60000L);
+
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+        circuitBreaker.recordFailure(URL);
+        circuitBreaker.recordFailure(URL);
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+        Assert.assertFalse(circuitBreaker.isOpen(URL));
+
+        circuitBreaker.recordFailure(URL);
+        Assert.assertTrue(circuitBreaker.isOpen(URL));
+        Assert.assertFalse(circuitBreaker.allowRequest(URL));
+        Assert.assertEquals(circuitBreaker.getNextAvailableDate(URL).getMillis(), clock.getUTCNow().plusMillis(60000).getMillis(), 1000);
+
+        // Other endpoints are not impacted
+        Assert.assertTrue(circuitBreaker.allowRequest("http://127.0.0.1:8088/callmeback"));
+    }
+
+    @Test(groups = "fast")
+    public void testHalfOpenLetsSingleProbeThrough() {
+        final ClockMock clock = new ClockMock();
+        final PushNotificationCircuitBreaker circuitBreaker = new PushNotificationCircuitBreaker(clock, 1, 60000L);
+
+        circuitBreaker.recordFailure(URL);
+        Assert.assertFalse(circuitBreaker.allowRequest(URL));
+
+        clock.addDeltaFromReality(61000L);
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+        Assert.assertFalse(circuitBreaker.allowRequest(URL));
+
+        // Successful probe closes the circuit
+        circuitBreaker.recordSuccess(URL);
+        Assert.assertFalse(circuitBreaker.isOpen(URL));
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+    }
+
+    @Test(groups = "fast")
+    public void testFailedProbeReopensCircuit() {
+        final ClockMock clock = new ClockMock();
+        final PushNotificationCircuitBreaker circuitBreaker = new PushNotificationCircuitBreaker(clock, 1, 60000L);
+
+        circuitBreaker.recordFailure(URL);
+        clock.addDeltaFromReality(61000L);
+        Assert.assertTrue(circuitBreaker.allowRequest(URL));
+
+        circuitBreaker.recordFailure(URL);
+        Assert.assertFalse(circuitBreaker.allowRequest(URL));
+    }
+}
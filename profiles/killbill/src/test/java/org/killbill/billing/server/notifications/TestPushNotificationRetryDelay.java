@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import org.killbill.billing.server.log.ServerTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPushNotificationRetryDelay extends ServerTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testExponentialBackoff() {
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 2.0, 3600000L, 1), 15000L);
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 2.0, 3600000L, 2), 30000L);
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 2.0, 3600000L, 4), 120000L);
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(10000L, 1.5, 3600000L, 3), 22500L);
+    }
+
+    @Test(groups = "fast")
+    public void testBackoffIsCapped() {
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 2.0, 3600000L, 9), 3600000L);
+        // No overflow, however large the number of attempts
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 2.0, 3600000L, Integer.MAX_VALUE), 3600000L);
+        Assert.assertEquals(PushNotificationListener.getRetryDelayMillis(15000L, 1000.0, 3600000L, 3), 3600000L);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.security;
+
+import java.util.UUID;
+
+import org.killbill.billing.server.log.ServerTestSuiteNoDB;
+import org.killbill.billing.tenant.api.DefaultTenant;
+import org.killbill.billing.tenant.api.Tenant;
+import org.killbill.billing.util.config.SecurityConfig;
+import org.skife.config.ConfigurationObjectFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class TestTenantCredentialsCache extends ServerTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testCacheVerifiesSecret() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final SecurityConfig securityConfig = new ConfigurationObjectFactory(skifeConfigSource).build(SecurityConfig.class);
+        final TenantCredentialsCache cache = new TenantCredentialsCache(securityConfig, metricRegistry);
+
+        final Tenant tenant = new DefaultTenant(UUID.randomUUID(), null, null, "bob", "bobIsCool", null);
+        Assert.assertNull(cache.getTenant("bob", "bobIsCool"));
+
+        cache.put("bob", "bobIsCool", tenant);
+        Assert.assertEquals(cache.getTenant("bob", "bobIsCool"), tenant);
+
+        // Wrong secret
+        Assert.assertNull(cache.getTenant("bob", "bobIsNotCool"));
+        Assert.assertNull(cache.getTenant("bobby", "bobIsCool"));
+
+        cache.invalidate("bob");
+        Assert.assertNull(cache.getTenant("bob", "bobIsCool"));
+
+        Assert.assertEquals(metricRegistry.meter(MetricRegistry.name(TenantCredentialsCache.class, "hit")).getCount(), 1);
+        Assert.assertEquals(metricRegistry.meter(MetricRegistry.name(TenantCredentialsCache.class, "miss")).getCount(), 4);
+    }
+}
@@ -20,10 +20,13 @@ package org.killbill.billing.subscription.api.svcs;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -43,6 +46,7 @@ import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.PlanPhasePriceOverridesWithCallContext;
 import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
 import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.catalog.api.Product;
 import org.killbill.billing.catalog.api.ProductCategory;
 import org.killbill.billing.entitlement.api.Entitlement.EntitlementState;
 import org.killbill.billing.entitlement.api.EntitlementAOStatusDryRun;
@@ -59,12 +63,18 @@ import org.killbill.billing.subscription.api.user.DefaultSubscriptionBaseApiServ
 import org.killbill.billing.subscription.api.user.DefaultSubscriptionBaseBundle;
 import org.killbill.billing.subscription.api.user.DefaultSubscriptionStatusDryRun;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChangeResult;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkCreation;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseTransitionData;
 import org.killbill.billing.subscription.api.user.SubscriptionBuilder;
 import org.killbill.billing.subscription.engine.addon.AddonUtils;
 import org.killbill.billing.subscription.engine.core.DefaultSubscriptionBaseService;
+import org.killbill.billing.subscription.engine.dao.SubscriptionBulkChangeData;
+import org.killbill.billing.subscription.engine.dao.SubscriptionBulkCreationData;
 import org.killbill.billing.subscription.engine.dao.SubscriptionDao;
 import org.killbill.billing.subscription.engine.dao.model.SubscriptionBundleModelDao;
 import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
@@ -533,6 +543,210 @@ public class DefaultSubscriptionInternalApi extends SubscriptionApiBase implemen
         return result;
     }
 
+    @Override
+    public List<SubscriptionBaseBulkChangeResult> applyBulkChanges(final List<SubscriptionBaseBulkChange> changes, final InternalCallContext context) {
+        final DateTime now = clock.getUTCNow();
+        final CallContext callContext = internalCallContextFactory.createCallContext(context);
+
+        // Validate each change and compute its events: invalid changes are reported individually and simply left out of the batch
+        final SubscriptionBaseBulkChangeResult[] results = new SubscriptionBaseBulkChangeResult[changes.size()];
+        final List<Integer> validChangesIndexes = new ArrayList<Integer>(changes.size());
+        final List<SubscriptionBulkChangeData> validChanges = new ArrayList<SubscriptionBulkChangeData>(changes.size());
+        final Set<UUID> subscriptionIds = new HashSet<UUID>();
+        for (int i = 0; i < changes.size(); i++) {
+            final SubscriptionBaseBulkChange change = changes.get(i);
+            final UUID subscriptionId = change.getSubscriptionId();
+            if (!subscriptionIds.add(subscriptionId)) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(subscriptionId, new IllegalArgumentException("Multiple changes for subscription " + subscriptionId));
+                continue;
+            }
+
+            try {
+                final DefaultSubscriptionBase subscription = (DefaultSubscriptionBase) dao.getSubscriptionFromId(subscriptionId, context);
+                if (subscription == null) {
+                    throw new SubscriptionBaseApiException(ErrorCode.SUB_INVALID_SUBSCRIPTION_ID, subscriptionId);
+                }
+                final List<SubscriptionBaseEvent> events = apiService.getEventsOnBulkChange(subscription, change, now, callContext, context);
+                validChangesIndexes.add(i);
+                validChanges.add(new SubscriptionBulkChangeData(subscription, change.getChangeType(), events));
+                results[i] = SubscriptionBaseBulkChangeResult.success(subscriptionId, events.get(0).getEffectiveDate());
+            } catch (final SubscriptionBaseApiException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(subscriptionId, e);
+            } catch (final CatalogApiException e) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(subscriptionId, e);
+            }
+        }
+
+        if (validChanges.isEmpty()) {
+            return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+        }
+
+        try {
+            final List<UUID> changedSubscriptionIds = dao.applyBulkChanges(validChanges, context);
+            for (int j = 0; j < validChanges.size(); j++) {
+                final DefaultSubscriptionBase subscription = validChanges.get(j).getSubscription();
+                if (!changedSubscriptionIds.contains(subscription.getId())) {
+                    // The future cancellation went away in the meantime
+                    results[validChangesIndexes.get(j)] = SubscriptionBaseBulkChangeResult.failure(subscription.getId(), new SubscriptionBaseApiException(ErrorCode.SUB_UNCANCEL_BAD_STATE, subscription.getId().toString()));
+                }
+            }
+        } catch (final RuntimeException e) {
+            // Everything was rolled back
+            log.warn("Failed to apply bulk subscription changes for accountRecordId " + context.getAccountRecordId(), e);
+            for (int j = 0; j < validChanges.size(); j++) {
+                results[validChangesIndexes.get(j)] = SubscriptionBaseBulkChangeResult.failure(validChanges.get(j).getSubscription().getId(), e);
+            }
+            return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+        }
+
+        // As for the individual operations, immediate changes of base subscriptions may cancel their add-ons
+        for (int j = 0; j < validChanges.size(); j++) {
+            final SubscriptionBulkChangeData change = validChanges.get(j);
+            final SubscriptionBaseBulkChangeResult result = results[validChangesIndexes.get(j)];
+            if (!result.isSuccess() ||
+                change.getChangeType() == ChangeType.UNCANCEL ||
+                change.getSubscription().getCategory() != ProductCategory.BASE ||
+                result.getEffectiveDate().compareTo(now) > 0) {
+                continue;
+            }
+
+            try {
+                final DefaultSubscriptionBase subscription = (DefaultSubscriptionBase) dao.getSubscriptionFromId(result.getSubscriptionId(), context);
+                final Product baseProduct = (subscription.getState() == EntitlementState.CANCELLED) ? null : subscription.getCurrentPlan().getProduct();
+                apiService.cancelAddOnsIfRequired(baseProduct, subscription.getBundleId(), result.getEffectiveDate(), callContext);
+            } catch (final CatalogApiException e) {
+                log.warn("Failed to cancel add-ons for subscription " + result.getSubscriptionId(), e);
+            }
+        }
+
+        return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+    }
+
+    @Override
+    public List<SubscriptionBaseBulkChangeResult> createBulkSubscriptions(final UUID accountId, final List<SubscriptionBaseBulkCreation> creations, final InternalCallContext context) {
+        final DateTime now = clock.getUTCNow();
+        final CallContext callContext = internalCallContextFactory.createCallContext(context);
+        final SubscriptionBaseBulkChangeResult[] results = new SubscriptionBaseBulkChangeResult[creations.size()];
+
+        final Catalog catalog;
+        try {
+            catalog = catalogService.getFullCatalog(context);
+        } catch (final CatalogApiException e) {
+            for (int i = 0; i < creations.size(); i++) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(null, e);
+            }
+            return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+        }
+
+        // Group the subscriptions per bundle, keeping their order
+        final Map<String, List<Integer>> creationsPerBundle = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < creations.size(); i++) {
+            final String bundleKey = creations.get(i).getBundleExternalKey();
+            if (creationsPerBundle.get(bundleKey) == null) {
+                creationsPerBundle.put(bundleKey, new LinkedList<Integer>());
+            }
+            creationsPerBundle.get(bundleKey).add(i);
+        }
+
+        // Validate each subscription and compute its events: a bundle whose first subscription is invalid is left out of the batch altogether
+        final List<DefaultSubscriptionBaseBundle> bundles = new ArrayList<DefaultSubscriptionBaseBundle>(creationsPerBundle.size());
+        final List<Integer> validCreationsIndexes = new ArrayList<Integer>(creations.size());
+        final List<SubscriptionBulkCreationData> validCreations = new ArrayList<SubscriptionBulkCreationData>(creations.size());
+        for (final String bundleKey : creationsPerBundle.keySet()) {
+            final List<SubscriptionBaseBundle> existingBundles = dao.getSubscriptionBundlesForKey(bundleKey, context);
+            final DateTime originalCreatedDate = existingBundles.size() > 0 ? existingBundles.get(0).getCreatedDate() : now;
+            final DefaultSubscriptionBaseBundle bundle = new DefaultSubscriptionBaseBundle(bundleKey, accountId, now, originalCreatedDate, now, now);
+
+            DefaultSubscriptionBase baseSubscription = null;
+            Plan basePlan = null;
+            for (final Integer i : creationsPerBundle.get(bundleKey)) {
+                final PlanPhaseSpecifier spec = creations.get(i).getSpec();
+                final String realPriceList = (spec.getPriceListName() == null) ? PriceListSet.DEFAULT_PRICELIST_NAME : spec.getPriceListName();
+                final DateTime requestedDate = (creations.get(i).getRequestedDate() != null) ? DefaultClock.truncateMs(creations.get(i).getRequestedDate()) : now;
+                try {
+                    final PlanPhasePriceOverridesWithCallContext overridesWithContext = new DefaultPlanPhasePriceOverridesWithCallContext(ImmutableList.<PlanPhasePriceOverride>of(), callContext);
+                    final Plan plan = catalog.createOrFindPlan(spec.getProductName(), spec.getBillingPeriod(), realPriceList, overridesWithContext, requestedDate);
+                    final DefaultSubscriptionBase subscription = createBulkSubscription(bundle, baseSubscription, basePlan, plan, requestedDate, context);
+                    final List<SubscriptionBaseEvent> events = apiService.getEventsOnCreation(bundle.getId(), subscription.getId(), subscription.getAlignStartDate(), subscription.getBundleStartDate(), subscription.getActiveVersion(),
+                                                                                              plan, spec.getPhaseType(), realPriceList, requestedDate, requestedDate, now, false, context);
+                    if (baseSubscription == null) {
+                        baseSubscription = subscription;
+                        basePlan = plan;
+                        bundles.add(bundle);
+                    }
+                    validCreationsIndexes.add(i);
+                    validCreations.add(new SubscriptionBulkCreationData(subscription, events));
+                    results[i] = SubscriptionBaseBulkChangeResult.success(subscription.getId(), requestedDate);
+                } catch (final SubscriptionBaseApiException e) {
+                    results[i] = SubscriptionBaseBulkChangeResult.failure(null, e);
+                } catch (final CatalogApiException e) {
+                    results[i] = SubscriptionBaseBulkChangeResult.failure(null, e);
+                }
+
+                if (baseSubscription == null) {
+                    // Without its base subscription, none of the subscriptions of the bundle can be created
+                    for (final Integer j : creationsPerBundle.get(bundleKey)) {
+                        if (results[j] == null) {
+                            results[j] = SubscriptionBaseBulkChangeResult.failure(null, new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_NO_BP, bundle.getId()));
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (validCreations.isEmpty()) {
+            return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+        }
+
+        try {
+            dao.createBulkSubscriptions(bundles, validCreations, context);
+        } catch (final RuntimeException e) {
+            // Everything was rolled back
+            log.warn("Failed to create bulk subscriptions for accountRecordId " + context.getAccountRecordId(), e);
+            for (final Integer i : validCreationsIndexes) {
+                results[i] = SubscriptionBaseBulkChangeResult.failure(null, e);
+            }
+        }
+
+        return ImmutableList.<SubscriptionBaseBulkChangeResult>copyOf(results);
+    }
+
+    // Same validations as createSubscription, against the (not yet persisted) base subscription of the new bundle
+    private DefaultSubscriptionBase createBulkSubscription(final DefaultSubscriptionBaseBundle bundle, @Nullable final DefaultSubscriptionBase baseSubscription, @Nullable final Plan basePlan,
+                                                           final Plan plan, final DateTime requestedDate, final InternalCallContext context) throws SubscriptionBaseApiException {
+        final DateTime bundleStartDate;
+        if (baseSubscription == null) {
+            if (plan.getProduct().getCategory() == ProductCategory.ADD_ON) {
+                throw new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_NO_BP, bundle.getId());
+            }
+            bundleStartDate = requestedDate;
+        } else {
+            if (plan.getProduct().getCategory() != ProductCategory.ADD_ON || baseSubscription.getCategory() != ProductCategory.BASE) {
+                throw new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_BP_EXISTS, bundle.getId());
+            }
+            if (requestedDate.isBefore(baseSubscription.getAlignStartDate())) {
+                throw new SubscriptionBaseApiException(ErrorCode.SUB_INVALID_REQUESTED_DATE, requestedDate.toString(), baseSubscription.getAlignStartDate().toString());
+            }
+            final String baseProductName = basePlan.getProduct().getName();
+            if (addonUtils.isAddonIncludedFromProdName(baseProductName, plan, requestedDate, context)) {
+                throw new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_AO_ALREADY_INCLUDED, plan.getName(), baseProductName);
+            }
+            if (!addonUtils.isAddonAvailableFromProdName(baseProductName, plan, requestedDate, context)) {
+                throw new SubscriptionBaseApiException(ErrorCode.SUB_CREATE_AO_NOT_AVAILABLE, plan.getName(), baseProductName);
+            }
+            bundleStartDate = baseSubscription.getAlignStartDate();
+        }
+
+        return new DefaultSubscriptionBase(new SubscriptionBuilder()
+                                                   .setId(UUID.randomUUID())
+                                                   .setBundleId(bundle.getId())
+                                                   .setCategory(plan.getProduct().getCategory())
+                                                   .setBundleStartDate(bundleStartDate)
+                                                   .setAlignStartDate(requestedDate),
+                                           apiService, clock);
+    }
+
     private DateTime getBundleStartDateWithSanity(final UUID bundleId, @Nullable final DefaultSubscriptionBase baseSubscription, final Plan plan,
                                                   final DateTime requestedDate, final DateTime effectiveDate, final InternalTenantContext context) throws SubscriptionBaseApiException, CatalogApiException {
         switch (plan.getProduct().getCategory()) {
@@ -123,7 +123,8 @@ public class DefaultSubscriptionBase extends EntityBase implements SubscriptionB
         this.category = internalSubscription.getCategory();
         this.activeVersion = internalSubscription.getActiveVersion();
         this.chargedThroughDate = internalSubscription.getChargedThroughDate();
-        this.transitions = new LinkedList<SubscriptionBaseTransition>(internalSubscription.getAllTransitions());
+        // Transitions are never modified once built, so they can be shared
+        this.transitions = internalSubscription.transitions != null ? internalSubscription.transitions : new LinkedList<SubscriptionBaseTransition>();
         this.events = internalSubscription.getEvents();
     }
 
@@ -535,6 +536,17 @@ public class DefaultSubscriptionBase extends EntityBase implements SubscriptionB
                 "Failed to find CurrentPhaseStart id = %s", getId().toString()));
     }
 
+    // Raw transitions, to be shared with other subscription objects built from the same events (see SubscriptionTransitionsCache)
+    public LinkedList<SubscriptionBaseTransition> getTransitionsForReuse() {
+        return transitions;
+    }
+
+    // Equivalent to rebuildTransitions(inputEvents, catalog), when the transitions for these events have already been computed
+    public void reuseTransitions(final List<SubscriptionBaseEvent> inputEvents, final LinkedList<SubscriptionBaseTransition> transitions) {
+        this.events = inputEvents;
+        this.transitions = transitions;
+    }
+
     public void rebuildTransitions(final List<SubscriptionBaseEvent> inputEvents, final Catalog catalog) throws CatalogApiException {
 
         if (inputEvents == null) {
@@ -559,7 +571,7 @@ public class DefaultSubscriptionBase extends EntityBase implements SubscriptionB
         Plan previousPlan = null;
         PlanPhase previousPhase = null;
 
-        transitions = new LinkedList<SubscriptionBaseTransition>();
+        final LinkedList<SubscriptionBaseTransition> rebuiltTransitions = new LinkedList<SubscriptionBaseTransition>();
 
         for (final SubscriptionBaseEvent cur : inputEvents) {
 
@@ -646,7 +658,7 @@ public class DefaultSubscriptionBase extends EntityBase implements SubscriptionB
                     nextUserToken,
                     isFromDisk);
 
-            transitions.add(transition);
+            rebuiltTransitions.add(transition);
 
             previousState = nextState;
             previousPlan = nextPlan;
@@ -656,5 +668,7 @@ public class DefaultSubscriptionBase extends EntityBase implements SubscriptionB
             prevCreatedDate = nextCreatedDate;
 
         }
+
+        transitions = rebuiltTransitions;
     }
 }
@@ -235,6 +235,20 @@ public class DefaultSubscriptionBaseApiService implements SubscriptionBaseApiSer
         }
 
         final DateTime now = clock.getUTCNow();
+        final InternalCallContext internalCallContext = createCallContextFromBundleId(subscription.getBundleId(), context);
+        final List<SubscriptionBaseEvent> uncancelEvents = getEventsOnUncancelPlan(subscription, now, internalCallContext);
+
+        dao.uncancelSubscription(subscription, uncancelEvents, internalCallContext);
+        try {
+            final Catalog fullCatalog = catalogService.getFullCatalog(internalCallContext);
+            subscription.rebuildTransitions(dao.getEventsForSubscription(subscription.getId(), internalCallContext), fullCatalog);
+            return true;
+        } catch (final CatalogApiException e) {
+            throw new SubscriptionBaseApiException(e);
+        }
+    }
+
+    private List<SubscriptionBaseEvent> getEventsOnUncancelPlan(final DefaultSubscriptionBase subscription, final DateTime now, final InternalTenantContext internalTenantContext) {
         final SubscriptionBaseEvent uncancelEvent = new ApiEventUncancel(new ApiEventBuilder()
                                                                                  .setSubscriptionId(subscription.getId())
                                                                                  .setActiveVersion(subscription.getActiveVersion())
@@ -246,25 +260,91 @@ public class DefaultSubscriptionBaseApiService implements SubscriptionBaseApiSer
         final List<SubscriptionBaseEvent> uncancelEvents = new ArrayList<SubscriptionBaseEvent>();
         uncancelEvents.add(uncancelEvent);
 
-        final InternalCallContext internalCallContext = createCallContextFromBundleId(subscription.getBundleId(), context);
-        final TimedPhase nextTimedPhase = planAligner.getNextTimedPhase(subscription, now, now, internalCallContext);
+        final TimedPhase nextTimedPhase = planAligner.getNextTimedPhase(subscription, now, now, internalTenantContext);
         final PhaseEvent nextPhaseEvent = (nextTimedPhase != null) ?
                                           PhaseEventData.createNextPhaseEvent(subscription.getId(), subscription.getActiveVersion(), nextTimedPhase.getPhase().getName(), now, nextTimedPhase.getStartPhase()) :
                                           null;
         if (nextPhaseEvent != null) {
             uncancelEvents.add(nextPhaseEvent);
         }
+        return uncancelEvents;
+    }
 
-        dao.uncancelSubscription(subscription, uncancelEvents, internalCallContext);
-        try {
-            final Catalog fullCatalog = catalogService.getFullCatalog(internalCallContext);
-            subscription.rebuildTransitions(dao.getEventsForSubscription(subscription.getId(), internalCallContext), fullCatalog);
-            return true;
-        } catch (final CatalogApiException e) {
-            throw new SubscriptionBaseApiException(e);
+    //
+    // Validates one item of a bulk operation and computes its events, without writing anything: this mirrors the
+    // individual cancel, uncancel and changePlan operations (the events are then written by SubscriptionDao#applyBulkChanges).
+    // The effective date of the change is the one of the first event.
+    //
+    @Override
+    public List<SubscriptionBaseEvent> getEventsOnBulkChange(final DefaultSubscriptionBase subscription, final SubscriptionBaseBulkChange change, final DateTime now,
+                                                             final CallContext context, final InternalCallContext internalCallContext) throws SubscriptionBaseApiException, CatalogApiException {
+        switch (change.getChangeType()) {
+            case CHANGE_PLAN:
+                return getEventsOnBulkChangePlan(subscription, change, now, context, internalCallContext);
+            case CANCEL:
+                return getEventsOnBulkCancelPlan(subscription, change, now, internalCallContext);
+            case UNCANCEL:
+                if (!subscription.isSubscriptionFutureCancelled()) {
+                    throw new SubscriptionBaseApiException(ErrorCode.SUB_UNCANCEL_BAD_STATE, subscription.getId().toString());
+                }
+                return getEventsOnUncancelPlan(subscription, now, internalCallContext);
+            default:
+                throw new SubscriptionBaseError("Unknown change type " + change.getChangeType());
         }
     }
 
+    private List<SubscriptionBaseEvent> getEventsOnBulkChangePlan(final DefaultSubscriptionBase subscription, final SubscriptionBaseBulkChange change, final DateTime now,
+                                                                  final CallContext context, final InternalCallContext internalCallContext) throws SubscriptionBaseApiException, CatalogApiException {
+        validateEntitlementState(subscription);
+
+        final DateTime effectiveDate;
+        final String newPriceList;
+        if (change.getRequestedDate() != null) {
+            effectiveDate = DefaultClock.truncateMs(change.getRequestedDate());
+            newPriceList = change.getPriceList();
+            validateEffectiveDate(subscription, effectiveDate);
+        } else if (change.getBillingPolicy() != null) {
+            effectiveDate = subscription.getPlanChangeEffectiveDate(change.getBillingPolicy());
+            newPriceList = change.getPriceList();
+        } else {
+            final PlanChangeResult planChangeResult = getPlanChangeResult(subscription, change.getProductName(), change.getBillingPeriod(), change.getPriceList(), now, context);
+            effectiveDate = subscription.getPlanChangeEffectiveDate(planChangeResult.getPolicy());
+            newPriceList = planChangeResult.getNewPriceList().getName();
+            validateEffectiveDate(subscription, effectiveDate);
+        }
+
+        final PlanPhasePriceOverridesWithCallContext overridesWithContext = new DefaultPlanPhasePriceOverridesWithCallContext(ImmutableList.<PlanPhasePriceOverride>of(), context);
+        final Plan newPlan = catalogService.getFullCatalog(internalCallContext).createOrFindPlan(change.getProductName(), change.getBillingPeriod(), newPriceList, overridesWithContext, effectiveDate, subscription.getStartDate());
+        return getEventsOnChangePlan(subscription, newPlan, newPriceList, now, effectiveDate, now, false, internalCallContext);
+    }
+
+    private List<SubscriptionBaseEvent> getEventsOnBulkCancelPlan(final DefaultSubscriptionBase subscription, final SubscriptionBaseBulkChange change, final DateTime now,
+                                                                  final InternalCallContext internalCallContext) throws SubscriptionBaseApiException, CatalogApiException {
+        final EntitlementState currentState = subscription.getState();
+        if (currentState != EntitlementState.ACTIVE) {
+            throw new SubscriptionBaseApiException(ErrorCode.SUB_CANCEL_BAD_STATE, subscription.getId(), currentState);
+        }
+
+        final DateTime effectiveDate;
+        if (change.getRequestedDate() != null) {
+            effectiveDate = DefaultClock.truncateMs(change.getRequestedDate());
+        } else if (change.getBillingPolicy() != null) {
+            effectiveDate = subscription.getPlanChangeEffectiveDate(change.getBillingPolicy());
+        } else {
+            final Plan currentPlan = subscription.getCurrentPlan();
+            final PlanPhaseSpecifier planPhase = new PlanPhaseSpecifier(currentPlan.getProduct().getName(),
+                                                                        currentPlan.getProduct().getCategory(),
+                                                                        currentPlan.getRecurringBillingPeriod(),
+                                                                        subscription.getCurrentPriceList().getName(),
+                                                                        subscription.getCurrentPhase().getPhaseType());
+            final BillingActionPolicy policy = catalogService.getFullCatalog(internalCallContext).planCancelPolicy(planPhase, now);
+            effectiveDate = subscription.getPlanChangeEffectiveDate(policy);
+        }
+        validateEffectiveDate(subscription, effectiveDate);
+
+        return getEventsOnCancelPlan(subscription, now, effectiveDate, now, false, internalCallContext);
+    }
+
     @Override
     public DateTime changePlan(final DefaultSubscriptionBase subscription, final String productName, final BillingPeriod term,
                                final String priceList, final List<PlanPhasePriceOverride> overrides, final CallContext context) throws SubscriptionBaseApiException {
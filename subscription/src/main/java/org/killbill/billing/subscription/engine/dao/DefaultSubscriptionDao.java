@@ -60,6 +60,7 @@ import org.killbill.billing.subscription.api.user.DefaultRequestedSubscriptionEv
 import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
 import org.killbill.billing.subscription.api.user.DefaultSubscriptionBaseBundle;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseBundle;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseTransitionData;
 import org.killbill.billing.subscription.api.user.SubscriptionBuilder;
 import org.killbill.billing.subscription.engine.addon.AddonUtils;
@@ -79,6 +80,7 @@ import org.killbill.billing.subscription.events.user.ApiEventMigrateBilling;
 import org.killbill.billing.subscription.events.user.ApiEventType;
 import org.killbill.billing.subscription.exceptions.SubscriptionBaseError;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.SubscriptionConfig;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
@@ -97,6 +99,7 @@ import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
@@ -114,17 +117,20 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
     private final AddonUtils addonUtils;
     private final PersistentBus eventBus;
     private final CatalogService catalogService;
+    private final SubscriptionTransitionsCache transitionsCache;
 
     @Inject
     public DefaultSubscriptionDao(final IDBI dbi, final Clock clock, final AddonUtils addonUtils,
                                   final NotificationQueueService notificationQueueService, final PersistentBus eventBus, final CatalogService catalogService,
-                                  final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), BundleSqlDao.class);
+                                  final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry,
+                                  final SubscriptionConfig subscriptionConfig) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry), BundleSqlDao.class);
         this.clock = clock;
         this.notificationQueueService = notificationQueueService;
         this.addonUtils = addonUtils;
         this.eventBus = eventBus;
         this.catalogService = catalogService;
+        this.transitionsCache = new SubscriptionTransitionsCache(subscriptionConfig.getTransitionsCacheSize());
     }
 
     @Override
@@ -195,6 +201,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
     @Override
     public Pagination<SubscriptionBundleModelDao> searchSubscriptionBundles(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         return paginationHelper.getPagination(BundleSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<SubscriptionBundleModelDao, SubscriptionBaseBundle, BundleSqlDao>() {
                                                   @Override
                                                   public Long getCount(final BundleSqlDao bundleSqlDao, final InternalTenantContext context) {
@@ -205,6 +212,11 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                                                   public Iterator<SubscriptionBundleModelDao> build(final BundleSqlDao bundleSqlDao, final Long limit, final InternalTenantContext context) {
                                                       return bundleSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
                                                   }
+
+                                                  @Override
+                                                  public Iterator<SubscriptionBundleModelDao> build(final BundleSqlDao bundleSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return bundleSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), fromRecordId, limit, context);
+                                                  }
                                               },
                                               offset,
                                               limit,
@@ -423,6 +435,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
     }
 
     @Override
@@ -507,6 +520,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
     }
 
     @Override
@@ -529,6 +543,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
     }
 
     @Override
@@ -545,6 +560,9 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        for (final DefaultSubscriptionBase subscription : subscriptions) {
+            transitionsCache.invalidate(subscription.getId());
+        }
     }
 
     @Override
@@ -556,6 +574,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
     }
 
     @Override
@@ -597,6 +616,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
     }
 
     @Override
@@ -630,6 +650,150 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        transitionsCache.invalidate(subscription.getId());
+    }
+
+    @Override
+    public List<UUID> applyBulkChanges(final List<SubscriptionBulkChangeData> changes, final InternalCallContext context) {
+        final List<UUID> changedSubscriptionIds = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<UUID>>() {
+            @Override
+            public List<UUID> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final SubscriptionEventSqlDao transactional = entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class);
+
+                // First pass: de-activate the existing future events and compute the final list of events for each subscription
+                final List<UUID> changedSubscriptionIds = new ArrayList<UUID>(changes.size());
+                final List<SubscriptionBulkChangeData> changesToRecord = new ArrayList<SubscriptionBulkChangeData>(changes.size());
+                final List<SubscriptionEventModelDao> eventModels = new ArrayList<SubscriptionEventModelDao>();
+                for (final SubscriptionBulkChangeData change : changes) {
+                    final UUID subscriptionId = change.getSubscription().getId();
+                    final List<SubscriptionBaseEvent> events;
+                    switch (change.getChangeType()) {
+                        case CHANGE_PLAN:
+                            events = reinsertFutureMigrateBillingEventOnChangeFromTransaction(subscriptionId, change.getEvents(), entitySqlDaoWrapperFactory, context);
+                            cancelFutureEventsFromTransaction(subscriptionId, entitySqlDaoWrapperFactory, context);
+                            break;
+                        case CANCEL:
+                            events = change.getEvents();
+                            cancelFutureEventsFromTransaction(subscriptionId, entitySqlDaoWrapperFactory, context);
+                            break;
+                        case UNCANCEL:
+                            final SubscriptionEventModelDao cancelledEvent = findFutureEventFromTransaction(subscriptionId, entitySqlDaoWrapperFactory, EventType.API_USER, ApiEventType.CANCEL, context);
+                            if (cancelledEvent == null) {
+                                continue;
+                            }
+                            events = change.getEvents();
+                            unactivateEventFromTransaction(cancelledEvent, entitySqlDaoWrapperFactory, context);
+                            break;
+                        default:
+                            throw new SubscriptionBaseError("Unknown change type " + change.getChangeType());
+                    }
+
+                    for (final SubscriptionBaseEvent cur : events) {
+                        eventModels.add(new SubscriptionEventModelDao(cur));
+                    }
+                    changedSubscriptionIds.add(subscriptionId);
+                    changesToRecord.add(new SubscriptionBulkChangeData(change.getSubscription(), change.getChangeType(), events));
+                }
+
+                // Second pass: insert all events in one batch, then record the notifications as the individual operations would
+                if (!eventModels.isEmpty()) {
+                    transactional.createEvents(eventModels, context);
+                }
+                for (final SubscriptionBulkChangeData change : changesToRecord) {
+                    recordBulkChangeNotificationsFromTransaction(change, entitySqlDaoWrapperFactory, context);
+                }
+
+                return changedSubscriptionIds;
+            }
+        });
+        for (final UUID subscriptionId : changedSubscriptionIds) {
+            transitionsCache.invalidate(subscriptionId);
+        }
+        return changedSubscriptionIds;
+    }
+
+    @Override
+    public void createBulkSubscriptions(final List<DefaultSubscriptionBaseBundle> bundles, final List<SubscriptionBulkCreationData> subscriptions, final InternalCallContext context) {
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final List<SubscriptionBundleModelDao> bundleModels = new ArrayList<SubscriptionBundleModelDao>(bundles.size());
+                for (final DefaultSubscriptionBaseBundle bundle : bundles) {
+                    bundleModels.add(new SubscriptionBundleModelDao(bundle));
+                }
+
+                final List<SubscriptionModelDao> subscriptionModels = new ArrayList<SubscriptionModelDao>(subscriptions.size());
+                final List<SubscriptionEventModelDao> eventModels = new ArrayList<SubscriptionEventModelDao>();
+                for (final SubscriptionBulkCreationData cur : subscriptions) {
+                    subscriptionModels.add(new SubscriptionModelDao(cur.getSubscription()));
+                    for (final SubscriptionBaseEvent event : cur.getEvents()) {
+                        eventModels.add(new SubscriptionEventModelDao(event));
+                    }
+                }
+
+                // One batched insert per table, then record the notifications and bus events as the individual creations would
+                if (!bundleModels.isEmpty()) {
+                    entitySqlDaoWrapperFactory.become(BundleSqlDao.class).createBundles(bundleModels, context);
+                }
+                if (!subscriptionModels.isEmpty()) {
+                    entitySqlDaoWrapperFactory.become(SubscriptionSqlDao.class).createSubscriptions(subscriptionModels, context);
+                }
+                if (!eventModels.isEmpty()) {
+                    entitySqlDaoWrapperFactory.become(SubscriptionEventSqlDao.class).createEvents(eventModels, context);
+                }
+
+                final DateTime now = clock.getUTCNow();
+                for (final SubscriptionBulkCreationData cur : subscriptions) {
+                    final List<SubscriptionBaseEvent> events = cur.getEvents();
+                    for (final SubscriptionBaseEvent event : events) {
+                        final boolean isBusEvent = event.getEffectiveDate().compareTo(now) <= 0 && (event.getType() == EventType.API_USER);
+                        recordBusOrFutureNotificationFromTransaction(cur.getSubscription(), event, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
+                    }
+                    if (!events.isEmpty()) {
+                        notifyBusOfRequestedChange(entitySqlDaoWrapperFactory, cur.getSubscription(), events.get(events.size() - 1), SubscriptionBaseTransitionType.CREATE, context);
+                    }
+                }
+                return null;
+            }
+        });
+        for (final SubscriptionBulkCreationData cur : subscriptions) {
+            transitionsCache.invalidate(cur.getSubscription().getId());
+        }
+    }
+
+    private void recordBulkChangeNotificationsFromTransaction(final SubscriptionBulkChangeData change, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context) {
+        final DefaultSubscriptionBase subscription = change.getSubscription();
+        final List<SubscriptionBaseEvent> events = change.getEvents();
+        final DateTime now = clock.getUTCNow();
+
+        final SubscriptionBaseTransitionType transitionType;
+        switch (change.getChangeType()) {
+            case CHANGE_PLAN:
+                transitionType = SubscriptionBaseTransitionType.CHANGE;
+                for (final SubscriptionBaseEvent cur : events) {
+                    final boolean isBusEvent = cur.getEffectiveDate().compareTo(now) <= 0 && (cur.getType() == EventType.API_USER);
+                    recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
+                }
+                break;
+            case CANCEL:
+                transitionType = SubscriptionBaseTransitionType.CANCEL;
+                for (final SubscriptionBaseEvent cur : events) {
+                    final boolean isBusEvent = cur.getEffectiveDate().compareTo(now) <= 0;
+                    recordBusOrFutureNotificationFromTransaction(subscription, cur, entitySqlDaoWrapperFactory, isBusEvent, 0, context);
+                }
+                break;
+            case UNCANCEL:
+                transitionType = SubscriptionBaseTransitionType.UNCANCEL;
+                for (final SubscriptionBaseEvent cur : events) {
+                    recordFutureNotificationFromTransaction(entitySqlDaoWrapperFactory, cur.getEffectiveDate(), new SubscriptionNotificationKey(cur.getId()), context);
+                }
+                break;
+            default:
+                throw new SubscriptionBaseError("Unknown change type " + change.getChangeType());
+        }
+
+        // Notify the Bus of the latest requested change
+        notifyBusOfRequestedChange(entitySqlDaoWrapperFactory, subscription, events.get(events.size() - 1), transitionType, context);
     }
 
     //
@@ -862,7 +1026,9 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                                                        getEventsForSubscription(cur.getId(), context);
             mergeDryRunEvents(cur.getId(), events, dryRunEvents);
 
-            SubscriptionBase reloaded = createSubscriptionForInternalUse(cur, events, context);
+            // Dry-run events are not on disk: transitions built from them can't be reused
+            final boolean reuseTransitions = dryRunEvents == null || dryRunEvents.isEmpty();
+            SubscriptionBase reloaded = createSubscriptionForInternalUse(cur, events, reuseTransitions, context);
 
             switch (cur.getCategory()) {
                 case BASE:
@@ -917,7 +1083,7 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
 
                         events.add(addOnCancelEvent);
                         // Finally reload subscription with full set of events
-                        reloaded = createSubscriptionForInternalUse(cur, events, context);
+                        reloaded = createSubscriptionForInternalUse(cur, events, false, context);
                     }
                     break;
                 default:
@@ -1001,6 +1167,9 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        for (final SubscriptionDataRepair cur : inRepair) {
+            transitionsCache.invalidate(cur.getId());
+        }
     }
 
     @Override
@@ -1021,6 +1190,9 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
                 return null;
             }
         });
+        for (final TransferCancelData cancel : transferCancelData) {
+            transitionsCache.invalidate(cancel.getSubscription().getId());
+        }
     }
 
     @Override
@@ -1036,11 +1208,22 @@ public class DefaultSubscriptionDao extends EntityDaoBase<SubscriptionBundleMode
         });
     }
 
-    private DefaultSubscriptionBase createSubscriptionForInternalUse(final SubscriptionBase shellSubscription, final List<SubscriptionBaseEvent> events, final InternalTenantContext context) throws CatalogApiException {
+    private DefaultSubscriptionBase createSubscriptionForInternalUse(final SubscriptionBase shellSubscription, final List<SubscriptionBaseEvent> events, final boolean reuseTransitions, final InternalTenantContext context) throws CatalogApiException {
         final DefaultSubscriptionBase result = new DefaultSubscriptionBase(new SubscriptionBuilder(((DefaultSubscriptionBase) shellSubscription)), null, clock);
         if (events.size() > 0) {
             final Catalog fullCatalog = catalogService.getFullCatalog(context);
-            result.rebuildTransitions(events, fullCatalog);
+            if (!reuseTransitions) {
+                result.rebuildTransitions(events, fullCatalog);
+                return result;
+            }
+
+            final LinkedList<SubscriptionBaseTransition> cachedTransitions = transitionsCache.getTransitions(result, events, fullCatalog);
+            if (cachedTransitions != null) {
+                result.reuseTransitions(events, cachedTransitions);
+            } else {
+                result.rebuildTransitions(events, fullCatalog);
+                transitionsCache.putTransitions(result, events, fullCatalog);
+            }
         }
         return result;
     }
@@ -54,6 +54,7 @@ import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 
@@ -64,8 +65,8 @@ public class RepairSubscriptionDao extends EntityDaoBase<SubscriptionBundleModel
     private final ThreadLocal<Map<UUID, SubscriptionRepairEvent>> preThreadsInRepairSubscriptions = new ThreadLocal<Map<UUID, SubscriptionRepairEvent>>();
 
     @Inject
-    public RepairSubscriptionDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao), BundleSqlDao.class);
+    public RepairSubscriptionDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, metricRegistry), BundleSqlDao.class);
     }
 
     @Override
@@ -241,6 +242,16 @@ public class RepairSubscriptionDao extends EntityDaoBase<SubscriptionBundleModel
         throw new SubscriptionBaseError(NOT_IMPLEMENTED);
     }
 
+    @Override
+    public List<UUID> applyBulkChanges(final List<SubscriptionBulkChangeData> changes, final InternalCallContext context) {
+        throw new SubscriptionBaseError(NOT_IMPLEMENTED);
+    }
+
+    @Override
+    public void createBulkSubscriptions(final List<DefaultSubscriptionBaseBundle> bundles, final List<SubscriptionBulkCreationData> subscriptions, final InternalCallContext context) {
+        throw new SubscriptionBaseError(NOT_IMPLEMENTED);
+    }
+
     @Override
     public List<SubscriptionBaseBundle> getSubscriptionBundleForAccount(final UUID accountId, final InternalTenantContext context) {
         throw new SubscriptionBaseError(NOT_IMPLEMENTED);
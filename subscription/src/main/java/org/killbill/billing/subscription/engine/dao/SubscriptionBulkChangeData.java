@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.engine.dao;
+
+import java.util.List;
+
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+
+public class SubscriptionBulkChangeData {
+
+    private final DefaultSubscriptionBase subscription;
+    private final ChangeType changeType;
+    private final List<SubscriptionBaseEvent> events;
+
+    public SubscriptionBulkChangeData(final DefaultSubscriptionBase subscription,
+                                      final ChangeType changeType,
+                                      final List<SubscriptionBaseEvent> events) {
+        this.subscription = subscription;
+        this.changeType = changeType;
+        this.events = events;
+    }
+
+    public DefaultSubscriptionBase getSubscription() {
+        return subscription;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public List<SubscriptionBaseEvent> getEvents() {
+        return events;
+    }
+}
@@ -93,6 +93,11 @@ public interface SubscriptionDao extends EntityDao<SubscriptionBundleModelDao, S
 
     public void changePlan(DefaultSubscriptionBase subscription, List<SubscriptionBaseEvent> changeEvents, InternalCallContext context);
 
+    // Returns the ids of the subscriptions which were changed (uncancellations without future cancellation are skipped)
+    public List<UUID> applyBulkChanges(List<SubscriptionBulkChangeData> changes, InternalCallContext context);
+
+    public void createBulkSubscriptions(List<DefaultSubscriptionBaseBundle> bundles, List<SubscriptionBulkCreationData> subscriptions, InternalCallContext context);
+
     public void migrate(UUID accountId, AccountMigrationData data, InternalCallContext context);
 
     public void transfer(UUID srcAccountId, UUID destAccountId, BundleMigrationData data, List<TransferCancelData> transferCancelData, InternalCallContext fromContext, InternalCallContext toContext);
@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
@@ -36,6 +37,11 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
 @EntitySqlDaoStringTemplate
 public interface SubscriptionSqlDao extends EntitySqlDao<SubscriptionModelDao, SubscriptionBase> {
 
+    @SqlBatch
+    @Audited(ChangeType.INSERT)
+    public void createSubscriptions(@BindBean final Iterable<SubscriptionModelDao> subscriptions,
+                                    @BindBean final InternalCallContext context);
+
     @SqlQuery
     public List<SubscriptionModelDao> getSubscriptionsFromBundleId(@Bind("bundleId") String bundleId,
                                                                    @BindBean final InternalTenantContext context);
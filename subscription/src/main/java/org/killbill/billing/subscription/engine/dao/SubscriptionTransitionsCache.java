@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.engine.dao;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.catalog.api.Catalog;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the transitions computed by {@link DefaultSubscriptionBase#rebuildTransitions} per subscription, so that reloading
+ * a subscription whose events haven't changed doesn't require the catalog lookups again.
+ * <p/>
+ * Entries are versioned: they are only reused for the same catalog instance, the same subscription active version and
+ * align start date, and the same set of active events (number of events, last event record id and a checksum of the
+ * record ids and versions). Entries are also invalidated by DefaultSubscriptionDao when writing events. Transitions are
+ * never modified once built, so the same list is shared by all subscription objects.
+ */
+public class SubscriptionTransitionsCache {
+
+    private final Cache<UUID, CachedTransitions> transitionsPerSubscription;
+
+    public SubscriptionTransitionsCache(final long maxSize) {
+        this.transitionsPerSubscription = CacheBuilder.newBuilder()
+                                                      .maximumSize(maxSize)
+                                                      .build();
+    }
+
+    @Nullable
+    public LinkedList<SubscriptionBaseTransition> getTransitions(final DefaultSubscriptionBase subscription, final List<SubscriptionBaseEvent> events, final Catalog catalog) {
+        final CachedTransitions cachedTransitions = transitionsPerSubscription.getIfPresent(subscription.getId());
+        if (cachedTransitions == null || !cachedTransitions.isValidFor(subscription, events, catalog)) {
+            return null;
+        }
+        return cachedTransitions.getTransitions();
+    }
+
+    public void putTransitions(final DefaultSubscriptionBase rebuiltSubscription, final List<SubscriptionBaseEvent> events, final Catalog catalog) {
+        final LinkedList<SubscriptionBaseTransition> transitions = rebuiltSubscription.getTransitionsForReuse();
+        if (transitions == null) {
+            return;
+        }
+        transitionsPerSubscription.put(rebuiltSubscription.getId(), new CachedTransitions(rebuiltSubscription, events, catalog, transitions));
+    }
+
+    public void invalidate(final UUID subscriptionId) {
+        transitionsPerSubscription.invalidate(subscriptionId);
+    }
+
+    private static final class CachedTransitions {
+
+        private final Catalog catalog;
+        private final long subscriptionActiveVersion;
+        private final DateTime alignStartDate;
+        private final EventsVersion eventsVersion;
+        private final LinkedList<SubscriptionBaseTransition> transitions;
+
+        private CachedTransitions(final DefaultSubscriptionBase subscription, final List<SubscriptionBaseEvent> events, final Catalog catalog, final LinkedList<SubscriptionBaseTransition> transitions) {
+            this.catalog = catalog;
+            this.subscriptionActiveVersion = subscription.getActiveVersion();
+            this.alignStartDate = subscription.getAlignStartDate();
+            this.eventsVersion = new EventsVersion(events);
+            this.transitions = transitions;
+        }
+
+        public boolean isValidFor(final DefaultSubscriptionBase subscription, final List<SubscriptionBaseEvent> events, final Catalog catalog) {
+            return this.catalog == catalog &&
+                   subscriptionActiveVersion == subscription.getActiveVersion() &&
+                   (alignStartDate == null ? subscription.getAlignStartDate() == null : alignStartDate.equals(subscription.getAlignStartDate())) &&
+                   eventsVersion.matches(events);
+        }
+
+        public LinkedList<SubscriptionBaseTransition> getTransitions() {
+            return transitions;
+        }
+    }
+
+    // Fingerprint of the active events of a subscription (events are sorted, record ids are unique)
+    private static final class EventsVersion {
+
+        private final int nbActiveEvents;
+        private final long lastEventRecordId;
+        private final long checksum;
+
+        private EventsVersion(final List<SubscriptionBaseEvent> events) {
+            this.nbActiveEvents = nbActiveEvents(events);
+            this.lastEventRecordId = lastEventRecordId(events);
+            this.checksum = checksum(events);
+        }
+
+        public boolean matches(final List<SubscriptionBaseEvent> events) {
+            return nbActiveEvents == nbActiveEvents(events) &&
+                   lastEventRecordId == lastEventRecordId(events) &&
+                   checksum == checksum(events);
+        }
+
+        // Indexed loops below, to avoid allocating iterators on the (hot) read path
+
+        private static int nbActiveEvents(final List<SubscriptionBaseEvent> events) {
+            int result = 0;
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i).isActive()) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        private static long lastEventRecordId(final List<SubscriptionBaseEvent> events) {
+            long result = 0;
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i).isActive()) {
+                    result = Math.max(result, events.get(i).getTotalOrdering());
+                }
+            }
+            return result;
+        }
+
+        private static long checksum(final List<SubscriptionBaseEvent> events) {
+            long result = 0;
+            for (int i = 0; i < events.size(); i++) {
+                final SubscriptionBaseEvent event = events.get(i);
+                if (event.isActive()) {
+                    result = 31 * result + 17 * event.getTotalOrdering() + event.getActiveVersion();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.api.user;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.catalog.api.BillingActionPolicy;
+import org.killbill.billing.catalog.api.BillingPeriod;
+import org.killbill.billing.catalog.api.PriceListSet;
+import org.killbill.billing.entitlement.api.Entitlement.EntitlementState;
+import org.killbill.billing.subscription.SubscriptionTestSuiteWithEmbeddedDB;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseBulkChange.ChangeType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestUserApiBulkChange extends SubscriptionTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testBulkChangeAndCancel() throws SubscriptionBaseApiException {
+        final DefaultSubscriptionBase subscriptionToChange = testUtil.createSubscription(bundle, "Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME);
+        final SubscriptionBaseBundle otherBundle = subscriptionInternalApi.createBundleForAccount(bundle.getAccountId(), UUID.randomUUID().toString(), internalCallContext);
+        final DefaultSubscriptionBase subscriptionToCancel = testUtil.createSubscription(otherBundle, "Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME);
+        final UUID unknownSubscriptionId = UUID.randomUUID();
+
+        testListener.pushExpectedEvents(NextEvent.CHANGE, NextEvent.CANCEL);
+        final List<SubscriptionBaseBulkChangeResult> results = subscriptionInternalApi.applyBulkChanges(ImmutableList.<SubscriptionBaseBulkChange>of(new SubscriptionBaseBulkChange(ChangeType.CHANGE_PLAN, subscriptionToChange.getId(), "Pistol", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME, null, BillingActionPolicy.IMMEDIATE),
+                                                                                                                                                     new SubscriptionBaseBulkChange(ChangeType.CANCEL, subscriptionToCancel.getId(), null, null, null, null, BillingActionPolicy.IMMEDIATE),
+                                                                                                                                                     new SubscriptionBaseBulkChange(ChangeType.UNCANCEL, unknownSubscriptionId, null, null, null, null, null)),
+                                                                                                        internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertTrue(results.get(0).isSuccess());
+        Assert.assertEquals(results.get(0).getSubscriptionId(), subscriptionToChange.getId());
+        Assert.assertTrue(results.get(1).isSuccess());
+        Assert.assertEquals(results.get(1).getSubscriptionId(), subscriptionToCancel.getId());
+        Assert.assertFalse(results.get(2).isSuccess());
+        Assert.assertEquals(results.get(2).getSubscriptionId(), unknownSubscriptionId);
+        Assert.assertEquals(results.get(2).getErrorCode(), (Integer) ErrorCode.SUB_INVALID_SUBSCRIPTION_ID.getCode());
+
+        final SubscriptionBase changedSubscription = subscriptionInternalApi.getSubscriptionFromId(subscriptionToChange.getId(), internalCallContext);
+        Assert.assertEquals(changedSubscription.getCurrentPlan().getProduct().getName(), "Pistol");
+
+        final SubscriptionBase cancelledSubscription = subscriptionInternalApi.getSubscriptionFromId(subscriptionToCancel.getId(), internalCallContext);
+        Assert.assertEquals(cancelledSubscription.getState(), EntitlementState.CANCELLED);
+    }
+
+    @Test(groups = "slow")
+    public void testBulkChangeWithInvalidItem() throws SubscriptionBaseApiException {
+        final DefaultSubscriptionBase subscription = testUtil.createSubscription(bundle, "Shotgun", BillingPeriod.MONTHLY, PriceListSet.DEFAULT_PRICELIST_NAME);
+
+        // The subscription isn't cancelled and appears twice: nothing should be written
+        final List<SubscriptionBaseBulkChangeResult> results = subscriptionInternalApi.applyBulkChanges(ImmutableList.<SubscriptionBaseBulkChange>of(new SubscriptionBaseBulkChange(ChangeType.UNCANCEL, subscription.getId(), null, null, null, null, null),
+                                                                                                                                                     new SubscriptionBaseBulkChange(ChangeType.CANCEL, subscription.getId(), null, null, null, null, BillingActionPolicy.IMMEDIATE)),
+                                                                                                        internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertEquals(results.get(0).getErrorCode(), (Integer) ErrorCode.SUB_UNCANCEL_BAD_STATE.getCode());
+        Assert.assertFalse(results.get(1).isSuccess());
+
+        final SubscriptionBase reloadedSubscription = subscriptionInternalApi.getSubscriptionFromId(subscription.getId(), internalCallContext);
+        Assert.assertEquals(reloadedSubscription.getState(), EntitlementState.ACTIVE);
+    }
+}
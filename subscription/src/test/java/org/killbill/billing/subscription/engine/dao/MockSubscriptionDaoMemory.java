@@ -431,6 +431,40 @@ public class MockSubscriptionDaoMemory extends MockEntityDaoBase<SubscriptionBun
         }
     }
 
+    @Override
+    public List<UUID> applyBulkChanges(final List<SubscriptionBulkChangeData> changes, final InternalCallContext context) {
+        final List<UUID> changedSubscriptionIds = new LinkedList<UUID>();
+        synchronized (events) {
+            for (final SubscriptionBulkChangeData change : changes) {
+                switch (change.getChangeType()) {
+                    case CHANGE_PLAN:
+                        changePlan(change.getSubscription(), change.getEvents(), context);
+                        break;
+                    case CANCEL:
+                        cancelSubscription(change.getSubscription(), change.getEvents().get(0), context, 0);
+                        break;
+                    case UNCANCEL:
+                        uncancelSubscription(change.getSubscription(), change.getEvents(), context);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected change type " + change.getChangeType());
+                }
+                changedSubscriptionIds.add(change.getSubscription().getId());
+            }
+        }
+        return changedSubscriptionIds;
+    }
+
+    @Override
+    public void createBulkSubscriptions(final List<DefaultSubscriptionBaseBundle> bundles, final List<SubscriptionBulkCreationData> subscriptions, final InternalCallContext context) {
+        for (final DefaultSubscriptionBaseBundle bundle : bundles) {
+            createSubscriptionBundle(bundle, context);
+        }
+        for (final SubscriptionBulkCreationData cur : subscriptions) {
+            createSubscription(cur.getSubscription(), cur.getEvents(), context);
+        }
+    }
+
     @Override
     public void migrate(final UUID accountId, final AccountMigrationData accountData, final InternalCallContext context) {
         synchronized (events) {
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.subscription.engine.dao;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.Catalog;
+import org.killbill.billing.subscription.SubscriptionTestSuiteNoDB;
+import org.killbill.billing.subscription.api.user.DefaultSubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
+import org.killbill.billing.subscription.api.user.SubscriptionBuilder;
+import org.killbill.billing.subscription.events.SubscriptionBaseEvent;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestSubscriptionTransitionsCache extends SubscriptionTestSuiteNoDB {
+
+    private final DateTime alignStartDate = new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    @Test(groups = "fast")
+    public void testReuseTransitionsForSameEvents() throws Exception {
+        final SubscriptionTransitionsCache cache = new SubscriptionTransitionsCache(10);
+        final Catalog catalog = Mockito.mock(Catalog.class);
+        final UUID subscriptionId = UUID.randomUUID();
+        final List<SubscriptionBaseEvent> events = ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(2L, true));
+
+        final LinkedList<SubscriptionBaseTransition> transitions = new LinkedList<SubscriptionBaseTransition>();
+        cache.putTransitions(createSubscription(subscriptionId, 1L, events, transitions), events, catalog);
+
+        // Same events, read again from disk
+        final List<SubscriptionBaseEvent> reloadedEvents = ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(2L, true));
+        Assert.assertSame(cache.getTransitions(createSubscription(subscriptionId, 1L), reloadedEvents, catalog), transitions);
+
+        cache.invalidate(subscriptionId);
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 1L), reloadedEvents, catalog));
+    }
+
+    @Test(groups = "fast")
+    public void testIgnoreStaleTransitions() throws Exception {
+        final SubscriptionTransitionsCache cache = new SubscriptionTransitionsCache(10);
+        final Catalog catalog = Mockito.mock(Catalog.class);
+        final UUID subscriptionId = UUID.randomUUID();
+        final List<SubscriptionBaseEvent> events = ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(2L, true));
+        cache.putTransitions(createSubscription(subscriptionId, 1L, events, new LinkedList<SubscriptionBaseTransition>()), events, catalog);
+
+        // New event
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 1L),
+                                               ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(2L, true), createEvent(3L, true)),
+                                               catalog));
+        // Event de-activated
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 1L),
+                                               ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(2L, false)),
+                                               catalog));
+        // Event replaced
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 1L),
+                                               ImmutableList.<SubscriptionBaseEvent>of(createEvent(1L, true), createEvent(3L, true)),
+                                               catalog));
+        // Subscription repaired
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 2L), events, catalog));
+        // New catalog
+        Assert.assertNull(cache.getTransitions(createSubscription(subscriptionId, 1L), events, Mockito.mock(Catalog.class)));
+    }
+
+    private DefaultSubscriptionBase createSubscription(final UUID subscriptionId, final long activeVersion) {
+        return new DefaultSubscriptionBase(new SubscriptionBuilder().setId(subscriptionId)
+                                                                    .setAlignStartDate(alignStartDate)
+                                                                    .setActiveVersion(activeVersion));
+    }
+
+    private DefaultSubscriptionBase createSubscription(final UUID subscriptionId, final long activeVersion, final List<SubscriptionBaseEvent> events, final LinkedList<SubscriptionBaseTransition> transitions) {
+        final DefaultSubscriptionBase subscription = createSubscription(subscriptionId, activeVersion);
+        subscription.reuseTransitions(events, transitions);
+        return subscription;
+    }
+
+    private SubscriptionBaseEvent createEvent(final long recordId, final boolean isActive) {
+        final SubscriptionBaseEvent event = Mockito.mock(SubscriptionBaseEvent.class);
+        Mockito.when(event.getTotalOrdering()).thenReturn(recordId);
+        Mockito.when(event.getActiveVersion()).thenReturn(1L);
+        Mockito.when(event.isActive()).thenReturn(isActive);
+        return event;
+    }
+}
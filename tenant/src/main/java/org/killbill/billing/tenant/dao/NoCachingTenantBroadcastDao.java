@@ -38,7 +38,7 @@ public class NoCachingTenantBroadcastDao extends EntityDaoBase<TenantBroadcastMo
 
     @Inject
     public NoCachingTenantBroadcastDao(final IDBI dbi, final Clock clock) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, null, null), TenantBroadcastSqlDao.class);
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, null, null, null), TenantBroadcastSqlDao.class);
     }
 
     @Override
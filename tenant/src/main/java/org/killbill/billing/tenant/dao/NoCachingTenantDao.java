@@ -52,7 +52,7 @@ public class NoCachingTenantDao extends EntityDaoBase<TenantModelDao, Tenant, Te
 
     @Inject
     public NoCachingTenantDao(final IDBI dbi, final Clock clock) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, null, null), TenantSqlDao.class);
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, null, null, null), TenantSqlDao.class);
     }
 
     @Override
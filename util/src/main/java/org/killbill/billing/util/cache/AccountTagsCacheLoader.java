@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.tag.dao.AccountTagsIndex;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.skife.jdbi.v2.IDBI;
+
+@Singleton
+public class AccountTagsCacheLoader extends BaseCacheLoader {
+
+    private final TagSqlDao tagSqlDao;
+
+    @Inject
+    public AccountTagsCacheLoader(final IDBI dbi) {
+        super();
+        this.tagSqlDao = dbi.onDemand(TagSqlDao.class);
+    }
+
+    @Override
+    public CacheType getCacheType() {
+        return CacheType.ACCOUNT_TAGS;
+    }
+
+    @Override
+    public Object load(final Object key, final Object argument) {
+        checkCacheLoaderStatus();
+
+        if (!(key instanceof Long)) {
+            throw new IllegalArgumentException("Unexpected key type of " + key.getClass().getName());
+        }
+        if (!(argument instanceof CacheLoaderArgument)) {
+            throw new IllegalArgumentException("Unexpected key type of " + argument.getClass().getName());
+        }
+
+        final InternalTenantContext internalTenantContext = ((CacheLoaderArgument) argument).getInternalTenantContext();
+        return new AccountTagsIndex(tagSqlDao.getByAccountRecordIdIncludedDeleted(internalTenantContext));
+    }
+}
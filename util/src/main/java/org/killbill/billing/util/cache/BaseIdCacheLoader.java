@@ -17,6 +17,11 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.dao.NonEntityDao;
@@ -34,6 +39,15 @@ public abstract class BaseIdCacheLoader extends BaseCacheLoader {
 
     protected abstract Object doRetrieveOperation(final String rawKey, final ObjectType objectType);
 
+    // Loaders backed by a multi-key query override this (by default, keys are loaded one at a time)
+    protected Map<String, Object> doRetrieveOperations(final Collection<String> rawKeys, final ObjectType objectType) {
+        final Map<String, Object> result = new HashMap<String, Object>();
+        for (final String rawKey : rawKeys) {
+            result.put(rawKey, doRetrieveOperation(rawKey, objectType));
+        }
+        return result;
+    }
+
     @Override
     public Object load(final Object key, final Object argument) {
         checkCacheLoaderStatus();
@@ -45,14 +59,47 @@ public abstract class BaseIdCacheLoader extends BaseCacheLoader {
             throw new IllegalArgumentException("Unexpected key type of " + argument.getClass().getName());
         }
 
-        final String rawKey;
+        final String rawKey = getRawKey((String) key);
+        final ObjectType objectType = ((CacheLoaderArgument) argument).getObjectType();
+        return doRetrieveOperation(rawKey, objectType);
+    }
+
+    @Override
+    public Map loadAll(final Collection keys, final Object argument) {
+        checkCacheLoaderStatus();
+
+        if (!(argument instanceof CacheLoaderArgument)) {
+            throw new IllegalArgumentException("Unexpected key type of " + argument.getClass().getName());
+        }
+
+        final Map<String, Object> keysByRawKey = new LinkedHashMap<String, Object>();
+        for (final Object key : keys) {
+            if (!(key instanceof String)) {
+                throw new IllegalArgumentException("Unexpected key type of " + key.getClass().getName());
+            }
+            keysByRawKey.put(getRawKey((String) key), key);
+        }
+
+        final ObjectType objectType = ((CacheLoaderArgument) argument).getObjectType();
+        final Map<String, Object> valuesByRawKey = doRetrieveOperations(keysByRawKey.keySet(), objectType);
+
+        // Like for single loads, don't return (and hence cache) missing values
+        final Map<Object, Object> result = new HashMap<Object, Object>();
+        for (final String rawKey : keysByRawKey.keySet()) {
+            final Object value = valuesByRawKey.get(rawKey);
+            if (value != null) {
+                result.put(keysByRawKey.get(rawKey), value);
+            }
+        }
+        return result;
+    }
+
+    private String getRawKey(final String key) {
         if (getCacheType().isKeyPrefixedWithTableName()) {
-            String [] parts = ((String) key).split(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
-            rawKey = parts[1];
+            String [] parts = key.split(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
+            return parts[1];
         } else {
-            rawKey = (String) key;
+            return key;
         }
-        final ObjectType objectType = ((CacheLoaderArgument) argument).getObjectType();
-        return doRetrieveOperation(rawKey, objectType);
     }
 }
@@ -35,6 +35,7 @@ public @interface Cachable {
     public final String TENANT_OVERDUE_CONFIG_CACHE_NAME = "tenant-overdue-config";
     public final String TENANT_KV_CACHE_NAME = "tenant-kv";
     public final String OVERRIDDEN_PLAN_CACHE_NAME = "overridden-plan";
+    public final String ACCOUNT_TAGS_CACHE_NAME = "account-tags";
 
     public CacheType value();
 
@@ -68,7 +69,10 @@ public @interface Cachable {
         TENANT_KV(TENANT_KV_CACHE_NAME, false),
 
         /* Overwritten plans  */
-        OVERRIDDEN_PLAN(OVERRIDDEN_PLAN_CACHE_NAME, false);
+        OVERRIDDEN_PLAN(OVERRIDDEN_PLAN_CACHE_NAME, false),
+
+        /* Mapping from 'accountRecordId (Long)' -> all tags of the account (including deleted ones), indexed by object 'AccountTagsIndex' */
+        ACCOUNT_TAGS(ACCOUNT_TAGS_CACHE_NAME, false);
 
         private final String cacheName;
         private final boolean isKeyPrefixedWithTableName;
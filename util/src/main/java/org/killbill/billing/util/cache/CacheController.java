@@ -16,6 +16,9 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.killbill.billing.util.cache.Cachable.CacheType;
 
 public interface CacheController<K, V> {
@@ -24,6 +27,9 @@ public interface CacheController<K, V> {
 
     public V get(K key, CacheLoaderArgument objectType);
 
+    // Batch version of get: missing keys are loaded at once by the cache loader, keys without value are not returned
+    public Map<K, V> getAll(Collection<K> keys, CacheLoaderArgument objectType);
+
     public boolean remove(K key);
 
     public int size();
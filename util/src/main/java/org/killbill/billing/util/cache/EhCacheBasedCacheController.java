@@ -18,6 +18,10 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.killbill.billing.util.cache.Cachable.CacheType;
 
 import net.sf.ehcache.Ehcache;
@@ -47,6 +51,19 @@ public class EhCacheBasedCacheController<K, V> implements CacheController<K, V>
         return (V) element.getObjectValue();
     }
 
+    @Override
+    public Map<K, V> getAll(final Collection<K> keys, final CacheLoaderArgument cacheLoaderArgument) {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        final Map values = cache.getAllWithLoader(keys, cacheLoaderArgument);
+        for (final K key : keys) {
+            final Object value = values.get(key);
+            if (value != null && !value.equals(BaseCacheLoader.EMPTY_VALUE_PLACEHOLDER)) {
+                result.put(key, (V) value);
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean remove(final K key) {
         return cache.remove(key);
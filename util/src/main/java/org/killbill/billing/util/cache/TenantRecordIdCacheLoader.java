@@ -18,6 +18,9 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -29,6 +32,9 @@ import org.killbill.billing.util.dao.NonEntityDao;
 
 import net.sf.ehcache.loader.CacheLoader;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Collections2;
+
 @Singleton
 public class TenantRecordIdCacheLoader extends BaseIdCacheLoader implements CacheLoader {
 
@@ -49,4 +55,21 @@ public class TenantRecordIdCacheLoader extends BaseIdCacheLoader implements Cach
     protected Object doRetrieveOperation(final String rawKey, final ObjectType objectType) {
         return nonEntityDao.retrieveTenantRecordIdFromObject(UUID.fromString(rawKey), objectType, null);
     }
+
+    @Override
+    protected Map<String, Object> doRetrieveOperations(final Collection<String> rawKeys, final ObjectType objectType) {
+        final Collection<UUID> objectIds = Collections2.transform(rawKeys, new Function<String, UUID>() {
+            @Override
+            public UUID apply(final String input) {
+                return UUID.fromString(input);
+            }
+        });
+
+        final Map<String, Object> result = new HashMap<String, Object>();
+        final Map<UUID, Long> recordIds = nonEntityDao.retrieveTenantRecordIdsFromObjects(objectIds, objectType, null);
+        for (final UUID objectId : recordIds.keySet()) {
+            result.put(objectId.toString(), recordIds.get(objectId));
+        }
+        return result;
+    }
 }
@@ -18,6 +18,9 @@
 
 package org.killbill.billing.util.callcontext;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -26,7 +29,9 @@ import javax.inject.Inject;
 import org.joda.time.DateTime;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalPaginationTenantContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.callcontext.PaginationTenantContext;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.dao.NonEntityDao;
@@ -80,6 +85,12 @@ public class InternalCallContextFactory {
     public InternalTenantContext createInternalTenantContext(final TenantContext context) {
         // If tenant id is null, this will default to the default tenant record id (multi-tenancy disabled)
         final Long tenantRecordId = getTenantRecordIdSafe(context);
+        if (context instanceof PaginationTenantContext) {
+            // Listing and search calls: keep the pagination state for the DAOs
+            final PaginationTenantContext paginationContext = (PaginationTenantContext) context;
+            return new InternalPaginationTenantContext(tenantRecordId, null, paginationContext.getPaginationToken(),
+                                                       paginationContext.getMaxPageSizeForToken(), paginationContext.isWithCount());
+        }
         return createInternalTenantContext(tenantRecordId, null);
     }
 
@@ -161,6 +172,30 @@ public class InternalCallContextFactory {
                                          context.getCreatedDate(), context.getUpdatedDate(), context);
     }
 
+    /**
+     * Create internal call callcontexts for a set of objects of the same type
+     * <p/>
+     * The tenant and account record ids of all objects are resolved together (one statement per chunk of ids on a cache miss),
+     * instead of one object at a time.
+     *
+     * @param objectIds  the ids of the rows in the table pointed by object type where to look for account_record_id
+     * @param objectType the object type pointed by these objectIds
+     * @param context    original call callcontext
+     * @return mapping object id -> internal call callcontext, for all object ids
+     */
+    public Map<UUID, InternalCallContext> createInternalCallContexts(final Collection<UUID> objectIds, final ObjectType objectType, final CallContext context) {
+        final Long tenantRecordId = getTenantRecordIdSafe(context);
+        final Map<UUID, Long> accountRecordIds = getAccountRecordIdsSafe(objectIds, objectType, tenantRecordId, context);
+
+        final Map<UUID, InternalCallContext> result = new LinkedHashMap<UUID, InternalCallContext>();
+        for (final UUID objectId : accountRecordIds.keySet()) {
+            result.put(objectId, createInternalCallContext(tenantRecordId, accountRecordIds.get(objectId), context.getUserName(), context.getCallOrigin(),
+                                                           context.getUserType(), context.getUserToken(), context.getReasonCode(), context.getComments(),
+                                                           context.getCreatedDate(), context.getUpdatedDate()));
+        }
+        return result;
+    }
+
     // Used by the payment retry service
     public InternalCallContext createInternalCallContext(final UUID objectId, final ObjectType objectType, final String userName,
                                                          final CallOrigin callOrigin, final UserType userType, @Nullable final UUID userToken, final Long tenantRecordId) {
@@ -245,6 +280,11 @@ public class InternalCallContextFactory {
         }
     }
 
+    // Retrieve the account id from its record id (e.g. the search key of a bus event)
+    public UUID getAccountIdFromRecordId(final Long accountRecordId) {
+        return nonEntityDao.retrieveIdFromObject(accountRecordId, ObjectType.ACCOUNT, cacheControllerDispatcher.getCacheController(CacheType.OBJECT_ID));
+    }
+
     // Safe method to retrieve the record id from any object (should only be used by DefaultRecordIdApi)
     public Long getRecordIdFromObject(final UUID objectId, final ObjectType objectType, final TenantContext context) {
         try {
@@ -278,6 +318,24 @@ public class InternalCallContextFactory {
         }
     }
 
+    private Map<UUID, Long> getAccountRecordIdsSafe(final Collection<UUID> objectIds, final ObjectType objectType, final Long realTenantRecordId, final TenantContext context) {
+        if (realTenantRecordId == null) {
+            throw new ObjectDoesNotExist(String.format("Tenant id=%s doesn't exist!", context.getTenantId()));
+        }
+
+        final Map<UUID, Long> objectTenantRecordIds = nonEntityDao.retrieveTenantRecordIdsFromObjects(objectIds, objectType, cacheControllerDispatcher.getCacheController(CacheType.TENANT_RECORD_ID));
+        for (final UUID objectId : objectTenantRecordIds.keySet()) {
+            final Long objectTenantRecordId = objectTenantRecordIds.get(objectId);
+            if (objectTenantRecordId == null) {
+                throw new ObjectDoesNotExist(String.format("Object id=%s type=%s doesn't exist!", objectId, objectType));
+            } else if (!objectTenantRecordId.equals(realTenantRecordId)) {
+                throw new IllegalStateException(String.format("Object id=%s type=%s doesn't belong to tenant id=%s", objectId, objectType, context.getTenantId()));
+            }
+        }
+
+        return nonEntityDao.retrieveAccountRecordIdsFromObjects(objectIds, objectType, cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_RECORD_ID));
+    }
+
     private Long getTenantRecordIdSafe(final TenantContext context) {
         // Default to single default tenant (e.g. single tenant mode)
         // TODO Extract this convention (e.g. BusinessAnalyticsBase needs to know about it)
@@ -19,6 +19,7 @@ package org.killbill.billing.util.config;
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 public interface CurrencyConfig extends KillbillConfig {
 
@@ -26,4 +27,9 @@ public interface CurrencyConfig extends KillbillConfig {
     @Default("killbill-currency-plugin")
     @Description("Default currency provider to use")
     public String getDefaultCurrencyProvider();
+
+    @Config("org.killbill.currency.rates.refresh")
+    @Default("10m")
+    @Description("Interval at which the cached currency rates are refreshed from the currency provider")
+    public TimeSpan getCurrencyRatesRefreshInterval();
 }
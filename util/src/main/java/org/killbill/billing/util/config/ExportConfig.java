@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+
+public interface ExportConfig extends KillbillConfig {
+
+    @Config("org.killbill.export.dir")
+    @Default("/var/tmp/killbill/export")
+    @Description("Directory where tenant exports are written (one sub-directory per export)")
+    public String getExportDirectory();
+
+    @Config("org.killbill.export.threads.nb")
+    @Default("4")
+    @Description("Number of account partitions exported in parallel")
+    public int getExportThreadNb();
+
+    @Config("org.killbill.export.partition.size")
+    @Default("1000")
+    @Description("Number of accounts per export partition (each partition is exported in one chunk file per table)")
+    public int getExportPartitionSize();
+}
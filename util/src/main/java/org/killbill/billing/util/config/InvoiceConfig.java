@@ -16,6 +16,8 @@
 
 package org.killbill.billing.util.config;
 
+import java.util.List;
+
 import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.Description;
@@ -44,4 +46,34 @@ public interface InvoiceConfig extends KillbillConfig {
     @Description("Maximum number of past billing periods we use to fetch raw usage data (usage optimization)")
     public int getMaxRawUsagePreviousPeriod();
 
+    @Config("org.killbill.invoice.rendering.threads")
+    @Default("4")
+    @Description("Number of threads used to render invoices in bulk")
+    public int getInvoiceRenderingThreadNb();
+
+    @Config("org.killbill.invoice.plugin.concurrent")
+    @Default("false")
+    @Description("Whether invoice plugins which don't depend on each other should be called concurrently")
+    public boolean isInvoicePluginConcurrentDispatch();
+
+    @Config("org.killbill.invoice.plugin.threads.nb")
+    @Default("4")
+    @Description("Number of threads used to call invoice plugins (shared by all invoice runs)")
+    public int getInvoicePluginThreadNb();
+
+    @Config("org.killbill.invoice.plugin.timeout")
+    @Default("0s")
+    @Description("Default time budget of invoice plugins, from the time they are called (0 for none)")
+    public TimeSpan getInvoicePluginTimeout();
+
+    @Config("org.killbill.invoice.plugin.timeouts")
+    @Default("")
+    @Description("Time budget per invoice plugin (e.g. killbill-avatax:5s)")
+    public List<String> getInvoicePluginTimeouts();
+
+    @Config("org.killbill.invoice.plugin.dependencies")
+    @Default("")
+    @Description("Invoice plugins to call only once another one has returned (e.g. killbill-avatax:killbill-adjustments)")
+    public List<String> getInvoicePluginDependencies();
+
 }
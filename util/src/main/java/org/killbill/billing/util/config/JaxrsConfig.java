@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface JaxrsConfig extends KillbillConfig {
+
+    @Config("org.killbill.jaxrs.threads.pool.nb")
+    @Default("30")
+    @Description("Number of threads for jaxrs executor")
+    public int getJaxrsThreadNb();
+
+    @Config("org.killbill.jaxrs.timeout")
+    @Default("30s")
+    @Description("Total timeout for all callables associated to a given api call (parallel mode)")
+    public TimeSpan getJaxrsTimeout();
+
+    @Config("org.killbill.jaxrs.import.threads.pool.nb")
+    @Default("4")
+    @Description("Number of threads for the import executor (number of import batches processed in parallel)")
+    public int getImportThreadNb();
+
+    @Config("org.killbill.jaxrs.import.batch.size")
+    @Default("100")
+    @Description("Number of accounts created per transaction by the import endpoint")
+    public int getImportBatchSize();
+
+    @Config("org.killbill.jaxrs.pagination.token.maxPageSize")
+    @Default("1000")
+    @Description("Max page size for which listing and search calls return a next page token (seek pagination): such pages are buffered in memory (0 to disable)")
+    public long getPaginationTokenMaxPageSize();
+
+    @Config("org.killbill.jaxrs.pagination.count")
+    @Default("true")
+    @Description("Whether listing and search calls count the total number of records (pages resumed from a token re-use the first counts as estimates)")
+    public boolean isPaginationCountEnabled();
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface NotificationConfig extends KillbillConfig {
+
+    @Config("org.killbill.billing.server.notifications.timeout")
+    @Default("15s")
+    @Description("Timeout for each push notification HTTP request")
+    public TimeSpan getPushNotificationTimeout();
+
+    @Config("org.killbill.billing.server.notifications.retry.start")
+    @Default("15s")
+    @Description("Delay before retrying a push notification that could not be delivered")
+    public TimeSpan getPushNotificationInitialRetryDelay();
+
+    @Config("org.killbill.billing.server.notifications.retry.multiplier")
+    @Default("2.0")
+    @Description("Multiplier to apply to the retry delay between each push notification delivery attempt")
+    public double getPushNotificationRetryMultiplier();
+
+    @Config("org.killbill.billing.server.notifications.retry.max")
+    @Default("1h")
+    @Description("Maximum delay between two push notification delivery attempts")
+    public TimeSpan getPushNotificationMaxRetryDelay();
+
+    @Config("org.killbill.billing.server.notifications.retry.max.attempts")
+    @Default("8")
+    @Description("Max number of delivery attempts for a push notification before it is dropped")
+    public int getPushNotificationMaxAttempts();
+
+    @Config("org.killbill.billing.server.notifications.nbThreads")
+    @Default("2")
+    @Description("Number of threads handling the outcome of push notification requests")
+    public int getPushNotificationThreadNb();
+
+    @Config("org.killbill.billing.server.notifications.circuitbreaker.failures")
+    @Default("5")
+    @Description("Number of consecutive failures after which a callback endpoint stops receiving requests")
+    public int getPushNotificationCircuitBreakerFailureThreshold();
+
+    @Config("org.killbill.billing.server.notifications.circuitbreaker.open")
+    @Default("1m")
+    @Description("Delay during which a failing callback endpoint does not receive requests")
+    public TimeSpan getPushNotificationCircuitBreakerOpenDuration();
+}
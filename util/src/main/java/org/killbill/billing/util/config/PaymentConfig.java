@@ -61,6 +61,21 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Number of threads for plugin executor dispatcher")
     public int getPaymentPluginThreadNb();
 
+    @Config("org.killbill.payment.method.refresh.threads.nb")
+    @Default("10")
+    @Description("Number of threads used to refresh payment methods in bulk")
+    public int getPaymentMethodRefreshThreadNb();
+
+    @Config("org.killbill.payment.method.refresh.plugin.concurrency")
+    @Default("2")
+    @Description("Maximum number of concurrent calls to a given plugin while refreshing payment methods in bulk")
+    public int getPaymentMethodRefreshPluginConcurrency();
+
+    @Config("org.killbill.payment.method.refresh.batch.size")
+    @Default("100")
+    @Description("Number of accounts refreshed per notification while refreshing payment methods in bulk")
+    public int getPaymentMethodRefreshBatchSize();
+
     @Config("org.killbill.payment.janitor.pending")
     @Default("12h")
     @Description("Delay after which pending transactions should be marked as failed")
@@ -20,6 +20,7 @@ import org.skife.config.Config;
 import org.skife.config.Default;
 import org.skife.config.DefaultNull;
 import org.skife.config.Description;
+import org.skife.config.TimeSpan;
 
 public interface SecurityConfig extends KillbillConfig {
 
@@ -81,4 +82,16 @@ public interface SecurityConfig extends KillbillConfig {
     @Default("false")
     @Description("Whether to ignore SSL certificates checks")
     public boolean disableShiroLDAPSSLCheck();
+
+    // Tenant credentials
+
+    @Config("org.killbill.security.tenant.credentials.cache.size")
+    @Default("1000")
+    @Description("Max number of verified tenant api credentials to keep in memory (0 to disable the cache)")
+    public int getTenantCredentialsCacheMaxSize();
+
+    @Config("org.killbill.security.tenant.credentials.cache.ttl")
+    @Default("5m")
+    @Description("Delay after which verified tenant api credentials are checked against the database again")
+    public TimeSpan getTenantCredentialsCacheTimeToLive();
 }
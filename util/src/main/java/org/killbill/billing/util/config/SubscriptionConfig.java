@@ -16,5 +16,14 @@
 
 package org.killbill.billing.util.config;
 
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+
 public interface SubscriptionConfig extends KillbillConfig {
+
+    @Config("org.killbill.subscription.transitions.cache.size")
+    @Default("10000")
+    @Description("Maximum number of subscriptions for which the computed transitions are kept in memory (0 to disable)")
+    public long getTransitionsCacheSize();
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.customfield.api;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.events.BusEventBase;
+import org.killbill.billing.events.CustomFieldBatchDeletionEvent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+public class DefaultCustomFieldBatchDeletionEvent extends BusEventBase implements CustomFieldBatchDeletionEvent {
+
+    private final List<UUID> customFieldIds;
+
+    @JsonCreator
+    public DefaultCustomFieldBatchDeletionEvent(@JsonProperty("customFieldIds") final List<UUID> customFieldIds,
+                                                @JsonProperty("searchKey1") final Long searchKey1,
+                                                @JsonProperty("searchKey2") final Long searchKey2,
+                                                @JsonProperty("userToken") final UUID userToken) {
+        super(searchKey1, searchKey2, userToken);
+        this.customFieldIds = ImmutableList.<UUID>copyOf(customFieldIds);
+    }
+
+    @Override
+    public List<UUID> getCustomFieldIds() {
+        return customFieldIds;
+    }
+
+    @JsonIgnore
+    @Override
+    public BusInternalEventType getBusEventType() {
+        return BusInternalEventType.CUSTOM_FIELD_BATCH_DELETION;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("DefaultCustomFieldBatchDeletionEvent{");
+        sb.append("customFieldIds=").append(customFieldIds);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DefaultCustomFieldBatchDeletionEvent)) {
+            return false;
+        }
+
+        final DefaultCustomFieldBatchDeletionEvent that = (DefaultCustomFieldBatchDeletionEvent) o;
+
+        return customFieldIds.equals(that.customFieldIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return customFieldIds.hashCode();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.customfield.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.customfield.CustomFieldInternalApi;
+import org.killbill.billing.util.customfield.CustomField;
+import org.killbill.billing.util.customfield.StringCustomField;
+import org.killbill.billing.util.customfield.dao.CustomFieldDao;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+
+public class DefaultCustomFieldInternalApi implements CustomFieldInternalApi {
+
+    private final CustomFieldDao customFieldDao;
+
+    @Inject
+    public DefaultCustomFieldInternalApi(final CustomFieldDao customFieldDao) {
+        this.customFieldDao = customFieldDao;
+    }
+
+    @Override
+    public Map<UUID, List<CustomField>> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        final Map<UUID, List<CustomField>> result = new LinkedHashMap<UUID, List<CustomField>>();
+        for (final UUID objectId : objectIds) {
+            result.put(objectId, new ArrayList<CustomField>());
+        }
+        for (final CustomFieldModelDao input : customFieldDao.getCustomFieldsForObjects(objectIds, objectType, context)) {
+            result.get(input.getObjectId()).add(new StringCustomField(input));
+        }
+        return result;
+    }
+}
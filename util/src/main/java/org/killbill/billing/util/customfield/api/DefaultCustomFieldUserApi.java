@@ -18,13 +18,16 @@ package org.killbill.billing.util.customfield.api;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
-import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
@@ -40,7 +43,6 @@ import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.SourcePagina
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 import static org.killbill.billing.util.entity.dao.DefaultPaginationHelper.getEntityPaginationNoException;
@@ -89,45 +91,56 @@ public class DefaultCustomFieldUserApi implements CustomFieldUserApi {
 
     @Override
     public void addCustomFields(final List<CustomField> customFields, final CallContext context) throws CustomFieldApiException {
-        // TODO make it transactional
+        final Map<Long, InternalCallContext> contextPerAccount = new LinkedHashMap<Long, InternalCallContext>();
+        final Map<Long, List<CustomFieldModelDao>> customFieldsPerAccount = new LinkedHashMap<Long, List<CustomFieldModelDao>>();
+        groupByAccount(customFields, context, contextPerAccount, customFieldsPerAccount);
 
-        final Map<UUID, ObjectType> mapping = new HashMap<UUID, ObjectType>();
-        for (final CustomField cur : customFields) {
-            mapping.put(cur.getObjectId(), cur.getObjectType());
+        // One transaction (and one batch insert) per account
+        for (final Long accountRecordId : customFieldsPerAccount.keySet()) {
+            customFieldDao.createCustomFields(customFieldsPerAccount.get(accountRecordId), contextPerAccount.get(accountRecordId));
         }
+    }
 
-        final List<CustomFieldModelDao> all = new LinkedList<CustomFieldModelDao>();
-        for (UUID cur : mapping.keySet()) {
-            final ObjectType type = mapping.get(cur);
-            all.addAll(customFieldDao.getCustomFieldsForObject(cur, type, internalCallContextFactory.createInternalCallContext(cur, type, context)));
-        }
-        final List<CustomField> toBeInserted = new LinkedList<CustomField>();
-        for (final CustomField cur : customFields) {
-            final CustomFieldModelDao match = Iterables.tryFind(all, new com.google.common.base.Predicate<CustomFieldModelDao>() {
-                @Override
-                public boolean apply(final CustomFieldModelDao input) {
-                    return input.getObjectId().equals(cur.getObjectId()) &&
-                           input.getObjectType() == cur.getObjectType() &&
-                           input.getFieldName().equals(cur.getFieldName());
+    @Override
+    public void removeCustomFields(final List<CustomField> customFields, final CallContext context) throws CustomFieldApiException {
+        final Map<Long, InternalCallContext> contextPerAccount = new LinkedHashMap<Long, InternalCallContext>();
+        final Map<Long, List<CustomFieldModelDao>> customFieldsPerAccount = new LinkedHashMap<Long, List<CustomFieldModelDao>>();
+        groupByAccount(customFields, context, contextPerAccount, customFieldsPerAccount);
 
+        for (final Long accountRecordId : customFieldsPerAccount.keySet()) {
+            final Collection<UUID> customFieldIds = Collections2.transform(customFieldsPerAccount.get(accountRecordId), new Function<CustomFieldModelDao, UUID>() {
+                @Override
+                public UUID apply(final CustomFieldModelDao input) {
+                    return input.getId();
                 }
-            }).orNull();
-            if (match != null) {
-                throw new CustomFieldApiException(ErrorCode.CUSTOM_FIELD_ALREADY_EXISTS, match.getId());
-            }
-            toBeInserted.add(cur);
+            });
+            customFieldDao.deleteCustomFields(customFieldIds, contextPerAccount.get(accountRecordId));
         }
+    }
 
-        for (CustomField cur : toBeInserted) {
-            customFieldDao.create(new CustomFieldModelDao(cur), internalCallContextFactory.createInternalCallContext(cur.getObjectId(), cur.getObjectType(), context));
+    private void groupByAccount(final Iterable<CustomField> customFields, final CallContext context,
+                                final Map<Long, InternalCallContext> contextPerAccount, final Map<Long, List<CustomFieldModelDao>> customFieldsPerAccount) {
+        // The contexts (i.e. the accounts) are resolved in bulk, per object type
+        final Map<ObjectType, Set<UUID>> objectIdsPerType = new HashMap<ObjectType, Set<UUID>>();
+        for (final CustomField cur : customFields) {
+            if (objectIdsPerType.get(cur.getObjectType()) == null) {
+                objectIdsPerType.put(cur.getObjectType(), new HashSet<UUID>());
+            }
+            objectIdsPerType.get(cur.getObjectType()).add(cur.getObjectId());
+        }
+        final Map<ObjectType, Map<UUID, InternalCallContext>> contextPerObject = new HashMap<ObjectType, Map<UUID, InternalCallContext>>();
+        for (final ObjectType objectType : objectIdsPerType.keySet()) {
+            contextPerObject.put(objectType, internalCallContextFactory.createInternalCallContexts(objectIdsPerType.get(objectType), objectType, context));
         }
-    }
 
-    @Override
-    public void removeCustomFields(final List<CustomField> customFields, final CallContext context) throws CustomFieldApiException {
-        // TODO make it transactional
         for (final CustomField cur : customFields) {
-            customFieldDao.deleteCustomField(cur.getId(), internalCallContextFactory.createInternalCallContext(cur.getObjectId(), cur.getObjectType(), context));
+            final InternalCallContext internalCallContext = contextPerObject.get(cur.getObjectType()).get(cur.getObjectId());
+            final Long accountRecordId = internalCallContext.getAccountRecordId();
+            if (customFieldsPerAccount.get(accountRecordId) == null) {
+                contextPerAccount.put(accountRecordId, internalCallContext);
+                customFieldsPerAccount.put(accountRecordId, new LinkedList<CustomFieldModelDao>());
+            }
+            customFieldsPerAccount.get(accountRecordId).add(new CustomFieldModelDao(cur));
         }
     }
 
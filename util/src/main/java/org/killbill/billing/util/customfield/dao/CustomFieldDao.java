@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +32,9 @@ public interface CustomFieldDao extends EntityDao<CustomFieldModelDao, CustomFie
 
     public Pagination<CustomFieldModelDao> searchCustomFields(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
+    // Indexes the rows created before the search index (see SearchIndexBackfill)
+    public void backfillSearchIndex();
+
     public List<CustomFieldModelDao> getCustomFieldsForObject(final UUID objectId, final ObjectType objectType, final InternalTenantContext context);
 
     public List<CustomFieldModelDao> getCustomFieldsForAccountType(final ObjectType objectType, final InternalTenantContext context);
@@ -38,4 +42,11 @@ public interface CustomFieldDao extends EntityDao<CustomFieldModelDao, CustomFie
     public List<CustomFieldModelDao> getCustomFieldsForAccount(final InternalTenantContext context);
 
     void deleteCustomField(UUID customFieldId, InternalCallContext context) throws CustomFieldApiException;
+
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(Collection<UUID> objectIds, ObjectType objectType, InternalTenantContext context);
+
+    // All custom fields are expected to belong to the account of the context: they are created in a single transaction
+    void createCustomFields(List<CustomFieldModelDao> customFields, InternalCallContext context) throws CustomFieldApiException;
+
+    void deleteCustomFields(Collection<UUID> customFieldIds, InternalCallContext context) throws CustomFieldApiException;
 }
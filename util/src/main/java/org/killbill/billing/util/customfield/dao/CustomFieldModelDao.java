@@ -16,6 +16,8 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -26,8 +28,9 @@ import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.entity.EntityBase;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableModelDao;
 
-public class CustomFieldModelDao extends EntityModelDaoBase implements EntityModelDao<CustomField> {
+public class CustomFieldModelDao extends EntityModelDaoBase implements EntityModelDao<CustomField>, SearchableModelDao {
 
     private String fieldName;
     private String fieldValue;
@@ -160,4 +163,8 @@ public class CustomFieldModelDao extends EntityModelDaoBase implements EntityMod
         return TableName.CUSTOM_FIELD_HISTORY;
     }
 
+    @Override
+    public List<String> getSearchableValues() {
+        return Arrays.<String>asList(getObjectType() == null ? null : getObjectType().toString(), getFieldName(), getFieldValue());
+    }
 }
@@ -16,11 +16,13 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 
@@ -32,6 +34,7 @@ import org.killbill.billing.util.customfield.CustomField;
 import org.killbill.billing.util.entity.dao.Audited;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 
 @EntitySqlDaoStringTemplate
 public interface CustomFieldSqlDao extends EntitySqlDao<CustomFieldModelDao, CustomField> {
@@ -45,4 +48,19 @@ public interface CustomFieldSqlDao extends EntitySqlDao<CustomFieldModelDao, Cus
     List<CustomFieldModelDao> getCustomFieldsForObject(@Bind("objectId") UUID objectId,
                                                        @Bind("objectType") ObjectType objectType,
                                                        @BindBean InternalTenantContext internalTenantContext);
+
+    @SqlBatch
+    @Audited(ChangeType.INSERT)
+    void createCustomFields(@BindBean Iterable<CustomFieldModelDao> customFields,
+                            @BindBean InternalCallContext context);
+
+    @SqlUpdate
+    @Audited(ChangeType.DELETE)
+    void markCustomFieldsAsDeleted(@UUIDCollectionBinder Collection<String> customFieldIds,
+                                   @BindBean InternalCallContext context);
+
+    @SqlQuery
+    List<CustomFieldModelDao> getCustomFieldsForObjects(@UUIDCollectionBinder Collection<String> objectIds,
+                                                        @Bind("objectType") ObjectType objectType,
+                                                        @BindBean InternalTenantContext internalTenantContext);
 }
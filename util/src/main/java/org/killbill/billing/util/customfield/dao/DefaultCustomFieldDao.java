@@ -16,8 +16,13 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -38,31 +43,51 @@ import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.customfield.CustomField;
+import org.killbill.billing.util.customfield.api.DefaultCustomFieldBatchCreationEvent;
+import org.killbill.billing.util.customfield.api.DefaultCustomFieldBatchDeletionEvent;
 import org.killbill.billing.util.customfield.api.DefaultCustomFieldCreationEvent;
 import org.killbill.billing.util.customfield.api.DefaultCustomFieldDeletionEvent;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchIndexBackfill;
+import org.killbill.billing.util.entity.dao.SearchIndexKeys;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, CustomField, CustomFieldApiException> implements CustomFieldDao {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultCustomFieldDao.class);
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private static final Function<UUID, String> UUID_TO_STRING = new Function<UUID, String>() {
+        @Override
+        public String apply(final UUID input) {
+            return input.toString();
+        }
+    };
+
     private final PersistentBus bus;
+    private final SearchIndexBackfill<CustomFieldModelDao, CustomField> searchIndexBackfill;
 
     @Inject
-    public DefaultCustomFieldDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao, final PersistentBus bus) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao), CustomFieldSqlDao.class);
+    public DefaultCustomFieldDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry, final PersistentBus bus) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao, metricRegistry), CustomFieldSqlDao.class);
         this.bus = bus;
+        this.searchIndexBackfill = new SearchIndexBackfill<CustomFieldModelDao, CustomField>(transactionalSqlDao, CustomFieldSqlDao.class, TableName.CUSTOM_FIELD);
     }
 
     @Override
@@ -109,6 +134,105 @@ public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, Cu
 
     }
 
+    @Override
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        if (objectIds.isEmpty()) {
+            return ImmutableList.<CustomFieldModelDao>of();
+        }
+
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<CustomFieldModelDao>>() {
+            @Override
+            public List<CustomFieldModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return getCustomFieldsForObjects(entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class), objectIds, objectType, context);
+            }
+        });
+    }
+
+    @Override
+    public void createCustomFields(final List<CustomFieldModelDao> customFields, final InternalCallContext context) throws CustomFieldApiException {
+        if (customFields.isEmpty()) {
+            return;
+        }
+
+        transactionalSqlDao.execute(CustomFieldApiException.class, new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final CustomFieldSqlDao customFieldSqlDao = entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class);
+
+                // Existing fields, one query per object type (and chunk of object ids)
+                final Map<ObjectType, Set<UUID>> objectIdsPerType = new HashMap<ObjectType, Set<UUID>>();
+                for (final CustomFieldModelDao customField : customFields) {
+                    if (objectIdsPerType.get(customField.getObjectType()) == null) {
+                        objectIdsPerType.put(customField.getObjectType(), new HashSet<UUID>());
+                    }
+                    objectIdsPerType.get(customField.getObjectType()).add(customField.getObjectId());
+                }
+                for (final ObjectType objectType : objectIdsPerType.keySet()) {
+                    for (final CustomFieldModelDao existing : getCustomFieldsForObjects(customFieldSqlDao, objectIdsPerType.get(objectType), objectType, context)) {
+                        for (final CustomFieldModelDao customField : customFields) {
+                            if (existing.getObjectId().equals(customField.getObjectId()) &&
+                                existing.getObjectType() == customField.getObjectType() &&
+                                existing.getFieldName().equals(customField.getFieldName())) {
+                                throw new CustomFieldApiException(ErrorCode.CUSTOM_FIELD_ALREADY_EXISTS, existing.getId());
+                            }
+                        }
+                    }
+                }
+
+                customFieldSqlDao.createCustomFields(customFields, context);
+
+                final List<UUID> customFieldIds = Lists.transform(customFields, new Function<CustomFieldModelDao, UUID>() {
+                    @Override
+                    public UUID apply(final CustomFieldModelDao input) {
+                        return input.getId();
+                    }
+                });
+                postBatchEventFromTransaction(new DefaultCustomFieldBatchCreationEvent(customFieldIds, context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken()),
+                                              entitySqlDaoWrapperFactory);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void deleteCustomFields(final Collection<UUID> customFieldIds, final InternalCallContext context) throws CustomFieldApiException {
+        if (customFieldIds.isEmpty()) {
+            return;
+        }
+
+        transactionalSqlDao.execute(CustomFieldApiException.class, new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final CustomFieldSqlDao customFieldSqlDao = entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class);
+                final List<UUID> uniqueCustomFieldIds = ImmutableList.<UUID>copyOf(ImmutableSet.<UUID>copyOf(customFieldIds));
+                for (final List<UUID> customFieldIdsChunk : Lists.partition(uniqueCustomFieldIds, MAX_IDS_PER_QUERY)) {
+                    customFieldSqlDao.markCustomFieldsAsDeleted(Collections2.transform(customFieldIdsChunk, UUID_TO_STRING), context);
+                }
+
+                postBatchEventFromTransaction(new DefaultCustomFieldBatchDeletionEvent(uniqueCustomFieldIds, context.getAccountRecordId(), context.getTenantRecordId(), context.getUserToken()),
+                                              entitySqlDaoWrapperFactory);
+                return null;
+            }
+        });
+    }
+
+    private List<CustomFieldModelDao> getCustomFieldsForObjects(final CustomFieldSqlDao customFieldSqlDao, final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        final ImmutableList.Builder<CustomFieldModelDao> result = ImmutableList.<CustomFieldModelDao>builder();
+        for (final List<UUID> objectIdsChunk : Lists.partition(ImmutableList.<UUID>copyOf(objectIds), MAX_IDS_PER_QUERY)) {
+            result.addAll(customFieldSqlDao.getCustomFieldsForObjects(Collections2.transform(objectIdsChunk, UUID_TO_STRING), objectType, context));
+        }
+        return result.build();
+    }
+
+    // A single event for the whole batch, instead of one per custom field
+    private void postBatchEventFromTransaction(final BusInternalEvent batchEvent, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) {
+        try {
+            bus.postFromTransaction(batchEvent, entitySqlDaoWrapperFactory.getHandle().getConnection());
+        } catch (final PersistentBus.EventBusException e) {
+            log.warn("Failed to post batch event " + batchEvent, e);
+        }
+    }
+
     @Override
     protected CustomFieldApiException generateAlreadyExistsException(final CustomFieldModelDao entity, final InternalCallContext context) {
         return new CustomFieldApiException(ErrorCode.CUSTOM_FIELD_ALREADY_EXISTS, entity.getId());
@@ -143,20 +267,33 @@ public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, Cu
 
     @Override
     public Pagination<CustomFieldModelDao> searchCustomFields(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final Set<String> searchIndexKeys = SearchIndexKeys.forSearchKey(searchKey);
+        final boolean searchUnindexedRows = searchIndexBackfill.hasUnindexedRows();
         return paginationHelper.getPagination(CustomFieldSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<CustomFieldModelDao, CustomField, CustomFieldSqlDao>() {
                                                   @Override
                                                   public Long getCount(final CustomFieldSqlDao customFieldSqlDao, final InternalTenantContext context) {
-                                                      return customFieldSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return customFieldSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<CustomFieldModelDao> build(final CustomFieldSqlDao customFieldSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return customFieldSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return customFieldSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<CustomFieldModelDao> build(final CustomFieldSqlDao customFieldSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return customFieldSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, fromRecordId, limit, context);
                                                   }
                                               },
                                               offset,
                                               limit,
                                               context);
     }
+
+    @Override
+    public void backfillSearchIndex() {
+        searchIndexBackfill.backfill();
+    }
 }
@@ -16,6 +16,10 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -33,17 +37,27 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 public class DefaultNonEntityDao implements NonEntityDao {
 
+    // Maximum number of ids in a single IN clause
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private final NonEntitySqlDao nonEntitySqlDao;
     private final WithCaching<UUID, Long> withCachingObjectId;
     private final WithCaching<Long, UUID> withCachingRecordId;
+    private final WithBatchCaching withBatchCachingObjectIds;
 
     @Inject
     public DefaultNonEntityDao(final IDBI dbi) {
         this.nonEntitySqlDao = dbi.onDemand(NonEntitySqlDao.class);
         this.withCachingObjectId = new WithCaching<UUID, Long>();
         this.withCachingRecordId = new WithCaching<Long, UUID>();
+        this.withBatchCachingObjectIds = new WithBatchCaching();
     }
 
 
@@ -111,6 +125,56 @@ public class DefaultNonEntityDao implements NonEntityDao {
     }
 
 
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        return withBatchCachingObjectIds.withCaching(new BatchOperationRetrieval() {
+            @Override
+            public List<RecordIdIdMappings> doRetrieve(final Collection<String> objectIds) {
+                return nonEntitySqlDao.getRecordIdsFromObjects(objectIds, tableName.getTableName());
+            }
+        }, objectIds, objectType, tableName, cache);
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        return withBatchCachingObjectIds.withCaching(new BatchOperationRetrieval() {
+            @Override
+            public List<RecordIdIdMappings> doRetrieve(final Collection<String> objectIds) {
+                switch (tableName) {
+                    case TENANT:
+                    case TAG_DEFINITIONS:
+                    case TAG_DEFINITION_HISTORY:
+                        return ImmutableList.<RecordIdIdMappings>of();
+
+                    case ACCOUNT:
+                        return nonEntitySqlDao.getAccountRecordIdsFromAccounts(objectIds);
+
+                    default:
+                        return nonEntitySqlDao.getAccountRecordIdsFromObjectsOtherThanAccount(objectIds, tableName.getTableName());
+                }
+            }
+        }, objectIds, objectType, tableName, cache);
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveTenantRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        return withBatchCachingObjectIds.withCaching(new BatchOperationRetrieval() {
+            @Override
+            public List<RecordIdIdMappings> doRetrieve(final Collection<String> objectIds) {
+                switch (tableName) {
+                    case TENANT:
+                        return nonEntitySqlDao.getTenantRecordIdsFromTenants(objectIds);
+
+                    default:
+                        return nonEntitySqlDao.getTenantRecordIdsFromObjectsOtherThanTenant(objectIds, tableName.getTableName());
+                }
+            }
+        }, objectIds, objectType, tableName, cache);
+    }
+
     @Override
     public Long retrieveLastHistoryRecordIdFromTransaction(@Nullable final Long targetRecordId, final TableName tableName, final NonEntitySqlDao transactional) {
         // There is no caching here because the value returned changes as we add more history records, and so we would need some cache invalidation
@@ -137,10 +201,7 @@ public class DefaultNonEntityDao implements NonEntityDao {
                 return null;
             }
             if (cache != null) {
-                final String key = (cache.getCacheType().isKeyPrefixedWithTableName()) ?
-                                   tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + objectOrRecordId.toString() :
-                                   objectOrRecordId.toString();
-                return (TypeOut) cache.get(key, new CacheLoaderArgument(objectType));
+                return (TypeOut) cache.get(getCacheKey(objectOrRecordId, tableName, cache), new CacheLoaderArgument(objectType));
             }
             final TypeOut result;
             try {
@@ -157,4 +218,67 @@ public class DefaultNonEntityDao implements NonEntityDao {
             }
         }
     }
+
+    private interface BatchOperationRetrieval {
+        public List<RecordIdIdMappings> doRetrieve(final Collection<String> objectIds);
+    }
+
+    // Same as WithCaching, for a collection of object ids: cache misses are loaded in bulk (by the cache loader when there is a cache)
+    private class WithBatchCaching {
+
+        private Map<UUID, Long> withCaching(final BatchOperationRetrieval op, final Collection<UUID> objectIds, final ObjectType objectType, final TableName tableName, @Nullable final CacheController<Object, Object> cache) {
+            final Map<UUID, Long> result = new LinkedHashMap<UUID, Long>();
+            for (final UUID objectId : objectIds) {
+                if (objectId != null) {
+                    result.put(objectId, null);
+                }
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+
+            if (cache != null) {
+                final Map<Object, UUID> objectIdsByKey = new LinkedHashMap<Object, UUID>();
+                for (final UUID objectId : result.keySet()) {
+                    objectIdsByKey.put(getCacheKey(objectId, tableName, cache), objectId);
+                }
+                final Map<Object, Object> values = cache.getAll(objectIdsByKey.keySet(), new CacheLoaderArgument(objectType));
+                for (final Object key : values.keySet()) {
+                    result.put(objectIdsByKey.get(key), (Long) values.get(key));
+                }
+                return result;
+            }
+
+            final Profiling<Void> prof = new Profiling<Void>();
+            try {
+                prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, "NonEntityDao (type = " + objectType + ") batch cache miss", new WithProfilingCallback<Void>() {
+                    @Override
+                    public <ExceptionType extends Throwable> Void execute() throws ExceptionType {
+                        for (final List<UUID> objectIdsChunk : Lists.partition(ImmutableList.<UUID>copyOf(result.keySet()), MAX_IDS_PER_QUERY)) {
+                            final Collection<String> objectIdsAsStrings = Collections2.transform(objectIdsChunk, new Function<UUID, String>() {
+                                @Override
+                                public String apply(final UUID input) {
+                                    return input.toString();
+                                }
+                            });
+                            for (final RecordIdIdMappings mapping : op.doRetrieve(objectIdsAsStrings)) {
+                                result.put(mapping.getId(), mapping.getRecordId());
+                            }
+                        }
+                        return null;
+                    }
+                });
+                return result;
+            } catch (Throwable throwable) {
+                // This is only because WithProfilingCallback throws a Throwable...
+                throw new RuntimeException(throwable);
+            }
+        }
+    }
+
+    private static String getCacheKey(final Object objectOrRecordId, final TableName tableName, final CacheController<Object, Object> cache) {
+        return (cache.getCacheType().isKeyPrefixedWithTableName()) ?
+               tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + objectOrRecordId.toString() :
+               objectOrRecordId.toString();
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
@@ -27,6 +29,7 @@ import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
 import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 
 @UseStringTemplate3StatementLocator
 public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe {
@@ -52,6 +55,23 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public Long getTenantRecordIdFromObjectOtherThanTenant(@Bind("id") String id, @Define("tableName") final String tableName);
 
+    // Multi-key versions of the lookups above: the returned mappings have the looked-up record id as record id
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getRecordIdsFromObjects(@UUIDCollectionBinder Collection<String> ids, @Define("tableName") final String tableName);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getAccountRecordIdsFromAccounts(@UUIDCollectionBinder Collection<String> ids);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getAccountRecordIdsFromObjectsOtherThanAccount(@UUIDCollectionBinder Collection<String> ids, @Define("tableName") final String tableName);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getTenantRecordIdsFromTenants(@UUIDCollectionBinder Collection<String> ids);
+
+    @SqlQuery
+    public List<RecordIdIdMappings> getTenantRecordIdsFromObjectsOtherThanTenant(@UUIDCollectionBinder Collection<String> ids, @Define("tableName") final String tableName);
+
     @SqlQuery
     public Long getLastHistoryRecordId(@Bind("targetRecordId") Long targetRecordId, @Define("tableName") final String tableName);
 
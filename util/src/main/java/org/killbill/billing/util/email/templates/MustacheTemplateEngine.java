@@ -17,15 +17,43 @@
 package org.killbill.billing.util.email.templates;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
 
 public class MustacheTemplateEngine implements TemplateEngine {
 
+    private static final int MAX_COMPILED_TEMPLATES = 200;
+
+    // Compiled templates, keyed by the template text itself: a modified template is simply a new entry
+    private final Cache<String, Template> compiledTemplates = CacheBuilder.newBuilder()
+                                                                          .maximumSize(MAX_COMPILED_TEMPLATES)
+                                                                          .build();
+
     @Override
     public String executeTemplateText(final String templateText, final Map<String, Object> data) {
-        final Template template = Mustache.compiler().compile(templateText);
+        final Template template = getCompiledTemplate(templateText);
         return template.execute(data);
     }
+
+    private Template getCompiledTemplate(final String templateText) {
+        try {
+            return compiledTemplates.get(templateText, new Callable<Template>() {
+                @Override
+                public Template call() throws Exception {
+                    return Mustache.compiler().compile(templateText);
+                }
+            });
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            // Propagate template syntax errors as-is
+            throw (RuntimeException) e.getCause();
+        }
+    }
 }
@@ -32,6 +32,8 @@ public class DefaultPagination<T> implements Pagination<T> {
     private final Long totalNbRecords;
     private final Long maxNbRecords;
     private final Iterator<T> delegateIterator;
+    // Opaque token to resume the traversal from the next page, see DefaultPaginationSqlDaoHelper
+    private final String nextPageToken;
 
     // Builder when the streaming API can't be used (should only be used for tests)
     // Notes: elements should be the entire records set (regardless of filtering) otherwise maxNbRecords won't be accurate
@@ -51,7 +53,8 @@ public class DefaultPagination<T> implements Pagination<T> {
 
     // Constructor for DAO -> API bridge
     public DefaultPagination(final Pagination original, final Long limit, final Iterator<T> delegate) {
-        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate);
+        this(original.getCurrentOffset(), limit, original.getTotalNbRecords(), original.getMaxNbRecords(), delegate,
+             original instanceof DefaultPagination ? ((DefaultPagination) original).getNextPageToken() : null);
     }
 
     // Constructor for DAO getAll calls
@@ -62,11 +65,18 @@ public class DefaultPagination<T> implements Pagination<T> {
     public DefaultPagination(final Long currentOffset, final Long limit,
                              @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
                              final Iterator<T> delegateIterator) {
+        this(currentOffset, limit, totalNbRecords, maxNbRecords, delegateIterator, null);
+    }
+
+    public DefaultPagination(final Long currentOffset, final Long limit,
+                             @Nullable final Long totalNbRecords, @Nullable final Long maxNbRecords,
+                             final Iterator<T> delegateIterator, @Nullable final String nextPageToken) {
         this.currentOffset = currentOffset;
         this.limit = limit;
         this.totalNbRecords = totalNbRecords;
         this.maxNbRecords = maxNbRecords;
         this.delegateIterator = delegateIterator;
+        this.nextPageToken = nextPageToken;
     }
 
     @Override
@@ -104,6 +114,10 @@ public class DefaultPagination<T> implements Pagination<T> {
         return totalNbRecords;
     }
 
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("DefaultPagination{");
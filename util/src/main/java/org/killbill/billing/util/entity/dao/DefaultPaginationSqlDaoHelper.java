@@ -17,12 +17,18 @@
 package org.killbill.billing.util.entity.dao;
 
 import java.util.Iterator;
+import java.util.List;
 
+import javax.annotation.Nullable;
+
+import org.killbill.billing.callcontext.InternalPaginationTenantContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
 
+import com.google.common.collect.ImmutableList;
+
 public class DefaultPaginationSqlDaoHelper {
 
     private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
@@ -36,25 +42,94 @@ public class DefaultPaginationSqlDaoHelper {
                                                                                                                      final Long offset,
                                                                                                                      final Long limit,
                                                                                                                      final InternalTenantContext context) {
-        // Note: the connection will be busy as we stream the results out: hence we cannot use
-        // SQL_CALC_FOUND_ROWS / FOUND_ROWS on the actual query.
-        // We still need to know the actual number of results, mainly for the UI so that it knows if it needs to fetch
-        // more pages.
-        final Long count = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Long>() {
-            @Override
-            public Long inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
-                final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClazz);
-                return paginationIteratorBuilder.getCount((S) sqlDao, context);
+        return getPagination(sqlDaoClazz, null, paginationIteratorBuilder, offset, limit, context);
+    }
+
+    /**
+     * Seek (keyset) pagination: for paginated calls (see InternalPaginationTenantContext), each full page carries a
+     * token with the record_id of its last row (see PaginationToken), so that the next page (offset + limit) can be
+     * fetched with a "record_id > :fromRecordId" query instead of scanning (and throwing away) the first offset rows.
+     * The counts computed for the first page are carried over as estimates. Requests without a (matching) token fall back
+     * to offset pagination.
+     *
+     * @param paginationKey key identifying the query (e.g. the search key). Seek pagination is disabled if null or if the
+     *                      builder doesn't support it.
+     */
+    public <E extends Entity, M extends EntityModelDao<E>, S extends EntitySqlDao<M, E>> Pagination<M> getPagination(final Class<? extends EntitySqlDao<M, E>> sqlDaoClazz,
+                                                                                                                     @Nullable final String paginationKey,
+                                                                                                                     final PaginationIteratorBuilder<M, E, S> paginationIteratorBuilder,
+                                                                                                                     final Long offset,
+                                                                                                                     final Long limit,
+                                                                                                                     final InternalTenantContext context) {
+        final InternalPaginationTenantContext paginationContext = context instanceof InternalPaginationTenantContext ? (InternalPaginationTenantContext) context : null;
+        final String queryKey = paginationKey == null || paginationContext == null || offset == null || limit == null ? null : sqlDaoClazz.getName() + "#" + paginationKey;
+        // The page needs to be buffered to compute the token before the results are streamed out
+        final boolean withNextPageToken = queryKey != null && limit > 0 && limit <= paginationContext.getMaxPageSizeForToken();
+
+        final PaginationToken token = queryKey == null ? null : PaginationToken.decode(paginationContext.getPaginationToken(), queryKey, context.getTenantRecordId(), offset);
+        if (token != null) {
+            final EntitySqlDao<M, E> sqlDao = transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz);
+            final Iterator<M> results = paginationIteratorBuilder.build((S) sqlDao, token.getLastRecordId(), limit, context);
+            if (results != null) {
+                // No count query: the counts computed when the traversal started are good enough estimates
+                return buildPagination(queryKey, offset, limit, token.getCount(), token.getTotalCount(), results, withNextPageToken, context);
             }
-        });
+        }
 
-        // We usually always want to wrap our queries in an EntitySqlDaoTransactionWrapper... except here.
-        // Since we want to stream the results out, we don't want to auto-commit when this method returns.
-        final EntitySqlDao<M, E> sqlDao = transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz);
-        final Long totalCount = sqlDao.getCount(context);
-        final Iterator<M> results = paginationIteratorBuilder.build((S) sqlDao, limit, context);
+        final Long count;
+        final Long totalCount;
+        final Iterator<M> results;
+        if (paginationContext != null && !paginationContext.isWithCount()) {
+            // Counts have been disabled: clients need to stop when a page isn't full
+            count = null;
+            totalCount = null;
+            results = paginationIteratorBuilder.build((S) transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz), limit, context);
+        } else {
+            // Note: the connection will be busy as we stream the results out: hence we cannot use
+            // SQL_CALC_FOUND_ROWS / FOUND_ROWS on the actual query.
+            // We still need to know the actual number of results, mainly for the UI so that it knows if it needs to fetch
+            // more pages.
+            count = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Long>() {
+                @Override
+                public Long inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClazz);
+                    return paginationIteratorBuilder.getCount((S) sqlDao, context);
+                }
+            });
 
-        return new DefaultPagination<M>(offset, limit, count, totalCount, results);
+            // We usually always want to wrap our queries in an EntitySqlDaoTransactionWrapper... except here.
+            // Since we want to stream the results out, we don't want to auto-commit when this method returns.
+            final EntitySqlDao<M, E> sqlDao = transactionalSqlDao.onDemandForStreamingResults(sqlDaoClazz);
+            totalCount = sqlDao.getCount(context);
+            results = paginationIteratorBuilder.build((S) sqlDao, limit, context);
+        }
+
+        return buildPagination(queryKey, offset, limit, count, totalCount, results, withNextPageToken, context);
+    }
+
+    private <M extends EntityModelDao<?>> Pagination<M> buildPagination(final String queryKey,
+                                                                        final Long offset,
+                                                                        final Long limit,
+                                                                        @Nullable final Long count,
+                                                                        @Nullable final Long totalCount,
+                                                                        final Iterator<M> results,
+                                                                        final boolean withNextPageToken,
+                                                                        final InternalTenantContext context) {
+        if (!withNextPageToken) {
+            return new DefaultPagination<M>(offset, limit, count, totalCount, results);
+        }
+
+        // Bounded by the max page size for tokens
+        final List<M> page = ImmutableList.<M>copyOf(results);
+        final M last = page.isEmpty() ? null : page.get(page.size() - 1);
+        final String nextPageToken;
+        if (page.size() == limit && last.getRecordId() != null) {
+            // Full page: the next one can be fetched by seeking past its last row
+            nextPageToken = new PaginationToken(queryKey, context.getTenantRecordId(), offset + limit, last.getRecordId(), count, totalCount).encode();
+        } else {
+            nextPageToken = null;
+        }
+        return new DefaultPagination<M>(offset, limit, count, totalCount, page.iterator(), nextPageToken);
     }
 
     public abstract static class PaginationIteratorBuilder<M extends EntityModelDao<E>, E extends Entity, S extends EntitySqlDao<M, E>> {
@@ -62,5 +137,15 @@ public class DefaultPaginationSqlDaoHelper {
         public abstract Long getCount(final S sqlDao, final InternalTenantContext context);
 
         public abstract Iterator<M> build(final S sqlDao, final Long limit, final InternalTenantContext context);
+
+        /**
+         * Override to support seek pagination: return (at most) limit rows with a record_id strictly greater than
+         * fromRecordId, ordered by record_id. Queries not ordered by record_id must not override it.
+         *
+         * @return the results, or null if seek pagination isn't supported
+         */
+        public Iterator<M> build(final S sqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+            return null;
+        }
     }
 }
@@ -133,7 +133,10 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
 
     @Override
     public Pagination<M> get(final Long offset, final Long limit, final InternalTenantContext context) {
+        // Seek pagination relies on the record_id ordering
+        final String paginationKey = "record_id".equals(getNaturalOrderingColumns()) ? "get" : null;
         return paginationHelper.getPagination(realSqlDao,
+                                              paginationKey,
                                               new PaginationIteratorBuilder<M, E, EntitySqlDao<M, E>>() {
                                                   @Override
                                                   public Long getCount(final EntitySqlDao<M, E> sqlDao, final InternalTenantContext context) {
@@ -144,6 +147,11 @@ public abstract class EntityDaoBase<M extends EntityModelDao<E>, E extends Entit
                                                   public Iterator<M> build(final EntitySqlDao<M, E> sqlDao, final Long limit, final InternalTenantContext context) {
                                                       return sqlDao.get(offset, limit, getNaturalOrderingColumns(), context);
                                                   }
+
+                                                  @Override
+                                                  public Iterator<M> build(final EntitySqlDao<M, E> sqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return sqlDao.getFromRecordId(fromRecordId, limit, context);
+                                                  }
                                               },
                                               offset,
                                               limit,
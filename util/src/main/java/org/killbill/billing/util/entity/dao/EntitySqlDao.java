@@ -18,6 +18,7 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -34,6 +35,7 @@ import org.killbill.billing.util.entity.Entity;
 import org.killbill.commons.jdbi.statement.SmartFetchSize;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
@@ -75,11 +77,74 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                               @Bind("rowCount") final Long rowCount,
                               @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> searchFromRecordId(@Bind("searchKey") final String searchKey,
+                                          @Bind("likeSearchKey") final String likeSearchKey,
+                                          @Bind("fromRecordId") final Long fromRecordId,
+                                          @Bind("rowCount") final Long rowCount,
+                                          @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getSearchCount(@Bind("searchKey") final String searchKey,
                                @Bind("likeSearchKey") final String likeSearchKey,
                                @BindBean final InternalTenantContext context);
 
+    // Variants of the search calls above narrowing the rows to verify through the search_index table (see SearchableModelDao)
+
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> search(@Bind("searchKey") final String searchKey,
+                              @Bind("likeSearchKey") final String likeSearchKey,
+                              @SearchIndexKeysBinder final Collection<String> searchIndexKeys,
+                              @Define("searchUnindexedRows") final boolean searchUnindexedRows,
+                              @Bind("offset") final Long offset,
+                              @Bind("rowCount") final Long rowCount,
+                              @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> searchFromRecordId(@Bind("searchKey") final String searchKey,
+                                          @Bind("likeSearchKey") final String likeSearchKey,
+                                          @SearchIndexKeysBinder final Collection<String> searchIndexKeys,
+                                          @Define("searchUnindexedRows") final boolean searchUnindexedRows,
+                                          @Bind("fromRecordId") final Long fromRecordId,
+                                          @Bind("rowCount") final Long rowCount,
+                                          @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    public Long getSearchCount(@Bind("searchKey") final String searchKey,
+                               @Bind("likeSearchKey") final String likeSearchKey,
+                               @SearchIndexKeysBinder final Collection<String> searchIndexKeys,
+                               @Define("searchUnindexedRows") final boolean searchUnindexedRows,
+                               @BindBean final InternalTenantContext context);
+
+    @SqlBatch
+    public void insertSearchIndexKeysFromTransaction(@Bind("tableName") final String tableName,
+                                                     @Bind("targetRecordId") final Long targetRecordId,
+                                                     @Bind("searchKey") final Iterable<String> searchKeys,
+                                                     @BindBean final InternalCallContext context);
+
+    @SqlUpdate
+    public void deleteSearchIndexKeysFromTransaction(@Bind("tableName") final String tableName,
+                                                     @Bind("targetRecordId") final Long targetRecordId,
+                                                     @BindBean final InternalCallContext context);
+
+    // Backfill of the rows created before the search index (see SearchIndexBackfill)
+
+    @SqlQuery
+    public Long getSearchIndexBoundaryForUpdate();
+
+    @SqlUpdate
+    public void updateSearchIndexBoundary(@Bind("firstIndexedRecordId") final Long firstIndexedRecordId);
+
+    @SqlUpdate
+    public void deleteSearchIndexBoundary();
+
+    @SqlQuery
+    public List<M> getByRecordIdRangeForSearchIndexBackfill(@Bind("fromRecordId") final Long fromRecordId,
+                                                            @Bind("toRecordId") final Long toRecordId);
+
     @SqlQuery
     @SmartFetchSize(shouldStream = true)
     public Iterator<M> getAll(@BindBean final InternalTenantContext context);
@@ -91,6 +156,12 @@ public interface EntitySqlDao<M extends EntityModelDao<E>, E extends Entity> ext
                            @Define("orderBy") final String orderBy,
                            @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    @SmartFetchSize(shouldStream = true)
+    public Iterator<M> getFromRecordId(@Bind("fromRecordId") final Long fromRecordId,
+                                       @Bind("rowCount") final Long rowCount,
+                                       @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getCount(@BindBean final InternalTenantContext context);
 
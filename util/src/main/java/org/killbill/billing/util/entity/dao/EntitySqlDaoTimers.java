@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Always-on timers of the SqlDao methods, one per SqlDao class and method (e.g. AccountSqlDao.getById). They are
+ * looked up once and shared by all transactions of a given EntitySqlDaoTransactionalJdbiWrapper.
+ */
+public class EntitySqlDaoTimers {
+
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timersBySqlDaoClass = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Timer>>();
+
+    public EntitySqlDaoTimers(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public Timer getTimer(final Class<?> sqlDaoClass, final Method method) {
+        // The same method (e.g. EntitySqlDao.getById) is shared by all SqlDao classes, hence the two levels
+        ConcurrentMap<Method, Timer> timers = timersBySqlDaoClass.get(sqlDaoClass);
+        if (timers == null) {
+            timers = new ConcurrentHashMap<Method, Timer>();
+            final ConcurrentMap<Method, Timer> existingTimers = timersBySqlDaoClass.putIfAbsent(sqlDaoClass, timers);
+            if (existingTimers != null) {
+                timers = existingTimers;
+            }
+        }
+
+        Timer timer = timers.get(method);
+        if (timer == null) {
+            // MetricRegistry#timer returns the existing timer if another thread (or wrapper) registered it first
+            timer = metricRegistry.timer(MetricRegistry.name(sqlDaoClass, method.getName()));
+            timers.putIfAbsent(method, timer);
+        }
+        return timer;
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -64,6 +65,7 @@ import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
@@ -89,6 +91,7 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final Clock clock;
     private final NonEntityDao nonEntityDao;
+    private final EntitySqlDaoTimers sqlDaoTimers;
     private final Profiling prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
@@ -97,18 +100,22 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                                 final Clock clock,
                                                 // Special DAO that don't require caching can invoke EntitySqlDaoWrapperInvocationHandler with no caching (e.g NoCachingTenantDao)
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
-                                                @Nullable final NonEntityDao nonEntityDao) {
+                                                @Nullable final NonEntityDao nonEntityDao,
+                                                @Nullable final EntitySqlDaoTimers sqlDaoTimers) {
         this.sqlDaoClass = sqlDaoClass;
         this.sqlDao = sqlDao;
         this.handle = handle;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
+        this.sqlDaoTimers = sqlDaoTimers;
         this.prof = new Profiling<Object>();
     }
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        // Unlike the per-request profiling data, these timers are always on (one per SqlDao method, e.g. AccountSqlDao.getById)
+        final Timer.Context timerContext = sqlDaoTimers == null ? null : sqlDaoTimers.getTimer(sqlDaoClass, method).time();
         try {
             return prof.executeWithProfiling(ProfilingFeatureType.DAO, sqlDaoClass.getSimpleName() + ":" + method.getName(), new WithProfilingCallback() {
                 @Override
@@ -146,6 +153,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
             } else {
                 errorDuringTransaction(t, method);
             }
+        } finally {
+            if (timerContext != null) {
+                timerContext.stop();
+            }
         }
 
         // Never reached
@@ -385,6 +396,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
 
                 // Make sure to re-hydrate the object (especially needed for create calls)
                 insertAudits(tableName, entityRecordId, historyRecordId, changeType, context);
+
+                if (entity instanceof SearchableModelDao) {
+                    updateSearchIndex(tableName, entityRecordId, entities.get(entityId), entity, changeType, context);
+                }
                 return null;
             }
         });
@@ -488,6 +503,36 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         }
     }
 
+    private void updateSearchIndex(final TableName tableName, final Long entityRecordId, @Nullable final M previousEntity, final M entity,
+                                   final ChangeType changeType, final InternalCallContext contextMaybeWithoutAccountRecordId) {
+        // Deleted rows are soft deleted and still returned by the search queries
+        if (ChangeType.DELETE.equals(changeType)) {
+            return;
+        }
+
+        final Set<String> searchIndexKeys = SearchIndexKeys.forValues(((SearchableModelDao) entity).getSearchableValues());
+        if (previousEntity != null) {
+            if (searchIndexKeys.equals(SearchIndexKeys.forValues(((SearchableModelDao) previousEntity).getSearchableValues()))) {
+                // Most updates don't touch the searchable values
+                return;
+            }
+            sqlDao.deleteSearchIndexKeysFromTransaction(tableName.getTableName(), entityRecordId, contextMaybeWithoutAccountRecordId);
+        }
+
+        if (searchIndexKeys.isEmpty()) {
+            return;
+        }
+
+        final InternalCallContext context;
+        // Populate the account record id when creating the account record
+        if (TableName.ACCOUNT.equals(tableName) && ChangeType.INSERT.equals(changeType)) {
+            context = new InternalCallContext(contextMaybeWithoutAccountRecordId, entityRecordId);
+        } else {
+            context = contextMaybeWithoutAccountRecordId;
+        }
+        sqlDao.insertSearchIndexKeysFromTransaction(tableName.getTableName(), entityRecordId, searchIndexKeys, context);
+    }
+
     private String buildCacheKey(final Map<Integer, Object> keyPieces) {
         final StringBuilder cacheKey = new StringBuilder();
         for (int i = 0; i < keyPieces.size(); i++) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Continuation state of a seek paginated query, handed out to the client with each full page (opaque, URL safe).
+ * <p/>
+ * It is self-contained, so that any node can serve the next page: the record_id of the last row returned,
+ * the offset of the next page and the counts computed when the traversal started (re-used as estimates).
+ * The query key hash and the tenant are used to ignore tokens which don't match the current request.
+ */
+final class PaginationToken {
+
+    private static final String VERSION = "1";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '|';
+
+    private final int queryHash;
+    private final Long tenantRecordId;
+    private final long offset;
+    private final long lastRecordId;
+    private final Long count;
+    private final Long totalCount;
+
+    PaginationToken(final String queryKey, @Nullable final Long tenantRecordId, final long offset, final long lastRecordId,
+                    @Nullable final Long count, @Nullable final Long totalCount) {
+        this(queryKey.hashCode(), tenantRecordId, offset, lastRecordId, count, totalCount);
+    }
+
+    private PaginationToken(final int queryHash, @Nullable final Long tenantRecordId, final long offset, final long lastRecordId,
+                            @Nullable final Long count, @Nullable final Long totalCount) {
+        this.queryHash = queryHash;
+        this.tenantRecordId = tenantRecordId;
+        this.offset = offset;
+        this.lastRecordId = lastRecordId;
+        this.count = count;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return the token, or null if it is missing, malformed or issued for a different query, tenant or offset
+     */
+    static PaginationToken decode(@Nullable final String encoded, final String queryKey, @Nullable final Long tenantRecordId, final long offset) {
+        if (Strings.isNullOrEmpty(encoded)) {
+            return null;
+        }
+
+        final PaginationToken token;
+        try {
+            final List<String> parts = ImmutableList.<String>copyOf(Splitter.on(SEPARATOR).split(new String(BaseEncoding.base64Url().omitPadding().decode(encoded), UTF_8)));
+            if (parts.size() != 7 || !VERSION.equals(parts.get(0))) {
+                return null;
+            }
+            token = new PaginationToken(Integer.parseInt(parts.get(1)),
+                                        toLong(parts.get(2)),
+                                        Long.parseLong(parts.get(3)),
+                                        Long.parseLong(parts.get(4)),
+                                        toLong(parts.get(5)),
+                                        toLong(parts.get(6)));
+        } catch (final IllegalArgumentException e) {
+            // Includes NumberFormatException
+            return null;
+        }
+
+        if (token.queryHash != queryKey.hashCode() || !Objects.equal(token.tenantRecordId, tenantRecordId) || token.offset != offset) {
+            return null;
+        }
+        return token;
+    }
+
+    String encode() {
+        final String raw = Joiner.on(SEPARATOR).useForNull("").join(VERSION, queryHash, tenantRecordId, offset, lastRecordId, count, totalCount);
+        return BaseEncoding.base64Url().omitPadding().encode(raw.getBytes(UTF_8));
+    }
+
+    long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    Long getCount() {
+        return count;
+    }
+
+    Long getTotalCount() {
+        return totalCount;
+    }
+
+    private static Long toLong(final String value) {
+        return value.isEmpty() ? null : Long.valueOf(value);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.List;
+import java.util.Set;
+
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backfill of the search index for the rows created before it existed (see search_index_migration.sql).
+ * <p/>
+ * The rows below the boundary of the table are indexed by chunks of record ids, from the most recent ones down,
+ * one transaction per chunk, and the boundary is lowered after each chunk: an interrupted backfill resumes where
+ * it stopped, and the searches keep scanning the rows not indexed yet. The boundary is deleted once done, after
+ * which the searches stop scanning the unindexed rows altogether.
+ */
+public class SearchIndexBackfill<M extends EntityModelDao<E>, E extends Entity> {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexBackfill.class);
+
+    private static final long NB_ROWS_PER_CHUNK = 1000;
+    private static final int MAX_ATTEMPTS_PER_CHUNK = 3;
+
+    private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
+    private final Class<? extends EntitySqlDao<M, E>> sqlDaoClass;
+    private final TableName tableName;
+
+    // Until the backfill has run, assume there are unindexed rows to scan
+    private volatile boolean unindexedRows = true;
+
+    public SearchIndexBackfill(final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao, final Class<? extends EntitySqlDao<M, E>> sqlDaoClass, final TableName tableName) {
+        this.transactionalSqlDao = transactionalSqlDao;
+        this.sqlDaoClass = sqlDaoClass;
+        this.tableName = tableName;
+    }
+
+    public boolean hasUnindexedRows() {
+        return unindexedRows;
+    }
+
+    public void backfill() {
+        while (backfillNextChunk()) {
+            // Keep going until the boundary row is gone
+        }
+        unindexedRows = false;
+    }
+
+    // Returns false when there is nothing left to backfill
+    private boolean backfillNextChunk() {
+        int attempt = 1;
+        while (true) {
+            try {
+                return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Boolean>() {
+                    @Override
+                    public Boolean inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                        final EntitySqlDao<M, E> sqlDao = entitySqlDaoWrapperFactory.become(sqlDaoClass);
+                        final Long firstIndexedRecordId = sqlDao.getSearchIndexBoundaryForUpdate();
+                        if (firstIndexedRecordId == null) {
+                            return false;
+                        }
+
+                        if (firstIndexedRecordId <= 1) {
+                            sqlDao.deleteSearchIndexBoundary();
+                            log.info("Backfill of the search index for table {} done", tableName);
+                            return false;
+                        }
+
+                        final Long fromRecordId = Math.max(1, firstIndexedRecordId - NB_ROWS_PER_CHUNK);
+                        final List<M> entities = sqlDao.getByRecordIdRangeForSearchIndexBackfill(fromRecordId, firstIndexedRecordId - 1);
+                        for (final M entity : entities) {
+                            indexEntity(sqlDao, entity);
+                        }
+                        sqlDao.updateSearchIndexBoundary(fromRecordId);
+
+                        log.info("Backfilled the search index for table {} down to record id {}", tableName, fromRecordId);
+                        return true;
+                    }
+                });
+            } catch (final RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS_PER_CHUNK) {
+                    throw e;
+                }
+                log.warn("Failed to backfill a chunk of the search index for table " + tableName + ", retrying", e);
+                attempt++;
+            }
+        }
+    }
+
+    private void indexEntity(final EntitySqlDao<M, E> sqlDao, final M entity) {
+        // The account rows are their own account
+        final Long accountRecordId = TableName.ACCOUNT.equals(tableName) ? entity.getRecordId() : entity.getAccountRecordId();
+        final InternalCallContext context = new InternalCallContext(entity.getTenantRecordId(), accountRecordId, null, SearchIndexBackfill.class.getSimpleName(),
+                                                                    CallOrigin.INTERNAL, UserType.SYSTEM, null, null, null, null);
+
+        // Rows updated since the migration may already have been (partially) indexed: start over to avoid duplicate keys
+        sqlDao.deleteSearchIndexKeysFromTransaction(tableName.getTableName(), entity.getRecordId(), context);
+
+        final Set<String> searchIndexKeys = SearchIndexKeys.forValues(((SearchableModelDao) entity).getSearchableValues());
+        if (!searchIndexKeys.isEmpty()) {
+            sqlDao.insertSearchIndexKeysFromTransaction(tableName.getTableName(), entity.getRecordId(), searchIndexKeys, context);
+        }
+    }
+}
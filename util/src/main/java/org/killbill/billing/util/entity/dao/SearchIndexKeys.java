@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keys (trigrams) stored in the search_index table.
+ * <p/>
+ * Values are lower cased and stripped of their accents before being split, so a row matching a like clause
+ * always contains all the keys of the search key: the index lookup returns a superset of the matching rows,
+ * which are then filtered by the original searchQuery.
+ */
+public class SearchIndexKeys {
+
+    public static final int KEY_LENGTH = 3;
+
+    // Bound the number of parameters (and index lookups) for long search keys: any subset of the keys still matches a superset of the rows
+    public static final int MAX_SEARCH_KEYS = 20;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    // Wildcards and escape character for like clauses
+    private static final Pattern LIKE_SPECIAL_CHARACTERS = Pattern.compile("[%_\\\\]+");
+
+    private SearchIndexKeys() {}
+
+    /**
+     * @param values searchable values of an entity (see SearchableModelDao)
+     * @return the keys to index for these values
+     */
+    public static Set<String> forValues(final Iterable<String> values) {
+        final Set<String> keys = new TreeSet<String>();
+        for (final String value : values) {
+            if (value != null) {
+                addKeys(normalize(value), keys);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @param searchKey raw search key, as given to the search APIs
+     * @return the keys to lookup, empty if the search key is too short to use the index
+     */
+    public static Set<String> forSearchKey(@Nullable final String searchKey) {
+        final Set<String> keys = new TreeSet<String>();
+        if (searchKey == null) {
+            return keys;
+        }
+
+        for (final String segment : LIKE_SPECIAL_CHARACTERS.split(normalize(searchKey))) {
+            addKeys(segment, keys);
+        }
+
+        if (keys.size() <= MAX_SEARCH_KEYS) {
+            return keys;
+        }
+        final Set<String> boundedKeys = new TreeSet<String>();
+        for (final String key : keys) {
+            if (boundedKeys.size() == MAX_SEARCH_KEYS) {
+                break;
+            }
+            boundedKeys.add(key);
+        }
+        return boundedKeys;
+    }
+
+    private static String normalize(final String value) {
+        return DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static void addKeys(final String normalizedValue, final Set<String> keys) {
+        for (int i = 0; i + KEY_LENGTH <= normalizedValue.length(); i++) {
+            keys.add(normalizedValue.substring(i, i + KEY_LENGTH));
+        }
+    }
+}
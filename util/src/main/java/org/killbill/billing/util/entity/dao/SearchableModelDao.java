@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.List;
+
+/**
+ * ModelDao classes whose table is searched with like clauses (see the searchQuery template). The search_index
+ * table is maintained by EntitySqlDaoWrapperInvocationHandler for these, on create and update calls.
+ */
+public interface SearchableModelDao {
+
+    /**
+     * @return the values of the columns matched by like clauses in the searchQuery template (may contain nulls)
+     */
+    public List<String> getSearchableValues();
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.api;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.api.ColumnInfo;
+import org.killbill.billing.util.config.ExportConfig;
+import org.killbill.billing.util.export.api.TenantExport.State;
+import org.killbill.billing.util.export.dao.CSVExportOutputStream;
+import org.killbill.billing.util.export.dao.DatabaseExportDao;
+import org.killbill.billing.util.export.dao.DatabaseExportDao.AccountRecordIdRange;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports the account specific tables of a tenant, under {@code <org.killbill.export.dir>/<tenantRecordId>/<exportName>}.
+ * <p/>
+ * Accounts are split into partitions of {@code org.killbill.export.partition.size} accounts (see
+ * {@link DatabaseExportDao#getAccountRecordIdRanges}), exported in parallel by {@code org.killbill.export.threads.nb}
+ * threads: each partition is written to a temporary directory (one gzipped CSV file per non empty table), which is
+ * renamed once complete. Memory usage is therefore bounded by the partition size, and an interrupted export can be
+ * resumed by re-running it: the export parameters (since date, last account included) are stored on the first run,
+ * and complete partitions are skipped.
+ * <p/>
+ * A run holds a file lock on the export directory, so that two runs of the same export (in this server or in another
+ * one sharing the export directory) never write (or discard) the same partitions. Background exports are run one at a
+ * time, and all exports share the same partition threads.
+ */
+public class DefaultTenantExportInternalApi implements TenantExportInternalApi {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultTenantExportInternalApi.class);
+
+    private static final String EXPORT_THREAD_PREFIX = "export-th-";
+    private static final String EXPORT_JOB_THREAD_PREFIX = "export-job-th-";
+    private static final String EXPORT_PROPERTIES_FILE = "export.properties";
+    private static final String EXPORT_LOCK_FILE = "export.lock";
+    private static final String SINCE_PROPERTY = "since";
+    private static final String STARTED_DATE_PROPERTY = "startedDate";
+    private static final String COMPLETED_DATE_PROPERTY = "completedDate";
+    private static final String MAX_ACCOUNT_RECORD_ID_PROPERTY = "maxAccountRecordId";
+    private static final String IN_PROGRESS_SUFFIX = ".tmp";
+    private static final String CHUNK_FILE_SUFFIX = ".csv.gz";
+    // No path separator, and not only dots
+    private static final Pattern EXPORT_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_\\-.]*[a-zA-Z0-9_\\-][a-zA-Z0-9_\\-.]*");
+    private static final Pattern PARTITION_DIRECTORY_PATTERN = Pattern.compile("[0-9]+-[0-9]+");
+
+    private final DatabaseExportDao exportDao;
+    private final ExportConfig exportConfig;
+    private final Clock clock;
+    private final ExecutorService partitionExecutor;
+    private final ExecutorService jobExecutor;
+    // Export directories of the background exports queued or running
+    private final Set<String> pendingExports = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Inject
+    public DefaultTenantExportInternalApi(final DatabaseExportDao exportDao, final ExportConfig exportConfig, final Clock clock) {
+        this.exportDao = exportDao;
+        this.exportConfig = exportConfig;
+        this.clock = clock;
+        this.partitionExecutor = createExecutor(exportConfig.getExportThreadNb(), EXPORT_THREAD_PREFIX);
+        this.jobExecutor = createExecutor(1, EXPORT_JOB_THREAD_PREFIX);
+    }
+
+    @Override
+    public TenantExport exportDataForTenant(final String exportName, @Nullable final DateTime since, final InternalTenantContext context) throws IOException {
+        final File exportDirectory = getExportDirectory(exportName, context);
+        if (!exportDirectory.isDirectory() && !exportDirectory.mkdirs()) {
+            throw new IOException("Unable to create export directory " + exportDirectory);
+        }
+
+        final FileLock lock = tryLockExport(exportDirectory);
+        if (lock == null) {
+            throw new IllegalStateException("Export " + exportName + " is already running");
+        }
+        try {
+            final Properties exportProperties = loadOrCreateExportProperties(exportDirectory, since, context);
+            final long maxAccountRecordId = Long.valueOf(exportProperties.getProperty(MAX_ACCOUNT_RECORD_ID_PROPERTY));
+
+            final List<AccountRecordIdRange> ranges = exportDao.getAccountRecordIdRanges(exportConfig.getExportPartitionSize(), maxAccountRecordId, context);
+            final List<List<ColumnInfo>> accountTables = exportDao.getAccountTables();
+            exportPartitions(exportDirectory, ranges, accountTables, since, context);
+
+            if (exportProperties.getProperty(COMPLETED_DATE_PROPERTY) == null) {
+                exportProperties.setProperty(COMPLETED_DATE_PROPERTY, clock.getUTCNow().toString());
+                storeExportProperties(exportDirectory, exportProperties);
+            }
+            return createTenantExport(exportName, State.COMPLETED, exportDirectory, exportProperties);
+        } finally {
+            // Closing the channel releases the lock
+            lock.channel().close();
+        }
+    }
+
+    @Override
+    public TenantExport startExportForTenant(final String exportName, @Nullable final DateTime since, final InternalTenantContext context) throws IOException {
+        final File exportDirectory = getExportDirectory(exportName, context);
+        if (!exportDirectory.isDirectory() && !exportDirectory.mkdirs()) {
+            throw new IOException("Unable to create export directory " + exportDirectory);
+        }
+
+        if (!pendingExports.add(exportDirectory.getAbsolutePath())) {
+            // Already queued or running
+            return getExportForTenant(exportName, context);
+        }
+
+        boolean submitted = false;
+        try {
+            final FileLock lock = tryLockExport(exportDirectory);
+            if (lock == null) {
+                // Running in another server
+                return getExportForTenant(exportName, context);
+            }
+            try {
+                // Validate the since date (and pin the export parameters) before returning
+                loadOrCreateExportProperties(exportDirectory, since, context);
+            } finally {
+                lock.channel().close();
+            }
+
+            jobExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        exportDataForTenant(exportName, since, context);
+                    } catch (final Exception e) {
+                        log.warn("Failed to export to " + exportDirectory, e);
+                    } finally {
+                        pendingExports.remove(exportDirectory.getAbsolutePath());
+                    }
+                    return null;
+                }
+            });
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                pendingExports.remove(exportDirectory.getAbsolutePath());
+            }
+        }
+
+        return getExportForTenant(exportName, context);
+    }
+
+    @Override
+    public TenantExport getExportForTenant(final String exportName, final InternalTenantContext context) throws IOException {
+        final File exportDirectory = getExportDirectory(exportName, context);
+        final Properties exportProperties = loadExportProperties(exportDirectory);
+        if (exportProperties == null) {
+            return null;
+        }
+
+        final State state;
+        if (pendingExports.contains(exportDirectory.getAbsolutePath()) || isExportLocked(exportDirectory)) {
+            state = State.RUNNING;
+        } else if (exportProperties.getProperty(COMPLETED_DATE_PROPERTY) != null) {
+            state = State.COMPLETED;
+        } else {
+            state = State.STOPPED;
+        }
+        return createTenantExport(exportName, state, exportDirectory, exportProperties);
+    }
+
+    private File getExportDirectory(final String exportName, final InternalTenantContext context) {
+        if (exportName == null || !EXPORT_NAME_PATTERN.matcher(exportName).matches()) {
+            throw new IllegalArgumentException("Invalid export name " + exportName);
+        }
+        return new File(new File(exportConfig.getExportDirectory(), String.valueOf(context.getTenantRecordId())), exportName);
+    }
+
+    private TenantExport createTenantExport(final String exportName, final State state, final File exportDirectory, final Properties exportProperties) {
+        final String since = exportProperties.getProperty(SINCE_PROPERTY);
+        final DateTime startedDate = new DateTime(exportProperties.getProperty(STARTED_DATE_PROPERTY), DateTimeZone.UTC);
+        return new TenantExport(exportName, state, exportDirectory.getAbsolutePath(), since == null ? null : new DateTime(since, DateTimeZone.UTC), startedDate, getChunkFiles(exportDirectory));
+    }
+
+    // Chunk files of the complete partitions, in account record id order
+    private List<String> getChunkFiles(final File exportDirectory) {
+        final List<String> partitions = new ArrayList<String>();
+        final String[] files = exportDirectory.list();
+        for (final String file : files == null ? new String[0] : files) {
+            if (PARTITION_DIRECTORY_PATTERN.matcher(file).matches()) {
+                partitions.add(file);
+            }
+        }
+        Collections.sort(partitions, new Comparator<String>() {
+            @Override
+            public int compare(final String first, final String second) {
+                return Long.valueOf(first.substring(0, first.indexOf('-'))).compareTo(Long.valueOf(second.substring(0, second.indexOf('-'))));
+            }
+        });
+
+        final List<String> chunkFiles = new ArrayList<String>();
+        for (final String partition : partitions) {
+            final String[] partitionFiles = new File(exportDirectory, partition).list();
+            Arrays.sort(partitionFiles);
+            for (final String partitionFile : partitionFiles) {
+                chunkFiles.add(partition + File.separator + partitionFile);
+            }
+        }
+        return chunkFiles;
+    }
+
+    // Returns null if the export is running, in this server or in another one
+    private synchronized FileLock tryLockExport(final File exportDirectory) throws IOException {
+        final FileChannel channel = new RandomAccessFile(new File(exportDirectory, EXPORT_LOCK_FILE), "rw").getChannel();
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            // Held by this server
+        } finally {
+            if (lock == null) {
+                channel.close();
+            }
+        }
+        return lock;
+    }
+
+    private boolean isExportLocked(final File exportDirectory) throws IOException {
+        final FileLock lock = tryLockExport(exportDirectory);
+        if (lock == null) {
+            return true;
+        }
+        lock.channel().close();
+        return false;
+    }
+
+    private void exportPartitions(final File exportDirectory, final List<AccountRecordIdRange> ranges, final List<List<ColumnInfo>> accountTables,
+                                  @Nullable final DateTime since, final InternalTenantContext context) throws IOException {
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(ranges.size());
+        try {
+            for (final AccountRecordIdRange range : ranges) {
+                futures.add(partitionExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        exportPartition(exportDirectory, range, accountTables, since, context);
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while exporting to " + exportDirectory);
+                } catch (final ExecutionException e) {
+                    throw new IOException("Failed to export to " + exportDirectory, e.getCause());
+                }
+            }
+        } finally {
+            // On failure, don't keep exporting once the lock is released
+            for (final Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void exportPartition(final File exportDirectory, final AccountRecordIdRange range, final List<List<ColumnInfo>> accountTables,
+                                 @Nullable final DateTime since, final InternalTenantContext context) throws IOException {
+        final File partitionDirectory = new File(exportDirectory, range.toString());
+        if (partitionDirectory.isDirectory()) {
+            // Exported by a previous run
+            return;
+        }
+
+        // Discard any leftover from an interrupted run
+        final File inProgressDirectory = new File(exportDirectory, range.toString() + IN_PROGRESS_SUFFIX);
+        deleteDirectory(inProgressDirectory);
+        if (!inProgressDirectory.mkdirs()) {
+            throw new IOException("Unable to create directory " + inProgressDirectory);
+        }
+
+        for (final List<ColumnInfo> columnsForTable : accountTables) {
+            final File chunkFile = new File(inProgressDirectory, columnsForTable.get(0).getTableName() + CHUNK_FILE_SUFFIX);
+            final OutputStream gzipOutputStream = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(chunkFile)));
+            final CSVExportOutputStream out = new CSVExportOutputStream(gzipOutputStream);
+            try {
+                exportDao.exportDataForAccountRecordIdRange(out, columnsForTable, range.getFromAccountRecordId(), range.getToAccountRecordId(), since, context.getTenantRecordId());
+            } finally {
+                gzipOutputStream.close();
+            }
+
+            if (!out.hasWrittenRows() && !chunkFile.delete()) {
+                throw new IOException("Unable to delete empty chunk file " + chunkFile);
+            }
+        }
+
+        if (!inProgressDirectory.renameTo(partitionDirectory)) {
+            throw new IOException("Unable to rename " + inProgressDirectory + " to " + partitionDirectory);
+        }
+        log.info("Exported accounts {} to {}", range, partitionDirectory);
+    }
+
+    // Must be called with the export lock held
+    private Properties loadOrCreateExportProperties(final File exportDirectory, @Nullable final DateTime since, final InternalTenantContext context) throws IOException {
+        final Properties existingProperties = loadExportProperties(exportDirectory);
+        if (existingProperties != null) {
+            final String previousSince = existingProperties.getProperty(SINCE_PROPERTY);
+            if (since == null ? previousSince != null : previousSince == null || !since.isEqual(new DateTime(previousSince))) {
+                throw new IllegalArgumentException(String.format("Export %s was started with since=%s", exportDirectory.getName(), previousSince));
+            }
+            return existingProperties;
+        }
+
+        // Only export the accounts existing at the time of the first run, so that the partitions don't change when resuming
+        final Properties properties = new Properties();
+        final Long maxAccountRecordId = exportDao.getMaxAccountRecordId(context);
+        properties.setProperty(MAX_ACCOUNT_RECORD_ID_PROPERTY, String.valueOf(maxAccountRecordId == null ? 0L : maxAccountRecordId));
+        properties.setProperty(STARTED_DATE_PROPERTY, clock.getUTCNow().toString());
+        if (since != null) {
+            properties.setProperty(SINCE_PROPERTY, since.toDateTime(DateTimeZone.UTC).toString());
+        }
+        storeExportProperties(exportDirectory, properties);
+        return properties;
+    }
+
+    private Properties loadExportProperties(final File exportDirectory) throws IOException {
+        final File propertiesFile = new File(exportDirectory, EXPORT_PROPERTIES_FILE);
+        if (!propertiesFile.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        final InputStream input = new FileInputStream(propertiesFile);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+
+    private void storeExportProperties(final File exportDirectory, final Properties properties) throws IOException {
+        // Write it atomically, as its presence marks the export as started
+        final File propertiesFile = new File(exportDirectory, EXPORT_PROPERTIES_FILE);
+        final File inProgressPropertiesFile = new File(exportDirectory, EXPORT_PROPERTIES_FILE + IN_PROGRESS_SUFFIX);
+        final OutputStream output = new FileOutputStream(inProgressPropertiesFile);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+        if (!inProgressPropertiesFile.renameTo(propertiesFile)) {
+            throw new IOException("Unable to rename " + inProgressPropertiesFile + " to " + propertiesFile);
+        }
+    }
+
+    private void deleteDirectory(final File directory) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (!file.delete()) {
+                throw new IOException("Unable to delete " + file);
+            }
+        }
+        if (!directory.delete()) {
+            throw new IOException("Unable to delete " + directory);
+        }
+    }
+
+    private static ExecutorService createExecutor(final int nbThreads, final String threadPrefix) {
+        return Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread th = new Thread(r);
+                th.setName(threadPrefix + th.getId());
+                th.setDaemon(true);
+                return th;
+            }
+        });
+    }
+}
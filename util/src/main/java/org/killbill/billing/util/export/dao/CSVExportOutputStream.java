@@ -40,6 +40,7 @@ public class CSVExportOutputStream extends OutputStream implements DatabaseExpor
     private CsvSchema currentCSVSchema;
     private ObjectWriter writer;
     private boolean shouldWriteHeader = false;
+    private boolean hasWrittenRows = false;
 
     public CSVExportOutputStream(final OutputStream delegate) {
         this.delegate = delegate;
@@ -86,6 +87,11 @@ public class CSVExportOutputStream extends OutputStream implements DatabaseExpor
         }
 
         write(bytes);
+        hasWrittenRows = true;
+    }
+
+    public boolean hasWrittenRows() {
+        return hasWrittenRows;
     }
 
     private ColumnType getColumnTypeFromSqlType(final String dataType) {
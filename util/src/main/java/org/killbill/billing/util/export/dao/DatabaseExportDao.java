@@ -20,13 +20,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.joda.time.DateTime;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.Query;
 import org.skife.jdbi.v2.ResultIterator;
 import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.util.LongMapper;
 
 import org.killbill.billing.util.api.ColumnInfo;
 import org.killbill.billing.util.api.DatabaseExportOutputStream;
@@ -38,6 +42,10 @@ import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 @Singleton
 public class DatabaseExportDao {
 
+    private static final String ACCOUNT_RECORD_ID_COLUMN = "account_record_id";
+    private static final String UPDATED_DATE_COLUMN = "updated_date";
+    private static final String CREATED_DATE_COLUMN = "created_date";
+
     private final DatabaseSchemaDao databaseSchemaDao;
     private final IDBI dbi;
 
@@ -53,27 +61,109 @@ public class DatabaseExportDao {
             return;
         }
 
+        for (final List<ColumnInfo> columnsForTable : getAccountTables()) {
+            exportDataForAccountRecordIdRange(out, columnsForTable, context.getAccountRecordId(), context.getAccountRecordId(), null, context.getTenantRecordId());
+        }
+    }
+
+    /**
+     * @return the columns of each account specific table (the accounts table, and the tables with an account_record_id column), ordered by table name
+     */
+    public List<List<ColumnInfo>> getAccountTables() {
         final List<DefaultColumnInfo> columns = databaseSchemaDao.getColumnInfoList();
+        final List<List<ColumnInfo>> accountTables = new ArrayList<List<ColumnInfo>>();
         if (columns.size() == 0) {
-            return;
+            return accountTables;
         }
 
-        final List<ColumnInfo> columnsForTable = new ArrayList<ColumnInfo>();
+        List<ColumnInfo> columnsForTable = new ArrayList<ColumnInfo>();
         // The list of columns is ordered by table name first
         String lastSeenTableName = columns.get(0).getTableName();
         for (final ColumnInfo column : columns) {
             if (!column.getTableName().equals(lastSeenTableName)) {
-                exportDataForAccountAndTable(out, columnsForTable, context);
+                if (isAccountTable(columnsForTable)) {
+                    accountTables.add(columnsForTable);
+                }
                 lastSeenTableName = column.getTableName();
-                columnsForTable.clear();
+                columnsForTable = new ArrayList<ColumnInfo>();
             }
             columnsForTable.add(column);
         }
-        exportDataForAccountAndTable(out, columnsForTable, context);
+        if (isAccountTable(columnsForTable)) {
+            accountTables.add(columnsForTable);
+        }
+        return accountTables;
     }
 
-    private void exportDataForAccountAndTable(final DatabaseExportOutputStream out, final List<ColumnInfo> columnsForTable, final InternalTenantContext context) {
-        boolean hasAccountRecordIdColumn = false;
+    /**
+     * Split the accounts of the tenant into ranges of (at most) partitionSize accounts.
+     *
+     * @param maxAccountRecordId ignore accounts created after that one, to keep the ranges stable
+     * @return the inclusive account record id ranges, ordered
+     */
+    public List<AccountRecordIdRange> getAccountRecordIdRanges(final int partitionSize, final long maxAccountRecordId, final InternalTenantContext context) {
+        return dbi.withHandle(new HandleCallback<List<AccountRecordIdRange>>() {
+            @Override
+            public List<AccountRecordIdRange> withHandle(final Handle handle) throws Exception {
+                final ResultIterator<Long> iterator = handle.createQuery("select record_id from " + TableName.ACCOUNT.getTableName() +
+                                                                         " where record_id <= :maxAccountRecordId and tenant_record_id = :tenantRecordId order by record_id")
+                                                            .bind("maxAccountRecordId", maxAccountRecordId)
+                                                            .bind("tenantRecordId", context.getTenantRecordId())
+                                                            .map(LongMapper.FIRST)
+                                                            .iterator();
+                final List<AccountRecordIdRange> ranges = new ArrayList<AccountRecordIdRange>();
+                try {
+                    Long fromAccountRecordId = null;
+                    Long toAccountRecordId = null;
+                    int nbAccounts = 0;
+                    while (iterator.hasNext()) {
+                        toAccountRecordId = iterator.next();
+                        if (fromAccountRecordId == null) {
+                            fromAccountRecordId = toAccountRecordId;
+                        }
+                        if (++nbAccounts == partitionSize) {
+                            ranges.add(new AccountRecordIdRange(fromAccountRecordId, toAccountRecordId));
+                            fromAccountRecordId = null;
+                            nbAccounts = 0;
+                        }
+                    }
+                    if (fromAccountRecordId != null) {
+                        ranges.add(new AccountRecordIdRange(fromAccountRecordId, toAccountRecordId));
+                    }
+                } finally {
+                    iterator.close();
+                }
+                return ranges;
+            }
+        });
+    }
+
+    public Long getMaxAccountRecordId(final InternalTenantContext context) {
+        return dbi.withHandle(new HandleCallback<Long>() {
+            @Override
+            public Long withHandle(final Handle handle) throws Exception {
+                return handle.createQuery("select max(record_id) from " + TableName.ACCOUNT.getTableName() + " where tenant_record_id = :tenantRecordId")
+                             .bind("tenantRecordId", context.getTenantRecordId())
+                             .map(LongMapper.FIRST)
+                             .first();
+            }
+        });
+    }
+
+    /**
+     * Export the rows of a table for a range of accounts.
+     *
+     * @param columnsForTable    the table columns, see {@link #getAccountTables()}
+     * @param fromAccountRecordId first account record id (inclusive)
+     * @param toAccountRecordId   last account record id (inclusive)
+     * @param since              if specified, only export the rows updated (or, if the table doesn't have an updated_date column, created) since that date.
+     *                           Tables without any of these columns are always fully exported
+     */
+    public void exportDataForAccountRecordIdRange(final DatabaseExportOutputStream out, final List<ColumnInfo> columnsForTable,
+                                                  final long fromAccountRecordId, final long toAccountRecordId,
+                                                  @Nullable final DateTime since, final Long tenantRecordId) {
+        boolean hasUpdatedDateColumn = false;
+        boolean hasCreatedDateColumn = false;
         boolean firstColumn = true;
         final StringBuilder queryBuilder = new StringBuilder("select ");
         for (final ColumnInfo column : columnsForTable) {
@@ -84,26 +174,31 @@ public class DatabaseExportDao {
             }
 
             queryBuilder.append(column.getColumnName());
-            if (column.getColumnName().equals("account_record_id")) {
-                hasAccountRecordIdColumn = true;
+            if (column.getColumnName().equals(UPDATED_DATE_COLUMN)) {
+                hasUpdatedDateColumn = true;
+            } else if (column.getColumnName().equals(CREATED_DATE_COLUMN)) {
+                hasCreatedDateColumn = true;
             }
         }
 
         final String tableName = columnsForTable.get(0).getTableName();
         final boolean isAccountTable = TableName.ACCOUNT.getTableName().equals(tableName);
 
-        // Don't export non-account specific tables
-        if (!isAccountTable && !hasAccountRecordIdColumn) {
-            return;
-        }
-
         // Build the query - make sure to filter by account and tenant!
         queryBuilder.append(" from ")
                     .append(tableName);
-        if (isAccountTable) {
-            queryBuilder.append(" where record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
-        } else {
-            queryBuilder.append(" where account_record_id = :accountRecordId and tenant_record_id = :tenantRecordId");
+        final String accountRecordIdColumn = isAccountTable ? "record_id" : ACCOUNT_RECORD_ID_COLUMN;
+        queryBuilder.append(" where ")
+                    .append(accountRecordIdColumn)
+                    .append(" >= :fromAccountRecordId and ")
+                    .append(accountRecordIdColumn)
+                    .append(" <= :toAccountRecordId and tenant_record_id = :tenantRecordId");
+
+        final boolean filterSince = since != null && (hasUpdatedDateColumn || hasCreatedDateColumn);
+        if (filterSince) {
+            queryBuilder.append(" and ")
+                        .append(hasUpdatedDateColumn ? UPDATED_DATE_COLUMN : CREATED_DATE_COLUMN)
+                        .append(" >= :since");
         }
 
         // Notify the stream that we're about to write data for a different table
@@ -112,10 +207,15 @@ public class DatabaseExportDao {
         dbi.withHandle(new HandleCallback<Void>() {
             @Override
             public Void withHandle(final Handle handle) throws Exception {
-                final ResultIterator<Map<String, Object>> iterator = handle.createQuery(queryBuilder.toString())
-                                                                           .bind("accountRecordId", context.getAccountRecordId())
-                                                                           .bind("tenantRecordId", context.getTenantRecordId())
-                                                                           .iterator();
+                final Query<Map<String, Object>> query = handle.createQuery(queryBuilder.toString())
+                                                               .bind("fromAccountRecordId", fromAccountRecordId)
+                                                               .bind("toAccountRecordId", toAccountRecordId)
+                                                               .bind("tenantRecordId", tenantRecordId);
+                if (filterSince) {
+                    query.bind("since", since.toDate());
+                }
+
+                final ResultIterator<Map<String, Object>> iterator = query.iterator();
                 try {
                     while (iterator.hasNext()) {
                         final Map<String, Object> row = iterator.next();
@@ -129,4 +229,41 @@ public class DatabaseExportDao {
             }
         });
     }
+
+    private boolean isAccountTable(final List<ColumnInfo> columnsForTable) {
+        if (TableName.ACCOUNT.getTableName().equals(columnsForTable.get(0).getTableName())) {
+            return true;
+        }
+        // Don't export non-account specific tables
+        for (final ColumnInfo column : columnsForTable) {
+            if (column.getColumnName().equals(ACCOUNT_RECORD_ID_COLUMN)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class AccountRecordIdRange {
+
+        private final long fromAccountRecordId;
+        private final long toAccountRecordId;
+
+        public AccountRecordIdRange(final long fromAccountRecordId, final long toAccountRecordId) {
+            this.fromAccountRecordId = fromAccountRecordId;
+            this.toAccountRecordId = toAccountRecordId;
+        }
+
+        public long getFromAccountRecordId() {
+            return fromAccountRecordId;
+        }
+
+        public long getToAccountRecordId() {
+            return toAccountRecordId;
+        }
+
+        @Override
+        public String toString() {
+            return fromAccountRecordId + "-" + toAccountRecordId;
+        }
+    }
 }
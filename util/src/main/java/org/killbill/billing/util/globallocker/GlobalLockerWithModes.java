@@ -0,0 +1,313 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.globallocker;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.killbill.billing.util.globallocker.InstrumentedGlobalLocker.Lockable;
+import org.killbill.commons.locker.GlobalLock;
+import org.killbill.commons.locker.GlobalLocker;
+import org.killbill.commons.locker.LockFailedException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Shared and exclusive locks on the sub-resources of an account (see {@link LockerType}), on top of the (exclusive only)
+ * GlobalLocker.
+ * <p/>
+ * The account itself is locked with a single ACCNT_INV_PAY lock of the underlying locker (a database lock with MySQL), held by
+ * this node as long as at least one of its operations on the account is running: the first one takes it, the last one releases
+ * it. Operations of other nodes, and plugins taking ACCNT_INV_PAY, wait for all of them. Under that lock, the sub-resources
+ * are in-process read-write locks, so that operations of this node only wait on each other for the sub-resources they share.
+ * An operation takes at most one underlying lock, whatever the number of sub-resources and their modes.
+ * <p/>
+ * Sub-resources are locked in {@link LockerType} declaration order, whatever the order of the request. Sub-resources already
+ * held by the current thread (e.g. a payment triggered by an invoice run) are not locked again, and neither is ACCNT_INV_PAY
+ * (e.g. a plugin called during a payment). Wait and hold times are recorded per (sub-)resource when the GlobalLocker is an
+ * {@link InstrumentedGlobalLocker}.
+ * <p/>
+ * This is also a GlobalLocker: plain service locks go to the underlying locker unchanged.
+ */
+public class GlobalLockerWithModes implements GlobalLocker {
+
+    // Each try to lock a sub-resource waits up to that long
+    private static final long SUB_RESOURCE_LOCK_TRY_MILLIS = 1000;
+
+    private static final GlobalLock REENTRANT_LOCK = new GlobalLock() {
+        @Override
+        public void release() {
+        }
+    };
+
+    private final GlobalLocker locker;
+    // Accounts locked by this node, by lock key
+    private final ConcurrentMap<String, AccountLocks> accountLocksByKey = new ConcurrentHashMap<String, AccountLocks>();
+
+    public GlobalLockerWithModes(final GlobalLocker locker) {
+        this.locker = locker;
+    }
+
+    // The injected GlobalLocker is already wrapped, except in tests which bind a plain one
+    public static GlobalLockerWithModes withModes(final GlobalLocker locker) {
+        if (locker instanceof GlobalLockerWithModes) {
+            return (GlobalLockerWithModes) locker;
+        } else {
+            return new GlobalLockerWithModes(locker);
+        }
+    }
+
+    public GlobalLocker getDelegate() {
+        return locker;
+    }
+
+    @Override
+    public GlobalLock lockWithNumberOfTries(final String service, final String lockKey, final int retry) throws LockFailedException {
+        if (LockerType.ACCNT_INV_PAY.toString().equals(service)) {
+            final AccountLocks accountLocks = accountLocksByKey.get(lockKey);
+            if (accountLocks != null && accountLocks.isHeldByCurrentThread()) {
+                return REENTRANT_LOCK;
+            }
+        }
+        return locker.lockWithNumberOfTries(service, lockKey, retry);
+    }
+
+    @Override
+    public boolean isFree(final String service, final String lockKey) {
+        return locker.isFree(service, lockKey);
+    }
+
+    public GlobalLock lockWithNumberOfTries(final LockerType lockerType, final LockMode lockMode, final String lockKey, final int retry) throws LockFailedException {
+        final Map<LockerType, LockMode> lockModes = new EnumMap<LockerType, LockMode>(LockerType.class);
+        lockModes.put(lockerType, lockMode);
+        return lockWithNumberOfTries(lockModes, lockKey, retry);
+    }
+
+    public GlobalLock lockWithNumberOfTries(final Map<LockerType, LockMode> lockModes, final String lockKey, final int retry) throws LockFailedException {
+        Preconditions.checkArgument(!lockModes.isEmpty(), "No sub-resource to lock");
+        Preconditions.checkArgument(!lockModes.containsKey(LockerType.ACCNT_INV_PAY), "ACCNT_INV_PAY is not a sub-resource");
+
+        final AccountLocks accountLocks = lockAccount(lockKey, retry);
+        final List<GlobalLock> locks = new ArrayList<GlobalLock>();
+        locks.add(new GlobalLock() {
+            @Override
+            public void release() {
+                releaseAccount(lockKey, accountLocks);
+            }
+        });
+
+        boolean locked = false;
+        try {
+            // EnumMap iterates in declaration order
+            for (final Map.Entry<LockerType, LockMode> lockMode : new EnumMap<LockerType, LockMode>(lockModes).entrySet()) {
+                if (!accountLocks.isHeldByCurrentThread(lockMode.getKey())) {
+                    locks.add(lockSubResource(accountLocks, lockMode.getKey(), lockMode.getValue(), retry));
+                }
+            }
+            locked = true;
+            return new CompositeGlobalLock(locks);
+        } finally {
+            if (!locked) {
+                new CompositeGlobalLock(locks).release();
+            }
+        }
+    }
+
+    public boolean isFree(final LockerType lockerType, final String lockKey) {
+        final AccountLocks accountLocks = accountLocksByKey.get(lockKey);
+        if (accountLocks != null) {
+            return LockerType.ACCNT_INV_PAY.equals(lockerType) ? false : accountLocks.isFree(lockerType);
+        } else {
+            return locker.isFree(LockerType.ACCNT_INV_PAY.toString(), lockKey);
+        }
+    }
+
+    private AccountLocks lockAccount(final String lockKey, final int retry) throws LockFailedException {
+        while (true) {
+            AccountLocks accountLocks = accountLocksByKey.get(lockKey);
+            if (accountLocks == null) {
+                final AccountLocks newAccountLocks = new AccountLocks();
+                accountLocks = accountLocksByKey.putIfAbsent(lockKey, newAccountLocks);
+                if (accountLocks == null) {
+                    accountLocks = newAccountLocks;
+                }
+            }
+
+            // Operations of this node on the same account wait for the first one to get the account lock
+            synchronized (accountLocks) {
+                if (accountLocks.isDiscarded()) {
+                    // Released by its last holder in the meantime
+                    continue;
+                }
+
+                if (accountLocks.getNbHolders() == 0) {
+                    boolean locked = false;
+                    try {
+                        accountLocks.setAccountLock(locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), lockKey, retry));
+                        locked = true;
+                    } finally {
+                        if (!locked) {
+                            discard(lockKey, accountLocks);
+                        }
+                    }
+                }
+                accountLocks.incrementNbHolders();
+                return accountLocks;
+            }
+        }
+    }
+
+    private void releaseAccount(final String lockKey, final AccountLocks accountLocks) {
+        synchronized (accountLocks) {
+            if (accountLocks.decrementNbHolders() == 0) {
+                discard(lockKey, accountLocks);
+                accountLocks.getAccountLock().release();
+            }
+        }
+    }
+
+    private void discard(final String lockKey, final AccountLocks accountLocks) {
+        accountLocks.discard();
+        accountLocksByKey.remove(lockKey, accountLocks);
+    }
+
+    private GlobalLock lockSubResource(final AccountLocks accountLocks, final LockerType lockerType, final LockMode lockMode, final int retry) throws LockFailedException {
+        final Lockable lockable = new Lockable() {
+            @Override
+            public GlobalLock lock() throws LockFailedException {
+                return accountLocks.lock(lockerType, lockMode, retry);
+            }
+        };
+        if (locker instanceof InstrumentedGlobalLocker) {
+            return ((InstrumentedGlobalLocker) locker).lockWithNumberOfTries(lockerType.toString(), lockable);
+        } else {
+            return lockable.lock();
+        }
+    }
+
+    // Guarded by its own monitor, except for the sub-resource locks
+    private static final class AccountLocks {
+
+        private final Map<LockerType, ReentrantReadWriteLock> subResourceLocks = new EnumMap<LockerType, ReentrantReadWriteLock>(LockerType.class);
+
+        private GlobalLock accountLock;
+        private int nbHolders;
+        private boolean discarded;
+
+        private AccountLocks() {
+            for (final LockerType lockerType : LockerType.values()) {
+                if (!LockerType.ACCNT_INV_PAY.equals(lockerType)) {
+                    // Fair, so that EXCLUSIVE waiters aren't starved by a stream of SHARED holders
+                    subResourceLocks.put(lockerType, new ReentrantReadWriteLock(true));
+                }
+            }
+        }
+
+        public GlobalLock lock(final LockerType lockerType, final LockMode lockMode, final int retry) throws LockFailedException {
+            final ReentrantReadWriteLock readWriteLock = subResourceLocks.get(lockerType);
+            final Lock lock = LockMode.SHARED.equals(lockMode) ? readWriteLock.readLock() : readWriteLock.writeLock();
+            boolean locked = false;
+            try {
+                locked = lock.tryLock(retry * SUB_RESOURCE_LOCK_TRY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!locked) {
+                throw new LockFailedException();
+            }
+            return new GlobalLock() {
+                @Override
+                public void release() {
+                    lock.unlock();
+                }
+            };
+        }
+
+        public boolean isHeldByCurrentThread(final LockerType lockerType) {
+            final ReentrantReadWriteLock readWriteLock = subResourceLocks.get(lockerType);
+            return readWriteLock.isWriteLockedByCurrentThread() || readWriteLock.getReadHoldCount() > 0;
+        }
+
+        // Every operation holds at least one sub-resource
+        public boolean isHeldByCurrentThread() {
+            for (final LockerType lockerType : subResourceLocks.keySet()) {
+                if (isHeldByCurrentThread(lockerType)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean isFree(final LockerType lockerType) {
+            final ReentrantReadWriteLock readWriteLock = subResourceLocks.get(lockerType);
+            return !readWriteLock.isWriteLocked() && readWriteLock.getReadLockCount() == 0;
+        }
+
+        public GlobalLock getAccountLock() {
+            return accountLock;
+        }
+
+        public void setAccountLock(final GlobalLock accountLock) {
+            this.accountLock = accountLock;
+        }
+
+        public int getNbHolders() {
+            return nbHolders;
+        }
+
+        public void incrementNbHolders() {
+            nbHolders++;
+        }
+
+        public int decrementNbHolders() {
+            return --nbHolders;
+        }
+
+        public boolean isDiscarded() {
+            return discarded;
+        }
+
+        public void discard() {
+            discarded = true;
+        }
+    }
+
+    private static final class CompositeGlobalLock implements GlobalLock {
+
+        private final List<GlobalLock> locks;
+
+        private CompositeGlobalLock(final List<GlobalLock> locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void release() {
+            // Reverse order of acquisition
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).release();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.globallocker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.commons.locker.GlobalLock;
+import org.killbill.commons.locker.GlobalLocker;
+import org.killbill.commons.locker.LockFailedException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * GlobalLocker decorator recording, per service (e.g. CBA), how long callers wait to acquire a lock (retries included),
+ * how long they hold it and how many acquisitions fail.
+ */
+public class InstrumentedGlobalLocker implements GlobalLocker {
+
+    private final GlobalLocker delegate;
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, LockMetrics> lockMetricsByService = new ConcurrentHashMap<String, LockMetrics>();
+
+    public InstrumentedGlobalLocker(final GlobalLocker delegate, final MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public GlobalLock lockWithNumberOfTries(final String service, final String lockKey, final int retry) throws LockFailedException {
+        return lockWithNumberOfTries(service, new Lockable() {
+            @Override
+            public GlobalLock lock() throws LockFailedException {
+                return delegate.lockWithNumberOfTries(service, lockKey, retry);
+            }
+        });
+    }
+
+    // Also records the locks which don't go through the delegate (in-process account sub-resource locks, see GlobalLockerWithModes)
+    GlobalLock lockWithNumberOfTries(final String service, final Lockable lockable) throws LockFailedException {
+        final LockMetrics lockMetrics = getLockMetrics(service);
+        final Timer.Context timerContext = lockMetrics.getWaitTimer().time();
+        try {
+            return new InstrumentedGlobalLock(lockable.lock(), lockMetrics.getHoldTimer());
+        } catch (final LockFailedException e) {
+            lockMetrics.getFailures().inc();
+            throw e;
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    @Override
+    public boolean isFree(final String service, final String lockKey) {
+        return delegate.isFree(service, lockKey);
+    }
+
+    public GlobalLocker getDelegate() {
+        return delegate;
+    }
+
+    private LockMetrics getLockMetrics(final String service) {
+        LockMetrics lockMetrics = lockMetricsByService.get(service);
+        if (lockMetrics == null) {
+            lockMetrics = new LockMetrics(metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, service, "wait")),
+                                          metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, service, "hold")),
+                                          metricRegistry.counter(MetricRegistry.name(InstrumentedGlobalLocker.class, service, "failures")));
+            final LockMetrics existingLockMetrics = lockMetricsByService.putIfAbsent(service, lockMetrics);
+            if (existingLockMetrics != null) {
+                lockMetrics = existingLockMetrics;
+            }
+        }
+        return lockMetrics;
+    }
+
+    interface Lockable {
+
+        GlobalLock lock() throws LockFailedException;
+    }
+
+    private static final class LockMetrics {
+
+        private final Timer waitTimer;
+        private final Timer holdTimer;
+        private final Counter failures;
+
+        private LockMetrics(final Timer waitTimer, final Timer holdTimer, final Counter failures) {
+            this.waitTimer = waitTimer;
+            this.holdTimer = holdTimer;
+            this.failures = failures;
+        }
+
+        public Timer getWaitTimer() {
+            return waitTimer;
+        }
+
+        public Timer getHoldTimer() {
+            return holdTimer;
+        }
+
+        public Counter getFailures() {
+            return failures;
+        }
+    }
+
+    private static final class InstrumentedGlobalLock implements GlobalLock {
+
+        private final GlobalLock delegate;
+        private final Timer holdTimer;
+        private final long acquiredNanos;
+
+        private InstrumentedGlobalLock(final GlobalLock delegate, final Timer holdTimer) {
+            this.delegate = delegate;
+            this.holdTimer = holdTimer;
+            this.acquiredNanos = System.nanoTime();
+        }
+
+        @Override
+        public void release() {
+            try {
+                delegate.release();
+            } finally {
+                holdTimer.update(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
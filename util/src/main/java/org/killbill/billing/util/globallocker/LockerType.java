@@ -16,6 +16,17 @@
 
 package org.killbill.billing.util.globallocker;
 
+// Account sub-resources are locked in declaration order, under the ACCNT_INV_PAY account lock (see GlobalLockerWithModes).
+// All of them are keyed by account id.
 public enum LockerType {
-    ACCNT_INV_PAY
+    // Account lock, taken by core around the sub-resources below, and by plugins to exclude core operations on the account
+    ACCNT_INV_PAY,
+    // Invoice runs
+    INVOICE_GENERATION,
+    // Account credit, and invoice balances
+    CBA,
+    // Payment transactions
+    PAYMENT,
+    // Payment methods (including the default one)
+    PAYMENT_METHOD
 }
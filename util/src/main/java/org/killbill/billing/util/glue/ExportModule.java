@@ -20,7 +20,11 @@ package org.killbill.billing.util.glue;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.util.api.ExportUserApi;
+import org.killbill.billing.util.config.ExportConfig;
 import org.killbill.billing.util.export.api.DefaultExportUserApi;
+import org.killbill.billing.util.export.api.DefaultTenantExportInternalApi;
+import org.killbill.billing.util.export.api.TenantExportInternalApi;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class ExportModule extends KillBillModule {
 
@@ -28,12 +32,19 @@ public class ExportModule extends KillBillModule {
         super(configSource);
     }
 
+    protected void installConfig() {
+        final ExportConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(ExportConfig.class);
+        bind(ExportConfig.class).toInstance(config);
+    }
+
     protected void installUserApi() {
         bind(ExportUserApi.class).to(DefaultExportUserApi.class).asEagerSingleton();
+        bind(TenantExportInternalApi.class).to(DefaultTenantExportInternalApi.class).asEagerSingleton();
     }
 
     @Override
     protected void configure() {
+        installConfig();
         installUserApi();
     }
 }
@@ -23,11 +23,14 @@ import java.io.IOException;
 import javax.sql.DataSource;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.InstrumentedGlobalLocker;
 import org.killbill.commons.embeddeddb.EmbeddedDB;
 import org.killbill.commons.locker.GlobalLocker;
 import org.killbill.commons.locker.memory.MemoryGlobalLocker;
 import org.killbill.commons.locker.mysql.MySqlGlobalLocker;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 
@@ -40,12 +43,14 @@ public class GlobalLockerModule extends KillBillModule {
     @Provides
     @Singleton
     // Note: we need to inject the pooled DataSource here, not the (direct) one from EmbeddedDB
-    protected GlobalLocker provideGlobalLocker(final DataSource dataSource, final EmbeddedDB embeddedDB) throws IOException {
+    protected GlobalLocker provideGlobalLocker(final DataSource dataSource, final EmbeddedDB embeddedDB, final MetricRegistry metricRegistry) throws IOException {
+        final GlobalLocker globalLocker;
         if (EmbeddedDB.DBEngine.MYSQL.equals(embeddedDB.getDBEngine())) {
-            return new MySqlGlobalLocker(dataSource);
+            globalLocker = new MySqlGlobalLocker(dataSource);
         } else {
-            return new MemoryGlobalLocker();
+            globalLocker = new MemoryGlobalLocker();
         }
+        return new GlobalLockerWithModes(new InstrumentedGlobalLocker(globalLocker, metricRegistry));
     }
 
     @Override
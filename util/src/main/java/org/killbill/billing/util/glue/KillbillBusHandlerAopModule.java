@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.glue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.matcher.Matchers;
+
+/**
+ * Records a timer (and a failure meter) for each bus handler, i.e. each @Subscribe method of the Kill Bill listeners.
+ */
+public class KillbillBusHandlerAopModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        bindInterceptor(Matchers.inSubpackage("org.killbill.billing"),
+                        Matchers.annotatedWith(Subscribe.class),
+                        new BusHandlerMetricsInterceptor(getProvider(MetricRegistry.class)));
+    }
+
+    public static class BusHandlerMetricsInterceptor implements MethodInterceptor {
+
+        private final Provider<MetricRegistry> metricRegistryProvider;
+        private final ConcurrentMap<Method, HandlerMetrics> handlerMetrics = new ConcurrentHashMap<Method, HandlerMetrics>();
+
+        public BusHandlerMetricsInterceptor(final Provider<MetricRegistry> metricRegistryProvider) {
+            this.metricRegistryProvider = metricRegistryProvider;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable {
+            final HandlerMetrics metrics = getHandlerMetrics(invocation.getMethod());
+            final Timer.Context timerContext = metrics.getTimer().time();
+            try {
+                return invocation.proceed();
+            } catch (final Throwable t) {
+                metrics.getFailures().mark();
+                throw t;
+            } finally {
+                timerContext.stop();
+            }
+        }
+
+        private HandlerMetrics getHandlerMetrics(final Method method) {
+            HandlerMetrics metrics = handlerMetrics.get(method);
+            if (metrics == null) {
+                final MetricRegistry metricRegistry = metricRegistryProvider.get();
+                metrics = new HandlerMetrics(metricRegistry.timer(MetricRegistry.name(method.getDeclaringClass(), method.getName())),
+                                             metricRegistry.meter(MetricRegistry.name(method.getDeclaringClass(), method.getName(), "failures")));
+                final HandlerMetrics existing = handlerMetrics.putIfAbsent(method, metrics);
+                if (existing != null) {
+                    metrics = existing;
+                }
+            }
+            return metrics;
+        }
+    }
+
+    private static final class HandlerMetrics {
+
+        private final Timer timer;
+        private final Meter failures;
+
+        private HandlerMetrics(final Timer timer, final Meter failures) {
+            this.timer = timer;
+            this.failures = failures;
+        }
+
+        public Timer getTimer() {
+            return timer;
+        }
+
+        public Meter getFailures() {
+            return failures;
+        }
+    }
+}
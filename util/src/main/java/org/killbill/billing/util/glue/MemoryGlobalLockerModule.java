@@ -19,17 +19,26 @@
 package org.killbill.billing.util.glue;
 
 import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
 import org.killbill.commons.locker.GlobalLocker;
 import org.killbill.commons.locker.memory.MemoryGlobalLocker;
 
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
 public class MemoryGlobalLockerModule extends KillBillModule {
 
     public MemoryGlobalLockerModule(final KillbillConfigSource configSource) {
         super(configSource);
     }
 
+    @Provides
+    @Singleton
+    protected GlobalLocker provideGlobalLocker() {
+        return new GlobalLockerWithModes(new MemoryGlobalLocker());
+    }
+
     @Override
     protected void configure() {
-        bind(GlobalLocker.class).to(MemoryGlobalLocker.class).asEagerSingleton();
     }
 }
@@ -16,7 +16,11 @@
 
 package org.killbill.billing.util.tag;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -72,6 +76,21 @@ public class DefaultTagInternalApi implements TagInternalApi {
                                                                 }));
     }
 
+    @Override
+    public Map<UUID, List<Tag>> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext context) {
+        final Map<UUID, List<Tag>> result = new LinkedHashMap<UUID, List<Tag>>();
+        for (final UUID objectId : objectIds) {
+            result.put(objectId, new ArrayList<Tag>());
+        }
+        for (final TagModelDao input : tagDao.getTagsForObjects(objectIds, objectType, includedDeleted, context)) {
+            final Tag tag = TagModelDaoHelper.isControlTag(input.getTagDefinitionId()) ?
+                            new DefaultControlTag(input.getId(), ControlTagType.getTypeFromId(input.getTagDefinitionId()), objectType, input.getObjectId(), input.getCreatedDate()) :
+                            new DescriptiveTag(input.getId(), input.getTagDefinitionId(), objectType, input.getObjectId(), input.getCreatedDate());
+            result.get(input.getObjectId()).add(tag);
+        }
+        return result;
+    }
+
     @Override
     public void addTag(final UUID objectId, final ObjectType objectType, final UUID tagDefinitionId, final InternalCallContext context)
             throws TagApiException {
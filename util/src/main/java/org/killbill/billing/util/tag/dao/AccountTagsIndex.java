@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.tag.dao;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * All tags of an account (including deleted ones), indexed by object type and object id.
+ * <p/>
+ * Instances are immutable and shared through the {@code account-tags} cache (see DefaultTagDao).
+ */
+public class AccountTagsIndex {
+
+    private static final Predicate<TagModelDao> IS_ACTIVE = new Predicate<TagModelDao>() {
+        @Override
+        public boolean apply(final TagModelDao input) {
+            return Boolean.TRUE.equals(input.getIsActive());
+        }
+    };
+
+    private final List<TagModelDao> tags;
+    private final Map<ObjectType, ListMultimap<UUID, TagModelDao>> tagsPerObjectType = new EnumMap<ObjectType, ListMultimap<UUID, TagModelDao>>(ObjectType.class);
+
+    public AccountTagsIndex(final List<TagModelDao> tagsIncludingDeleted) {
+        this.tags = ImmutableList.<TagModelDao>copyOf(tagsIncludingDeleted);
+
+        final Map<ObjectType, ImmutableListMultimap.Builder<UUID, TagModelDao>> builders = new EnumMap<ObjectType, ImmutableListMultimap.Builder<UUID, TagModelDao>>(ObjectType.class);
+        for (final TagModelDao tag : tags) {
+            ImmutableListMultimap.Builder<UUID, TagModelDao> builder = builders.get(tag.getObjectType());
+            if (builder == null) {
+                builder = ImmutableListMultimap.<UUID, TagModelDao>builder();
+                builders.put(tag.getObjectType(), builder);
+            }
+            builder.put(tag.getObjectId(), tag);
+        }
+        for (final ObjectType objectType : builders.keySet()) {
+            tagsPerObjectType.put(objectType, builders.get(objectType).build());
+        }
+    }
+
+    public List<TagModelDao> getTags(final boolean includedDeleted) {
+        return filter(tags, includedDeleted);
+    }
+
+    public List<TagModelDao> getTagsForObjectType(final ObjectType objectType, final boolean includedDeleted) {
+        final ListMultimap<UUID, TagModelDao> tagsForObjectType = tagsPerObjectType.get(objectType);
+        if (tagsForObjectType == null) {
+            return ImmutableList.<TagModelDao>of();
+        }
+        return filter(tagsForObjectType.values(), includedDeleted);
+    }
+
+    public List<TagModelDao> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted) {
+        final ListMultimap<UUID, TagModelDao> tagsForObjectType = tagsPerObjectType.get(objectType);
+        if (tagsForObjectType == null) {
+            return ImmutableList.<TagModelDao>of();
+        }
+
+        final ImmutableList.Builder<TagModelDao> result = ImmutableList.<TagModelDao>builder();
+        for (final UUID objectId : objectIds) {
+            result.addAll(filter(tagsForObjectType.get(objectId), includedDeleted));
+        }
+        return result.build();
+    }
+
+    private List<TagModelDao> filter(final Collection<TagModelDao> input, final boolean includedDeleted) {
+        return includedDeleted ? ImmutableList.<TagModelDao>copyOf(input) : ImmutableList.<TagModelDao>copyOf(Iterables.filter(input, IS_ACTIVE));
+    }
+}
@@ -16,8 +16,10 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.IDBI;
@@ -34,8 +36,12 @@ import org.killbill.clock.Clock;
 import org.killbill.billing.events.TagInternalEvent;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntityDaoBase;
@@ -43,29 +49,41 @@ import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.entity.dao.SearchIndexBackfill;
+import org.killbill.billing.util.entity.dao.SearchIndexKeys;
 import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.api.user.TagEventBuilder;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiException> implements TagDao {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultTagDao.class);
 
+    // Maximum number of object ids per IN clause
+    private static final int MAX_OBJECT_IDS_PER_QUERY = 1000;
+
     private final TagEventBuilder tagEventBuilder;
     private final PersistentBus bus;
+    private final CacheController<Object, Object> accountTagsCache;
+    private final SearchIndexBackfill<TagModelDao, Tag> searchIndexBackfill;
 
     @Inject
     public DefaultTagDao(final IDBI dbi, final TagEventBuilder tagEventBuilder, final PersistentBus bus, final Clock clock,
-                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao) {
-        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao), TagSqlDao.class);
+                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao, final MetricRegistry metricRegistry) {
+        super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao, metricRegistry), TagSqlDao.class);
         this.tagEventBuilder = tagEventBuilder;
         this.bus = bus;
+        this.accountTagsCache = controllerDispatcher.getCacheController(CacheType.ACCOUNT_TAGS);
+        this.searchIndexBackfill = new SearchIndexBackfill<TagModelDao, Tag>(transactionalSqlDao, TagSqlDao.class, TableName.TAG);
     }
 
     @Override
@@ -83,8 +101,47 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
         });
     }
 
+    @Override
+    public List<TagModelDao> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        if (objectIds.isEmpty()) {
+            return ImmutableList.<TagModelDao>of();
+        }
+
+        final AccountTagsIndex accountTagsIndex = getAccountTagsIndex(internalTenantContext);
+        if (accountTagsIndex != null) {
+            return accountTagsIndex.getTagsForObjects(objectIds, objectType, includedDeleted);
+        }
+
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<TagModelDao>>() {
+            @Override
+            public List<TagModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final TagSqlDao tagSqlDao = entitySqlDaoWrapperFactory.become(TagSqlDao.class);
+                final ImmutableList.Builder<TagModelDao> result = ImmutableList.<TagModelDao>builder();
+                for (final List<UUID> objectIdsChunk : Lists.partition(ImmutableList.<UUID>copyOf(objectIds), MAX_OBJECT_IDS_PER_QUERY)) {
+                    final Collection<String> objectIdsAsStrings = Collections2.transform(objectIdsChunk, new Function<UUID, String>() {
+                        @Override
+                        public String apply(final UUID input) {
+                            return input.toString();
+                        }
+                    });
+                    if (includedDeleted) {
+                        result.addAll(tagSqlDao.getTagsForObjectsIncludedDeleted(objectIdsAsStrings, objectType, internalTenantContext));
+                    } else {
+                        result.addAll(tagSqlDao.getTagsForObjects(objectIdsAsStrings, objectType, internalTenantContext));
+                    }
+                }
+                return result.build();
+            }
+        });
+    }
+
     @Override
     public List<TagModelDao> getTagsForAccountType(final UUID accountId, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        final AccountTagsIndex accountTagsIndex = getAccountTagsIndex(internalTenantContext);
+        if (accountTagsIndex != null) {
+            return accountTagsIndex.getTagsForObjectType(objectType, includedDeleted);
+        }
+
         final List<TagModelDao> allTags = getTagsForAccount(includedDeleted, internalTenantContext);
         return ImmutableList.<TagModelDao>copyOf(Collections2.filter(allTags, new Predicate<TagModelDao>() {
             @Override
@@ -109,6 +166,25 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
         });
     }
 
+    private AccountTagsIndex getAccountTagsIndex(final InternalTenantContext internalTenantContext) {
+        if (accountTagsCache == null || internalTenantContext.getAccountRecordId() == null) {
+            return null;
+        }
+        return (AccountTagsIndex) accountTagsCache.get(internalTenantContext.getAccountRecordId(), new CacheLoaderArgument(ObjectType.TAG, new Object[]{}, internalTenantContext));
+    }
+
+    // Called once the tag creation or deletion has been committed
+    private void invalidateAccountTagsIndex(final InternalCallContext context) {
+        if (accountTagsCache == null) {
+            return;
+        }
+        if (context.getAccountRecordId() == null) {
+            accountTagsCache.removeAll();
+        } else {
+            accountTagsCache.remove(context.getAccountRecordId());
+        }
+    }
+
     @Override
     protected void postBusEventFromTransaction(final TagModelDao tag, final TagModelDao savedTag, final ChangeType changeType,
                                                final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context)
@@ -184,6 +260,7 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
     @Override
     public void create(final TagModelDao entity, final InternalCallContext context) throws TagApiException {
         transactionalSqlDao.execute(TagApiException.class, getCreateEntitySqlDaoTransactionWrapper(entity, context));
+        invalidateAccountTagsIndex(context);
     }
 
     @Override
@@ -214,25 +291,38 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
                 return null;
             }
         });
-
+        invalidateAccountTagsIndex(context);
     }
 
     @Override
     public Pagination<TagModelDao> searchTags(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
+        final Set<String> searchIndexKeys = SearchIndexKeys.forSearchKey(searchKey);
+        final boolean searchUnindexedRows = searchIndexBackfill.hasUnindexedRows();
         return paginationHelper.getPagination(TagSqlDao.class,
+                                              "search:" + searchKey,
                                               new PaginationIteratorBuilder<TagModelDao, Tag, TagSqlDao>() {
                                                   @Override
                                                   public Long getCount(final TagSqlDao tagSqlDao, final InternalTenantContext context) {
-                                                      return tagSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), context);
+                                                      return tagSqlDao.getSearchCount(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, context);
                                                   }
 
                                                   @Override
                                                   public Iterator<TagModelDao> build(final TagSqlDao tagSqlDao, final Long limit, final InternalTenantContext context) {
-                                                      return tagSqlDao.search(searchKey, String.format("%%%s%%", searchKey), offset, limit, context);
+                                                      return tagSqlDao.search(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, offset, limit, context);
+                                                  }
+
+                                                  @Override
+                                                  public Iterator<TagModelDao> build(final TagSqlDao tagSqlDao, final Long fromRecordId, final Long limit, final InternalTenantContext context) {
+                                                      return tagSqlDao.searchFromRecordId(searchKey, String.format("%%%s%%", searchKey), searchIndexKeys, searchUnindexedRows, fromRecordId, limit, context);
                                                   }
                                               },
                                               offset,
                                               limit,
                                               context);
     }
+
+    @Override
+    public void backfillSearchIndex() {
+        searchIndexBackfill.backfill();
+    }
 }
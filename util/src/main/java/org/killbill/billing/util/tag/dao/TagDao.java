@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,8 +34,14 @@ public interface TagDao extends EntityDao<TagModelDao, Tag, TagApiException> {
 
     Pagination<TagModelDao> searchTags(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
+    // Indexes the rows created before the search index (see SearchIndexBackfill)
+    void backfillSearchIndex();
+
     List<TagModelDao> getTagsForObject(UUID objectId, ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
+    // Tags of objects of the account in the context only, if it has one
+    List<TagModelDao> getTagsForObjects(Collection<UUID> objectIds, ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
+
     List<TagModelDao> getTagsForAccountType(UUID accountId, ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
     List<TagModelDao> getTagsForAccount(boolean includedDeleted, InternalTenantContext internalTenantContext);
@@ -16,6 +16,8 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -25,9 +27,10 @@ import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.entity.EntityBase;
 import org.killbill.billing.util.entity.dao.EntityModelDao;
 import org.killbill.billing.util.entity.dao.EntityModelDaoBase;
+import org.killbill.billing.util.entity.dao.SearchableModelDao;
 import org.killbill.billing.util.tag.Tag;
 
-public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Tag> {
+public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Tag>, SearchableModelDao {
 
     private UUID tagDefinitionId;
     private UUID objectId;
@@ -152,4 +155,8 @@ public class TagModelDao extends EntityModelDaoBase implements EntityModelDao<Ta
         return TableName.TAG_HISTORY;
     }
 
+    @Override
+    public List<String> getSearchableValues() {
+        return Arrays.<String>asList(getObjectType() == null ? null : getObjectType().toString());
+    }
 }
@@ -51,6 +51,7 @@ BEGIN
     DELETE FROM bundles WHERE account_record_id = v_account_record_id;
     DELETE FROM custom_field_history WHERE account_record_id = v_account_record_id;
     DELETE FROM custom_fields WHERE account_record_id = v_account_record_id;
+    DELETE FROM invoice_balances WHERE account_record_id = v_account_record_id;
     DELETE FROM invoice_payments WHERE account_record_id = v_account_record_id;
     DELETE FROM invoices WHERE account_record_id = v_account_record_id;
     DELETE FROM invoice_items WHERE account_record_id = v_account_record_id;
@@ -102,6 +102,7 @@ CREATE TABLE tags (
 CREATE UNIQUE INDEX tags_id ON tags(id);
 CREATE INDEX tags_by_object ON tags(object_id);
 CREATE INDEX tags_tenant_account_record_id ON tags(tenant_record_id, account_record_id);
+CREATE INDEX tags_tag_definition_id ON tags(tag_definition_id);
 
 DROP TABLE IF EXISTS tag_history;
 CREATE TABLE tag_history (
@@ -146,6 +147,27 @@ CREATE INDEX audit_log_user_name ON audit_log(created_by);
 CREATE INDEX audit_log_tenant_account_record_id ON audit_log(tenant_record_id, account_record_id);
 CREATE INDEX audit_log_via_history ON audit_log(target_record_id, table_name, tenant_record_id);
 
+DROP TABLE IF EXISTS search_index;
+CREATE TABLE search_index (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    table_name varchar(50) NOT NULL,
+    target_record_id int(11) unsigned NOT NULL,
+    search_key varchar(3) NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX search_index_search_key ON search_index(tenant_record_id, table_name, search_key, target_record_id);
+CREATE INDEX search_index_target_record_id ON search_index(table_name, target_record_id);
+
+/* Only populated when upgrading an existing database, see search_index_migration.sql */
+DROP TABLE IF EXISTS search_index_boundaries;
+CREATE TABLE search_index_boundaries (
+    table_name varchar(50) NOT NULL,
+    first_indexed_record_id int(11) unsigned NOT NULL,
+    PRIMARY KEY(table_name)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+
 
 
 DROP TABLE IF EXISTS notifications;
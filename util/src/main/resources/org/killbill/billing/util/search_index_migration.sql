@@ -0,0 +1,36 @@
+/*
+ * Upgrade of an existing database to the search index (see SearchableModelDao), to run while Kill Bill is stopped.
+ *
+ * Rows are indexed when they are created or updated: existing rows aren't. For each searchable table, the first
+ * record id which will be indexed is recorded in search_index_boundaries, and the search queries keep scanning
+ * the record ids below it until they are indexed: the backfill runs at startup (see SearchIndexBackfill), lowers
+ * the boundaries as it goes and deletes them once done. Fresh databases (ddl.sql) don't need any boundary.
+ */
+
+CREATE TABLE search_index (
+    record_id int(11) unsigned NOT NULL AUTO_INCREMENT,
+    table_name varchar(50) NOT NULL,
+    target_record_id int(11) unsigned NOT NULL,
+    search_key varchar(3) NOT NULL,
+    account_record_id int(11) unsigned default null,
+    tenant_record_id int(11) unsigned default null,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE INDEX search_index_search_key ON search_index(tenant_record_id, table_name, search_key, target_record_id);
+CREATE INDEX search_index_target_record_id ON search_index(table_name, target_record_id);
+
+CREATE TABLE search_index_boundaries (
+    table_name varchar(50) NOT NULL,
+    first_indexed_record_id int(11) unsigned NOT NULL,
+    PRIMARY KEY(table_name)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+INSERT INTO search_index_boundaries (table_name, first_indexed_record_id) SELECT 'accounts', COALESCE(MAX(record_id), 0) + 1 FROM accounts;
+INSERT INTO search_index_boundaries (table_name, first_indexed_record_id) SELECT 'payment_methods', COALESCE(MAX(record_id), 0) + 1 FROM payment_methods;
+INSERT INTO search_index_boundaries (table_name, first_indexed_record_id) SELECT 'payments', COALESCE(MAX(record_id), 0) + 1 FROM payments;
+INSERT INTO search_index_boundaries (table_name, first_indexed_record_id) SELECT 'tags', COALESCE(MAX(record_id), 0) + 1 FROM tags;
+INSERT INTO search_index_boundaries (table_name, first_indexed_record_id) SELECT 'custom_fields', COALESCE(MAX(record_id), 0) + 1 FROM custom_fields;
+
+/* Columns matched exactly by the search queries */
+CREATE INDEX payment_methods_accnt ON payment_methods(account_id);
+CREATE INDEX payments_payment_method_id ON payments(payment_method_id);
+CREATE INDEX tags_tag_definition_id ON tags(tag_definition_id);
@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 
 import org.killbill.billing.events.BlockingTransitionInternalEvent;
+import org.killbill.billing.events.CustomFieldBatchEvent;
 import org.killbill.billing.events.CustomFieldEvent;
 import org.killbill.billing.events.EffectiveEntitlementInternalEvent;
 import org.killbill.billing.events.EffectiveSubscriptionInternalEvent;
@@ -202,6 +203,13 @@ public class TestApiListener {
         notifyIfStackEmpty();
     }
 
+    @Subscribe
+    public synchronized void processCustomFieldBatchEvent(final CustomFieldBatchEvent event) {
+        log.info(String.format("Got CustomFieldBatchEvent event %s", event.toString()));
+        assertEqualsNicely(NextEvent.CUSTOM_FIELD);
+        notifyIfStackEmpty();
+    }
+
     @Subscribe
     public synchronized void processTagDefinitonEvent(final TagDefinitionInternalEvent event) {
         log.info(String.format("Got TagDefinitionInternalEvent event %s", event.toString()));
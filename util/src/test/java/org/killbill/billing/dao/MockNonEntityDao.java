@@ -18,7 +18,9 @@
 
 package org.killbill.billing.dao;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -54,6 +56,33 @@ public class MockNonEntityDao implements NonEntityDao {
         return tenantRecordIdMappings.get(objectId);
     }
 
+    @Override
+    public Map<UUID, Long> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final Map<UUID, Long> result = new LinkedHashMap<UUID, Long>();
+        for (final UUID objectId : objectIds) {
+            result.put(objectId, retrieveRecordIdFromObject(objectId, objectType, cache));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveAccountRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final Map<UUID, Long> result = new LinkedHashMap<UUID, Long>();
+        for (final UUID objectId : objectIds) {
+            result.put(objectId, retrieveAccountRecordIdFromObject(objectId, objectType, cache));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<UUID, Long> retrieveTenantRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
+        final Map<UUID, Long> result = new LinkedHashMap<UUID, Long>();
+        for (final UUID objectId : objectIds) {
+            result.put(objectId, retrieveTenantRecordIdFromObject(objectId, objectType, cache));
+        }
+        return result;
+    }
+
     @Override
     public Long retrieveLastHistoryRecordIdFromTransaction(final Long targetRecordId, final TableName tableName, final NonEntitySqlDao transactional) {
         return null;
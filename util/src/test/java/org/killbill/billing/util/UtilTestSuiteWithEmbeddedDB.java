@@ -30,6 +30,8 @@ import org.killbill.billing.util.customfield.api.DefaultCustomFieldUserApi;
 import org.killbill.billing.util.customfield.dao.CustomFieldDao;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.export.dao.DatabaseExportDao;
+import org.killbill.billing.util.globallocker.GlobalLockerWithModes;
+import org.killbill.billing.util.globallocker.InstrumentedGlobalLocker;
 import org.killbill.billing.util.glue.TestUtilModuleWithEmbeddedDB;
 import org.killbill.billing.util.tag.dao.DefaultTagDao;
 import org.killbill.billing.util.tag.dao.TagDefinitionDao;
@@ -91,10 +93,13 @@ public abstract class UtilTestSuiteWithEmbeddedDB extends GuicyKillbillTestSuite
         final Injector g = Guice.createInjector(Stage.PRODUCTION, new TestUtilModuleWithEmbeddedDB(configSource));
         g.injectMembers(this);
 
+        Assert.assertTrue(locker instanceof GlobalLockerWithModes);
+        final GlobalLocker instrumentedLocker = ((GlobalLockerWithModes) locker).getDelegate();
+        Assert.assertTrue(instrumentedLocker instanceof InstrumentedGlobalLocker);
         if (DBEngine.MYSQL.equals(helper.getDBEngine())) {
-            Assert.assertTrue(locker instanceof MySqlGlobalLocker);
+            Assert.assertTrue(((InstrumentedGlobalLocker) instrumentedLocker).getDelegate() instanceof MySqlGlobalLocker);
         } else {
-            Assert.assertTrue(locker instanceof MemoryGlobalLocker);
+            Assert.assertTrue(((InstrumentedGlobalLocker) instrumentedLocker).getDelegate() instanceof MemoryGlobalLocker);
         }
         Assert.assertTrue(locker.isFree("a", "b"));
     }
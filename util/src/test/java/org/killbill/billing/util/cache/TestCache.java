@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.cache;
 
+import java.util.Map;
 import java.util.UUID;
 
 import org.killbill.billing.ObjectType;
@@ -30,6 +31,9 @@ import org.killbill.billing.util.tag.dao.TagSqlDao;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+
 public class TestCache extends UtilTestSuiteWithEmbeddedDB {
 
     private EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
@@ -60,7 +64,7 @@ public class TestCache extends UtilTestSuiteWithEmbeddedDB {
 
     @Test(groups = "slow")
     public void testCacheRecordId() throws Exception {
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao);
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao, new MetricRegistry());
         final TagModelDao tag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
 
         // Verify we start with nothing in the cache
@@ -88,7 +92,7 @@ public class TestCache extends UtilTestSuiteWithEmbeddedDB {
 
     @Test(groups = "slow")
     public void testAllCachesAfterGetById() throws Exception {
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao);
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao, new MetricRegistry());
         final TagModelDao tag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
 
         insertTag(tag);
@@ -120,6 +124,30 @@ public class TestCache extends UtilTestSuiteWithEmbeddedDB {
 
     }
 
+    @Test(groups = "slow")
+    public void testCacheRecordIdsInBatch() throws Exception {
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao, new MetricRegistry());
+        final TagModelDao tag1 = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
+        final TagModelDao tag2 = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
+        insertTag(tag1);
+        insertTag(tag2);
+
+        // Verify we start with nothing in the cache
+        Assert.assertEquals(getCacheSize(CacheType.RECORD_ID), 0);
+
+        final UUID unknownTagId = UUID.randomUUID();
+        final Map<UUID, Long> recordIds = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(tag1.getId(), tag2.getId(), unknownTagId),
+                                                                                    ObjectType.TAG,
+                                                                                    controlCacheDispatcher.getCacheController(CacheType.RECORD_ID));
+        Assert.assertEquals(recordIds.size(), 3);
+        Assert.assertEquals(recordIds.get(tag1.getId()), getTagRecordId(tag1.getId()));
+        Assert.assertEquals(recordIds.get(tag2.getId()), getTagRecordId(tag2.getId()));
+        Assert.assertNull(recordIds.get(unknownTagId));
+
+        // Both tags were loaded in the cache (not the unknown one)
+        Assert.assertEquals(getCacheSize(CacheType.RECORD_ID), 2);
+    }
+
     private void insertTag(final TagModelDao modelDao) {
         transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
             @Override
@@ -16,8 +16,10 @@
 
 package org.killbill.billing.util.customfield;
 
+import java.util.List;
 import java.util.UUID;
 
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import org.killbill.billing.ObjectType;
@@ -26,6 +28,8 @@ import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestFieldStore extends UtilTestSuiteWithEmbeddedDB {
 
     @Test(groups = "slow")
@@ -48,4 +52,42 @@ public class TestFieldStore extends UtilTestSuiteWithEmbeddedDB {
         customFieldDao.create(new CustomFieldModelDao(field2), internalCallContext);
         assertListenerStatus();
     }
+
+    @Test(groups = "slow")
+    public void testBatchCustomFields() throws CustomFieldApiException {
+        final UUID objectId1 = UUID.randomUUID();
+        final UUID objectId2 = UUID.randomUUID();
+        final ObjectType objectType = ObjectType.INVOICE;
+
+        final CustomFieldModelDao field1 = new CustomFieldModelDao(new StringCustomField("Field1", "Value1", objectType, objectId1, internalCallContext.getCreatedDate()));
+        final CustomFieldModelDao field2 = new CustomFieldModelDao(new StringCustomField("Field2", "Value2", objectType, objectId1, internalCallContext.getCreatedDate()));
+        final CustomFieldModelDao field3 = new CustomFieldModelDao(new StringCustomField("Field1", "Value3", objectType, objectId2, internalCallContext.getCreatedDate()));
+
+        // A single event for the whole batch
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.createCustomFields(ImmutableList.<CustomFieldModelDao>of(field1, field2, field3), internalCallContext);
+        assertListenerStatus();
+
+        List<CustomFieldModelDao> customFields = customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2, UUID.randomUUID()), objectType, internalCallContext);
+        Assert.assertEquals(customFields.size(), 3);
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2), ObjectType.ACCOUNT, internalCallContext).size(), 0);
+
+        // The whole batch is rejected if one of the fields already exists
+        final CustomFieldModelDao field4 = new CustomFieldModelDao(new StringCustomField("Field4", "Value4", objectType, objectId2, internalCallContext.getCreatedDate()));
+        final CustomFieldModelDao duplicateField = new CustomFieldModelDao(new StringCustomField("Field2", "Value5", objectType, objectId1, internalCallContext.getCreatedDate()));
+        try {
+            customFieldDao.createCustomFields(ImmutableList.<CustomFieldModelDao>of(field4, duplicateField), internalCallContext);
+            Assert.fail();
+        } catch (final CustomFieldApiException e) {
+            Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId2), objectType, internalCallContext).size(), 1);
+        }
+
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.deleteCustomFields(ImmutableList.<UUID>of(field1.getId(), field3.getId()), internalCallContext);
+        assertListenerStatus();
+
+        customFields = customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2), objectType, internalCallContext);
+        Assert.assertEquals(customFields.size(), 1);
+        Assert.assertEquals(customFields.get(0).getId(), field2.getId());
+    }
 }
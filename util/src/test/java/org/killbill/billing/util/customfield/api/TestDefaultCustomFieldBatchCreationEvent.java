@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.customfield.api;
+
+import java.util.UUID;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import org.killbill.billing.events.BusInternalEvent.BusInternalEventType;
+import org.killbill.billing.util.jackson.ObjectMapper;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestDefaultCustomFieldBatchCreationEvent {
+
+    @Test(groups = "fast")
+    public void testPojo() throws Exception {
+        final ImmutableList<UUID> customFieldIds = ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID());
+
+        final DefaultCustomFieldBatchCreationEvent event = new DefaultCustomFieldBatchCreationEvent(customFieldIds, 1L, 2L, UUID.randomUUID());
+        Assert.assertEquals(event.getBusEventType(), BusInternalEventType.CUSTOM_FIELD_BATCH_CREATION);
+
+        Assert.assertEquals(event.getCustomFieldIds(), customFieldIds);
+
+        Assert.assertEquals(event, event);
+        Assert.assertEquals(event, new DefaultCustomFieldBatchCreationEvent(customFieldIds, 1L, 2L, UUID.randomUUID()));
+    }
+
+    @Test(groups = "fast")
+    public void testSerialization() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        final DefaultCustomFieldBatchCreationEvent event = new DefaultCustomFieldBatchCreationEvent(ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID()), 1L, 2L, UUID.randomUUID());
+
+        final String json = objectMapper.writeValueAsString(event);
+        final DefaultCustomFieldBatchCreationEvent fromJson = objectMapper.readValue(json, DefaultCustomFieldBatchCreationEvent.class);
+        Assert.assertEquals(fromJson, event);
+    }
+}
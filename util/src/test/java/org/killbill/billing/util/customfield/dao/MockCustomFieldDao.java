@@ -17,6 +17,7 @@
 package org.killbill.billing.util.customfield.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -57,8 +58,33 @@ public class MockCustomFieldDao extends MockEntityDaoBase<CustomFieldModelDao, C
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void backfillSearchIndex() {
+    }
+
     @Override
     public void deleteCustomField(final UUID customFieldId, final InternalCallContext context) throws CustomFieldApiException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        final List<CustomFieldModelDao> result = new ArrayList<CustomFieldModelDao>();
+        for (final UUID objectId : objectIds) {
+            result.addAll(getCustomFieldsForObject(objectId, objectType, context));
+        }
+        return result;
+    }
+
+    @Override
+    public void createCustomFields(final List<CustomFieldModelDao> customFields, final InternalCallContext context) throws CustomFieldApiException {
+        for (final CustomFieldModelDao customField : customFields) {
+            create(customField, context);
+        }
+    }
+
+    @Override
+    public void deleteCustomFields(final Collection<UUID> customFieldIds, final InternalCallContext context) throws CustomFieldApiException {
+        throw new UnsupportedOperationException();
+    }
 }
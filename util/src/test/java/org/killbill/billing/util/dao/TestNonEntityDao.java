@@ -18,6 +18,7 @@ package org.killbill.billing.util.dao;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.Handle;
@@ -28,6 +29,8 @@ import org.testng.annotations.Test;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestNonEntityDao extends UtilTestSuiteWithEmbeddedDB {
 
     final Long tenantRecordId = 123123123L;
@@ -91,6 +94,29 @@ public class TestNonEntityDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(resultTenantRecordId, tenantRecordId);
     }
 
+    @Test(groups = "slow")
+    public void testRetrieveRecordIdsFromObjects() throws IOException {
+        insertAccount();
+        insertTag();
+        final UUID unknownId = UUID.randomUUID();
+
+        final Map<UUID, Long> resultRecordIds = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(accountId, unknownId), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(resultRecordIds.size(), 2);
+        Assert.assertEquals(resultRecordIds.get(accountId), accountRecordId);
+        Assert.assertNull(resultRecordIds.get(unknownId));
+
+        final Map<UUID, Long> resultAccountRecordIds = nonEntityDao.retrieveAccountRecordIdsFromObjects(ImmutableList.<UUID>of(accountId), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(resultAccountRecordIds.get(accountId), accountRecordId);
+
+        final Map<UUID, Long> resultTagAccountRecordIds = nonEntityDao.retrieveAccountRecordIdsFromObjects(ImmutableList.<UUID>of(tagId, unknownId), ObjectType.TAG, null);
+        Assert.assertEquals(resultTagAccountRecordIds.size(), 2);
+        Assert.assertEquals(resultTagAccountRecordIds.get(tagId), accountRecordId);
+        Assert.assertNull(resultTagAccountRecordIds.get(unknownId));
+
+        final Map<UUID, Long> resultTenantRecordIds = nonEntityDao.retrieveTenantRecordIdsFromObjects(ImmutableList.<UUID>of(accountId), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(resultTenantRecordIds.get(accountId), tenantRecordId);
+    }
+
     private void insertAccount() throws IOException {
         dbi.withHandle(new HandleCallback<Void>() {
             @Override
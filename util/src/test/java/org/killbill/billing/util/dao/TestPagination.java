@@ -22,7 +22,11 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.callcontext.InternalPaginationTenantContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.entity.DefaultPagination;
+import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
 import org.killbill.billing.util.tag.dao.TagDefinitionSqlDao;
 
@@ -74,4 +78,69 @@ public class TestPagination extends UtilTestSuiteWithEmbeddedDB {
             }
         }
     }
+
+    @Test(groups = "slow", description = "Test Pagination: seek pagination via next page tokens")
+    public void testTagDefinitionsSeekPagination() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            createTagDefinition(i);
+        }
+
+        // First page
+        final DefaultPagination<TagDefinitionModelDao> firstPage = getPage(0L, 4L, null, 100L, true);
+        checkPage(firstPage, 0, 4, 10L);
+        Assert.assertNotNull(firstPage.getNextPageToken());
+
+        // Resume from the token
+        final DefaultPagination<TagDefinitionModelDao> secondPage = getPage(4L, 4L, firstPage.getNextPageToken(), 100L, true);
+        checkPage(secondPage, 4, 4, 10L);
+        Assert.assertNotNull(secondPage.getNextPageToken());
+
+        // Rows added in the meantime are still returned, but the counts are the estimates from the first page
+        createTagDefinition(10);
+        final DefaultPagination<TagDefinitionModelDao> lastPage = getPage(8L, 4L, secondPage.getNextPageToken(), 100L, true);
+        checkPage(lastPage, 8, 3, 10L);
+        // Partial page: no more results
+        Assert.assertNull(lastPage.getNextPageToken());
+
+        // Fallback to offset pagination (fresh counts) for tokens issued for another offset...
+        checkPage(getPage(8L, 4L, firstPage.getNextPageToken(), 100L, true), 8, 3, 11L);
+        // ... or invalid tokens
+        checkPage(getPage(4L, 4L, "not-a-token", 100L, true), 4, 4, 11L);
+
+        // Counts can be disabled
+        final DefaultPagination<TagDefinitionModelDao> pageWithoutCounts = getPage(0L, 4L, null, 100L, false);
+        checkPage(pageWithoutCounts, 0, 4, null);
+        Assert.assertNull(pageWithoutCounts.getMaxNbRecords());
+        checkPage(getPage(4L, 4L, pageWithoutCounts.getNextPageToken(), 100L, false), 4, 4, null);
+
+        // No token for pages larger than the max page size
+        final DefaultPagination<TagDefinitionModelDao> largePage = getPage(0L, 4L, null, 3L, true);
+        checkPage(largePage, 0, 4, 11L);
+        Assert.assertNull(largePage.getNextPageToken());
+
+        // Nor for non paginated calls
+        final Pagination<TagDefinitionModelDao> page = tagDefinitionDao.get(0L, 4L, internalCallContext);
+        Assert.assertNull(((DefaultPagination) page).getNextPageToken());
+        Assert.assertEquals(ImmutableList.<TagDefinitionModelDao>copyOf(page).size(), 4);
+    }
+
+    private void createTagDefinition(final int i) throws Exception {
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        tagDefinitionDao.create("name-" + i, "description-" + i, internalCallContext);
+        assertListenerStatus();
+    }
+
+    private DefaultPagination<TagDefinitionModelDao> getPage(final Long offset, final Long limit, final String token, final long maxPageSizeForToken, final boolean withCount) {
+        final InternalTenantContext context = new InternalPaginationTenantContext(internalCallContext.getTenantRecordId(), null, token, maxPageSizeForToken, withCount);
+        return (DefaultPagination<TagDefinitionModelDao>) tagDefinitionDao.get(offset, limit, context);
+    }
+
+    private void checkPage(final DefaultPagination<TagDefinitionModelDao> page, final int firstIndex, final int size, final Long totalNbRecords) {
+        Assert.assertEquals(page.getTotalNbRecords(), totalNbRecords);
+        final List<TagDefinitionModelDao> tagDefinitions = ImmutableList.<TagDefinitionModelDao>copyOf(page);
+        Assert.assertEquals(tagDefinitions.size(), size);
+        for (int j = 0; j < tagDefinitions.size(); j++) {
+            Assert.assertEquals(tagDefinitions.get(j).getName(), "name-" + (firstIndex + j));
+        }
+    }
 }
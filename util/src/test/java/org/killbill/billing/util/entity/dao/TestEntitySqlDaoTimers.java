@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.tag.dao.TagDefinitionSqlDao;
+import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class TestEntitySqlDaoTimers extends UtilTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testSqlDaoMethodsAreTimed() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controlCacheDispatcher, nonEntityDao, metricRegistry);
+
+        final TagModelDao tag = new TagModelDao(clock.getUTCNow(), UUID.randomUUID(), UUID.randomUUID(), ObjectType.TAG);
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                entitySqlDaoWrapperFactory.become(TagSqlDao.class).create(tag, internalCallContext);
+                return null;
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            final TagModelDao result = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<TagModelDao>() {
+                @Override
+                public TagModelDao inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    return entitySqlDaoWrapperFactory.become(TagSqlDao.class).getById(tag.getId().toString(), internalCallContext);
+                }
+            });
+            Assert.assertEquals(result.getId(), tag.getId());
+        }
+
+        // One timer per SqlDao class and method, shared across transactions
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(TagSqlDao.class, "create")).getCount(), 1);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(TagSqlDao.class, "getById")).getCount(), 2);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(TagDefinitionSqlDao.class, "getById")).getCount(), 0);
+    }
+
+    @Test(groups = "slow")
+    public void testTimersAreCached() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final EntitySqlDaoTimers sqlDaoTimers = new EntitySqlDaoTimers(metricRegistry);
+        final Method getById = EntitySqlDao.class.getMethod("getById", String.class, InternalTenantContext.class);
+
+        Assert.assertSame(sqlDaoTimers.getTimer(TagSqlDao.class, getById), sqlDaoTimers.getTimer(TagSqlDao.class, getById));
+        Assert.assertSame(sqlDaoTimers.getTimer(TagSqlDao.class, getById), metricRegistry.timer(MetricRegistry.name(TagSqlDao.class, "getById")));
+        // Inherited methods are still broken down per SqlDao
+        Assert.assertNotSame(sqlDaoTimers.getTimer(TagDefinitionSqlDao.class, getById), sqlDaoTimers.getTimer(TagSqlDao.class, getById));
+
+        // Different wrappers on the same registry share the timers
+        Assert.assertSame(new EntitySqlDaoTimers(metricRegistry).getTimer(TagSqlDao.class, getById), sqlDaoTimers.getTimer(TagSqlDao.class, getById));
+    }
+}
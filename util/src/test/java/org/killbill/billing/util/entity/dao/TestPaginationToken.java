@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPaginationToken extends UtilTestSuiteNoDB {
+
+    private static final String QUERY_KEY = "org.killbill.billing.util.tag.dao.TagDefinitionSqlDao#get";
+
+    @Test(groups = "fast", description = "Test Util: pagination token round trip")
+    public void testRoundTrip() throws Exception {
+        final String encoded = new PaginationToken(QUERY_KEY, 1L, 200L, 4567L, 1000L, 2000L).encode();
+
+        final PaginationToken token = PaginationToken.decode(encoded, QUERY_KEY, 1L, 200L);
+        Assert.assertNotNull(token);
+        Assert.assertEquals(token.getLastRecordId(), 4567L);
+        Assert.assertEquals(token.getCount(), (Long) 1000L);
+        Assert.assertEquals(token.getTotalCount(), (Long) 2000L);
+
+        // Counts may have been disabled
+        final PaginationToken tokenWithoutCounts = PaginationToken.decode(new PaginationToken(QUERY_KEY, null, 200L, 4567L, null, null).encode(), QUERY_KEY, null, 200L);
+        Assert.assertNotNull(tokenWithoutCounts);
+        Assert.assertNull(tokenWithoutCounts.getCount());
+        Assert.assertNull(tokenWithoutCounts.getTotalCount());
+    }
+
+    @Test(groups = "fast", description = "Test Util: pagination tokens issued for another request are ignored")
+    public void testMismatch() throws Exception {
+        final String encoded = new PaginationToken(QUERY_KEY, 1L, 200L, 4567L, 1000L, 2000L).encode();
+
+        Assert.assertNull(PaginationToken.decode(encoded, QUERY_KEY + "2", 1L, 200L));
+        Assert.assertNull(PaginationToken.decode(encoded, QUERY_KEY, 2L, 200L));
+        Assert.assertNull(PaginationToken.decode(encoded, QUERY_KEY, 1L, 100L));
+    }
+
+    @Test(groups = "fast", description = "Test Util: invalid pagination tokens are ignored")
+    public void testInvalid() throws Exception {
+        Assert.assertNull(PaginationToken.decode(null, QUERY_KEY, 1L, 200L));
+        Assert.assertNull(PaginationToken.decode("", QUERY_KEY, 1L, 200L));
+        Assert.assertNull(PaginationToken.decode("not a token!", QUERY_KEY, 1L, 200L));
+        Assert.assertNull(PaginationToken.decode("bm90fGF8dG9rZW4", QUERY_KEY, 1L, 200L));
+    }
+}
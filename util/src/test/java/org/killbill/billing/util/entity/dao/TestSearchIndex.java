@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.entity.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.killbill.billing.util.tag.ControlTagType;
+import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
+import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestSearchIndex extends UtilTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testSearchThroughIndex() throws Exception {
+        final String suffix = UUID.randomUUID().toString().substring(0, 8);
+        final CustomFieldModelDao matchingField = createCustomField("Hello Acme " + suffix);
+        final CustomFieldModelDao otherField = createCustomField("Something else " + suffix);
+
+        // The trigrams of the searchable values are indexed on creation
+        Assert.assertTrue(getNbSearchIndexKeys("custom_fields", matchingField.getRecordId()) > 0);
+        Assert.assertTrue(getNbSearchIndexKeys("custom_fields", otherField.getRecordId()) > 0);
+
+        checkCustomFieldsSearch("Acme " + suffix, matchingField);
+        checkCustomFieldsSearch(suffix, matchingField, otherField);
+        // The index returns a superset of the rows, which are still filtered by the like clauses
+        checkCustomFieldsSearch("Acme else " + suffix);
+
+        // Exact matches (not indexed)
+        checkCustomFieldsSearch(matchingField.getId().toString(), matchingField);
+
+        // Search keys too short for the index scan the table
+        Assert.assertFalse(ImmutableList.<CustomFieldModelDao>copyOf(customFieldDao.searchCustomFields("Ac", 0L, 100L, internalCallContext)).isEmpty());
+    }
+
+    @Test(groups = "slow")
+    public void testDeletedRowsKeepTheirKeys() throws Exception {
+        final String suffix = UUID.randomUUID().toString().substring(0, 8);
+        final CustomFieldModelDao customField = createCustomField("Before " + suffix);
+        final long nbKeys = getNbSearchIndexKeys("custom_fields", customField.getRecordId());
+        checkCustomFieldsSearch("Before " + suffix, customField);
+
+        // Soft deleted rows are still returned by the search queries, their keys are kept
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.deleteCustomFields(ImmutableList.<UUID>of(customField.getId()), internalCallContext);
+        assertListenerStatus();
+        Assert.assertEquals(getNbSearchIndexKeys("custom_fields", customField.getRecordId()), nbKeys);
+    }
+
+    @Test(groups = "slow")
+    public void testUnindexedRowsAreFound() throws Exception {
+        final String suffix = UUID.randomUUID().toString().substring(0, 8);
+        final CustomFieldModelDao legacyField = createCustomField("Legacy " + suffix);
+
+        // Simulate a row created before the search index was introduced
+        executeUpdate("delete from search_index where table_name = 'custom_fields' and target_record_id = ?", legacyField.getRecordId());
+        // Without boundary, the table is considered fully indexed
+        checkCustomFieldsSearch("Legacy " + suffix);
+
+        // Set by search_index_migration.sql
+        executeUpdate("insert into search_index_boundaries (table_name, first_indexed_record_id) values ('custom_fields', ?)", legacyField.getRecordId() + 1);
+        checkCustomFieldsSearch("Legacy " + suffix, legacyField);
+
+        // Rows created after the migration are found through the index
+        final CustomFieldModelDao newField = createCustomField("Legacy " + suffix + " again");
+        Assert.assertTrue(getNbSearchIndexKeys("custom_fields", newField.getRecordId()) > 0);
+        checkCustomFieldsSearch("Legacy " + suffix, legacyField, newField);
+
+        // Run at startup: the rows below the boundary get indexed, and the boundary goes away
+        customFieldDao.backfillSearchIndex();
+        Assert.assertTrue(getNbSearchIndexKeys("custom_fields", legacyField.getRecordId()) > 0);
+        Assert.assertEquals(getNbSearchIndexBoundaries("custom_fields"), 0);
+        checkCustomFieldsSearch("Legacy " + suffix, legacyField, newField);
+    }
+
+    @Test(groups = "slow")
+    public void testTagsSearch() throws Exception {
+        final String definitionName = "gold-" + UUID.randomUUID().toString().substring(0, 5);
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        final TagDefinitionModelDao tagDefinition = tagDefinitionDao.create(definitionName, "Gold customers", internalCallContext);
+        assertListenerStatus();
+
+        final TagModelDao userTag = createTag(tagDefinition.getId(), ObjectType.ACCOUNT);
+        final TagModelDao controlTag = createTag(ControlTagType.AUTO_PAY_OFF.getId(), ObjectType.INVOICE);
+
+        // Tag definitions aren't indexed, tags are found through their (user or system) definition
+        checkTagsSearch(definitionName, userTag);
+        checkTagsSearch(ControlTagType.AUTO_PAY_OFF.toString(), controlTag);
+        checkTagsSearch(ControlTagType.AUTO_PAY_OFF.getDescription(), controlTag);
+        // Object types are indexed
+        checkTagsSearch(ObjectType.INVOICE.toString(), controlTag);
+        // Exact match
+        checkTagsSearch(userTag.getId().toString(), userTag);
+    }
+
+    private CustomFieldModelDao createCustomField(final String value) throws Exception {
+        final UUID objectId = UUID.randomUUID();
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.createCustomFields(ImmutableList.<CustomFieldModelDao>of(new CustomFieldModelDao(UUID.randomUUID(), clock.getUTCNow(), clock.getUTCNow(), "field", value, objectId, ObjectType.ACCOUNT)),
+                                          internalCallContext);
+        assertListenerStatus();
+
+        final List<CustomFieldModelDao> customFields = customFieldDao.getCustomFieldsForObject(objectId, ObjectType.ACCOUNT, internalCallContext);
+        Assert.assertEquals(customFields.size(), 1);
+        return customFields.get(0);
+    }
+
+    private TagModelDao createTag(final UUID tagDefinitionId, final ObjectType objectType) throws Exception {
+        final TagModelDao tag = new TagModelDao(clock.getUTCNow(), tagDefinitionId, UUID.randomUUID(), objectType);
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        tagDao.create(tag, internalCallContext);
+        assertListenerStatus();
+        return tag;
+    }
+
+    private void checkCustomFieldsSearch(final String searchKey, final CustomFieldModelDao... expectedCustomFields) {
+        final List<CustomFieldModelDao> customFields = ImmutableList.<CustomFieldModelDao>copyOf(customFieldDao.searchCustomFields(searchKey, 0L, 100L, internalCallContext));
+        Assert.assertEquals(customFields.size(), expectedCustomFields.length);
+        for (int i = 0; i < expectedCustomFields.length; i++) {
+            Assert.assertEquals(customFields.get(i).getId(), expectedCustomFields[i].getId());
+        }
+        Assert.assertEquals(customFieldDao.searchCustomFields(searchKey, 0L, 100L, internalCallContext).getTotalNbRecords(), Long.valueOf(expectedCustomFields.length));
+    }
+
+    private void checkTagsSearch(final String searchKey, final TagModelDao... expectedTags) {
+        final List<TagModelDao> tags = ImmutableList.<TagModelDao>copyOf(tagDao.searchTags(searchKey, 0L, 100L, internalCallContext));
+        Assert.assertEquals(tags.size(), expectedTags.length);
+        for (int i = 0; i < expectedTags.length; i++) {
+            Assert.assertEquals(tags.get(i).getId(), expectedTags[i].getId());
+        }
+    }
+
+    private long getNbSearchIndexKeys(final String tableName, final Long targetRecordId) {
+        return dbi.withHandle(new HandleCallback<Long>() {
+            @Override
+            public Long withHandle(final Handle handle) throws Exception {
+                final List<Map<String, Object>> rows = handle.select("select count(1) as count from search_index where table_name = ? and target_record_id = ?", tableName, targetRecordId);
+                return Long.valueOf(rows.get(0).get("count").toString());
+            }
+        });
+    }
+
+    private long getNbSearchIndexBoundaries(final String tableName) {
+        return dbi.withHandle(new HandleCallback<Long>() {
+            @Override
+            public Long withHandle(final Handle handle) throws Exception {
+                final List<Map<String, Object>> rows = handle.select("select count(1) as count from search_index_boundaries where table_name = ?", tableName);
+                return Long.valueOf(rows.get(0).get("count").toString());
+            }
+        });
+    }
+
+    private void executeUpdate(final String sql, final Object... args) {
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.update(sql, args);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class TestSearchIndexKeys extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast", description = "Test Util: search index keys for searchable values")
+    public void testKeysForValues() throws Exception {
+        Assert.assertEquals(SearchIndexKeys.forValues(Arrays.<String>asList("Zo\u00e9", null, "ab", "zoe")), ImmutableSet.<String>of("zoe"));
+        Assert.assertEquals(SearchIndexKeys.forValues(Arrays.<String>asList("john@acme")), ImmutableSet.<String>of("joh", "ohn", "hn@", "n@a", "@ac", "acm", "cme"));
+    }
+
+    @Test(groups = "fast", description = "Test Util: search index keys for search keys")
+    public void testKeysForSearchKey() throws Exception {
+        Assert.assertTrue(SearchIndexKeys.forSearchKey(null).isEmpty());
+        Assert.assertTrue(SearchIndexKeys.forSearchKey("jo").isEmpty());
+        // Like wildcards aren't part of the keys
+        Assert.assertTrue(SearchIndexKeys.forSearchKey("jo%hn_s").isEmpty());
+        Assert.assertEquals(SearchIndexKeys.forSearchKey("JOHN%acme"), ImmutableSet.<String>of("joh", "ohn", "acm", "cme"));
+
+        final Set<String> keys = SearchIndexKeys.forSearchKey("abcdefghijklmnopqrstuvwxyz0123456789");
+        Assert.assertEquals(keys.size(), SearchIndexKeys.MAX_SEARCH_KEYS);
+        // Any subset of the keys of a matching value must be found in the keys of that value
+        Assert.assertTrue(SearchIndexKeys.forValues(Arrays.<String>asList("--abcdefghijklmnopqrstuvwxyz0123456789--")).containsAll(keys));
+    }
+}
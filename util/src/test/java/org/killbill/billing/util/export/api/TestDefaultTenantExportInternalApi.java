@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.export.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.config.ExportConfig;
+import org.mockito.Mockito;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class TestDefaultTenantExportInternalApi extends UtilTestSuiteWithEmbeddedDB {
+
+    @Test(groups = "slow")
+    public void testExportAndResume() throws Exception {
+        final long firstAccountRecordId = internalCallContext.getAccountRecordId();
+        final Date createdDate = new Date(12421982000L);
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                for (int i = 0; i < 3; i++) {
+                    handle.execute("insert into accounts (record_id, id, email, name, first_name_length, is_notified_for_invoices, created_date, created_by, updated_date, updated_by, tenant_record_id) " +
+                                   "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                                   firstAccountRecordId + i, UUID.randomUUID().toString(), "a@b", "name-" + i, 4, false, createdDate, "test", createdDate, "test", internalCallContext.getTenantRecordId());
+                }
+                return null;
+            }
+        });
+
+        final TenantExportInternalApi tenantExportInternalApi = createTenantExportInternalApi();
+
+        final TenantExport tenantExport = tenantExportInternalApi.exportDataForTenant("nightly", null, internalCallContext);
+        Assert.assertEquals(tenantExport.getState(), TenantExport.State.COMPLETED);
+        final String firstChunk = firstAccountRecordId + "-" + (firstAccountRecordId + 1) + File.separator + "accounts.csv.gz";
+        final String secondChunk = (firstAccountRecordId + 2) + "-" + (firstAccountRecordId + 2) + File.separator + "accounts.csv.gz";
+        Assert.assertTrue(tenantExport.getChunkFiles().contains(firstChunk));
+        Assert.assertTrue(tenantExport.getChunkFiles().contains(secondChunk));
+        Assert.assertNull(tenantExport.getSince());
+
+        final File exportDirectory = new File(tenantExport.getDirectory());
+        final String secondChunkContent = readChunk(new File(exportDirectory, secondChunk));
+        Assert.assertTrue(secondChunkContent.startsWith("-- accounts "));
+        Assert.assertTrue(secondChunkContent.contains("name-2"));
+        Assert.assertFalse(secondChunkContent.contains("name-1"));
+
+        // Simulate an export interrupted while writing the second partition
+        final File secondPartitionDirectory = new File(exportDirectory, String.valueOf(firstAccountRecordId + 2) + "-" + (firstAccountRecordId + 2));
+        final File inProgressDirectory = new File(exportDirectory, secondPartitionDirectory.getName() + ".tmp");
+        Assert.assertTrue(secondPartitionDirectory.renameTo(inProgressDirectory));
+        final File firstChunkFile = new File(exportDirectory, firstChunk);
+        Assert.assertTrue(firstChunkFile.setLastModified(1000L));
+
+        // Accounts created since the first run aren't part of the export
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("insert into accounts (record_id, id, email, name, first_name_length, is_notified_for_invoices, created_date, created_by, updated_date, updated_by, tenant_record_id) " +
+                               "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                               firstAccountRecordId + 3, UUID.randomUUID().toString(), "a@b", "name-3", 4, false, createdDate, "test", createdDate, "test", internalCallContext.getTenantRecordId());
+                return null;
+            }
+        });
+
+        final TenantExport resumedTenantExport = tenantExportInternalApi.exportDataForTenant("nightly", null, internalCallContext);
+        Assert.assertEquals(resumedTenantExport.getChunkFiles(), tenantExport.getChunkFiles());
+        Assert.assertEquals(resumedTenantExport.getStartedDate().compareTo(tenantExport.getStartedDate()), 0);
+        Assert.assertEquals(readChunk(new File(exportDirectory, secondChunk)), secondChunkContent);
+        Assert.assertFalse(inProgressDirectory.exists());
+        // The first partition wasn't exported again
+        Assert.assertEquals(firstChunkFile.lastModified(), 1000L);
+
+        // The since date of an existing export cannot be changed
+        try {
+            tenantExportInternalApi.exportDataForTenant("nightly", new DateTime(createdDate, DateTimeZone.UTC), internalCallContext);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("nightly"));
+        }
+
+        try {
+            tenantExportInternalApi.exportDataForTenant("..", null, internalCallContext);
+            Assert.fail();
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("Invalid export name"));
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testConcurrentRunsAndBackgroundExport() throws Exception {
+        final TenantExportInternalApi tenantExportInternalApi = createTenantExportInternalApi();
+        Assert.assertNull(tenantExportInternalApi.getExportForTenant("weekly", internalCallContext));
+
+        final TenantExport startedTenantExport = tenantExportInternalApi.startExportForTenant("weekly", null, internalCallContext);
+        final File exportDirectory = new File(startedTenantExport.getDirectory());
+
+        TenantExport tenantExport = startedTenantExport;
+        for (int i = 0; i < 100 && tenantExport.getState() == TenantExport.State.RUNNING; i++) {
+            Thread.sleep(100);
+            tenantExport = tenantExportInternalApi.getExportForTenant("weekly", internalCallContext);
+        }
+        Assert.assertEquals(tenantExport.getState(), TenantExport.State.COMPLETED);
+        Assert.assertEquals(tenantExport.getStartedDate().compareTo(startedTenantExport.getStartedDate()), 0);
+
+        // Simulate a run in progress, e.g. from another server sharing the export directory
+        final FileChannel channel = new RandomAccessFile(new File(exportDirectory, "export.lock"), "rw").getChannel();
+        try {
+            Assert.assertNotNull(channel.tryLock());
+            Assert.assertEquals(tenantExportInternalApi.getExportForTenant("weekly", internalCallContext).getState(), TenantExport.State.RUNNING);
+            try {
+                tenantExportInternalApi.exportDataForTenant("weekly", null, internalCallContext);
+                Assert.fail();
+            } catch (final IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().contains("already running"));
+            }
+        } finally {
+            channel.close();
+        }
+        Assert.assertEquals(tenantExportInternalApi.getExportForTenant("weekly", internalCallContext).getState(), TenantExport.State.COMPLETED);
+    }
+
+    private TenantExportInternalApi createTenantExportInternalApi() {
+        final File exportRootDirectory = Files.createTempDir();
+        final ExportConfig exportConfig = Mockito.mock(ExportConfig.class);
+        Mockito.when(exportConfig.getExportDirectory()).thenReturn(exportRootDirectory.getAbsolutePath());
+        Mockito.when(exportConfig.getExportThreadNb()).thenReturn(2);
+        Mockito.when(exportConfig.getExportPartitionSize()).thenReturn(2);
+        return new DefaultTenantExportInternalApi(dao, exportConfig, clock);
+    }
+
+    private String readChunk(final File chunkFile) throws IOException {
+        final GZIPInputStream input = new GZIPInputStream(new FileInputStream(chunkFile));
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteStreams.copy(input, output);
+            return new String(output.toByteArray(), Charsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -18,8 +18,12 @@ package org.killbill.billing.util.export.dao;
 
 import java.io.ByteArrayOutputStream;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.testng.Assert;
@@ -27,7 +31,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.api.ColumnInfo;
 import org.killbill.billing.util.api.DatabaseExportOutputStream;
+import org.killbill.billing.util.export.dao.DatabaseExportDao.AccountRecordIdRange;
 import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 
 public class TestDatabaseExportDao extends UtilTestSuiteWithEmbeddedDB {
@@ -89,6 +95,63 @@ public class TestDatabaseExportDao extends UtilTestSuiteWithEmbeddedDB {
                                      "1,b," + internalCallContext.getAccountRecordId() + "," + internalCallContext.getTenantRecordId() + "\n");
     }
 
+    @Test(groups = "slow")
+    public void testExportAccountRecordIdRange() throws Exception {
+        final String tableName = "test_database_export_dao_range";
+        final long firstAccountRecordId = internalCallContext.getAccountRecordId();
+        final Date oldDate = new Date(12421982000L);
+        final Date recentDate = new Date(382910622000L);
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("drop table if exists " + tableName);
+                handle.execute("create table " + tableName + "(record_id int(11) unsigned not null auto_increment," +
+                               "account_record_id int(11) unsigned not null," +
+                               "updated_date datetime not null," +
+                               "tenant_record_id int(11) unsigned default 0," +
+                               "primary key(record_id));");
+                for (int i = 0; i < 3; i++) {
+                    handle.execute("insert into accounts (record_id, id, email, name, first_name_length, is_notified_for_invoices, created_date, created_by, updated_date, updated_by, tenant_record_id) " +
+                                   "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                                   firstAccountRecordId + i, UUID.randomUUID().toString(), "a@b", "name", 4, false, oldDate, "test", oldDate, "test", internalCallContext.getTenantRecordId());
+                    handle.execute("insert into " + tableName + " (account_record_id, updated_date, tenant_record_id) values (?, ?, ?)",
+                                   firstAccountRecordId + i, i == 2 ? recentDate : oldDate, internalCallContext.getTenantRecordId());
+                }
+                return null;
+            }
+        });
+
+        final List<AccountRecordIdRange> ranges = dao.getAccountRecordIdRanges(2, firstAccountRecordId + 2, internalCallContext);
+        Assert.assertEquals(ranges.size(), 2);
+        Assert.assertEquals(ranges.get(0).getFromAccountRecordId(), firstAccountRecordId);
+        Assert.assertEquals(ranges.get(0).getToAccountRecordId(), firstAccountRecordId + 1);
+        Assert.assertEquals(ranges.get(1).getFromAccountRecordId(), firstAccountRecordId + 2);
+        Assert.assertEquals(ranges.get(1).getToAccountRecordId(), firstAccountRecordId + 2);
+        // Accounts created after the max account record id are ignored
+        Assert.assertEquals(dao.getAccountRecordIdRanges(2, firstAccountRecordId + 1, internalCallContext).size(), 1);
+        Assert.assertEquals(dao.getMaxAccountRecordId(internalCallContext), (Long) (firstAccountRecordId + 2));
+
+        List<ColumnInfo> columnsForTable = null;
+        for (final List<ColumnInfo> accountTable : dao.getAccountTables()) {
+            if (accountTable.get(0).getTableName().equals(tableName)) {
+                columnsForTable = accountTable;
+            }
+        }
+        Assert.assertNotNull(columnsForTable);
+
+        // Full export of the first range
+        DatabaseExportOutputStream out = new CSVExportOutputStream(new ByteArrayOutputStream());
+        dao.exportDataForAccountRecordIdRange(out, columnsForTable, firstAccountRecordId, firstAccountRecordId + 1, null, internalCallContext.getTenantRecordId());
+        Assert.assertEquals(out.toString().split("\n").length, 3);
+
+        // Incremental export
+        out = new CSVExportOutputStream(new ByteArrayOutputStream());
+        dao.exportDataForAccountRecordIdRange(out, columnsForTable, firstAccountRecordId, firstAccountRecordId + 2, new DateTime(recentDate, DateTimeZone.UTC), internalCallContext.getTenantRecordId());
+        final String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 2);
+        Assert.assertTrue(lines[1].startsWith("3," + (firstAccountRecordId + 2) + ","));
+    }
+
     private String getDump() {
         final DatabaseExportOutputStream out = new CSVExportOutputStream(new ByteArrayOutputStream());
         dao.exportDataForAccount(out, internalCallContext);
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.globallocker;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.commons.locker.GlobalLock;
+import org.killbill.commons.locker.LockFailedException;
+import org.killbill.commons.locker.memory.MemoryGlobalLocker;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+
+public class TestGlobalLockerWithModes extends UtilTestSuiteWithEmbeddedDB {
+
+    private GlobalLockerWithModes lockerWithModes;
+    private String lockKey;
+    // Locks are taken from another thread, as the underlying locks may be re-entrant
+    private ExecutorService otherThread;
+
+    @Override
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        lockerWithModes = GlobalLockerWithModes.withModes(locker);
+        lockKey = UUID.randomUUID().toString();
+        otherThread = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    @AfterMethod(groups = "slow")
+    public void afterMethod() throws Exception {
+        otherThread.shutdownNow();
+        super.afterMethod();
+    }
+
+    @Test(groups = "slow")
+    public void testSharedLocksAreCompatible() throws Exception {
+        final GlobalLock lock = lockerWithModes.lockWithNumberOfTries(LockerType.CBA, LockMode.SHARED, lockKey, 1);
+        try {
+            Assert.assertTrue(tryLockFromOtherThread(LockerType.CBA, LockMode.SHARED));
+            Assert.assertFalse(lockerWithModes.isFree(LockerType.CBA, lockKey));
+        } finally {
+            lock.release();
+        }
+        Assert.assertTrue(lockerWithModes.isFree(LockerType.CBA, lockKey));
+    }
+
+    @Test(groups = "slow")
+    public void testExclusiveLockConflictsWithSharedLock() throws Exception {
+        final GlobalLock lock = lockerWithModes.lockWithNumberOfTries(LockerType.CBA, LockMode.SHARED, lockKey, 1);
+        try {
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.CBA, LockMode.EXCLUSIVE));
+        } finally {
+            lock.release();
+        }
+
+        // Partially acquired locks have been released
+        Assert.assertTrue(lockerWithModes.isFree(LockerType.CBA, lockKey));
+        Assert.assertTrue(tryLockFromOtherThread(LockerType.CBA, LockMode.EXCLUSIVE));
+    }
+
+    @Test(groups = "slow")
+    public void testSharedLockConflictsWithExclusiveLock() throws Exception {
+        final GlobalLock lock = lockerWithModes.lockWithNumberOfTries(LockerType.PAYMENT, LockMode.EXCLUSIVE, lockKey, 1);
+        try {
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.PAYMENT, LockMode.SHARED));
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.PAYMENT, LockMode.EXCLUSIVE));
+        } finally {
+            lock.release();
+        }
+        Assert.assertTrue(tryLockFromOtherThread(LockerType.PAYMENT, LockMode.SHARED));
+    }
+
+    @Test(groups = "slow")
+    public void testSubResourcesAreIndependent() throws Exception {
+        final GlobalLock lock = lockerWithModes.lockWithNumberOfTries(ImmutableMap.<LockerType, LockMode>of(LockerType.INVOICE_GENERATION, LockMode.EXCLUSIVE,
+                                                                                                             LockerType.CBA, LockMode.EXCLUSIVE),
+                                                                      lockKey,
+                                                                      1);
+        try {
+            Assert.assertTrue(tryLockFromOtherThread(LockerType.PAYMENT_METHOD, LockMode.EXCLUSIVE));
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.CBA, LockMode.SHARED));
+            // Same sub-resource, different account
+            Assert.assertTrue(lockerWithModes.isFree(LockerType.CBA, UUID.randomUUID().toString()));
+        } finally {
+            lock.release();
+        }
+        Assert.assertTrue(lockerWithModes.isFree(LockerType.INVOICE_GENERATION, lockKey));
+        Assert.assertTrue(lockerWithModes.isFree(LockerType.CBA, lockKey));
+    }
+
+    @Test(groups = "slow")
+    public void testInvoiceRunBlocksPaymentTransactions() throws Exception {
+        // Same lock modes as InvoiceDispatcher and ProcessorBase, both keyed by account id
+        final String accountId = lockKey;
+        final GlobalLock invoiceLock = lockerWithModes.lockWithNumberOfTries(ImmutableMap.<LockerType, LockMode>of(LockerType.INVOICE_GENERATION, LockMode.EXCLUSIVE,
+                                                                                                                    LockerType.CBA, LockMode.EXCLUSIVE),
+                                                                             accountId,
+                                                                             1);
+        final Map<LockerType, LockMode> paymentLockModes = ImmutableMap.<LockerType, LockMode>of(LockerType.CBA, LockMode.SHARED,
+                                                                                                 LockerType.PAYMENT, LockMode.EXCLUSIVE,
+                                                                                                 LockerType.PAYMENT_METHOD, LockMode.SHARED);
+        try {
+            Assert.assertFalse(tryLockFromOtherThread(paymentLockModes));
+            // The payment side did not keep any partial lock
+            Assert.assertTrue(lockerWithModes.isFree(LockerType.PAYMENT, accountId));
+            Assert.assertTrue(lockerWithModes.isFree(LockerType.PAYMENT_METHOD, accountId));
+        } finally {
+            invoiceLock.release();
+        }
+        Assert.assertTrue(tryLockFromOtherThread(paymentLockModes));
+    }
+
+    @Test(groups = "slow")
+    public void testPluginAccountLockExcludesCoreOperations() throws Exception {
+        // Plugins lock the whole account with ACCNT_INV_PAY
+        final GlobalLock pluginLock = lockerWithModes.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), lockKey, 1);
+        try {
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.CBA, LockMode.SHARED));
+            Assert.assertFalse(lockerWithModes.isFree(LockerType.CBA, lockKey));
+        } finally {
+            pluginLock.release();
+        }
+
+        final GlobalLock coreLock = lockerWithModes.lockWithNumberOfTries(LockerType.PAYMENT_METHOD, LockMode.SHARED, lockKey, 1);
+        try {
+            Assert.assertFalse(tryAccountLockFromOtherThread());
+            Assert.assertFalse(lockerWithModes.isFree(LockerType.ACCNT_INV_PAY, lockKey));
+        } finally {
+            coreLock.release();
+        }
+        Assert.assertTrue(tryAccountLockFromOtherThread());
+    }
+
+    @Test(groups = "slow")
+    public void testNestedLocksAreReentrant() throws Exception {
+        final GlobalLock paymentLock = lockerWithModes.lockWithNumberOfTries(ImmutableMap.<LockerType, LockMode>of(LockerType.CBA, LockMode.SHARED,
+                                                                                                                    LockerType.PAYMENT, LockMode.EXCLUSIVE),
+                                                                             lockKey,
+                                                                             1);
+        try {
+            // E.g. an invoice API call, and a plugin locking the account, from the same thread
+            lockerWithModes.lockWithNumberOfTries(LockerType.CBA, LockMode.EXCLUSIVE, lockKey, 1).release();
+            lockerWithModes.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), lockKey, 1).release();
+
+            // Still held
+            Assert.assertFalse(tryLockFromOtherThread(LockerType.CBA, LockMode.EXCLUSIVE));
+            Assert.assertFalse(tryAccountLockFromOtherThread());
+        } finally {
+            paymentLock.release();
+        }
+        Assert.assertTrue(lockerWithModes.isFree(LockerType.CBA, lockKey));
+        Assert.assertTrue(tryLockFromOtherThread(LockerType.CBA, LockMode.EXCLUSIVE));
+    }
+
+    @Test(groups = "slow")
+    public void testNumberOfUnderlyingLocks() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final GlobalLockerWithModes instrumentedLocker = new GlobalLockerWithModes(new InstrumentedGlobalLocker(new MemoryGlobalLocker(), metricRegistry));
+
+        // A single underlying lock (the account lock), whatever the sub-resources and their modes
+        instrumentedLocker.lockWithNumberOfTries(ImmutableMap.<LockerType, LockMode>of(LockerType.INVOICE_GENERATION, LockMode.EXCLUSIVE,
+                                                                                       LockerType.CBA, LockMode.EXCLUSIVE),
+                                                 lockKey,
+                                                 1).release();
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.ACCNT_INV_PAY), 1);
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.INVOICE_GENERATION), 1);
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.CBA), 1);
+
+        // Concurrent operations on the account share the account lock
+        final GlobalLock paymentLock = instrumentedLocker.lockWithNumberOfTries(ImmutableMap.<LockerType, LockMode>of(LockerType.CBA, LockMode.SHARED,
+                                                                                                                       LockerType.PAYMENT, LockMode.EXCLUSIVE,
+                                                                                                                       LockerType.PAYMENT_METHOD, LockMode.SHARED),
+                                                                                lockKey,
+                                                                                1);
+        try {
+            Assert.assertTrue(tryLockFromOtherThread(instrumentedLocker, ImmutableMap.<LockerType, LockMode>of(LockerType.PAYMENT_METHOD, LockMode.SHARED)));
+        } finally {
+            paymentLock.release();
+        }
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.ACCNT_INV_PAY), 2);
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.PAYMENT_METHOD), 2);
+
+        // Plain service locks go to the underlying locker
+        instrumentedLocker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), lockKey, 1).release();
+        Assert.assertEquals(getHoldCount(metricRegistry, LockerType.ACCNT_INV_PAY), 3);
+    }
+
+    @Test(groups = "slow")
+    public void testWaitAndHoldTimesAreRecorded() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final GlobalLockerWithModes instrumentedLocker = new GlobalLockerWithModes(new InstrumentedGlobalLocker(new MemoryGlobalLocker(), metricRegistry));
+
+        instrumentedLocker.lockWithNumberOfTries(LockerType.CBA, LockMode.EXCLUSIVE, lockKey, 1).release();
+
+        for (final LockerType lockerType : new LockerType[]{LockerType.ACCNT_INV_PAY, LockerType.CBA}) {
+            Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, lockerType.toString(), "wait")).getCount(), 1);
+            Assert.assertEquals(getHoldCount(metricRegistry, lockerType), 1);
+            Assert.assertEquals(metricRegistry.counter(MetricRegistry.name(InstrumentedGlobalLocker.class, lockerType.toString(), "failures")).getCount(), 0);
+        }
+    }
+
+    private long getHoldCount(final MetricRegistry metricRegistry, final LockerType lockerType) {
+        return metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, lockerType.toString(), "hold")).getCount();
+    }
+
+    private boolean tryLockFromOtherThread(final LockerType lockerType, final LockMode lockMode) throws Exception {
+        return tryLockFromOtherThread(ImmutableMap.<LockerType, LockMode>of(lockerType, lockMode));
+    }
+
+    private boolean tryLockFromOtherThread(final Map<LockerType, LockMode> lockModes) throws Exception {
+        return tryLockFromOtherThread(lockerWithModes, lockModes);
+    }
+
+    private boolean tryLockFromOtherThread(final GlobalLockerWithModes globalLockerWithModes, final Map<LockerType, LockMode> lockModes) throws Exception {
+        return otherThread.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final GlobalLock lock;
+                try {
+                    lock = globalLockerWithModes.lockWithNumberOfTries(lockModes, lockKey, 1);
+                } catch (final LockFailedException e) {
+                    return false;
+                }
+                lock.release();
+                return true;
+            }
+        }).get();
+    }
+
+    private boolean tryAccountLockFromOtherThread() throws Exception {
+        return otherThread.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final GlobalLock lock;
+                try {
+                    lock = lockerWithModes.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), lockKey, 1);
+                } catch (final LockFailedException e) {
+                    return false;
+                }
+                lock.release();
+                return true;
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.globallocker;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.killbill.commons.locker.GlobalLock;
+import org.killbill.commons.locker.LockFailedException;
+import org.killbill.commons.locker.memory.MemoryGlobalLocker;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class TestInstrumentedGlobalLocker {
+
+    private static final String SERVICE = "TEST_SERVICE";
+    private static final String LOCK_KEY = "12345";
+
+    private MetricRegistry metricRegistry;
+    private InstrumentedGlobalLocker locker;
+    // Locks are taken from another thread, as the underlying locks are re-entrant
+    private ExecutorService otherThread;
+
+    @BeforeMethod(groups = "fast")
+    public void beforeMethod() throws Exception {
+        metricRegistry = new MetricRegistry();
+        locker = new InstrumentedGlobalLocker(new MemoryGlobalLocker(), metricRegistry);
+        otherThread = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() throws Exception {
+        otherThread.shutdownNow();
+    }
+
+    @Test(groups = "fast")
+    public void testWaitHoldAndFailuresAreRecorded() throws Exception {
+        final GlobalLock lock = locker.lockWithNumberOfTries(SERVICE, LOCK_KEY, 1);
+        Assert.assertFalse(locker.isFree(SERVICE, LOCK_KEY));
+        Assert.assertEquals(getWaitTimerCount(), 1);
+        // Only recorded on release
+        Assert.assertEquals(getHoldTimerCount(), 0);
+
+        Assert.assertFalse(tryLockFromOtherThread());
+        Assert.assertEquals(getWaitTimerCount(), 2);
+        Assert.assertEquals(getFailuresCount(), 1);
+
+        lock.release();
+        Assert.assertTrue(locker.isFree(SERVICE, LOCK_KEY));
+        Assert.assertEquals(getHoldTimerCount(), 1);
+
+        Assert.assertTrue(tryLockFromOtherThread());
+        Assert.assertEquals(getWaitTimerCount(), 3);
+        Assert.assertEquals(getHoldTimerCount(), 2);
+        Assert.assertEquals(getFailuresCount(), 1);
+
+        // Other services have their own metrics
+        locker.lockWithNumberOfTries("OTHER_SERVICE", LOCK_KEY, 1).release();
+        Assert.assertEquals(getWaitTimerCount(), 3);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, "OTHER_SERVICE", "wait")).getCount(), 1);
+    }
+
+    private boolean tryLockFromOtherThread() throws Exception {
+        return otherThread.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final GlobalLock lock;
+                try {
+                    lock = locker.lockWithNumberOfTries(SERVICE, LOCK_KEY, 1);
+                } catch (final LockFailedException e) {
+                    return false;
+                }
+                lock.release();
+                return true;
+            }
+        }).get();
+    }
+
+    private long getWaitTimerCount() {
+        return metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, SERVICE, "wait")).getCount();
+    }
+
+    private long getHoldTimerCount() {
+        return metricRegistry.timer(MetricRegistry.name(InstrumentedGlobalLocker.class, SERVICE, "hold")).getCount();
+    }
+
+    private long getFailuresCount() {
+        return metricRegistry.counter(MetricRegistry.name(InstrumentedGlobalLocker.class, SERVICE, "failures")).getCount();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 Groupon, Inc
+ * Copyright 2014-2015 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.killbill.billing.util.glue;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+public class TestKillbillBusHandlerAopModule {
+
+    @Test(groups = "fast")
+    public void testBusHandlersAreTimed() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final Injector injector = Guice.createInjector(new AbstractModule() {
+                                                           @Override
+                                                           protected void configure() {
+                                                               bind(MetricRegistry.class).toInstance(metricRegistry);
+                                                           }
+                                                       },
+                                                       new KillbillBusHandlerAopModule());
+        final TestListener listener = injector.getInstance(TestListener.class);
+
+        listener.handleEvent("event");
+        listener.handleEvent("event");
+        try {
+            listener.handleEvent(TestListener.FAILING_EVENT);
+            Assert.fail("The handler exception should be propagated");
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), TestListener.FAILING_EVENT);
+        }
+        listener.notAHandler();
+
+        Assert.assertEquals(listener.getNbEvents(), 3);
+        Assert.assertEquals(metricRegistry.timer(MetricRegistry.name(TestListener.class, "handleEvent")).getCount(), 3);
+        Assert.assertEquals(metricRegistry.meter(MetricRegistry.name(TestListener.class, "handleEvent", "failures")).getCount(), 1);
+        // Only @Subscribe methods are intercepted
+        Assert.assertFalse(metricRegistry.getTimers().containsKey(MetricRegistry.name(TestListener.class, "notAHandler")));
+    }
+
+    public static class TestListener {
+
+        public static final String FAILING_EVENT = "failing event";
+
+        private int nbEvents = 0;
+
+        @Subscribe
+        public void handleEvent(final String event) {
+            nbEvents++;
+            if (FAILING_EVENT.equals(event)) {
+                throw new IllegalStateException(event);
+            }
+        }
+
+        public void notAHandler() {
+        }
+
+        public int getNbEvents() {
+            return nbEvents;
+        }
+    }
+}
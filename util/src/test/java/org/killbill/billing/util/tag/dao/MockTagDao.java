@@ -17,6 +17,7 @@
 package org.killbill.billing.util.tag.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -67,6 +68,10 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void backfillSearchIndex() {
+    }
+
     @Override
     public TagModelDao getById(final UUID tagId, final InternalTenantContext context) {
         throw new UnsupportedOperationException();
@@ -86,6 +91,15 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
         }));
     }
 
+    @Override
+    public List<TagModelDao> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        final List<TagModelDao> result = new ArrayList<TagModelDao>();
+        for (final UUID objectId : objectIds) {
+            result.addAll(getTagsForObject(objectId, objectType, includedDeleted, internalTenantContext));
+        }
+        return result;
+    }
+
     @Override
     public List<TagModelDao> getTagsForAccountType(final UUID accountId, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
         throw new UnsupportedOperationException();
@@ -26,6 +26,7 @@ import org.testng.annotations.Test;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.api.TagDefinitionApiException;
@@ -33,6 +34,10 @@ import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
 import static org.testng.Assert.assertEquals;
 
 public class TestDefaultTagDao extends UtilTestSuiteWithEmbeddedDB {
@@ -176,4 +181,58 @@ public class TestDefaultTagDao extends UtilTestSuiteWithEmbeddedDB {
         }
     }
 
+    @Test(groups = "slow")
+    public void testGetTagsForObjects() throws TagApiException {
+        final UUID firstInvoiceId = UUID.randomUUID();
+        final UUID secondInvoiceId = UUID.randomUUID();
+        final UUID invoiceWithoutTagsId = UUID.randomUUID();
+        final UUID accountId = UUID.randomUUID();
+        final List<UUID> invoiceIds = ImmutableList.<UUID>of(firstInvoiceId, secondInvoiceId, invoiceWithoutTagsId);
+        final InternalTenantContext tenantContext = new InternalTenantContext(internalCallContext.getTenantRecordId(), null);
+
+        eventsListener.pushExpectedEvents(NextEvent.TAG, NextEvent.TAG, NextEvent.TAG, NextEvent.TAG);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.WRITTEN_OFF.getId(), ObjectType.INVOICE, firstInvoiceId, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.TEST.getId(), ObjectType.INVOICE, firstInvoiceId, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.WRITTEN_OFF.getId(), ObjectType.INVOICE, secondInvoiceId, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_PAY_OFF.getId(), ObjectType.ACCOUNT, accountId, internalCallContext.getCreatedDate())), internalCallContext);
+        assertListenerStatus();
+
+        // Served by the account tags index, then by the database
+        for (final InternalTenantContext context : ImmutableList.<InternalTenantContext>of(internalCallContext, tenantContext)) {
+            final List<TagModelDao> tags = tagDao.getTagsForObjects(invoiceIds, ObjectType.INVOICE, false, context);
+            Assert.assertEquals(tags.size(), 3);
+            Assert.assertEquals(Iterables.size(Iterables.filter(tags, new ObjectIdPredicate(firstInvoiceId))), 2);
+            Assert.assertEquals(Iterables.size(Iterables.filter(tags, new ObjectIdPredicate(secondInvoiceId))), 1);
+            Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(accountId), ObjectType.ACCOUNT, false, context).size(), 1);
+            Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(accountId), ObjectType.INVOICE, false, context).size(), 0);
+        }
+        Assert.assertEquals(tagDao.getTagsForAccountType(accountId, ObjectType.INVOICE, false, internalCallContext).size(), 3);
+
+        // The index needs to be refreshed on deletion
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        tagDao.deleteTag(firstInvoiceId, ObjectType.INVOICE, ControlTagType.TEST.getId(), internalCallContext);
+        assertListenerStatus();
+
+        for (final InternalTenantContext context : ImmutableList.<InternalTenantContext>of(internalCallContext, tenantContext)) {
+            Assert.assertEquals(tagDao.getTagsForObjects(invoiceIds, ObjectType.INVOICE, false, context).size(), 2);
+            Assert.assertEquals(tagDao.getTagsForObjects(invoiceIds, ObjectType.INVOICE, true, context).size(), 3);
+        }
+        Assert.assertEquals(tagDao.getTagsForAccountType(accountId, ObjectType.INVOICE, false, internalCallContext).size(), 2);
+        Assert.assertEquals(tagDao.getTagsForAccountType(accountId, ObjectType.INVOICE, true, internalCallContext).size(), 3);
+    }
+
+    private static final class ObjectIdPredicate implements Predicate<TagModelDao> {
+
+        private final UUID objectId;
+
+        private ObjectIdPredicate(final UUID objectId) {
+            this.objectId = objectId;
+        }
+
+        @Override
+        public boolean apply(final TagModelDao input) {
+            return objectId.equals(input.getObjectId());
+        }
+    }
+
 }